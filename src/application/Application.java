@@ -16,7 +16,6 @@ import java.util.Map.Entry;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.Reader;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.*;
@@ -33,23 +32,35 @@ public class Application {
     private static final int VOCABULARY_PRINT_SIZE = 1_000; // number of vocabulary terms to print
     private static final int MAX_DISPLAYED_RANKED_ENTRIES = 10;  // the maximum number of ranked entries to display
     private static final int SPELLING_CORRECTION_THRESHOLD = 10;// the posting size trigger to suggest corrections
+    private static final int INDEXING_QUEUE_CAPACITY = 64;  // the number of documents between indexing stages
     private static int counter;
     private static int numList;
 
     private static CorpusSelection cSelect;
     private static String currentDirectory; // the user's current directory to use for queries, initially set to root
+    private static String rootDirectory;    // the directory the corpus was loaded from
     private static List<String> allDirectoryPaths = new ArrayList<>();
     private static final boolean ASC = true;
 
     private static final Map<String, DirectoryCorpus> corpora = new HashMap<>();
     private static final Map<String, Index<String, Posting>> corpusIndexes = new HashMap<>();
     private static final Map<String, Index<String, Posting>> biwordIndexes = new HashMap<>();
-    private static final Map<String, KGramIndex> kGramIndexes = new HashMap<>();
-    private static final Map<String, List<Double>> lds = new HashMap<>();
+    private static final Map<String, WildcardIndex> kGramIndexes = new HashMap<>();
+    private static final Map<String, DocumentStatistics> documentStatistics = new HashMap<>();
     private static final Map<String, Integer> closestPoints = new HashMap<>();
+    private static final Map<String, SegmentManager> segmentManagers = new HashMap<>();
     private static DocumentWeightScorer documentScorer;
+    private static DocumentWeightScorer.ScoringMode scoringMode = DocumentWeightScorer.ScoringMode.DOCUMENT_AT_A_TIME;
+    // the number of worker threads used to build indexes; a single thread indexes the corpus sequentially
+    private static int indexingThreads = Runtime.getRuntime().availableProcessors();
+    // the number of threads reading files and adding documents to segments when indexing with multiple threads
+    private static int indexingReaders = 2;
+    private static int indexingIndexers = 0;    // 0 uses one indexer for every 4 indexing threads
+    // the approximate heap bytes an index may use before it is flushed to disk; 0 indexes entirely in memory
+    private static long indexingMemoryBudget = 0;
 
     public static boolean enabledLogs = false;
+    private static int rankedPage = 1;  // the page of ranked results to display, starting at 1
     public static final List<Closeable> closeables = new ArrayList<>(); // considers all cases of indexing
     public static List<String> hamiltonDocs = new ArrayList<>();
     public static List<String> jayDocs = new ArrayList<>();
@@ -75,16 +86,27 @@ public class Application {
         closeables.add(in);
 
         int input = Menu.showBuildOrQueryIndexMenu();
+        if (input == 1) {
+            setIndexingMemoryBudget((long) Menu.showMemoryBudgetMenu() * 1_048_576);
+        }
+        if (input != 2) {
+            promptIndexingThreads(input == 1);
+        }
         /* 1. At startup, ask the user for the name of a directory that they would like to index,
           and construct a DirectoryCorpus from that directory. */
         String directoryString = promptCorpusDirectory(in);
         currentDirectory = directoryString;
+        rootDirectory = directoryString;
         allDirectoryPaths = IndexUtility.getAllDirectories(directoryString);
 
         // depending on the user's input, either build the index from scratch or read from an on-disk index
         switch (input) {
             case 1 -> initializeComponents(allDirectoryPaths);
             case 2 -> readFromComponents(allDirectoryPaths);
+            case 3 -> {
+                updateComponents(allDirectoryPaths);
+                readFromComponents(allDirectoryPaths);
+            }
             default -> throw new RuntimeException("Unexpected input: " + input);
         }
 
@@ -110,6 +132,31 @@ public class Application {
         closeOpenFiles();
     }
 
+    /**
+     * Asks the user for the number of threads to index with, keeping the default of any stage they answer 0 for.
+     * @param withStages whether to also ask for the threads of each stage of the indexing pipeline, which is only
+     *                   used to build an index from scratch
+     */
+    private static void promptIndexingThreads(boolean withStages) {
+        int numOfThreads = Menu.showIndexingThreadsMenu("to index with", indexingThreads);
+        if (numOfThreads > 0) {
+            setIndexingThreads(numOfThreads);
+        }
+        if (!withStages || indexingThreads == 1) {
+            return;
+        }
+
+        numOfThreads = Menu.showIndexingThreadsMenu("reading files", indexingReaders);
+        if (numOfThreads > 0) {
+            setIndexingReaders(numOfThreads);
+        }
+        numOfThreads = Menu.showIndexingThreadsMenu("adding documents to segments",
+                (indexingIndexers > 0 ? indexingIndexers : Math.max(1, indexingThreads / 4)));
+        if (numOfThreads > 0) {
+            setIndexingIndexers(numOfThreads);
+        }
+    }
+
     private static String promptCorpusDirectory(Scanner in) {
         System.out.print("\nEnter the path of the directory corpus:\n >> ");
         return in.nextLine();
@@ -122,9 +169,15 @@ public class Application {
             boolean isRoot = (directoryPath.equals(currentDirectory));
 
             DirectoryCorpus corpus = DirectoryCorpus.loadDirectory(path, isRoot);
+
+            // with a memory budget, the postings are written to disk while indexing instead of afterwards
+            if (indexingMemoryBudget > 0) {
+                initializeComponentsWithBudget(corpus, indexPaths);
+                continue;
+            }
             Index<String, Posting> corpusIndex = indexCorpus(corpus, indexPaths);
-            Index<String, Posting> biwordIndex = biwordIndexes.get(indexPaths.get("biwordBin"));
-            KGramIndex kGramIndex = kGramIndexes.get(indexPaths.get("kGramsBin"));
+            Index<String, Posting> biwordIndex = biwordIndexes.get(indexPaths.get("biwordTermsBin"));
+            WildcardIndex kGramIndex = kGramIndexes.get(indexPaths.get("kGramsBin"));
 
             corpora.put(indexPaths.get("root"), corpus);
             corpusIndexes.put(indexPaths.get("root"), corpusIndex);
@@ -132,28 +185,39 @@ public class Application {
             DiskIndexWriter.createIndexDirectory(indexPaths.get("indexDirectory"));
             System.out.println("\nWriting files to index directory...");
 
-            // write the documents weights to disk
-            DiskIndexWriter.writeLds(indexPaths.get("docWeightsBin"), lds.get(indexPaths.get("docWeightsBin")));
-            System.out.println("Document weights written to `" + indexPaths.get("docWeightsBin") + "` successfully.");
+            // write the document statistics to disk
+            DiskIndexWriter.writeDocumentStatistics(indexPaths.get("docStatsBin"),
+                    documentStatistics.get(indexPaths.get("docStatsBin")));
+            System.out.println("Document statistics written to `" + indexPaths.get("docStatsBin") +
+                    "` successfully.");
 
-            // write the postings using the corpus index to disk
-            List<Integer> positionalBytePositions = DiskIndexWriter.writeIndex(indexPaths.get("postingsBin"), corpusIndex);
+            // write the postings and the term dictionary mappings of term -> byte positions to disk
+            DiskIndexWriter.writeIndex(indexPaths.get("postingsBin"), indexPaths.get("positionsBin"),
+                    indexPaths.get("termsBin"), corpusIndex);
             System.out.println("Postings written to `" + indexPaths.get("postingsBin") + "` successfully.");
+            System.out.println("Term dictionary written to `" + indexPaths.get("termsBin") + "` successfully.");
 
-            // write the B+ tree mappings of term -> byte positions to disk
-            DiskIndexWriter.writeBTree(indexPaths.get("bTreeBin"), corpusIndex.getVocabulary(), positionalBytePositions);
-            System.out.println("B+ Tree written to `" + indexPaths.get("bTreeBin") + "` successfully.");
+            // the bounds of each term are found from the weights of the documents, which were written first
+            DiskIndexWriter.writeTermBounds(indexPaths.get("termBoundsBin"), indexPaths.get("docStatsBin"),
+                    corpusIndex);
+            System.out.println("Term bounds written to `" + indexPaths.get("termBoundsBin") + "` successfully.");
+            DiskIndexWriter.writeDocumentBitmaps(indexPaths.get("docBitmapsBin"), indexPaths.get("docStatsBin"),
+                    corpusIndex);
+            System.out.println("Document bitmaps written to `" + indexPaths.get("docBitmapsBin") + "` successfully.");
 
-            List<Integer> biwordBytePositions = DiskIndexWriter.writeBiword(indexPaths.get("biwordBin"), biwordIndex);
+            DiskIndexWriter.writeBiword(indexPaths.get("biwordBin"), indexPaths.get("biwordTermsBin"), biwordIndex);
             System.out.println("Biword index written to `" + indexPaths.get("biwordBin") + " successfully.");
-
-            DiskIndexWriter.writeBTree(indexPaths.get("biwordBTreeBin"), biwordIndex.getVocabulary(), biwordBytePositions);
-            System.out.println("Biword B+ tree written to `" + indexPaths.get("biwordBTreeBin") + "` successfully.");
+            System.out.println("Biword term dictionary written to `" + indexPaths.get("biwordTermsBin") +
+                    "` successfully.");
 
             // write the k-grams to disk
-            DiskIndexWriter.writeKGrams(indexPaths.get("kGramsBin"), kGramIndex);
+            DiskIndexWriter.writeKGrams(indexPaths.get("kGramsBin"), indexPaths.get("kGramTermsBin"),
+                    indexPaths.get("kGramTokensBin"), kGramIndex);
             System.out.println("K-Grams written to `" + indexPaths.get("kGramsBin") + "` successfully.");
 
+            // record the indexed files, so that the index can later be updated without rebuilding it
+            SegmentManager.create(indexPaths, corpus);
+
             // write the Bayesian classifiers to disk
             DiskIndexWriter.writeBayesianClassifier(indexPaths.get("root"), corpora, corpusIndexes);
         }
@@ -162,32 +226,109 @@ public class Application {
         System.exit(0);
     }
 
+    private static void initializeComponentsWithBudget(DirectoryCorpus corpus, Map<String, String> indexPaths) {
+        System.out.println("\nIndexing `" + indexPaths.get("root") + "`...");
+        long startTime = System.nanoTime();
+
+        // postings must be built in document ID order, so sort the documents before indexing them
+        List<Document> documents = new ArrayList<>();
+        corpus.getDocuments().forEach(documents::add);
+        documents.sort(Comparator.comparingInt(Document::getId));
+
+        DiskIndexWriter.createIndexDirectory(indexPaths.get("indexDirectory"));
+        SpimiIndexer indexer = new SpimiIndexer(indexPaths.get("indexDirectory"), indexingMemoryBudget,
+                indexingThreads);
+        indexer.indexDocuments(documents);
+        indexer.finish(indexPaths);
+        System.out.println("Postings written to `" + indexPaths.get("postingsBin") + "` successfully.");
+        System.out.println("Biword index written to `" + indexPaths.get("biwordBin") + "` successfully.");
+
+        DiskIndexWriter.writeDocumentStatistics(indexPaths.get("docStatsBin"), indexer.getDocumentStatistics());
+        System.out.println("Document statistics written to `" + indexPaths.get("docStatsBin") + "` successfully.");
+
+        DiskIndexWriter.writeKGrams(indexPaths.get("kGramsBin"), indexPaths.get("kGramTermsBin"),
+                indexPaths.get("kGramTokensBin"), indexer.getKGramIndex());
+        System.out.println("K-Grams written to `" + indexPaths.get("kGramsBin") + "` successfully.");
+
+        // record the indexed files, so that the index can later be updated without rebuilding it
+        SegmentManager.create(indexPaths, corpus);
+
+        // the merged postings only exist on disk, so read them back for the classifiers
+        DiskPositionalIndex corpusIndex = new DiskPositionalIndex(DiskIndexReader.readTermDictionary(
+                indexPaths.get("termsBin")), indexPaths.get("postingsBin"), indexPaths.get("positionsBin"));
+        closeables.add(corpusIndex);
+        DiskIndexWriter.writeTermBounds(indexPaths.get("termBoundsBin"), indexPaths.get("docStatsBin"), corpusIndex);
+        System.out.println("Term bounds written to `" + indexPaths.get("termBoundsBin") + "` successfully.");
+        DiskIndexWriter.writeDocumentBitmaps(indexPaths.get("docBitmapsBin"), indexPaths.get("docStatsBin"),
+                corpusIndex);
+        System.out.println("Document bitmaps written to `" + indexPaths.get("docBitmapsBin") + "` successfully.");
+        corpora.put(indexPaths.get("root"), corpus);
+        corpusIndexes.put(indexPaths.get("root"), corpusIndex);
+
+        // write the Bayesian classifiers to disk
+        DiskIndexWriter.writeBayesianClassifier(indexPaths.get("root"), corpora, corpusIndexes);
+
+        long endTime = System.nanoTime();
+        double timeElapsedInSeconds = (double) (endTime - startTime) / 1_000_000_000;
+        System.out.printf("""
+                Indexing complete.
+                Time elapsed: %s seconds
+                Found %s documents in %s runs.
+                Distinct k-grams: %s
+                """, timeElapsedInSeconds, corpus.getCorpusSize(), indexer.getNumOfRuns(),
+                indexer.getKGramIndex().getNumOfDistinctKGrams());
+    }
+
     private static void readFromComponents(List<String> allDirectoryPaths) {
         for (String directoryPath : allDirectoryPaths) {
             Map<String, String> indexPaths = IndexUtility.createIndexPathsMap(directoryPath);
             Path path = Path.of(directoryPath);
-            boolean isRoot = (directoryPath.equals(currentDirectory));
+            boolean isRoot = (directoryPath.equals(rootDirectory));
 
             DirectoryCorpus corpus = DirectoryCorpus.loadDirectory(path, isRoot);
             System.out.println("\nReading index from `" + indexPaths.get("root") + "`...");
 
             corpora.put(indexPaths.get("root"), corpus);
-            // initialize the DiskPositionalIndex and k-grams using pre-constructed indexes on disk
-            corpusIndexes.put(indexPaths.get("root"),
-                    new DiskPositionalIndex(DiskIndexReader.readBTree(indexPaths.get("bTreeBin")),
-                            indexPaths.get("bTreeBin"), indexPaths.get("postingsBin")));
-            biwordIndexes.put(indexPaths.get("biwordBTreeBin"),
-                    new DiskBiwordIndex(DiskIndexReader.readBTree(indexPaths.get("biwordBTreeBin")),
-                            indexPaths.get("biwordBTreeBin"), indexPaths.get("biwordBin")));
-            kGramIndexes.put(indexPaths.get("kGramsBin"), DiskIndexReader.readKGrams(indexPaths.get("kGramsBin")));
-            documentScorer = new DocumentWeightScorer(currentDirectory + "/index/docWeights.bin");
-
-            Index<String, Posting> corpusIndex = corpusIndexes.get(indexPaths.get("bTreeBin"));
-            Index<String, Posting> biwordIndex = biwordIndexes.get(indexPaths.get("biwordBin"));
-
-            // if we're reading from disk, then we know it is Closeable
-            closeables.add((Closeable) corpusIndex);
-            closeables.add((Closeable) biwordIndex);
+            // indexes that were built with a manifest may have been updated, so read them across their segments
+            SegmentManager segmentManager = segmentManagers.get(indexPaths.get("root"));
+            if (segmentManager == null) {
+                segmentManager = SegmentManager.open(indexPaths);
+            }
+
+            if (segmentManager != null) {
+                corpus.setDocumentIds(segmentManager.getDocumentIds());
+                segmentManagers.put(indexPaths.get("root"), segmentManager);
+                openSegments(indexPaths, segmentManager);
+                segmentManager.scheduleMerges();
+            } else {
+                closeIndex(corpusIndexes, indexPaths.get("root"));
+                closeIndex(biwordIndexes, indexPaths.get("biwordTermsBin"));
+                if (LegacyIndexUpgrader.upgrade(indexPaths, corpus)) {
+                    System.out.println("Converted the index from its B+ tree layout.");
+                }
+
+                // initialize the DiskPositionalIndex and k-grams using pre-constructed indexes on disk
+                DiskPositionalIndex corpusIndex = new DiskPositionalIndex(DiskIndexReader.readTermDictionary(
+                        indexPaths.get("termsBin")), indexPaths.get("postingsBin"), indexPaths.get("positionsBin"),
+                        indexPaths.get("termBoundsBin"), indexPaths.get("docBitmapsBin"));
+                DiskBiwordIndex biwordIndex = new DiskBiwordIndex(DiskIndexReader.readTermDictionary(
+                        indexPaths.get("biwordTermsBin")), indexPaths.get("biwordBin"));
+                corpusIndexes.put(indexPaths.get("root"), corpusIndex);
+                biwordIndexes.put(indexPaths.get("biwordTermsBin"), biwordIndex);
+                closeables.add(corpusIndex);
+                closeables.add(biwordIndex);
+
+                closeIndex(kGramIndexes, indexPaths.get("kGramsBin"));
+                DiskKGramIndex kGramIndex = DiskIndexReader.readKGrams(indexPaths.get("kGramsBin"),
+                        indexPaths.get("kGramTermsBin"), indexPaths.get("kGramTokensBin"));
+                kGramIndexes.put(indexPaths.get("kGramsBin"), kGramIndex);
+                closeables.add(kGramIndex);
+            }
+            if (documentScorer != null) {
+                closeables.remove(documentScorer);
+                documentScorer.close();
+            }
+            documentScorer = new DocumentWeightScorer(indexPaths.get("docStatsBin"));
             closeables.add(documentScorer);
 
             System.out.printf("""
@@ -195,7 +336,89 @@ public class Application {
                     Found %s documents.
                     Distinct k-grams: %s
                     """, corpus.getCorpusSize(),
-                    kGramIndexes.get(indexPaths.get("kGramsBin")).getDistinctKGrams().size());
+                    kGramIndexes.get(indexPaths.get("kGramsBin")).getNumOfDistinctKGrams());
+        }
+    }
+
+    private static void updateComponents(List<String> allDirectoryPaths) {
+        for (String directoryPath : allDirectoryPaths) {
+            Map<String, String> indexPaths = IndexUtility.createIndexPathsMap(directoryPath);
+            Path path = Path.of(directoryPath);
+            boolean isRoot = (directoryPath.equals(rootDirectory));
+
+            SegmentManager segmentManager = segmentManagers.get(indexPaths.get("root"));
+            if (segmentManager == null) {
+                segmentManager = SegmentManager.open(indexPaths);
+            }
+            if (segmentManager == null) {
+                System.err.println("The index of `" + indexPaths.get("root") + "` cannot be updated; please " +
+                        "build a new index first.");
+                continue;
+            }
+            segmentManagers.put(indexPaths.get("root"), segmentManager);
+
+            System.out.println("\nUpdating index of `" + indexPaths.get("root") + "`...");
+            long startTime = System.nanoTime();
+
+            DirectoryCorpus corpus = DirectoryCorpus.loadDirectory(path, isRoot);
+            SegmentManager.UpdateSummary summary = segmentManager.update(corpus, indexingThreads);
+
+            long endTime = System.nanoTime();
+            double timeElapsedInSeconds = (double) (endTime - startTime) / 1_000_000_000;
+            System.out.printf("""
+                    Update complete.
+                    Time elapsed: %s seconds
+                    Added %s, modified %s and deleted %s documents.
+                    Segments: %s
+                    """, timeElapsedInSeconds, summary.getNumOfAdded(), summary.getNumOfModified(),
+                    summary.getNumOfDeleted(), segmentManager.getNumOfSegments());
+        }
+    }
+
+    /**
+     * Opens the positional, biword and k-gram indexes of every segment, replacing any previously opened indexes.
+     */
+    private static void openSegments(Map<String, String> indexPaths, SegmentManager segmentManager) {
+        closeIndex(corpusIndexes, indexPaths.get("root"));
+        closeIndex(biwordIndexes, indexPaths.get("biwordTermsBin"));
+        closeIndex(kGramIndexes, indexPaths.get("kGramsBin"));
+
+        SegmentedIndex corpusIndex = segmentManager.openPositionalIndex();
+        SegmentedIndex biwordIndex = segmentManager.openBiwordIndex();
+        SegmentedKGramIndex kGramIndex = segmentManager.openKGramIndex();
+        corpusIndexes.put(indexPaths.get("root"), corpusIndex);
+        biwordIndexes.put(indexPaths.get("biwordTermsBin"), biwordIndex);
+        kGramIndexes.put(indexPaths.get("kGramsBin"), kGramIndex);
+        closeables.add(corpusIndex);
+        closeables.add(biwordIndex);
+        closeables.add(kGramIndex);
+
+        // the files of merged segments can only be deleted once they are no longer open
+        segmentManager.deleteObsoleteSegments();
+    }
+
+    /**
+     * Reopens the indexes of any corpus whose segments were merged in the background since they were opened.
+     */
+    private static void refreshMergedSegments() {
+        for (Map.Entry<String, SegmentManager> entry : segmentManagers.entrySet()) {
+            if (entry.getValue().isRefreshNeeded()) {
+                openSegments(IndexUtility.createIndexPathsMap(entry.getKey()), entry.getValue());
+            }
+        }
+    }
+
+    private static void closeIndex(Map<String, ? extends Index<String, ?>> indexes, String key) {
+        Index<String, ?> oldIndex = indexes.remove(key);
+
+        // on-disk indexes lock their files, so they must be closed before the same files can be opened again
+        if (oldIndex instanceof Closeable oldCloseable) {
+            closeables.remove(oldCloseable);
+            try {
+                oldCloseable.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
@@ -205,59 +428,30 @@ public class Application {
         System.out.println("\nIndexing `" + indexPaths.get("root") + "`...");
         long startTime = System.nanoTime();
 
-        PositionalInvertedIndex index = new PositionalInvertedIndex();
-        BiwordIndex biwordIndex = new BiwordIndex();
-        KGramIndex kGramIndex = new KGramIndex();
-        List<Double> currentLds = new ArrayList<>();
-        VocabularyTokenProcessor vocabProcessor = new VocabularyTokenProcessor();
-        WildcardTokenProcessor wildcardProcessor = new WildcardTokenProcessor();
-
-        // scan all documents and process each token into terms of our vocabulary
-        for (Document document : corpus.getDocuments()) {
-            // at the beginning of each document reading, the position always starts at 1
-            int currentPosition = 1;
-            Map<String, Integer> tftds = new HashMap<>();
-
-            try (Reader documentContent = document.getContent();
-                 EnglishTokenStream stream = new EnglishTokenStream(documentContent)) {
-                Iterable<String> tokens = stream.getTokens();
-
-                for (String token : tokens) {
-                    // before we normalize the token, add it to a minimally processed vocabulary for wildcards
-                    List<String> wildcardTokens = wildcardProcessor.processToken(token);
-
-                    // add each unprocessed token to our k-gram index as we traverse through the documents
-                    kGramIndex.buildKGramIndex(wildcardTokens, 3);
-
-                    // process the vocabulary token before evaluating whether it exists within our index
-                    List<String> terms = vocabProcessor.processToken(token);
-
-                    // since each token can produce multiple terms, add all terms using the same documentID and position
-                    for (String term : terms) {
-                        index.addTerm(term, document.getId(), currentPosition);
-                        biwordIndex.addTerm(term, document.getId());
-
-                        // build up L(d) for the current document
-                        if (tftds.get(term) == null) {
-                            tftds.put(term, 1);
-                        } else {
-                            tftds.replace(term, tftds.get(term) + 1);
-                        }
-                    }
-                    // after each token addition, update the position count
-                    ++currentPosition;
-                }
-
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-
-            // after processing all tokens into terms, calculate L(d) for the document and add it to our list
-            currentLds.add(DocumentWeightScorer.calculateLd(new ArrayList<>(tftds.values())));
+        // postings must be built in document ID order, so sort the documents before indexing them
+        List<Document> documents = new ArrayList<>();
+        corpus.getDocuments().forEach(documents::add);
+        documents.sort(Comparator.comparingInt(Document::getId));
+
+        IndexSegment finalSegment;
+        IndexingPipeline pipeline = null;
+        if (indexingThreads > 1 && documents.size() > 1) {
+            // the threads left after the readers and indexers parse the documents, which is where most of the
+            // indexing time goes, so the pipeline keeps about as many threads busy as there are indexing threads
+            int numOfIndexers = (indexingIndexers > 0 ? indexingIndexers : Math.max(1, indexingThreads / 4));
+            int numOfParsers = Math.max(1, indexingThreads - indexingReaders - numOfIndexers);
+            pipeline = new IndexingPipeline(indexingReaders, numOfParsers, numOfIndexers, INDEXING_QUEUE_CAPACITY);
+            finalSegment = pipeline.indexDocuments(documents);
+        } else {
+            finalSegment = new IndexSegment();
+            finalSegment.indexDocuments(documents);
         }
-        kGramIndexes.put(indexPaths.get("kGramsBin"), kGramIndex);
-        biwordIndexes.put(indexPaths.get("biwordBin"), biwordIndex);
-        lds.put(indexPaths.get("docWeightsBin"), currentLds);
+
+        // build the k-grams once from the distinct wildcard tokens, rather than once per token occurrence
+        kGramIndexes.put(indexPaths.get("kGramsBin"), KGramIndex.fromVocabulary(
+                new ArrayList<>(finalSegment.getWildcardVocabulary()), 3, indexingThreads));
+        biwordIndexes.put(indexPaths.get("biwordTermsBin"), finalSegment.getBiwordIndex());
+        documentStatistics.put(indexPaths.get("docStatsBin"), finalSegment.getDocumentStatistics());
 
         long endTime = System.nanoTime();
         double timeElapsedInSeconds = (double) (endTime - startTime) / 1_000_000_000;
@@ -267,20 +461,42 @@ public class Application {
                 Found %s documents.
                 Distinct k-grams: %s
                 """, timeElapsedInSeconds, corpus.getCorpusSize(),
-                kGramIndexes.get(indexPaths.get("kGramsBin")).getDistinctKGrams().size());
+                kGramIndexes.get(indexPaths.get("kGramsBin")).getNumOfDistinctKGrams());
+        if (pipeline != null) {
+            System.out.print(pipeline.getUtilizationReport());
+        }
+
+        return finalSegment.getIndex();
+    }
+
+    public static void setIndexingThreads(int numOfThreads) {
+        indexingThreads = Math.max(1, numOfThreads);
+    }
+
+    public static void setIndexingReaders(int numOfThreads) {
+        indexingReaders = Math.max(1, numOfThreads);
+    }
+
+    public static void setIndexingIndexers(int numOfThreads) {
+        indexingIndexers = Math.max(0, numOfThreads);
+    }
 
-        return index;
+    public static void setIndexingMemoryBudget(long bytes) {
+        indexingMemoryBudget = Math.max(0, bytes);
     }
 
     private static void startQueryLoop(Scanner in, String queryMode) {
         String query;
 
         do {
+            // pick up any segments that were merged in the background since the last query
+            refreshMergedSegments();
+
             /* unless the user otherwise specifies, the default corpus and indexes will be set to those associated
               with the root directory; else, it will be set to the new current directory */
             DirectoryCorpus corpus = corpora.get(currentDirectory);
             Index<String, Posting> corpusIndex = corpusIndexes.get(currentDirectory);
-            KGramIndex kGramIndex = kGramIndexes.get(currentDirectory + "/index/kGrams.bin");
+            WildcardIndex kGramIndex = kGramIndexes.get(currentDirectory + "/index/kGrams.bin");
 
             // 3a. Ask for a search query.
             System.out.print("\nEnter the query (`:?` for help):\n >> ");
@@ -299,6 +515,17 @@ public class Application {
                         enabledLogs = true;
                         query = query.substring(0, query.lastIndexOf(" --log"));
                     }
+
+                    // check if the user asked for a later page of ranked results
+                    String[] queryTokens = query.split(" ");
+                    if (queryTokens.length > 2 && queryTokens[queryTokens.length - 2].equals("--page")) {
+                        try {
+                            rankedPage = Math.max(1, Integer.parseInt(queryTokens[queryTokens.length - 1]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("The page number must be a positive integer; showing the first page.");
+                        }
+                        query = query.substring(0, query.lastIndexOf(" --page"));
+                    }
                 }
 
                 // 3(a, i). If it is a special query, perform that action.
@@ -308,9 +535,29 @@ public class Application {
                         System.out.println("Corpus set to `" + parameter + "`.");
                     }
                     case ":index" -> initializeComponents(IndexUtility.getAllDirectories(parameter));
+                    case ":update" -> {
+                        updateComponents(allDirectoryPaths);
+                        readFromComponents(allDirectoryPaths);
+                    }
                     case ":stem" -> {
-                        TokenStemmer stemmer = new TokenStemmer();
-                        System.out.println(parameter + " -> " + stemmer.processToken(parameter).get(0));
+                        System.out.println(parameter + " -> " + StemmingService.stem(parameter));
+                        System.out.printf("Stem cache: %s forms, %s hits, %s misses (%.1f%% hit rate)%n",
+                                StemmingService.getCacheSize(), StemmingService.getHitCount(),
+                                StemmingService.getMissCount(), StemmingService.getHitRate() * 100);
+                    }
+                    case ":rank" -> {
+                        switch (parameter) {
+                            case "term" -> {
+                                scoringMode = DocumentWeightScorer.ScoringMode.TERM_AT_A_TIME;
+                                System.out.println("Ranked queries are scored term at a time.");
+                            }
+                            case "document" -> {
+                                scoringMode = DocumentWeightScorer.ScoringMode.DOCUMENT_AT_A_TIME;
+                                System.out.println("Ranked queries are scored document at a time.");
+                            }
+                            default -> System.err.println("Unknown scoring order `" + parameter + "`; expected " +
+                                    "`term` or `document`.");
+                        }
                     }
                     case ":vocab" -> {
                         List<String> vocabulary = corpusIndex.getVocabulary();
@@ -363,6 +610,7 @@ public class Application {
                 }
             }
             enabledLogs = false;
+            rankedPage = 1;
         } while (!query.equals(":q"));
     }
 
@@ -375,7 +623,7 @@ public class Application {
         QueryComponent parsedQuery = parser.parseQuery(query);
         TokenProcessor processor;
 
-        if (parsedQuery instanceof PhraseLiteral) {
+        if (parsedQuery instanceof PhraseLiteral || parsedQuery instanceof NearLiteral) {
             processor = new QueryTokenProcessor();
             resultPostings = parsedQuery.getPostings(corpusIndex, processor);
         } else {
@@ -393,10 +641,28 @@ public class Application {
         DirectoryCorpus corpus = corpora.get(currentDirectory);
         Index<String, Posting> corpusIndex = corpusIndexes.get(currentDirectory);
 
-        documentScorer.storeTermAtATimeDocuments(corpusIndex, query);
-        List<Map.Entry<Integer, Double>> rankedEntries = documentScorer.getRankedEntries(MAX_DISPLAYED_RANKED_ENTRIES);
+        int offset = (rankedPage - 1) * MAX_DISPLAYED_RANKED_ENTRIES;
+
+        long startTime = System.nanoTime();
+        switch (scoringMode) {
+            case TERM_AT_A_TIME -> documentScorer.storeTermAtATimeDocuments(corpusIndex, query);
+            // the documents of earlier pages must also be kept, since they decide which documents fall on this page
+            case DOCUMENT_AT_A_TIME -> documentScorer.storeDocumentAtATimeDocuments(corpusIndex, query,
+                    offset + MAX_DISPLAYED_RANKED_ENTRIES);
+        }
+        List<Map.Entry<Integer, Double>> rankedEntries = documentScorer.getRankedEntries(offset,
+                MAX_DISPLAYED_RANKED_ENTRIES);
+
+        // debugging log
+        if (enabledLogs) {
+            System.out.printf("Scored in %.3f ms (%s).%n", (double) (System.nanoTime() - startTime) / 1_000_000,
+                    scoringMode);
+        }
 
         if (rankedEntries.size() > 0) {
+            if (rankedPage > 1) {
+                System.out.println("Results " + (offset + 1) + " to " + (offset + rankedEntries.size()) + ":");
+            }
             for (Map.Entry<Integer, Double> entry : rankedEntries) {
                 int currentDocumentId = entry.getKey();
                 double score = entry.getValue();
@@ -414,7 +680,7 @@ public class Application {
 
     public static boolean trySpellingSuggestion(Scanner in, String query, String queryMode) {
         Index<String, Posting> corpusIndex = corpusIndexes.get(currentDirectory);
-        KGramIndex kGramIndex = kGramIndexes.get(currentDirectory + "/index/kGrams.bin");
+        WildcardIndex kGramIndex = kGramIndexes.get(currentDirectory + "/index/kGrams.bin");
 
         SpellingSuggestion spellingCheck = new SpellingSuggestion(corpusIndex, kGramIndex);
         String[] splitQuery = query.replace(" + ", " ").split(" ");
@@ -986,7 +1252,7 @@ public class Application {
         return biwordIndexes;
     }
 
-    public static Map<String, KGramIndex> getKGramIndexes() {
+    public static Map<String, WildcardIndex> getKGramIndexes() {
         return kGramIndexes;
     }
 
@@ -994,6 +1260,10 @@ public class Application {
         return currentDirectory;
     }
 
+    public static void setCurrentDirectory(String directory) {
+        currentDirectory = directory;
+    }
+
     public static List<String> getAllDirectoryPaths() {
         return allDirectoryPaths.stream().sorted().toList();
     }
@@ -0,0 +1,327 @@
+
+package application.Test;
+
+import application.indexes.*;
+import application.queries.AndQuery;
+import application.queries.OrQuery;
+import application.queries.QueryComponent;
+import application.queries.TermLiteral;
+import application.text.QueryTokenProcessor;
+import application.utilities.IndexUtility;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DocumentBitmapTest {
+    private static final int CONTAINER_SIZE = 1 << 16;
+    private static final int ARRAY_LIMIT = 4096;
+    // the index spans several containers, and ends partway through the last one
+    private static final int NUM_OF_DOCUMENTS = 3 * CONTAINER_SIZE + 1000;
+    private static final QueryTokenProcessor PROCESSOR = new QueryTokenProcessor();
+
+    private static DocumentBitmap toBitmap(Collection<Integer> documentIds) {
+        List<Posting> postings = new ArrayList<>();
+        new TreeSet<>(documentIds).forEach(documentId -> postings.add(new Posting(documentId, 1)));
+
+        return DocumentBitmap.fromPostings(new ListPostingsIterator(postings));
+    }
+
+    private static List<Integer> toList(DocumentBitmap bitmap) {
+        List<Integer> documentIds = new ArrayList<>();
+        for (int documentId = bitmap.nextDocumentId(0); documentId != PostingsIterator.NO_MORE_DOCS;
+             documentId = bitmap.nextDocumentId(documentId + 1)) {
+            documentIds.add(documentId);
+        }
+
+        return documentIds;
+    }
+
+    private static byte[] write(DocumentBitmap bitmap) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (DataOutputStream dataStream = new DataOutputStream(byteStream)) {
+            bitmap.write(dataStream);
+        }
+
+        return byteStream.toByteArray();
+    }
+
+    /**
+     * Returns the size the bitmap of the documents is written in, which tells an array container holding 2 bytes per
+     * document apart from a bitmap container of 8 KB.
+     */
+    private static int getWrittenSize(Set<Integer> documentIds) {
+        Map<Integer, Integer> cardinalities = new TreeMap<>();
+        documentIds.forEach(documentId -> cardinalities.merge(documentId >>> 16, 1, Integer::sum));
+        int size = Integer.BYTES;
+
+        for (int cardinality : cardinalities.values()) {
+            size += Character.BYTES + Integer.BYTES + (cardinality <= ARRAY_LIMIT ? cardinality * Character.BYTES :
+                    CONTAINER_SIZE / Byte.SIZE);
+        }
+
+        return size;
+    }
+
+    /**
+     * Checks every operation of the bitmap against a sorted set of its documents, as postings lists held them.
+     */
+    private static void assertSameDocuments(TreeSet<Integer> expected, DocumentBitmap bitmap, Random random,
+                                            String message) throws IOException {
+        assertEquals(message, new ArrayList<>(expected), toList(bitmap));
+        assertEquals(message, expected.size(), bitmap.getCardinality());
+        assertEquals(message, getWrittenSize(expected), write(bitmap).length);
+
+        // targets on and around the documents, across container boundaries, before the first and after the last
+        for (int i = 0; i < 500; ++i) {
+            int target = (i % 5 == 0 ? (i / 5 % 5) * CONTAINER_SIZE + random.nextInt(3) - 1 :
+                    random.nextInt(NUM_OF_DOCUMENTS + 10) - 5);
+            Integer next = expected.ceiling(Math.max(target, 0));
+
+            assertEquals(message + " contains(" + target + ")", expected.contains(target), bitmap.contains(target));
+            assertEquals(message + " nextDocumentId(" + target + ")",
+                    (next != null ? next : PostingsIterator.NO_MORE_DOCS), bitmap.nextDocumentId(target));
+        }
+
+        DocumentBitmap readBitmap = DocumentBitmap.read(ByteBuffer.wrap(write(bitmap)));
+        assertEquals(message, new ArrayList<>(expected), toList(readBitmap));
+        assertEquals(message, expected.size(), readBitmap.getCardinality());
+    }
+
+    /**
+     * Returns the documents of a container taken at random, where the container holds `cardinality` of them.
+     */
+    private static TreeSet<Integer> createContainer(Random random, int key, int cardinality) {
+        TreeSet<Integer> documentIds = new TreeSet<>();
+        while (documentIds.size() < cardinality) {
+            documentIds.add(key * CONTAINER_SIZE + random.nextInt(CONTAINER_SIZE));
+        }
+
+        return documentIds;
+    }
+
+    @Test
+    public void containerLimitTest() throws IOException {
+        Random random = new Random(19);
+
+        // containers just under, at and just over the limit, beside a container of a single document
+        for (int cardinality : new int[] {ARRAY_LIMIT - 1, ARRAY_LIMIT, ARRAY_LIMIT + 1}) {
+            TreeSet<Integer> documentIds = createContainer(random, 0, cardinality);
+            documentIds.add(2 * CONTAINER_SIZE + 7);
+            documentIds.addAll(createContainer(random, 3, cardinality));
+
+            assertSameDocuments(documentIds, toBitmap(documentIds), random, cardinality + " documents");
+        }
+
+        // a union of two arrays that outgrows the limit becomes a bitmap, and an intersection of two bitmaps that falls
+        // within the limit becomes an array
+        TreeSet<Integer> evenIds = new TreeSet<>();
+        TreeSet<Integer> oddIds = new TreeSet<>();
+        for (int i = 0; i < ARRAY_LIMIT; i += 2) {
+            evenIds.add(i * 2);
+            oddIds.add(i * 2 + 2);
+        }
+        evenIds.add(ARRAY_LIMIT * 2);
+        TreeSet<Integer> unionIds = new TreeSet<>(evenIds);
+        unionIds.addAll(oddIds);
+        assertEquals(ARRAY_LIMIT + 1, unionIds.size());
+        assertSameDocuments(unionIds, toBitmap(evenIds).or(toBitmap(oddIds)), random, "array or array");
+
+        TreeSet<Integer> leftIds = createContainer(random, 1, 3 * ARRAY_LIMIT);
+        TreeSet<Integer> rightIds = createContainer(random, 1, 2 * ARRAY_LIMIT);
+        TreeSet<Integer> intersectionIds = new TreeSet<>(leftIds);
+        intersectionIds.retainAll(rightIds);
+        assertSameDocuments(intersectionIds, toBitmap(leftIds).and(toBitmap(rightIds)), random, "bitmap and bitmap");
+
+        // an intersection of exactly the limit is read back as an array, so it must be written as one
+        TreeSet<Integer> limitIds = new TreeSet<>();
+        TreeSet<Integer> otherIds = new TreeSet<>();
+        for (int i = 0; i < 2 * ARRAY_LIMIT; ++i) {
+            (i % 2 == 0 ? limitIds : otherIds).add(CONTAINER_SIZE + i * 3);
+        }
+        TreeSet<Integer> bothIds = new TreeSet<>(limitIds);
+        bothIds.addAll(otherIds);
+        TreeSet<Integer> denseIds = new TreeSet<>(limitIds);
+        denseIds.addAll(createContainer(random, 1, 3 * ARRAY_LIMIT));
+        denseIds.removeAll(otherIds);
+        assertEquals(ARRAY_LIMIT, limitIds.size());
+        assertSameDocuments(limitIds, toBitmap(bothIds).and(toBitmap(denseIds)), random, "limit and bitmap");
+    }
+
+    @Test
+    public void operationsTest() throws IOException {
+        Random random = new Random(23);
+        // every pairing of empty, array and bitmap containers, with containers missing from either side
+        List<TreeSet<Integer>> sets = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            TreeSet<Integer> documentIds = new TreeSet<>();
+            for (int key = 0; key < 4; ++key) {
+                int kind = (i + key * (i / 2 + 1)) % 3;
+                documentIds.addAll(createContainer(random, key, kind == 0 ? 0 : kind == 1 ?
+                        1 + random.nextInt(ARRAY_LIMIT) : ARRAY_LIMIT + 1 + random.nextInt(20_000)));
+            }
+            documentIds.removeIf(documentId -> documentId >= NUM_OF_DOCUMENTS);
+            sets.add(documentIds);
+        }
+
+        for (int i = 0; i < sets.size(); ++i) {
+            assertSameDocuments(sets.get(i), toBitmap(sets.get(i)), random, "set " + i);
+
+            for (int j = 0; j < sets.size(); ++j) {
+                TreeSet<Integer> intersectionIds = new TreeSet<>(sets.get(i));
+                intersectionIds.retainAll(sets.get(j));
+                TreeSet<Integer> unionIds = new TreeSet<>(sets.get(i));
+                unionIds.addAll(sets.get(j));
+
+                assertSameDocuments(intersectionIds, toBitmap(sets.get(i)).and(toBitmap(sets.get(j))), random,
+                        "set " + i + " and set " + j);
+                assertSameDocuments(unionIds, toBitmap(sets.get(i)).or(toBitmap(sets.get(j))), random,
+                        "set " + i + " or set " + j);
+            }
+        }
+        assertSameDocuments(new TreeSet<>(), new DocumentBitmap(), random, "empty");
+    }
+
+    private static String term(String word) {
+        return PROCESSOR.processToken(word).get(0);
+    }
+
+    private static TermLiteral literal(String word) {
+        return new TermLiteral(word);
+    }
+
+    /**
+     * Builds an index where the terms in every other document and in every fifteenth are held as bitmap containers,
+     * the term in every sixteenth fills each container to exactly the limit of an array, and the rare term is too
+     * sparse for a bitmap at all.
+     */
+    private static PositionalInvertedIndex buildIndex() {
+        PositionalInvertedIndex index = new PositionalInvertedIndex();
+        Random random = new Random(29);
+
+        for (int documentId = 0; documentId < NUM_OF_DOCUMENTS; ++documentId) {
+            int position = 1;
+
+            if (documentId % 2 == 0) {
+                index.addTerm(term("half"), documentId, position++);
+            }
+            if (documentId % 15 == 0) {
+                index.addTerm(term("fifteenth"), documentId, position++);
+                index.addTerm(term("fifteenth"), documentId, position++);
+            }
+            if (documentId % 16 == 0) {
+                index.addTerm(term("sixteenth"), documentId, position++);
+            }
+            if (random.nextInt(97) == 0) {
+                index.addTerm(term("rare"), documentId, position);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Intersects the postings lists two at a time, keeping the postings of the first list, as AND queries did before
+     * they were iterated.
+     */
+    private static List<Posting> intersectLists(List<List<Posting>> lists) {
+        List<Posting> intersection = lists.get(0);
+        for (List<Posting> postings : lists.subList(1, lists.size())) {
+            Set<Integer> documentIds = new HashSet<>();
+            postings.forEach(posting -> documentIds.add(posting.getDocumentId()));
+            intersection = intersection.stream().filter(posting -> documentIds.contains(posting.getDocumentId()))
+                    .toList();
+        }
+
+        return intersection;
+    }
+
+    /**
+     * Unions the postings lists, keeping the posting of the last list holding each document, as OR queries did.
+     */
+    private static List<Posting> unionLists(List<List<Posting>> lists) {
+        TreeMap<Integer, Posting> union = new TreeMap<>();
+        lists.forEach(postings -> postings.forEach(posting -> union.put(posting.getDocumentId(), posting)));
+
+        return new ArrayList<>(union.values());
+    }
+
+    private static List<List<Integer>> describe(List<Posting> postings, boolean withPositions) {
+        List<List<Integer>> descriptions = new ArrayList<>();
+        for (Posting posting : postings) {
+            List<Integer> description = new ArrayList<>(List.of(posting.getDocumentId(), posting.getTermFrequency()));
+            if (withPositions) {
+                description.addAll(posting.getPositions());
+            }
+            descriptions.add(description);
+        }
+
+        return descriptions;
+    }
+
+    @Test
+    public void bitmapQueryTest() throws IOException {
+        PositionalInvertedIndex index = buildIndex();
+        File directory = TempFiles.createDirectory("bitmaps");
+        Map<String, String> indexPaths = IndexUtility.createIndexPathsMap(directory.getPath());
+        DiskIndexWriter.createIndexDirectory(indexPaths.get("indexDirectory"));
+        DocumentStatistics documentStatistics = new DocumentStatistics();
+        for (int i = 0; i < NUM_OF_DOCUMENTS; ++i) {
+            documentStatistics.add(1.0, 1, 1, 1);
+        }
+        DiskIndexWriter.writeDocumentStatistics(indexPaths.get("docStatsBin"), documentStatistics);
+        DiskIndexWriter.writeIndex(indexPaths.get("postingsBin"), indexPaths.get("positionsBin"),
+                indexPaths.get("termsBin"), index);
+        DiskIndexWriter.writeDocumentBitmaps(indexPaths.get("docBitmapsBin"), indexPaths.get("docStatsBin"), index);
+        TempFiles.deleteContentsOnExit(directory);
+
+        Map<String, List<Posting>> postings = new HashMap<>();
+        for (String word : List.of("half", "fifteenth", "sixteenth", "rare")) {
+            postings.put(word, index.getPostings(term(word)));
+        }
+        // dense components alone, dense components beside a sparse one, and dense unions within intersections
+        Map<QueryComponent, List<Posting>> queries = new LinkedHashMap<>();
+        queries.put(new AndQuery(List.of(literal("half"), literal("sixteenth"))),
+                intersectLists(List.of(postings.get("half"), postings.get("sixteenth"))));
+        queries.put(new AndQuery(List.of(literal("sixteenth"), literal("fifteenth"), literal("half"))),
+                intersectLists(List.of(postings.get("sixteenth"), postings.get("fifteenth"), postings.get("half"))));
+        queries.put(new AndQuery(List.of(literal("rare"), literal("half"), literal("fifteenth"))),
+                intersectLists(List.of(postings.get("rare"), postings.get("half"), postings.get("fifteenth"))));
+        queries.put(new AndQuery(List.of(literal("fifteenth"), literal("rare"))),
+                intersectLists(List.of(postings.get("fifteenth"), postings.get("rare"))));
+        queries.put(new OrQuery(List.of(literal("fifteenth"), literal("sixteenth"))),
+                unionLists(List.of(postings.get("fifteenth"), postings.get("sixteenth"))));
+        queries.put(new OrQuery(List.of(literal("sixteenth"), literal("rare"), literal("half"))),
+                unionLists(List.of(postings.get("sixteenth"), postings.get("rare"), postings.get("half"))));
+        queries.put(new AndQuery(List.of(new OrQuery(List.of(literal("fifteenth"), literal("sixteenth"))),
+                literal("rare"))), intersectLists(List.of(unionLists(List.of(postings.get("fifteenth"),
+                postings.get("sixteenth"))), postings.get("rare"))));
+        queries.put(new OrQuery(List.of(new AndQuery(List.of(literal("half"), literal("fifteenth"))),
+                literal("sixteenth"))), unionLists(List.of(intersectLists(List.of(postings.get("half"),
+                postings.get("fifteenth"))), postings.get("sixteenth"))));
+
+        try (DiskPositionalIndex diskIndex = new DiskPositionalIndex(
+                DiskIndexReader.readTermDictionary(indexPaths.get("termsBin")), indexPaths.get("postingsBin"),
+                indexPaths.get("positionsBin"), null, indexPaths.get("docBitmapsBin"))) {
+            // the dense terms must have bitmaps, or the queries would only be merging postings
+            assertNotNull(diskIndex.getDocumentBitmap(term("half")));
+            assertNotNull(diskIndex.getDocumentBitmap(term("sixteenth")));
+            assertNull(diskIndex.getDocumentBitmap(term("rare")));
+
+            for (Map.Entry<QueryComponent, List<Posting>> query : queries.entrySet()) {
+                assertEquals(query.getKey().toString(), describe(query.getValue(), true),
+                        describe(query.getKey().getPostings(diskIndex, PROCESSOR), true));
+                assertEquals(query.getKey().toString(), describe(query.getValue(), false),
+                        describe(query.getKey().getPositionlessPostings(diskIndex, PROCESSOR), false));
+            }
+        }
+    }
+}
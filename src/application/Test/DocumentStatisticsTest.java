@@ -0,0 +1,75 @@
+
+package application.Test;
+
+import application.indexes.DiskDocumentStatistics;
+import application.indexes.DiskIndexWriter;
+import application.indexes.DocumentStatistics;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DocumentStatisticsTest {
+    private static final int NUM_OF_DOCUMENTS = 50;
+
+    private static File writeStatistics() throws IOException {
+        File file = TempFiles.createFile("docStats");
+
+        DocumentStatistics statistics = new DocumentStatistics();
+        for (int i = 0; i < NUM_OF_DOCUMENTS; ++i) {
+            statistics.add(1.5 * i, 10 * i, 3 * i, 1000L * i);
+        }
+        DiskIndexWriter.writeDocumentStatistics(file.getPath(), statistics);
+
+        return file;
+    }
+
+    @Test
+    public void replaceWhileOpenTest() throws IOException {
+        File file = writeStatistics();
+
+        try (DiskDocumentStatistics oldStatistics = new DiskDocumentStatistics(file.getPath())) {
+            // the new file is moved over the old one, so statistics that were already opened keep reading the old
+            DocumentStatistics newStatistics = new DocumentStatistics();
+            newStatistics.add(9, 9, 9, 9);
+            DiskIndexWriter.writeDocumentStatistics(file.getPath(), newStatistics);
+
+            assertEquals(NUM_OF_DOCUMENTS, oldStatistics.getNumOfDocuments());
+            for (int i = 0; i < NUM_OF_DOCUMENTS; ++i) {
+                assertEquals(1.5 * i, oldStatistics.getLd(i), 0);
+                assertEquals(10 * i, oldStatistics.getNumOfTokens(i));
+                assertEquals(3 * i, oldStatistics.getNumOfUniqueTerms(i));
+                assertEquals(1000L * i, oldStatistics.getByteSize(i));
+            }
+
+            try (DiskDocumentStatistics reopenedStatistics = new DiskDocumentStatistics(file.getPath())) {
+                assertEquals(1, reopenedStatistics.getNumOfDocuments());
+                assertEquals(9, reopenedStatistics.getLd(0), 0);
+            }
+        }
+    }
+
+    @Test
+    public void rejectOtherVersionTest() throws IOException {
+        File file = writeStatistics();
+
+        // the version follows the magic number
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(Integer.BYTES);
+            randomAccessFile.writeInt(0);
+        }
+
+        try {
+            new DiskDocumentStatistics(file.getPath()).close();
+            fail("Statistics of another version should not be opened.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("version 0") &&
+                    e.getMessage().contains("please rebuild the index"));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+
+package application.Test;
+
+import application.Application;
+import application.documents.DirectoryCorpus;
+import application.documents.Document;
+import application.documents.DocumentWeightScorer;
+import application.indexes.*;
+import application.utilities.IndexUtility;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentWeightScorerTest {
+    private static final int NUM_OF_DOCUMENTS = 400;
+    private static final int VOCABULARY_SIZE = 200;
+    // single terms, common and rare terms together, repeated terms and a term without postings
+    private static final String[] QUERIES = {"t0", "t0 t1 t2", "t5 t50 t150 t199", "t3 t3 t7", "missing t2",
+            "t120 t121 t122 t123 t124 t125 t126 t127"};
+    // the terms of each wildcard are scored through one cursor over the union of their postings
+    private static final String[] WILDCARD_QUERIES = {"t1* t4", "t19* t0 t2*"};
+    private static final int[] KS = {1, 5, 10, 37, NUM_OF_DOCUMENTS + 1};
+
+    private File directory;
+    private String oldCurrentDirectory;
+    private Map<String, String> indexPaths;
+    private IndexSegment segment;
+
+    /**
+     * Writes documents whose terms follow a skewed distribution, so that some terms are in most documents and others
+     * in very few; every tenth document repeats the one before it, so that some scores are tied.
+     */
+    private static void writeDocuments(File directory) throws IOException {
+        Random random = new Random(42);
+        String content = "";
+
+        for (int i = 0; i < NUM_OF_DOCUMENTS; ++i) {
+            if (i % 10 != 9) {
+                StringBuilder words = new StringBuilder();
+                int numOfWords = 5 + random.nextInt(60);
+
+                for (int j = 0; j < numOfWords; ++j) {
+                    double skew = random.nextDouble();
+                    words.append(" t").append((int) (VOCABULARY_SIZE * skew * skew * skew));
+                }
+                content = words.toString();
+            }
+            Files.writeString(directory.toPath().resolve(String.format("%03d.txt", i)), content);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        directory = TempFiles.createDirectory("scoring");
+        writeDocuments(directory);
+
+        DirectoryCorpus corpus = DirectoryCorpus.loadDirectory(directory.toPath(), true);
+        List<Document> documents = new ArrayList<>();
+        corpus.getDocuments().forEach(documents::add);
+        documents.sort(Comparator.comparingInt(Document::getId));
+        segment = new IndexSegment();
+        segment.indexDocuments(documents);
+
+        indexPaths = IndexUtility.createIndexPathsMap(directory.getPath());
+        DiskIndexWriter.createIndexDirectory(indexPaths.get("indexDirectory"));
+        DiskIndexWriter.writeDocumentStatistics(indexPaths.get("docStatsBin"), segment.getDocumentStatistics());
+        DiskIndexWriter.writeIndex(indexPaths.get("postingsBin"), indexPaths.get("positionsBin"),
+                indexPaths.get("termsBin"), segment.getIndex());
+        DiskIndexWriter.writeTermBounds(indexPaths.get("termBoundsBin"), indexPaths.get("docStatsBin"),
+                segment.getIndex());
+        TempFiles.deleteContentsOnExit(directory);
+
+        // the scorer reads the corpus size and the k-grams of wildcards through the current directory
+        oldCurrentDirectory = Application.getCurrentDirectory();
+        Application.setCurrentDirectory(directory.getPath());
+        Application.getCorpora().put(directory.getPath(), corpus);
+        Application.getKGramIndexes().put(directory.getPath() + "/index/kGrams.bin",
+                KGramIndex.fromVocabulary(new ArrayList<>(segment.getWildcardVocabulary()), 3, 1));
+    }
+
+    @After
+    public void tearDown() {
+        Application.getCorpora().remove(directory.getPath());
+        Application.getKGramIndexes().remove(directory.getPath() + "/index/kGrams.bin");
+        Application.setCurrentDirectory(oldCurrentDirectory);
+    }
+
+    /**
+     * Ranks every query term at a time, which accumulates every posting, and document at a time, which skips the
+     * documents that cannot enter the top K; both must rank the same documents with the same scores, in the same
+     * order.
+     */
+    private static void assertSameRanking(DocumentWeightScorer scorer, Index<String, Posting> index,
+                                          String[] queries) {
+        for (String query : queries) {
+            for (int k : KS) {
+                scorer.storeTermAtATimeDocuments(index, query);
+                List<Map.Entry<Integer, Double>> expected = scorer.getRankedEntries(k);
+                scorer.storeDocumentAtATimeDocuments(index, query, k);
+                List<Map.Entry<Integer, Double>> actual = scorer.getRankedEntries(k);
+
+                assertEquals("`" + query + "` with K = " + k, expected, actual);
+            }
+        }
+    }
+
+    private DiskPositionalIndex openDiskIndex() {
+        return new DiskPositionalIndex(DiskIndexReader.readTermDictionary(indexPaths.get("termsBin")),
+                indexPaths.get("postingsBin"), indexPaths.get("positionsBin"), indexPaths.get("termBoundsBin"));
+    }
+
+    @Test
+    public void boundedIndexTest() throws IOException {
+        try (DocumentWeightScorer scorer = new DocumentWeightScorer(indexPaths.get("docStatsBin"));
+             DiskPositionalIndex index = openDiskIndex()) {
+            // the bounds must be used, or the test would only compare two exhaustive rankings
+            assertTrue(index.getMaxWeight("t0") < BoundedIndex.NO_BOUND);
+            assertSameRanking(scorer, index, QUERIES);
+        }
+    }
+
+    @Test
+    public void unboundedIndexTest() {
+        try (DocumentWeightScorer scorer = new DocumentWeightScorer(indexPaths.get("docStatsBin"))) {
+            assertSameRanking(scorer, segment.getIndex(), QUERIES);
+        }
+    }
+
+    @Test
+    public void wildcardQueryTest() throws IOException {
+        try (DocumentWeightScorer scorer = new DocumentWeightScorer(indexPaths.get("docStatsBin"));
+             DiskPositionalIndex index = openDiskIndex()) {
+            assertSameRanking(scorer, index, WILDCARD_QUERIES);
+        }
+    }
+
+    @Test
+    public void pagingTest() throws IOException {
+        int pageSize = 10;
+
+        try (DocumentWeightScorer scorer = new DocumentWeightScorer(indexPaths.get("docStatsBin"));
+             DiskPositionalIndex index = openDiskIndex()) {
+            for (String query : QUERIES) {
+                scorer.storeTermAtATimeDocuments(index, query);
+                List<Map.Entry<Integer, Double>> ranking = scorer.getRankedEntries(NUM_OF_DOCUMENTS);
+
+                // like `--page`, document at a time keeps the documents of every page up to the one displayed
+                for (int page = 1; (page - 2) * pageSize < ranking.size(); ++page) {
+                    int offset = (page - 1) * pageSize;
+                    List<Map.Entry<Integer, Double>> expected = ranking.subList(Math.min(offset, ranking.size()),
+                            Math.min(offset + pageSize, ranking.size()));
+                    String message = "`" + query + "` on page " + page;
+
+                    scorer.storeTermAtATimeDocuments(index, query);
+                    assertEquals(message, expected, scorer.getRankedEntries(offset, pageSize));
+                    scorer.storeDocumentAtATimeDocuments(index, query, offset + pageSize);
+                    assertEquals(message, expected, scorer.getRankedEntries(offset, pageSize));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tiedScoresTest() throws IOException {
+        try (DocumentWeightScorer scorer = new DocumentWeightScorer(indexPaths.get("docStatsBin"));
+             DiskPositionalIndex index = openDiskIndex()) {
+            // 008.txt and 009.txt are the same, so they tie on every query, and the lower ID ranks first
+            DirectoryCorpus corpus = Application.getCorpora().get(directory.getPath());
+            Map<String, Integer> documentIds = new HashMap<>();
+            corpus.getDocuments().forEach(document -> documentIds.put(document.getTitle(), document.getId()));
+            int firstId = Math.min(documentIds.get("008.txt"), documentIds.get("009.txt"));
+            int secondId = Math.max(documentIds.get("008.txt"), documentIds.get("009.txt"));
+            String query = segment.getIndex().getVocabulary().stream()
+                    .filter(term -> segment.getIndex().getPostings(term).stream()
+                            .anyMatch(posting -> posting.getDocumentId() == firstId))
+                    .findFirst().orElseThrow();
+
+            for (int k : KS) {
+                scorer.storeDocumentAtATimeDocuments(index, query, k);
+                List<Integer> ranking = scorer.getRankedEntries(k).stream().map(Map.Entry::getKey).toList();
+
+                // a page that ends on the first of the two only holds the first
+                assertTrue(ranking.indexOf(secondId) < 0 || ranking.indexOf(firstId) + 1 == ranking.indexOf(secondId));
+                assertTrue(ranking.indexOf(secondId) < 0 || ranking.contains(firstId));
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+
+package application.Test;
+
+import application.indexes.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class GallopingTest {
+    private static final int NUM_OF_DOCUMENTS = 20_000;
+    // a term in every other document fills many blocks, and the rarer terms are spread thinly across them
+    private static final String[] TERMS = {"common", "rare", "single"};
+
+    private static PositionalInvertedIndex buildIndex() {
+        PositionalInvertedIndex index = new PositionalInvertedIndex();
+        Random random = new Random(3);
+
+        for (int documentId = 0; documentId < NUM_OF_DOCUMENTS; ++documentId) {
+            int position = 1;
+
+            if (random.nextInt(2) == 0) {
+                index.addTerm("common", documentId, position++);
+            }
+            if (random.nextInt(300) == 0) {
+                index.addTerm("rare", documentId, position++);
+                index.addTerm("rare", documentId, position);
+            }
+        }
+        index.addTerm("single", NUM_OF_DOCUMENTS / 2, 1);
+
+        return index;
+    }
+
+    private static DiskPositionalIndex writeIndex(Index<String, Posting> index) throws IOException {
+        File directory = TempFiles.createDirectory("galloping");
+        String pathToPostingsBin = directory + "/postings.bin";
+        String pathToPositionsBin = directory + "/positions.bin";
+        String pathToTermsBin = directory + "/terms.bin";
+        DiskIndexWriter.writeIndex(pathToPostingsBin, pathToPositionsBin, pathToTermsBin, index);
+        TempFiles.deleteContentsOnExit(directory);
+
+        return new DiskPositionalIndex(DiskIndexReader.readTermDictionary(pathToTermsBin), pathToPostingsBin,
+                pathToPositionsBin);
+    }
+
+    /**
+     * Returns targets that stay behind the iterator, move to the very next posting, and jump ahead by gaps from a few
+     * documents to thousands, ending past the last document.
+     */
+    private static int[] createTargets(Random random) {
+        int[] targets = new int[400];
+        int target = -1;
+
+        for (int i = 0; i < targets.length - 1; ++i) {
+            target = switch (random.nextInt(4)) {
+                case 0 -> Math.max(target - random.nextInt(3), 0);
+                case 1 -> target + 1;
+                case 2 -> target + random.nextInt(16);
+                default -> target + (1 << random.nextInt(13));
+            };
+            targets[i] = target;
+        }
+        targets[targets.length - 1] = NUM_OF_DOCUMENTS + 1;
+
+        return targets;
+    }
+
+    /**
+     * Moves through the postings one by one to the first posting at or past each target, as advancing did before it
+     * galloped, checking that the iterator lands on the same posting.
+     */
+    private static void assertSameAdvances(List<Posting> postings, PostingsIterator iterator, int[] targets,
+                                           String message) {
+        int index = 0;
+        int documentId = -1;
+
+        for (int target : targets) {
+            // the iterator never moves backwards
+            if (documentId < target) {
+                while (index < postings.size() && postings.get(index).getDocumentId() < target) {
+                    ++index;
+                }
+                documentId = (index < postings.size() ? postings.get(index).getDocumentId()
+                        : PostingsIterator.NO_MORE_DOCS);
+            }
+
+            assertEquals(message + " advance(" + target + ")", documentId, iterator.advance(target));
+            if (documentId != PostingsIterator.NO_MORE_DOCS) {
+                assertEquals(message, postings.get(index).getTermFrequency(), iterator.freq());
+            }
+        }
+    }
+
+    @Test
+    public void advanceTest() throws IOException {
+        PositionalInvertedIndex index = buildIndex();
+        Random random = new Random(5);
+
+        try (DiskPositionalIndex diskIndex = writeIndex(index)) {
+            for (String term : TERMS) {
+                List<Posting> postings = index.getPostings(term);
+
+                for (int i = 0; i < 20; ++i) {
+                    int[] targets = createTargets(random);
+                    assertSameAdvances(postings, new ListPostingsIterator(postings), targets, "list `" + term + "`");
+                    assertSameAdvances(postings, diskIndex.getPostingsIterator(term, false), targets,
+                            "blocks `" + term + "`");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void intersectionTest() throws IOException {
+        PositionalInvertedIndex index = buildIndex();
+
+        try (DiskPositionalIndex diskIndex = writeIndex(index)) {
+            for (String shortTerm : TERMS) {
+                // the short list drives the long one, as the rarest term of an AND query does
+                List<Integer> expected = new ArrayList<>();
+                Set<Integer> commonIds = new HashSet<>();
+                index.getPostings("common").forEach(posting -> commonIds.add(posting.getDocumentId()));
+                index.getPostings(shortTerm).forEach(posting -> {
+                    if (commonIds.contains(posting.getDocumentId())) {
+                        expected.add(posting.getDocumentId());
+                    }
+                });
+
+                PostingsIterator shortPostings = diskIndex.getPostingsIterator(shortTerm, false);
+                PostingsIterator longPostings = diskIndex.getPostingsIterator("common", false);
+                List<Integer> actual = new ArrayList<>();
+                for (int documentId = shortPostings.nextDoc(); documentId != PostingsIterator.NO_MORE_DOCS;
+                     documentId = shortPostings.nextDoc()) {
+                    if (longPostings.advance(documentId) == documentId) {
+                        actual.add(documentId);
+                    }
+                }
+
+                assertEquals("`" + shortTerm + "` and `common`", expected, actual);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+
+package application.Test;
+
+import application.indexes.MappedFile;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MappedFileTest {
+    // segments of 16 bytes, so that most reads of a small file span two of them
+    private static final int SEGMENT_SHIFT = 4;
+    private static final int NUM_OF_LONGS = 20;
+
+    private static File writeLongs() throws IOException {
+        File file = TempFiles.createFile("mapped");
+
+        // start with a single byte, so that every long after it spans a segment boundary
+        try (DataOutputStream dataStream = new DataOutputStream(new FileOutputStream(file))) {
+            dataStream.writeByte(0x7F);
+            for (int i = 0; i < NUM_OF_LONGS; ++i) {
+                dataStream.writeLong(getValue(i));
+            }
+        }
+
+        return file;
+    }
+
+    private static long getValue(int i) {
+        return 0x0102030405060708L * (i + 1) ^ ((long) i << 60);
+    }
+
+    @Test
+    public void readsAcrossSegmentsTest() throws IOException {
+        File file = writeLongs();
+
+        try (MappedFile mappedFile = new MappedFile(file.getPath(), SEGMENT_SHIFT)) {
+            assertEquals(1 + NUM_OF_LONGS * Long.BYTES, mappedFile.length());
+            for (int i = 0; i < NUM_OF_LONGS; ++i) {
+                long position = 1 + (long) i * Long.BYTES;
+                long value = getValue(i);
+
+                assertEquals(value, mappedFile.getLong(position));
+                // integers at every offset of the long, including those starting just before a boundary
+                for (int offset = 0; offset <= Long.BYTES - Integer.BYTES; ++offset) {
+                    int expected = (int) (value >>> (Long.SIZE - Integer.SIZE - offset * Byte.SIZE));
+                    assertEquals(expected, mappedFile.getInt(position + offset));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sliceAcrossSegmentsTest() throws IOException {
+        File file = writeLongs();
+
+        try (MappedFile mappedFile = new MappedFile(file.getPath(), SEGMENT_SHIFT)) {
+            // a slice within one segment, one spanning a boundary, and one spanning several segments
+            int[][] slices = {{1, 8}, {13, 6}, {5, 50}};
+            for (int[] slice : slices) {
+                ByteBuffer expected = ByteBuffer.allocate(1 + NUM_OF_LONGS * Long.BYTES).put((byte) 0x7F);
+                for (int i = 0; i < NUM_OF_LONGS; ++i) {
+                    expected.putLong(getValue(i));
+                }
+                byte[] expectedBytes = new byte[slice[1]];
+                expected.get(slice[0], expectedBytes);
+
+                ByteBuffer actual = mappedFile.slice(slice[0], slice[1]);
+                byte[] actualBytes = new byte[slice[1]];
+                actual.get(0, actualBytes);
+
+                assertEquals(slice[1], actual.remaining());
+                assertArrayEquals(expectedBytes, actualBytes);
+            }
+            assertEquals(0, mappedFile.slice(3, 0).remaining());
+        }
+    }
+}
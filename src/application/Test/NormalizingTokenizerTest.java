@@ -0,0 +1,93 @@
+
+package application.Test;
+
+import application.text.EnglishTokenStream;
+import application.text.NormalizingTokenizer;
+import application.text.VocabularyTokenProcessor;
+import application.text.WildcardTokenProcessor;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class NormalizingTokenizerTest {
+    // hyphens, apostrophes and quotes at either end and within tokens, with tokens that normalize to nothing
+    private static final String ASCII_CONTENT = """
+            Hello, World! it's "quoted" don't state-of-the-art -leading trailing- --double--hyphen--
+            ' " - -- * ** wild*card* *wild 'single' "" a-b-c 3-4 ABC's x "it's-a" run-' -'- 42
+            \tTABBED\ttokens\r\nand windows lines... (parenthesized) [bracketed] e.g. U.S.A. ----""";
+    // accented letters, curly quotes and dashes, a non-breaking space within a token, and an em space between tokens
+    private static final String UNICODE_CONTENT = ASCII_CONTENT + """
+             café naïve-résumé ÜBER Straße “curly” ‘single’ en–dash em—dash — –– ‘ ” ı İstanbul
+            non\u00A0breaking em\u2003space 日本語 Ωmega-ωmega""";
+
+    /**
+     * Returns the wildcard tokens and terms of each whitespace-separated token, as the token processors make them.
+     */
+    private static List<List<String>> processTokens(String content) throws IOException {
+        VocabularyTokenProcessor vocabProcessor = new VocabularyTokenProcessor();
+        WildcardTokenProcessor wildcardProcessor = new WildcardTokenProcessor();
+        List<List<String>> tokens = new ArrayList<>();
+
+        try (EnglishTokenStream stream = new EnglishTokenStream(new StringReader(content))) {
+            for (String token : stream.getTokens()) {
+                tokens.add(wildcardProcessor.processToken(token));
+                tokens.add(vocabProcessor.processToken(token));
+            }
+        }
+
+        return tokens;
+    }
+
+    private static NormalizingTokenizer.TokenHandler collectTokens(List<List<String>> tokens) {
+        // the lists are reused for every token, so they are copied
+        return (wildcardTokens, terms) -> {
+            tokens.add(new ArrayList<>(wildcardTokens));
+            tokens.add(new ArrayList<>(terms));
+        };
+    }
+
+    private static void assertSameTokens(String content) throws IOException {
+        List<List<String>> expected = processTokens(content);
+        byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+        NormalizingTokenizer tokenizer = new NormalizingTokenizer();
+
+        List<List<String>> fromReader = new ArrayList<>();
+        tokenizer.tokenize(new StringReader(content), collectTokens(fromReader));
+        assertEquals(expected, fromReader);
+
+        List<List<String>> fromBytes = new ArrayList<>();
+        tokenizer.tokenize(contentBytes, collectTokens(fromBytes));
+        assertEquals(expected, fromBytes);
+
+        File file = TempFiles.createFile("tokens");
+        Files.write(file.toPath(), contentBytes);
+        List<List<String>> fromFile = new ArrayList<>();
+        tokenizer.tokenize(file.toPath(), collectTokens(fromFile));
+        assertEquals(expected, fromFile);
+    }
+
+    @Test
+    public void asciiTokensTest() throws IOException {
+        assertSameTokens(ASCII_CONTENT);
+    }
+
+    @Test
+    public void unicodeTokensTest() throws IOException {
+        assertSameTokens(UNICODE_CONTENT);
+    }
+
+    @Test
+    public void emptyContentTest() throws IOException {
+        assertSameTokens("");
+        assertSameTokens(" \n\t ");
+        assertSameTokens("-");
+    }
+}
@@ -0,0 +1,151 @@
+
+package application.Test;
+
+import application.indexes.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PostingsFormatTest {
+    private static final int NUM_OF_DOCUMENTS = 1000;
+    // a term in every document fills several blocks, and the others end their lists partway through one
+    private static final String[] TERMS = {"every", "half", "rare", "sparse"};
+    private static final int[] VERSIONS = {PostingsFormat.LEGACY, PostingsFormat.VARIABLE_BYTE,
+            PostingsFormat.BLOCKED, PostingsFormat.SEPARATE_POSITIONS, PostingsFormat.LARGE_OFFSETS};
+
+    private static PositionalInvertedIndex buildIndex() {
+        PositionalInvertedIndex index = new PositionalInvertedIndex();
+        int documentId = 0;
+
+        for (int i = 0; i < NUM_OF_DOCUMENTS; ++i) {
+            // document IDs grow by uneven gaps, so that the blocks are packed at several bit widths
+            documentId += 1 + (i % 7 == 0 ? 5000 : i % 3) + (i == NUM_OF_DOCUMENTS / 2 ? 1_000_000 : 0);
+            int position = 0;
+
+            // the number of positions varies from document to document, up to positions far apart
+            for (int j = 0; j <= i % 5; ++j) {
+                index.addTerm("every", documentId, position);
+                position += 1 + j * 300;
+            }
+            if (i % 2 == 0) {
+                index.addTerm("half", documentId, position++);
+            }
+            if (i % 97 == 0) {
+                index.addTerm("rare", documentId, position++);
+                index.addTerm("rare", documentId, position++);
+            }
+            if (i == 129 || i == 130) {
+                index.addTerm("sparse", documentId, position);
+            }
+        }
+
+        return index;
+    }
+
+    private static DiskPositionalIndex writeIndex(Index<String, Posting> index, File directory, int version,
+                                                  int fileSizeShift) {
+        String pathToPostingsBin = directory + "/postings-" + version + ".bin";
+        String pathToPositionsBin = directory + "/positions-" + version + ".bin";
+        String pathToTermsBin = directory + "/terms-" + version + ".bin";
+        DiskIndexWriter.writeIndex(pathToPostingsBin, pathToPositionsBin, pathToTermsBin, index, version,
+                fileSizeShift);
+        TempFiles.deleteContentsOnExit(directory);
+
+        return new DiskPositionalIndex(DiskIndexReader.readTermDictionary(pathToTermsBin), pathToPostingsBin,
+                pathToPositionsBin);
+    }
+
+    private static void assertSamePostings(Index<String, Posting> expectedIndex, Index<String, Posting> actualIndex,
+                                           int version) {
+        assertEquals(expectedIndex.getVocabulary(), actualIndex.getVocabulary());
+
+        for (String term : TERMS) {
+            List<Posting> expected = expectedIndex.getPostings(term);
+            List<Posting> actual = actualIndex.getPostings(term);
+            List<Posting> positionless = actualIndex.getPositionlessPostings(term);
+            String message = "`" + term + "` in version " + version;
+
+            assertEquals(message, expected.size(), actual.size());
+            assertEquals(message, expected.size(), positionless.size());
+            for (int i = 0; i < expected.size(); ++i) {
+                assertEquals(message, expected.get(i).getDocumentId(), actual.get(i).getDocumentId());
+                assertEquals(message, expected.get(i).getPositions(), actual.get(i).getPositions());
+                assertEquals(message, expected.get(i).getDocumentId(), positionless.get(i).getDocumentId());
+                assertEquals(message, expected.get(i).getTermFrequency(), positionless.get(i).getTermFrequency());
+            }
+        }
+    }
+
+    private static void assertAdvances(Index<String, Posting> expectedIndex, DiskPositionalIndex diskIndex,
+                                       int version) {
+        List<Posting> expected = expectedIndex.getPostings("every");
+
+        for (boolean withPositions : new boolean[] {true, false}) {
+            PostingsIterator iterator = diskIndex.getPostingsIterator("every", withPositions);
+            if (version >= PostingsFormat.BLOCKED) {
+                assertTrue(iterator instanceof BlockPostingsIterator);
+            }
+
+            // land on the last posting of each block, then just past it, then past the first posting of the next
+            for (int block = 1; block * PostingsFormat.BLOCK_SIZE < expected.size(); ++block) {
+                int first = block * PostingsFormat.BLOCK_SIZE;
+                int[] targets = {expected.get(first - 1).getDocumentId(), expected.get(first - 1).getDocumentId() + 1,
+                        expected.get(first + 1).getDocumentId()};
+                int[] found = {first - 1, first, first + 1};
+
+                for (int i = 0; i < targets.length; ++i) {
+                    Posting posting = expected.get(found[i]);
+                    String message = "advance(" + targets[i] + ") in version " + version;
+
+                    assertEquals(message, posting.getDocumentId(), iterator.advance(targets[i]));
+                    assertEquals(message, posting.getTermFrequency(), iterator.freq());
+                    if (withPositions) {
+                        int[] positions = new int[posting.getTermFrequency()];
+                        System.arraycopy(iterator.positions(), 0, positions, 0, positions.length);
+                        assertArrayEquals(message, posting.getPositions().stream().mapToInt(Integer::intValue)
+                                .toArray(), positions);
+                    }
+                }
+            }
+            // a target behind the iterator keeps its posting, and one past the last posting ends it
+            int current = iterator.docId();
+            assertEquals(current, iterator.advance(0));
+            assertEquals(PostingsIterator.NO_MORE_DOCS,
+                    iterator.advance(expected.get(expected.size() - 1).getDocumentId() + 1));
+        }
+    }
+
+    @Test
+    public void roundTripEveryVersionTest() throws IOException {
+        PositionalInvertedIndex index = buildIndex();
+        File directory = TempFiles.createDirectory("postings-format");
+
+        for (int version : VERSIONS) {
+            try (DiskPositionalIndex diskIndex = writeIndex(index, directory, version,
+                    PostingsFormat.FILE_SIZE_SHIFT)) {
+                assertSamePostings(index, diskIndex, version);
+                assertAdvances(index, diskIndex, version);
+            }
+        }
+    }
+
+    @Test
+    public void roundTripRolledFilesTest() throws IOException {
+        PositionalInvertedIndex index = buildIndex();
+        File directory = TempFiles.createDirectory("postings-format");
+
+        // files of 1 KB, so that the postings and positions of the common term span several of them
+        try (DiskPositionalIndex diskIndex = writeIndex(index, directory, PostingsFormat.LARGE_OFFSETS, 10)) {
+            assertTrue(diskIndex.getHeader().getNumOfPostingsFiles() > 1);
+            assertTrue(diskIndex.getHeader().getNumOfPositionsFiles() > 1);
+            assertSamePostings(index, diskIndex, PostingsFormat.LARGE_OFFSETS);
+            assertAdvances(index, diskIndex, PostingsFormat.LARGE_OFFSETS);
+        }
+    }
+}
@@ -89,4 +89,74 @@ public class QueryProcessingTest {
 
         assertTrue("The list of document titles should match.", titlesMatch);
     }
+
+    @Test
+    public void biwordPhraseWithoutBiwordIndexTest(){
+        // no biword index is registered for this directory, so two-term phrases fall back to the positional merge
+        QueryComponent parsedQuery = parser.parseQuery("\"yeezy boost\"");
+        List<Posting> resultPostings = parsedQuery.getPostings(index, new QueryTokenProcessor());
+        List<Posting> positionlessPostings = parsedQuery.getPositionlessPostings(index, new QueryTokenProcessor());
+
+        assertEquals("The phrase should match one document.", 1, resultPostings.size());
+        assertEquals("The Document titles should be the same.",
+                "two.txt", testCorpus.getDocument(resultPostings.get(0).getDocumentId()).getTitle());
+        assertEquals("The positionless postings should match the same document.",
+                resultPostings.get(0).getDocumentId(), positionlessPostings.get(0).getDocumentId());
+        assertEquals("The phrase should not match documents where its terms are apart.", 0,
+                parser.parseQuery("\"more runners\"").getPositionlessPostings(index, new QueryTokenProcessor())
+                        .size());
+    }
+
+    @Test
+    public void phraseOrderTest(){
+        // `no more parties` are the first three terms of one.txt, which must be found in the order of the phrase
+        assertEquals(List.of("one.txt"), ResultTitles("\"no more parties\""));
+        assertEquals(List.of(), ResultTitles("\"parties more no\""));
+        assertEquals(List.of(), ResultTitles("\"no parties\""));
+    }
+
+    @Test
+    public void phraseRepeatedTermTest(){
+        // five.txt starts with `yeezy yeezy`, which three.txt does not, though it also holds `yeezy`
+        assertEquals(List.of("five.txt"), ResultTitles("\"yeezy yeezy\""));
+        assertEquals(List.of("five.txt"), ResultTitles("\"yeezy yeezy jumped\""));
+        assertEquals(List.of(), ResultTitles("\"yeezy yeezy yeezy\""));
+
+        List<Posting> resultPostings = parser.parseQuery("\"yeezy yeezy\"").getPostings(index,
+                new QueryTokenProcessor());
+        assertEquals("Only the first `yeezy` starts a match.", List.of(1), resultPostings.get(0).getPositions());
+    }
+
+    @Test
+    public void nearDistanceTest(){
+        // `parties` is 2 positions after `no`, so NEAR/2 is the closest distance that finds it
+        assertEquals(List.of("one.txt"), ResultTitles("[no NEAR/3 parties]"));
+        assertEquals(List.of("one.txt"), ResultTitles("[no NEAR/2 parties]"));
+        assertEquals(List.of(), ResultTitles("[no NEAR/1 parties]"));
+        assertEquals(List.of(), ResultTitles("[parties NEAR/3 no]"));
+        assertEquals(List.of("one.txt"), ResultTitles("[no NEAR/2 parties NEAR/2 la]"));
+        assertEquals(List.of(), ResultTitles("[no NEAR/2 parties NEAR/1 la]"));
+    }
+
+    @Test
+    public void nearPositionsTest(){
+        // `jumpman` is 4 positions after the first `yeezy` of five.txt and 3 after the second, counting from 1
+        List<Posting> resultPostings = parser.parseQuery("[yeezy NEAR/4 jumpman]").getPostings(index,
+                new QueryTokenProcessor());
+        assertEquals(1, resultPostings.size());
+        assertEquals("Each `yeezy` close enough to `jumpman` starts a match.", List.of(1, 2),
+                resultPostings.get(0).getPositions());
+
+        resultPostings = parser.parseQuery("[yeezy NEAR/3 jumpman]").getPostings(index, new QueryTokenProcessor());
+        assertEquals(List.of(2), resultPostings.get(0).getPositions());
+        assertEquals(List.of(), ResultTitles("[yeezy NEAR/2 jumpman]"));
+    }
+
+    @Test
+    public void nearZeroTest(){
+        // no term is found 0 positions after another, so NEAR/0 is matched as a phrase
+        assertEquals(ResultTitles("\"no more\""), ResultTitles("[no NEAR/0 more]"));
+        assertEquals(List.of("one.txt"), ResultTitles("[no NEAR/0 more]"));
+        assertEquals(List.of(), ResultTitles("[no NEAR/0 parties]"));
+    }
 }
@@ -0,0 +1,239 @@
+
+package application.Test;
+
+import application.documents.DirectoryCorpus;
+import application.documents.Document;
+import application.indexes.*;
+import application.text.VocabularyTokenProcessor;
+import application.utilities.IndexUtility;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentManagerTest {
+    private static final VocabularyTokenProcessor PROCESSOR = new VocabularyTokenProcessor();
+
+    private static String term(String word) {
+        return PROCESSOR.processToken(word).get(0);
+    }
+
+    private static void writeFile(Path directory, String fileName, String content) throws IOException {
+        Path filePath = directory.resolve(fileName);
+        boolean isModified = Files.exists(filePath);
+        Files.writeString(filePath, content);
+
+        // a file rewritten within the same second would keep its modification time, so it is moved forward
+        if (isModified) {
+            Files.setLastModifiedTime(filePath, FileTime.fromMillis(Files.getLastModifiedTime(filePath)
+                    .toMillis() + 10_000));
+        }
+    }
+
+    /**
+     * Builds the index of the corpus from scratch as its original segment, like building a new index does.
+     */
+    private static Map<String, String> buildIndex(Path directory) {
+        Map<String, String> indexPaths = IndexUtility.createIndexPathsMap(directory.toString());
+        DirectoryCorpus corpus = DirectoryCorpus.loadDirectory(directory, true);
+        List<Document> documents = new ArrayList<>();
+        corpus.getDocuments().forEach(documents::add);
+        documents.sort(Comparator.comparingInt(Document::getId));
+
+        IndexSegment segment = new IndexSegment();
+        segment.indexDocuments(documents);
+        DiskIndexWriter.createIndexDirectory(indexPaths.get("indexDirectory"));
+        DiskIndexWriter.writeDocumentStatistics(indexPaths.get("docStatsBin"), segment.getDocumentStatistics());
+        DiskIndexWriter.writeIndex(indexPaths.get("postingsBin"), indexPaths.get("positionsBin"),
+                indexPaths.get("termsBin"), segment.getIndex());
+        DiskIndexWriter.writeBiword(indexPaths.get("biwordBin"), indexPaths.get("biwordTermsBin"),
+                segment.getBiwordIndex());
+        DiskIndexWriter.writeKGrams(indexPaths.get("kGramsBin"), indexPaths.get("kGramTermsBin"),
+                indexPaths.get("kGramTokensBin"), KGramIndex.fromVocabulary(
+                        new ArrayList<>(segment.getWildcardVocabulary()), 3, 1));
+        SegmentManager.create(indexPaths, corpus);
+
+        return indexPaths;
+    }
+
+    private static SegmentManager.UpdateSummary update(SegmentManager manager, Path directory) {
+        return manager.update(DirectoryCorpus.loadDirectory(directory, true), 1);
+    }
+
+    /**
+     * Returns the files holding the term, along with the term's document frequency.
+     */
+    private static Set<String> findFiles(SegmentManager manager, String word) throws IOException {
+        Map<Integer, String> fileNames = new HashMap<>();
+        manager.getDocumentIds().forEach((fileName, documentId) -> fileNames.put(documentId, fileName));
+        Set<String> files = new TreeSet<>();
+
+        try (SegmentedIndex index = manager.openPositionalIndex()) {
+            PostingsIterator postings = index.getPostingsIterator(term(word), true);
+            int documentFrequency = postings.getDocumentFrequency();
+
+            for (int documentId = postings.nextDoc(); documentId != PostingsIterator.NO_MORE_DOCS;
+                 documentId = postings.nextDoc()) {
+                files.add(fileNames.getOrDefault(documentId, "deleted document " + documentId));
+                assertTrue(postings.freq() > 0);
+            }
+            // the iterator is past its last posting, and the postings of deleted documents are not counted
+            assertEquals(0, postings.freq());
+            assertEquals(0, postings.positions().length);
+            assertEquals("df(`" + word + "`)", files.size(), documentFrequency);
+            assertEquals(files.size(), index.getPositionlessPostings(term(word)).size());
+        }
+
+        return files;
+    }
+
+    @Test
+    public void updateTest() throws IOException {
+        Path directory = TempFiles.createDirectory("segments").toPath();
+        writeFile(directory, "one.txt", "apple banana");
+        writeFile(directory, "two.txt", "banana cherry");
+        writeFile(directory, "three.txt", "cherry apple");
+        Map<String, String> indexPaths = buildIndex(directory);
+        SegmentManager manager = SegmentManager.open(indexPaths);
+
+        // two.txt is modified, three.txt is deleted and four.txt is added
+        writeFile(directory, "two.txt", "banana durian");
+        Files.delete(directory.resolve("three.txt"));
+        writeFile(directory, "four.txt", "apple elderberry");
+        SegmentManager.UpdateSummary summary = update(manager, directory);
+        TempFiles.deleteContentsOnExit(directory.toFile());
+
+        assertEquals(1, summary.getNumOfAdded());
+        assertEquals(1, summary.getNumOfModified());
+        assertEquals(1, summary.getNumOfDeleted());
+        assertEquals(2, manager.getNumOfSegments());
+        assertEquals(Set.of("one.txt", "two.txt", "four.txt"), manager.getDocumentIds().keySet());
+
+        assertEquals(Set.of("four.txt", "one.txt"), findFiles(manager, "apple"));
+        assertEquals(Set.of("one.txt", "two.txt"), findFiles(manager, "banana"));
+        assertEquals(Set.of(), findFiles(manager, "cherry"));
+        assertEquals(Set.of("two.txt"), findFiles(manager, "durian"));
+        assertEquals(Set.of("four.txt"), findFiles(manager, "elderberry"));
+
+        // the k-grams of the new segment are read together with those of the original one
+        try (SegmentedKGramIndex kGramIndex = manager.openKGramIndex()) {
+            assertTrue(kGramIndex.getVocabulary().containsAll(List.of("apple", "durian", "elderberry")));
+        }
+
+        // the deletions were written to disk, so they remain after the index is opened again
+        SegmentManager reopenedManager = SegmentManager.open(indexPaths);
+        assertEquals(Set.of("four.txt", "one.txt"), findFiles(reopenedManager, "apple"));
+        assertEquals(Set.of(), findFiles(reopenedManager, "cherry"));
+        assertFalse(update(reopenedManager, directory).hasChanges());
+    }
+
+    @Test
+    public void liveDocsTest() throws IOException {
+        LiveDocs liveDocs = new LiveDocs(100, 70);
+        LiveDocs copy = liveDocs.copy();
+
+        liveDocs.delete(100);
+        liveDocs.delete(165);
+        liveDocs.delete(165);
+        assertEquals(68, liveDocs.getNumOfLiveDocuments());
+        assertEquals(70, liveDocs.getNumOfDocuments());
+        assertFalse(liveDocs.isLive(100));
+        assertTrue(liveDocs.isLive(101));
+        assertFalse(liveDocs.isLive(165));
+        // IDs outside the segment are never live
+        assertFalse(liveDocs.isLive(99));
+        assertFalse(liveDocs.isLive(170));
+        // a copy is unaffected by later deletions
+        assertEquals(70, copy.getNumOfLiveDocuments());
+
+        DocumentBitmap deletedDocuments = liveDocs.getDeletedDocuments();
+        assertEquals(2, deletedDocuments.getCardinality());
+        assertEquals(100, deletedDocuments.nextDocumentId(0));
+        assertEquals(165, deletedDocuments.nextDocumentId(101));
+
+        File file = TempFiles.createFile("liveDocs");
+        liveDocs.write(file.getPath());
+        LiveDocs readLiveDocs = LiveDocs.read(file.getPath(), 100, 70);
+        assertEquals(68, readLiveDocs.getNumOfLiveDocuments());
+        assertFalse(readLiveDocs.isLive(165));
+        assertTrue(readLiveDocs.isLive(164));
+        // a segment without a file has no deletions
+        assertEquals(5, LiveDocs.read(file.getPath() + ".missing", 0, 5).getNumOfLiveDocuments());
+    }
+
+    @Test
+    public void mergeTest() throws IOException, InterruptedException {
+        Path directory = TempFiles.createDirectory("merges").toPath();
+        Path indexDirectory = directory.resolve("index");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 2_000; ++i) {
+            content.append(" word").append(i);
+        }
+
+        // four segments of the same size, which are merged into one; the documents are large enough that writing
+        // the merged segment takes far longer than deleting a document does
+        SegmentManager manager = null;
+        Set<String> evenFiles = new TreeSet<>();
+        for (int segment = 0; segment < 4; ++segment) {
+            for (int i = 0; i < 30; ++i) {
+                String fileName = segment + "-" + i + ".txt";
+                writeFile(directory, fileName, (i % 2 == 0 ? "even" : "odd") + " segment" + segment + content);
+                if (i % 2 == 0) {
+                    evenFiles.add(fileName);
+                }
+            }
+            if (segment == 0) {
+                manager = SegmentManager.open(buildIndex(directory));
+            } else {
+                update(manager, directory);
+            }
+        }
+        assertEquals(4, manager.getNumOfSegments());
+
+        // a document deleted before the merge is left out of the merged segment
+        Files.delete(directory.resolve("0-2.txt"));
+        update(manager, directory);
+        evenFiles.remove("0-2.txt");
+        Set<String> oldSegments = new HashSet<>(Arrays.asList(Objects.requireNonNull(indexDirectory.toFile()
+                .list())));
+
+        manager.scheduleMerges();
+        // the merge creates the directory of the merged segment before writing it, and needs the manager's lock to
+        // replace the merged segments once it is written, so holding the lock keeps the merge from finishing
+        while (Arrays.stream(Objects.requireNonNull(indexDirectory.toFile().list()))
+                .noneMatch(file -> file.startsWith("segment-") && !oldSegments.contains(file))) {
+            Thread.onSpinWait();
+        }
+        synchronized (manager) {
+            assertFalse("The merge should still be writing its segment.", manager.isRefreshNeeded());
+            Files.delete(directory.resolve("1-4.txt"));
+            Files.delete(directory.resolve("3-0.txt"));
+            update(manager, directory);
+            evenFiles.removeAll(List.of("1-4.txt", "3-0.txt"));
+        }
+        for (int i = 0; i < 3_000 && !manager.isRefreshNeeded(); ++i) {
+            Thread.sleep(10);
+        }
+        TempFiles.deleteContentsOnExit(directory.toFile());
+
+        // the documents deleted during the merge still have postings in the merged segment, but are not live
+        assertTrue(manager.isRefreshNeeded());
+        assertEquals(1, manager.getNumOfSegments());
+        assertEquals(evenFiles, findFiles(manager, "even"));
+        assertEquals(29, findFiles(manager, "segment1").size());
+        assertFalse(findFiles(manager, "segment3").contains("3-0.txt"));
+        assertEquals(117, findFiles(manager, "word1999").size());
+
+        SegmentManager reopenedManager = SegmentManager.open(IndexUtility.createIndexPathsMap(directory.toString()));
+        assertEquals(1, reopenedManager.getNumOfSegments());
+        assertEquals(evenFiles, findFiles(reopenedManager, "even"));
+    }
+}
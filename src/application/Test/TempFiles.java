@@ -0,0 +1,46 @@
+
+package application.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Creates the temporary files and directories that tests write indexes into, all of which are deleted when the tests
+ * exit.
+ */
+final class TempFiles {
+
+    private TempFiles() {}
+
+    static File createFile(String prefix) throws IOException {
+        File file = File.createTempFile(prefix, ".bin");
+        file.deleteOnExit();
+
+        return file;
+    }
+
+    static File createDirectory(String prefix) throws IOException {
+        File directory = Files.createTempDirectory(prefix).toFile();
+        directory.deleteOnExit();
+
+        return directory;
+    }
+
+    /**
+     * Deletes everything written into a temporary directory when the tests exit, before the directory itself. Files
+     * are deleted in the reverse order they are marked, so each subdirectory is marked before the files it holds.
+     */
+    static void deleteContentsOnExit(File directory) {
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                file.deleteOnExit();
+                if (file.isDirectory()) {
+                    deleteContentsOnExit(file);
+                }
+            }
+        }
+    }
+}
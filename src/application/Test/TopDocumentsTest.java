@@ -0,0 +1,99 @@
+
+package application.Test;
+
+import application.documents.ScoreAccumulators;
+import application.documents.TopDocuments;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class TopDocumentsTest {
+    private static final int NUM_OF_DOCUMENTS = 500;
+    private static final int PAGE_SIZE = 10;
+
+    /**
+     * Returns a score for every document, drawn from so few values that most scores are tied with others.
+     */
+    private static double[] createScores() {
+        Random random = new Random(7);
+        double[] scores = new double[NUM_OF_DOCUMENTS];
+
+        for (int i = 0; i < scores.length; ++i) {
+            scores[i] = (1 + random.nextInt(40)) / 8.0;
+        }
+
+        return scores;
+    }
+
+    /**
+     * Ranks every document by sorting the whole list, from the highest score to the lowest and then by ascending
+     * document ID, as ranking did before the heap.
+     */
+    private static List<Map.Entry<Integer, Double>> sortAll(double[] scores) {
+        List<Map.Entry<Integer, Double>> rankedEntries = new ArrayList<>();
+        for (int documentId = 0; documentId < scores.length; ++documentId) {
+            rankedEntries.add(Map.entry(documentId, scores[documentId]));
+        }
+        rankedEntries.sort(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        return rankedEntries;
+    }
+
+    private static List<Map.Entry<Integer, Double>> readRanks(TopDocuments topDocuments, int offset) {
+        List<Map.Entry<Integer, Double>> rankedEntries = new ArrayList<>();
+        for (int rank = offset; rank < topDocuments.size(); ++rank) {
+            rankedEntries.add(Map.entry(topDocuments.getDocumentId(rank), topDocuments.getScore(rank)));
+        }
+
+        return rankedEntries;
+    }
+
+    @Test
+    public void topKTest() {
+        double[] scores = createScores();
+        List<Map.Entry<Integer, Double>> expected = sortAll(scores);
+        // the documents are offered in a shuffled order, so the heap cannot rely on ascending IDs to break ties
+        List<Integer> order = new ArrayList<>();
+        for (int documentId = 0; documentId < NUM_OF_DOCUMENTS; ++documentId) {
+            order.add(documentId);
+        }
+        Collections.shuffle(order, new Random(11));
+
+        TopDocuments topDocuments = new TopDocuments(0);
+        for (int k : new int[] {0, 1, 7, 64, NUM_OF_DOCUMENTS, NUM_OF_DOCUMENTS + 20}) {
+            topDocuments.reset(k);
+            for (int documentId : order) {
+                topDocuments.offer(documentId, scores[documentId]);
+            }
+            topDocuments.sortDescending();
+
+            assertEquals("K = " + k, expected.subList(0, Math.min(k, NUM_OF_DOCUMENTS)), readRanks(topDocuments, 0));
+        }
+    }
+
+    @Test
+    public void pagingTest() {
+        double[] scores = createScores();
+        List<Map.Entry<Integer, Double>> expected = sortAll(scores);
+        ScoreAccumulators accumulators = new ScoreAccumulators(NUM_OF_DOCUMENTS);
+        for (int documentId = NUM_OF_DOCUMENTS - 1; documentId >= 0; --documentId) {
+            accumulators.add(documentId, scores[documentId]);
+        }
+        TopDocuments topDocuments = new TopDocuments(0);
+
+        // every page holds the documents of the full ranking at its ranks, including ties across page boundaries,
+        // and the pages past the last document are empty
+        for (int page = 1; (page - 2) * PAGE_SIZE < NUM_OF_DOCUMENTS; ++page) {
+            int offset = (page - 1) * PAGE_SIZE;
+            topDocuments.reset(offset + PAGE_SIZE);
+            accumulators.selectTop(topDocuments);
+            topDocuments.sortDescending();
+
+            assertEquals("page " + page, expected.subList(Math.min(offset, NUM_OF_DOCUMENTS),
+                    Math.min(offset + PAGE_SIZE, NUM_OF_DOCUMENTS)), readRanks(topDocuments, offset));
+        }
+    }
+}
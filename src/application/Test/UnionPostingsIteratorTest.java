@@ -0,0 +1,180 @@
+
+package application.Test;
+
+import application.indexes.ListPostingsIterator;
+import application.indexes.Posting;
+import application.indexes.PostingsIterator;
+import application.indexes.UnionPostingsIterator;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class UnionPostingsIteratorTest {
+    private static final int NUM_OF_DOCUMENTS = 3_000;
+    // a single list, a few lists, and many lists that share most of their documents
+    private static final int[] NUMS_OF_LISTS = {1, 2, 3, 7, 16};
+
+    /**
+     * Returns lists of postings of different densities, including empty ones, where every list's positions are
+     * distinct from the others' within a document.
+     */
+    private static List<List<Posting>> createLists(Random random, int numOfLists) {
+        List<List<Posting>> lists = new ArrayList<>();
+
+        for (int i = 0; i < numOfLists; ++i) {
+            List<Posting> postings = new ArrayList<>();
+            int density = (i % 4 == 3 ? 0 : 1 + random.nextInt(50));
+
+            for (int documentId = 0; documentId < NUM_OF_DOCUMENTS; ++documentId) {
+                if (random.nextInt(100) < density) {
+                    ArrayList<Integer> positions = new ArrayList<>();
+                    for (int position = 1 + i; positions.size() < 1 + random.nextInt(3); position += numOfLists) {
+                        positions.add(position);
+                    }
+                    postings.add(new Posting(documentId, positions));
+                }
+            }
+            lists.add(postings);
+        }
+
+        return lists;
+    }
+
+    private static UnionPostingsIterator union(List<List<Posting>> lists, boolean mergesPostings) {
+        List<PostingsIterator> iterators = new ArrayList<>();
+        lists.forEach(postings -> iterators.add(new ListPostingsIterator(postings)));
+
+        return new UnionPostingsIterator(iterators, mergesPostings);
+    }
+
+    /**
+     * Unions the lists two at a time, as OR queries did before the heap; a document found in several lists keeps the
+     * posting of the last of them, or merges their positions.
+     */
+    private static List<Posting> unionLists(List<List<Posting>> lists, boolean mergesPostings) {
+        List<Posting> unions = new ArrayList<>();
+
+        for (List<Posting> postings : lists) {
+            List<Posting> merged = new ArrayList<>();
+            int leftIndex = 0;
+            int rightIndex = 0;
+
+            while (leftIndex < unions.size() || rightIndex < postings.size()) {
+                Posting left = (leftIndex < unions.size() ? unions.get(leftIndex) : null);
+                Posting right = (rightIndex < postings.size() ? postings.get(rightIndex) : null);
+
+                if (right == null || (left != null && left.getDocumentId() < right.getDocumentId())) {
+                    merged.add(left);
+                    ++leftIndex;
+                } else if (left == null || left.getDocumentId() > right.getDocumentId()) {
+                    merged.add(right);
+                    ++rightIndex;
+                } else {
+                    ArrayList<Integer> positions = new ArrayList<>(right.getPositions());
+                    if (mergesPostings) {
+                        positions.addAll(left.getPositions());
+                        Collections.sort(positions);
+                    }
+                    merged.add(new Posting(right.getDocumentId(), positions));
+                    ++leftIndex;
+                    ++rightIndex;
+                }
+            }
+            unions = merged;
+        }
+
+        return unions;
+    }
+
+    /**
+     * Returns the indexes of the lists holding the document, in the order the lists were given.
+     */
+    private static List<Integer> findLists(List<List<Posting>> lists, int documentId) {
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < lists.size(); ++i) {
+            if (lists.get(i).stream().anyMatch(posting -> posting.getDocumentId() == documentId)) {
+                matches.add(i);
+            }
+        }
+
+        return matches;
+    }
+
+    private static void assertSamePosting(Posting expected, UnionPostingsIterator iterator, String message) {
+        assertEquals(message, expected.getDocumentId(), iterator.docId());
+        assertEquals(message, expected.getTermFrequency(), iterator.freq());
+        assertArrayEquals(message, expected.getPositions().stream().mapToInt(Integer::intValue).toArray(),
+                Arrays.copyOf(iterator.positions(), iterator.freq()));
+    }
+
+    @Test
+    public void nextDocTest() {
+        Random random = new Random(13);
+
+        for (int numOfLists : NUMS_OF_LISTS) {
+            List<List<Posting>> lists = createLists(random, numOfLists);
+
+            for (boolean mergesPostings : new boolean[] {false, true}) {
+                List<Posting> expected = unionLists(lists, mergesPostings);
+                UnionPostingsIterator iterator = union(lists, mergesPostings);
+                String message = numOfLists + " lists, merging " + mergesPostings;
+
+                assertEquals(message, lists.stream().mapToInt(List::size).sum(), iterator.getDocumentFrequency());
+                for (Posting posting : expected) {
+                    iterator.nextDoc();
+                    assertSamePosting(posting, iterator, message);
+
+                    List<Integer> matches = new ArrayList<>();
+                    for (int i = 0; i < iterator.getNumOfMatches(); ++i) {
+                        matches.add(iterator.getMatch(i));
+                    }
+                    assertEquals(message, findLists(lists, posting.getDocumentId()), matches);
+                }
+                assertEquals(message, PostingsIterator.NO_MORE_DOCS, iterator.nextDoc());
+                assertEquals(message, PostingsIterator.NO_MORE_DOCS, iterator.nextDoc());
+            }
+        }
+    }
+
+    @Test
+    public void advanceTest() {
+        Random random = new Random(17);
+
+        for (int numOfLists : NUMS_OF_LISTS) {
+            List<List<Posting>> lists = createLists(random, numOfLists);
+            List<Posting> expected = unionLists(lists, true);
+            UnionPostingsIterator iterator = union(lists, true);
+            int index = 0;
+            int target = 0;
+
+            // targets on and between the documents of the union, some behind the iterator, then past the last one
+            while (index < expected.size()) {
+                target = Math.max(target + random.nextInt(200) - 20, 0);
+                int documentId = iterator.docId();
+                if (documentId < target) {
+                    while (index < expected.size() && expected.get(index).getDocumentId() < target) {
+                        ++index;
+                    }
+                    documentId = (index < expected.size() ? expected.get(index).getDocumentId()
+                            : PostingsIterator.NO_MORE_DOCS);
+                }
+                String message = numOfLists + " lists, advance(" + target + ")";
+
+                assertEquals(message, documentId, iterator.advance(target));
+                if (documentId != PostingsIterator.NO_MORE_DOCS) {
+                    assertSamePosting(expected.get(index), iterator, message);
+                }
+            }
+            assertEquals(PostingsIterator.NO_MORE_DOCS, iterator.advance(NUM_OF_DOCUMENTS));
+        }
+    }
+
+    @Test
+    public void emptyUnionTest() {
+        assertEquals(PostingsIterator.NO_MORE_DOCS, union(List.of(), true).nextDoc());
+        assertEquals(PostingsIterator.NO_MORE_DOCS, union(List.of(List.of(), List.of()), false).advance(5));
+    }
+}
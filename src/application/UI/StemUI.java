@@ -1,6 +1,6 @@
 package application.UI;
 
-import application.text.TokenStemmer;
+import application.text.StemmingService;
 
 import javax.swing.*;
 import java.awt.*;
@@ -19,9 +19,8 @@ public class StemUI {
 
     public Component stemUI(){
         //takes the user input and processes it through the token stemmer
-        TokenStemmer stemmer = new TokenStemmer();
-        System.out.println(stemmer.processToken(parameter).get(0));
-        String result = (stemmer.processToken(parameter).get(0));
+        String result = StemmingService.stem(parameter);
+        System.out.println(result);
         //initialization of a new panel
         JPanel content = new JPanel();
         //initialization of a new label
@@ -4,12 +4,11 @@ package application.classifications;
 import application.documents.DirectoryCorpus;
 import application.documents.Document;
 import application.documents.DocumentWeightScorer;
+import application.indexes.DiskDocumentStatistics;
 import application.indexes.DiskIndexReader;
 import application.indexes.Index;
 import application.indexes.Posting;
 
-import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.*;
 
 public class RocchioClassification implements TextClassification {
@@ -102,7 +101,7 @@ public class RocchioClassification implements TextClassification {
                     // for each posting, calculate the w(d, t) values and accumulate them into our weight vectors
                     for (Posting currentPosting : postings) {
                         int documentId = currentPosting.getDocumentId();
-                        int tftd = currentPosting.getPositions().size();
+                        int tftd = currentPosting.getTermFrequency();
 
                         // update the old accumulating w(d, t) values with the new ones
                         double wdt = DocumentWeightScorer.calculateWdt(tftd);
@@ -112,18 +111,15 @@ public class RocchioClassification implements TextClassification {
                     }
                 }
 
-                // divide each individual w(d, t) value by their respective L(d)
-                for (Map.Entry<Integer, Map<String, Double>> vectorEntry : currentWeightVector.entrySet()) {
-                    int documentId = vectorEntry.getKey();
-                    Map<String, Double> currentVector = vectorEntry.getValue();
-
-                    try (RandomAccessFile randomAccessor = new RandomAccessFile(directoryPath +
-                            "/index/docWeights.bin", "rw")) {
-                        double currentLd = DiskIndexReader.readLd(randomAccessor, documentId);
+                // divide each individual w(d, t) value by their respective L(d), mapping the statistics only once
+                try (DiskDocumentStatistics documentStatistics = DiskIndexReader.readDocumentStatistics(
+                        directoryPath + "/index/docStats.bin")) {
+                    for (Map.Entry<Integer, Map<String, Double>> vectorEntry : currentWeightVector.entrySet()) {
+                        int documentId = vectorEntry.getKey();
+                        Map<String, Double> currentVector = vectorEntry.getValue();
+                        double currentLd = documentStatistics.getLd(documentId);
 
                         currentVector.replaceAll((term, accumulator) -> accumulator / currentLd);
-                    } catch (IOException e) {
-                        e.printStackTrace();
                     }
                 }
             }
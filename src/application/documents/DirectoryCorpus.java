@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
 /**
@@ -31,6 +32,9 @@ public class DirectoryCorpus implements DocumentCorpus {
 
 	private boolean isRoot;
 
+	// If set, the map from each file's path relative to the corpus directory to its document ID.
+	private Map<String, Integer> mDocumentIds;
+
 	/**
 	 * Constructs a corpus over an absolute directory path.
 	 * Before calling GetDocuments(), you must register a FileDocumentFactory with the RegisterFileDocumentFactory
@@ -66,12 +70,55 @@ public class DirectoryCorpus implements DocumentCorpus {
 		HashMap<Integer, Document> result = new HashMap<>();
 		int nextId = 0;
 		for (Path file : sortedFiles) {
+			int documentId = nextId;
+			// documents with assigned IDs keep them; files without an assigned ID are not part of the index
+			if (mDocumentIds != null) {
+				Integer assignedId = mDocumentIds.get(getRelativePath(file));
+				if (assignedId == null) {
+					continue;
+				}
+				documentId = assignedId;
+			}
 			// Use the registered factory for the file's extension.
-			result.put(nextId, mFactories.get(getFileExtension(file)).createFileDocument(file, nextId));
+			result.put(documentId, mFactories.get(getFileExtension(file)).createFileDocument(file, documentId));
 			nextId++;
 		}
 		return result;
 	}
+
+	/**
+	 * Returns the sorted paths of all files in the corpus, without loading any documents.
+	 */
+	public List<Path> getFilePaths() {
+		List<Path> sortedFiles = new ArrayList<>();
+		try {
+			findFiles().forEach(sortedFiles::add);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		Collections.sort(sortedFiles);
+
+		return sortedFiles;
+	}
+
+	/**
+	 * Returns the path of the file relative to the corpus directory, which stays the same no matter how the
+	 * directory path itself was written.
+	 */
+	public String getRelativePath(Path file) {
+		return mDirectoryPath.relativize(file).toString();
+	}
+
+	/**
+	 * Assigns the document ID of each file instead of numbering the files in sorted order. Files without an
+	 * assigned ID are left out of the corpus. Must be called before the documents are loaded.
+	 * @param documentIds the map from each file's path relative to the corpus directory to its document ID
+	 */
+	public void setDocumentIds(Map<String, Integer> documentIds) {
+		mDocumentIds = documentIds;
+		mDocuments = null;
+	}
+
 	/**
 	 * Finds all file names that match the corpus filter predicate and have a known file extension.
 	 */
@@ -2,74 +2,187 @@
 package application.documents;
 
 import application.Application;
+import application.indexes.BoundedIndex;
+import application.indexes.DiskDocumentStatistics;
 import application.indexes.DiskIndexReader;
 import application.indexes.Index;
+import application.indexes.IterableIndex;
 import application.indexes.KGramIndex;
 import application.indexes.Posting;
+import application.indexes.PostingsIterator;
+import application.indexes.UnionPostingsIterator;
+import application.indexes.WildcardIndex;
 import application.queries.WildcardLiteral;
 import application.text.VocabularyTokenProcessor;
 
 import java.io.Closeable;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.*;
 
 /**
- * Calculates document weights and their relative scores for ranked retrieval queries.
+ * Calculates document weights and their relative scores for ranked retrieval queries. Documents can either be scored
+ * term at a time, accumulating every posting of each query term in turn, or document at a time, moving through the
+ * postings of every query term at once and skipping the documents that could not be among the top results.
  */
 public class DocumentWeightScorer implements Closeable {
 
-    private static RandomAccessFile randomAccessor;
-    private final Map<Integer, Double> finalAccumulators;
+    /**
+     * The order in which the postings of a ranked query are scored.
+     */
+    public enum ScoringMode {
+        TERM_AT_A_TIME,
+        DOCUMENT_AT_A_TIME
+    }
+
+    private final DiskDocumentStatistics documentStatistics;
+    private final ScoreAccumulators finalAccumulators;  // reused by every query, so that scoring allocates nothing
+    private final TopDocuments topDocuments;
 
     public DocumentWeightScorer(String inputFilePath) {
-        finalAccumulators = new HashMap<>();
+        documentStatistics = DiskIndexReader.readDocumentStatistics(inputFilePath);
+        finalAccumulators = new ScoreAccumulators(documentStatistics.getNumOfDocuments());
+        topDocuments = new TopDocuments(0);
+    }
+
+    public void storeTermAtATimeDocuments(Index<String, Posting> index, String query) {
+        finalAccumulators.clear();
+
+        accumulateTermAtATime(index, findQueryTerms(query));
+        normalizeAccumulators();
+    }
+
+    /**
+     * Scores the documents of the query document at a time using the WAND algorithm, keeping only the top K
+     * documents. Each query term's score is bounded by w(q,t) times the largest w(d,t) / L(d) of the term, so a
+     * document is only scored once the bounds of the terms it could contain add up to more than the lowest score of
+     * the top K so far; every other document is skipped over without decoding its postings.
+     * @param index the index to score the documents of
+     * @param query the ranked query
+     * @param k the number of top documents to keep, which must cover every page of results that will be read
+     */
+    public void storeDocumentAtATimeDocuments(Index<String, Posting> index, String query, int k) {
+        DirectoryCorpus corpus = Application.getCorpora().get(Application.getCurrentDirectory());
+        // N = total number of documents in the corpus
+        int n = corpus.getCorpusSize();
+        List<TermCursor> cursors = new ArrayList<>();
+        finalAccumulators.clear();
+
+        for (List<String> termGroup : findQueryTermGroups(query)) {
+            List<PostingsIterator> termPostings = new ArrayList<>();
+            List<Double> wqts = new ArrayList<>();
+            double maxScore = 0;
+
+            for (String term : termGroup) {
+                PostingsIterator postings = IterableIndex.openIterator(index, term, false);
+
+                // terms without postings never add to a score, and would have an infinite w(q, t)
+                if (postings.getDocumentFrequency() == 0) {
+                    continue;
+                }
+                double wqt = calculateWqt(n, postings.getDocumentFrequency());
+                double termMaxScore = wqt * BoundedIndex.getMaxWeight(index, term);
+                termPostings.add(postings);
+                wqts.add(wqt);
+                maxScore += termMaxScore;
+
+                // debugging log
+                if (Application.enabledLogs) {
+                    System.out.println(
+                            "--------------------------------------------------------------------------------" +
+                            "\n`" + term + "`" +
+                            "\n---> df(t) -- " + postings.getDocumentFrequency() +
+                            "\n---> w(q, t) -- " + wqt +
+                            "\n---> max score -- " + termMaxScore);
+                }
+            }
 
-        try {
-            randomAccessor = new RandomAccessFile(inputFilePath, "rw");
-        } catch (FileNotFoundException e) {
-            System.err.println("The `docWeights.bin` file could not be found.");
+            if (!termPostings.isEmpty()) {
+                TermCursor cursor = new TermCursor(termPostings, cursors.size(), wqts, maxScore);
+                if (cursor.postings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                    cursors.add(cursor);
+                }
+            }
+        }
+
+        if (k > 0) {
+            accumulateDocumentAtATime(cursors.toArray(new TermCursor[0]), k);
         }
     }
 
-    public void storeTermAtATimeDocuments(Index<String, Posting> index, String query) {
+    /**
+     * Returns the terms of the query, where each wildcard is replaced by the terms of every vocabulary type
+     * matching it. The terms of wildcards come first, since term at a time scoring has always accumulated them
+     * first.
+     */
+    private List<String> findQueryTerms(String query) {
+        List<String> queryTerms = new ArrayList<>();
+        for (List<String> termGroup : findQueryTermGroups(query)) {
+            queryTerms.addAll(termGroup);
+        }
+
+        return queryTerms;
+    }
+
+    /**
+     * Returns the terms of the query grouped by the token they came from, so that the terms of each wildcard form
+     * one group and every other term forms a group of its own. The groups are in the same order as the terms of
+     * `findQueryTerms`.
+     */
+    private List<List<String>> findQueryTermGroups(String query) {
         VocabularyTokenProcessor processor = new VocabularyTokenProcessor();
         String[] splitQuery = query.split(" ");
-        List<String> queryTerms = new ArrayList<>();
-        finalAccumulators.clear();
+        List<List<String>> wildcardTermGroups = new ArrayList<>();
+        List<List<String>> queryTermGroups = new ArrayList<>();
 
         for (String token : splitQuery) {
             // if the token has a wildcard, allow all vocabulary types that match the pattern to accumulate points
             if (token.contains("*")) {
-                accumulateWildcards(index, token);
+                wildcardTermGroups.add(findWildcardTerms(token));
             } else {
                 List<String> splitTerms = processor.processToken(token);
 
                 // error handling - handle empty / fully non-alphanumeric tokens
                 if (splitTerms.size() > 0) {
-                    queryTerms.add(splitTerms.get(0));
+                    queryTermGroups.add(List.of(splitTerms.get(0)));
                 }
             }
         }
+        wildcardTermGroups.addAll(queryTermGroups);
 
-        accumulateTermAtATime(index, queryTerms);
-        normalizeAccumulators();
+        return wildcardTermGroups;
     }
 
-    private void accumulateWildcards(Index<String, Posting> index, String wildcard) {
-        KGramIndex kGramIndex = Application.getKGramIndexes().get(Application.getCurrentDirectory() + "/index/kGrams.bin");
+    private List<String> findWildcardTerms(String wildcard) {
+        WildcardIndex kGramIndex = Application.getKGramIndexes()
+                .get(Application.getCurrentDirectory() + "/index/kGrams.bin");
+        String wildcardRegex = WildcardLiteral.wildcardToRegex(wildcard);
+        List<String> candidateTypes;
 
-        for (String type : kGramIndex.getVocabulary()) {
-            if (type.matches(WildcardLiteral.wildcardToRegex(wildcard))) {
+        // only the types sharing every k-gram of the wildcard can match it, unless `?` stands in for a character
+        if (wildcard.contains("?")) {
+            candidateTypes = kGramIndex.getVocabulary();
+        } else {
+            KGramIndex wildcardKGramIndex = new KGramIndex();
+            wildcardKGramIndex.addToken(wildcard, 3);
+            List<String> wildcardKGrams = new ArrayList<>();
+            for (String wildcardToken : wildcardKGramIndex.getVocabulary()) {
+                wildcardKGrams.addAll(wildcardKGramIndex.getPostings(wildcardToken));
+            }
+            candidateTypes = kGramIndex.getCandidateTokens(wildcardKGrams);
+        }
+
+        List<String> wildcardTerms = new ArrayList<>();
+        for (String type : candidateTypes) {
+            if (type.matches(wildcardRegex)) {
                 VocabularyTokenProcessor processor = new VocabularyTokenProcessor();
                 List<String> terms = processor.processToken(type);
 
                 if (terms.size() > 0) {
-                    accumulateTermAtATime(index, new ArrayList<>(){{add(terms.get(0));}});
+                    wildcardTerms.add(terms.get(0));
                 }
             }
         }
+
+        return wildcardTerms;
     }
 
     private void accumulateTermAtATime(Index<String, Posting> index, List<String> queryTerms) {
@@ -80,9 +193,9 @@ public class DocumentWeightScorer implements Closeable {
         for (String term : queryTerms) {
             // N = total number of documents in the corpus
             int n = corpus.getCorpusSize();
-            List<Posting> postings = index.getPositionlessPostings(term);
+            PostingsIterator postings = IterableIndex.openIterator(index, term, false);
             // df(t) = number of documents the term has appeared in
-            int dft = postings.size();
+            int dft = postings.getDocumentFrequency();
 
             // 1a. Calculate w(q,t) = ln(1 + N/df(t)).
             double wqt = calculateWqt(n, dft);
@@ -96,9 +209,10 @@ public class DocumentWeightScorer implements Closeable {
             }
 
             // 1b. For each document d in t's postings list:
-            for (Posting currentPosting : postings) {
+            for (int documentId = postings.nextDoc(); documentId != PostingsIterator.NO_MORE_DOCS;
+                 documentId = postings.nextDoc()) {
                 // 1 (b, i). Acquire an accumulator value A(d) (the design of this system is up to you).
-                acquireAccumulator(currentPosting, wqt);
+                acquireAccumulator(documentId, postings.freq(), wqt);
             }
 
             // debugging log
@@ -108,10 +222,7 @@ public class DocumentWeightScorer implements Closeable {
         }
     }
 
-    private void acquireAccumulator(Posting posting, double wqt) {
-        int documentId = posting.getDocumentId();
-        int tftd = posting.getPositions().size();
-
+    private void acquireAccumulator(int documentId, int tftd, double wqt) {
         // 1 (b, ii). Calculate w(d,t) = 1 + ln(tf(t,d)).
         double wdt = calculateWdt(tftd);
 
@@ -122,47 +233,133 @@ public class DocumentWeightScorer implements Closeable {
                     corpus.getDocument(documentId).getTitle() + " (ID: " + documentId + ")" +
                             "\n---> tf(t, d) -- " + tftd +
                             "\n---> w(d, t) -- " + wdt +
-                            "\n---> L(d) -- " + DiskIndexReader.readLd(randomAccessor, documentId));
+                            "\n---> L(d) -- " + documentStatistics.getLd(documentId));
         }
 
         // 1 (b, iii). Increase A(d) by wd,t × wq,t.
-        double newWeight = wdt * wqt;
+        finalAccumulators.add(documentId, wdt * wqt);
+    }
 
-        if (finalAccumulators.get(documentId) == null) {
-            finalAccumulators.put(documentId, newWeight);
-        } else {
-            double oldAccumulator = finalAccumulators.get(documentId);
-            finalAccumulators.replace(documentId, oldAccumulator + newWeight);
+    /**
+     * Moves the cursors of every query term through their postings together, keeping the top K documents in a
+     * min-heap. The cursors are kept sorted by their current document ID, so the first cursors whose bounds add up
+     * to more than the lowest top score point to the first document that could still enter the top K; this
+     * document is the pivot.
+     */
+    private void accumulateDocumentAtATime(TermCursor[] cursors, int k) {
+        // the top K documents found so far, with the lowest score at the top of the heap
+        topDocuments.reset(k);
+        int numOfCursors = cursors.length;
+        int numOfScoredDocuments = 0;
+        sortCursors(cursors, numOfCursors);
+
+        while (numOfCursors > 0) {
+            // until there are K documents, every document can enter the top K
+            double threshold = (topDocuments.isFull() ? topDocuments.getMinScore() : -1);
+            double maxScore = 0;
+            int pivot = -1;
+
+            for (int i = 0; i < numOfCursors; ++i) {
+                maxScore += cursors[i].maxScore;
+                if (maxScore > threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            // even a document containing every remaining term could not enter the top K
+            if (pivot < 0) {
+                break;
+            }
+            int pivotDocumentId = cursors[pivot].postings.docId();
+
+            if (cursors[0].postings.docId() == pivotDocumentId) {
+                // every cursor up to the pivot is on the pivot document, so it can be scored in full
+                double ad = 0;
+                for (int i = 0; i < numOfCursors && cursors[i].postings.docId() == pivotDocumentId; ++i) {
+                    ad = cursors[i].addScore(ad);
+                    cursors[i].postings.nextDoc();
+                }
+                topDocuments.offer(pivotDocumentId, ad / documentStatistics.getLd(pivotDocumentId));
+                ++numOfScoredDocuments;
+            } else {
+                // no document before the pivot document can enter the top K, so skip the cursors before the pivot
+                for (int i = 0; i < pivot; ++i) {
+                    cursors[i].postings.advance(pivotDocumentId);
+                }
+            }
+            numOfCursors = sortCursors(cursors, numOfCursors);
+        }
+
+        // only the top K documents are accumulated, so they are all that can be ranked afterwards
+        for (int i = 0; i < topDocuments.size(); ++i) {
+            finalAccumulators.add(topDocuments.getDocumentId(i), topDocuments.getScore(i));
+        }
+
+        // debugging log
+        if (Application.enabledLogs) {
+            System.out.println("--------------------------------------------------------------------------------" +
+                    "\nScored " + numOfScoredDocuments + " documents document at a time.");
         }
     }
 
-    private void normalizeAccumulators() {
-        // iterate through all entries
-        for (Map.Entry<Integer, Double> entry : finalAccumulators.entrySet()) {
-            int currentDocumentId = entry.getKey();
-            double currentAd = entry.getValue();
-
-            // 2. For each non-zero A(d), divide A(d) by L(d), where L(d) is read from the `docWeights.bin` file.
-            if (currentAd > 0) {
-                double ld = DiskIndexReader.readLd(randomAccessor, currentDocumentId);
-                finalAccumulators.replace(currentDocumentId, currentAd / ld);
+    /**
+     * Sorts the cursors by their current document ID, moving the cursors without postings left past the end. Cursors
+     * on the same document stay in query order, so its score is summed in the same order as term at a time.
+     * @return the number of cursors with postings left
+     */
+    private static int sortCursors(TermCursor[] cursors, int numOfCursors) {
+        // the cursors stay nearly sorted between documents, so an insertion sort only moves the few that advanced
+        for (int i = 1; i < numOfCursors; ++i) {
+            TermCursor cursor = cursors[i];
+            int documentId = cursor.postings.docId();
+            int j = i - 1;
+
+            while (j >= 0 && (cursors[j].postings.docId() > documentId ||
+                    (cursors[j].postings.docId() == documentId && cursors[j].termIndex > cursor.termIndex))) {
+                cursors[j + 1] = cursors[j];
+                --j;
             }
+            cursors[j + 1] = cursor;
+        }
+        while (numOfCursors > 0 && cursors[numOfCursors - 1].postings.docId() == PostingsIterator.NO_MORE_DOCS) {
+            --numOfCursors;
+        }
+
+        return numOfCursors;
+    }
+
+    private void normalizeAccumulators() {
+        // only the touched documents have a non-zero A(d), so the rest of the accumulators are never visited
+        for (int i = 0; i < finalAccumulators.getNumOfTouched(); ++i) {
+            int currentDocumentId = finalAccumulators.getTouchedDocumentId(i);
+
+            // 2. For each non-zero A(d), divide A(d) by L(d), where L(d) is read from the `docStats.bin` file.
+            double ld = documentStatistics.getLd(currentDocumentId);
+            finalAccumulators.set(currentDocumentId, finalAccumulators.get(currentDocumentId) / ld);
         }
     }
 
     public List<Map.Entry<Integer, Double>> getRankedEntries(int k) {
-        // error handling: if there are less document IDs than what is requested, instead use the existing size
-        k = Math.min(k, finalAccumulators.size());
+        return getRankedEntries(0, k);
+    }
 
-        List<Map.Entry<Integer, Double>> rankedEntries = new ArrayList<>();
+    /**
+     * Returns a page of the ranked documents, such as results 11 to 20.
+     * @param offset the number of higher ranked documents to skip
+     * @param k the number of documents in the page
+     * @return the documents of the page with their scores, from the highest score to the lowest
+     */
+    public List<Map.Entry<Integer, Double>> getRankedEntries(int offset, int k) {
         /* 3. Select and return the top K = 10 documents by largest A(d) value.
-          (Use a binary heap priority queue to select the largest results; do not sort the accumulators.) */
-        Queue<Map.Entry<Integer, Double>> priorityQueue = new PriorityQueue<>(
-                Map.Entry.comparingByValue(Comparator.reverseOrder()));
-        priorityQueue.addAll(finalAccumulators.entrySet());
+          (Use a binary heap priority queue to select the largest results; do not sort the accumulators.)
+          The heap only ever holds the documents up to the end of the page, with the lowest of them on top. */
+        topDocuments.reset(Math.max(0, offset) + Math.max(0, k));
+        finalAccumulators.selectTop(topDocuments);
+        topDocuments.sortDescending();
 
-        for (int i = 0; i < k; ++i) {
-            rankedEntries.add(priorityQueue.poll());
+        List<Map.Entry<Integer, Double>> rankedEntries = new ArrayList<>();
+        for (int rank = Math.max(0, offset); rank < topDocuments.size(); ++rank) {
+            rankedEntries.add(Map.entry(topDocuments.getDocumentId(rank), topDocuments.getScore(rank)));
         }
 
         return rankedEntries;
@@ -192,10 +389,52 @@ public class DocumentWeightScorer implements Closeable {
 
     @Override
     public void close() {
-        try {
-            randomAccessor.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        documentStatistics.close();
+    }
+
+    /**
+     * The position of a query term within its postings, along with the term's weight and score bound. The terms of a
+     * wildcard share a single cursor over the union of their postings, so that a wildcard expanding to hundreds of
+     * terms is merged through a heap rather than sorted among the other cursors at every document.
+     */
+    private static class TermCursor {
+
+        private final PostingsIterator postings;
+        private final PostingsIterator[] termPostings;  // the postings of each term of the cursor
+        private final double[] wqts;
+        private final int termIndex;    // the position of the term within the query
+        private final double maxScore;  // the most the terms can add to the score of any document
+
+        private TermCursor(List<PostingsIterator> newTermPostings, int newTermIndex, List<Double> newWqts,
+                           double newMaxScore) {
+            postings = (newTermPostings.size() == 1 ? newTermPostings.get(0) :
+                    new UnionPostingsIterator(newTermPostings, false));
+            termPostings = newTermPostings.toArray(new PostingsIterator[0]);
+            wqts = new double[newWqts.size()];
+            for (int i = 0; i < wqts.length; ++i) {
+                wqts[i] = newWqts.get(i);
+            }
+            termIndex = newTermIndex;
+            maxScore = newMaxScore;
+        }
+
+        /**
+         * Adds the score of every term of the cursor found in the current document, in query order, so that the
+         * score is summed in the same order as term at a time.
+         * @param ad the score of the document so far
+         * @return the score of the document including the terms of the cursor
+         */
+        private double addScore(double ad) {
+            if (postings instanceof UnionPostingsIterator union) {
+                for (int i = 0; i < union.getNumOfMatches(); ++i) {
+                    int match = union.getMatch(i);
+                    ad += calculateWdt(termPostings[match].freq()) * wqts[match];
+                }
+
+                return ad;
+            }
+
+            return ad + calculateWdt(postings.freq()) * wqts[0];
         }
     }
 }
@@ -0,0 +1,256 @@
+
+package application.documents;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A JsonFieldReader walks the fields of a top-level JSON object in a single pass, without building the object in
+ * memory. Each field's value can be read as a string, streamed as a `Reader`, or skipped entirely; values nested
+ * within other objects or arrays are always skipped.
+ */
+public class JsonFieldReader implements AutoCloseable {
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private boolean startedObject;
+    private boolean hasPendingValue;    // whether the value of the last field has not been read or skipped yet
+
+    /**
+     * Constructs a reader over the JSON object of the given stream.
+     * @param newReader the stream of the JSON object, which is closed along with this reader
+     */
+    public JsonFieldReader(Reader newReader) {
+        reader = newReader;
+        buffer = new char[8_192];
+    }
+
+    /**
+     * Moves to the next field of the object, skipping the value of the current field if it was not read.
+     * @return the name of the next field, or null if there are no more fields
+     */
+    public String nextField() throws IOException {
+        if (!startedObject) {
+            expect('{');
+            startedObject = true;
+        } else {
+            if (hasPendingValue) {
+                skipValue();
+            }
+            int separator = nextNonWhitespace();
+            if (separator == '}' || separator == -1) {
+                return null;
+            }
+            if (separator != ',') {
+                throw new IOException("Expected ',' or '}' but found '" + (char) separator + "'");
+            }
+        }
+
+        int quote = nextNonWhitespace();
+        if (quote == '}' || quote == -1) {
+            return null;
+        }
+        if (quote != '"') {
+            throw new IOException("Expected a field name but found '" + (char) quote + "'");
+        }
+        String fieldName = readStringValue();
+        expect(':');
+        hasPendingValue = true;
+
+        return fieldName;
+    }
+
+    /**
+     * Reads the value of the current field as a string.
+     * @return the string value of the field, or null if the value is not a string
+     */
+    public String readString() throws IOException {
+        hasPendingValue = false;
+        int quote = nextNonWhitespace();
+
+        if (quote != '"') {
+            if (quote != -1) {
+                --position;
+            }
+            skipValue();
+            return null;
+        }
+
+        return readStringValue();
+    }
+
+    /**
+     * Streams the string value of the current field; the fields after it can no longer be read, and closing the
+     * returned stream closes this reader.
+     * @return a stream over the string value of the field, which is empty if the value is not a string
+     */
+    public Reader openString() throws IOException {
+        hasPendingValue = false;
+        int quote = nextNonWhitespace();
+
+        if (quote != '"') {
+            return Reader.nullReader();
+        }
+
+        return new StringValueReader();
+    }
+
+    /**
+     * Skips the value of the current field, along with anything nested within it.
+     */
+    public void skipValue() throws IOException {
+        hasPendingValue = false;
+        int depth = 0;
+
+        do {
+            int c = nextNonWhitespace();
+            switch (c) {
+                case -1 -> throw new IOException("Unexpected end of JSON");
+                case '"' -> skipStringValue();
+                case '{', '[' -> ++depth;
+                case '}', ']' -> --depth;
+                case ',', ':' -> { }
+                default -> {
+                    // numbers and literals end at the first character that is not part of them
+                    while (c != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                        c = next();
+                    }
+                    if (c != -1) {
+                        --position;
+                    }
+                }
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String readStringValue() throws IOException {
+        StringBuilder value = new StringBuilder();
+        int c;
+
+        while ((c = nextStringCharacter()) != -1) {
+            value.append((char) c);
+        }
+
+        return value.toString();
+    }
+
+    private void skipStringValue() throws IOException {
+        while (nextStringCharacter() != -1) {
+            // keep skipping until the closing quote
+        }
+    }
+
+    /**
+     * Returns the next decoded character of a string value, or -1 once its closing quote has been consumed.
+     */
+    private int nextStringCharacter() throws IOException {
+        int c = next();
+
+        if (c == '"') {
+            return -1;
+        }
+        if (c == -1) {
+            throw new IOException("Unterminated JSON string");
+        }
+        if (c != '\\') {
+            return c;
+        }
+
+        int escaped = next();
+        return switch (escaped) {
+            case '"', '\\', '/' -> escaped;
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'u' -> {
+                int codeUnit = 0;
+                for (int i = 0; i < 4; ++i) {
+                    int digit = Character.digit(next(), 16);
+                    if (digit == -1) {
+                        throw new IOException("Invalid unicode escape in JSON string");
+                    }
+                    codeUnit = codeUnit * 16 + digit;
+                }
+                yield codeUnit;
+            }
+            default -> throw new IOException("Invalid escape in JSON string");
+        };
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = nextNonWhitespace();
+
+        if (c != expected) {
+            throw new IOException("Expected '" + expected + "' but found " + (c == -1 ? "end of JSON" :
+                    "'" + (char) c + "'"));
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = next();
+        } while (c != -1 && Character.isWhitespace(c));
+
+        return c;
+    }
+
+    private int next() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+
+        return buffer[position++];
+    }
+
+    /**
+     * Decodes a string value as it is read, ending at its closing quote.
+     */
+    private class StringValueReader extends Reader {
+
+        private boolean ended;
+
+        @Override
+        public int read(char[] destination, int offset, int length) throws IOException {
+            if (ended) {
+                return -1;
+            }
+            int numOfChars = 0;
+
+            while (numOfChars < length) {
+                // copy runs of characters without escapes straight from the buffer
+                if (position < limit && buffer[position] != '"' && buffer[position] != '\\') {
+                    destination[offset + numOfChars++] = buffer[position++];
+                    continue;
+                }
+                int c = nextStringCharacter();
+                if (c == -1) {
+                    ended = true;
+                    break;
+                }
+                destination[offset + numOfChars++] = (char) c;
+            }
+
+            return (numOfChars == 0 && ended ? -1 : numOfChars);
+        }
+
+        @Override
+        public void close() throws IOException {
+            JsonFieldReader.this.close();
+        }
+    }
+}
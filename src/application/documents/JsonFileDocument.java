@@ -2,42 +2,47 @@
 package application.documents;
 
 import java.io.*;
-
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
-
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Objects;
 
 // Incorporate directory-selection and JSON documents into your application.
 public class JsonFileDocument implements FileDocument, Comparable<Document> {
 
     private final int mDocumentId;
     private final Path mFilePath;
-    private final String documentTitle;
+    // the title is only read from the file once it is needed, or found along the way while reading the body; a
+    // document without a title caches the empty string, so that its file is not scanned for a title again
+    private volatile String documentTitle;
 
     public JsonFileDocument(int id, Path absoluteFilePath) {
         mDocumentId = id;
         mFilePath = absoluteFilePath;
-        documentTitle = (String) getJsonObject().get("title");
     }
 
-    private JSONObject getJsonObject() {
-        // store a dedicated parser object that can read JSON files
-        JSONParser parser = new JSONParser();
-        JSONObject jsonObject;
-
-        try (BufferedReader reader = Files.newBufferedReader(mFilePath)) {
-            // use the parser to extract the JSON file at the given path and store it as an object
-            Object obj = parser.parse(reader);
-            jsonObject = (JSONObject) obj;
-
-        } catch (IOException | ParseException e) {
-            throw new RuntimeException(e);
+    /**
+     * Streams the body of the JSON object in the given stream, remembering the title if it comes before the body.
+     */
+    private Reader openBody(Reader jsonReader) throws IOException {
+        JsonFieldReader fieldReader = new JsonFieldReader(jsonReader);
+
+        try {
+            String fieldName;
+            while ((fieldName = fieldReader.nextField()) != null) {
+                if (fieldName.equals("title") && documentTitle == null) {
+                    documentTitle = Objects.requireNonNullElse(fieldReader.readString(), "");
+                } else if (fieldName.equals("body")) {
+                    return fieldReader.openString();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            fieldReader.close();
+            throw e;
         }
+        fieldReader.close();
 
-        return jsonObject;
+        return Reader.nullReader();
     }
 
     @Override
@@ -52,11 +57,45 @@ public class JsonFileDocument implements FileDocument, Comparable<Document> {
 
     @Override
     public Reader getContent() {
-        return new StringReader((String) getJsonObject().get("body"));
+        try {
+            return openBody(Files.newBufferedReader(mFilePath));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
+    /**
+     * Gets a stream over the body of the document from the bytes of its file, which were already read into memory.
+     * @param fileBytes the bytes of the JSON file
+     * @return a stream over the body of the document
+     */
+    public Reader getContent(byte[] fileBytes) {
+        try {
+            return openBody(new InputStreamReader(new ByteArrayInputStream(fileBytes), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the title of the document, reading it from the file the first time it is needed.
+     * @return the title of the document, or the empty string if it has none
+     */
     @Override
     public String getTitle() {
+        if (documentTitle == null) {
+            try (JsonFieldReader fieldReader = new JsonFieldReader(Files.newBufferedReader(mFilePath))) {
+                String fieldName;
+                while ((fieldName = fieldReader.nextField()) != null && !fieldName.equals("title")) {
+                    // skip every field before the title
+                }
+                String title = (fieldName != null ? fieldReader.readString() : null);
+                documentTitle = Objects.requireNonNullElse(title, "");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         return documentTitle;
     }
 
@@ -72,6 +111,6 @@ public class JsonFileDocument implements FileDocument, Comparable<Document> {
 
     @Override
     public int compareTo(Document otherDocument) {
-        return documentTitle.compareTo(otherDocument.getTitle());
+        return getTitle().compareTo(otherDocument.getTitle());
     }
 }
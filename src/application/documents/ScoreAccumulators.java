@@ -0,0 +1,87 @@
+
+package application.documents;
+
+import java.util.Arrays;
+
+/**
+ * ScoreAccumulators hold the accumulator A(d) of every document in a primitive array indexed by document ID, along
+ * with the list of documents touched by the current query. The array is kept between queries, and clearing it only
+ * resets the documents that were touched, so scoring a query neither boxes its scores nor allocates a map entry per
+ * document.
+ */
+public class ScoreAccumulators {
+
+    private double[] accumulators;
+    private int[] touchedDocumentIds;   // the documents with a non-zero accumulator, in the order they were touched
+    private int numOfTouched;
+
+    /**
+     * Constructs the accumulators of a corpus.
+     * @param numOfDocuments the number of document IDs of the corpus; greater IDs grow the accumulators as needed
+     */
+    public ScoreAccumulators(int numOfDocuments) {
+        accumulators = new double[Math.max(1, numOfDocuments)];
+        touchedDocumentIds = new int[16];
+    }
+
+    /**
+     * Adds a weight to the accumulator of the document.
+     * @param documentId the ID of the document
+     * @param weight the positive weight to add
+     */
+    public void add(int documentId, double weight) {
+        if (documentId >= accumulators.length) {
+            accumulators = Arrays.copyOf(accumulators, Math.max(documentId + 1, accumulators.length * 2));
+        }
+        // every weight is positive, so an accumulator of 0 was not yet touched by the query
+        if (accumulators[documentId] == 0) {
+            if (numOfTouched == touchedDocumentIds.length) {
+                touchedDocumentIds = Arrays.copyOf(touchedDocumentIds, numOfTouched * 2);
+            }
+            touchedDocumentIds[numOfTouched++] = documentId;
+        }
+        accumulators[documentId] += weight;
+    }
+
+    public double get(int documentId) {
+        return accumulators[documentId];
+    }
+
+    /**
+     * Replaces the accumulator of a document that was already touched.
+     */
+    public void set(int documentId, double accumulator) {
+        accumulators[documentId] = accumulator;
+    }
+
+    /**
+     * Returns the number of documents touched since the accumulators were last cleared.
+     */
+    public int getNumOfTouched() {
+        return numOfTouched;
+    }
+
+    public int getTouchedDocumentId(int index) {
+        return touchedDocumentIds[index];
+    }
+
+    /**
+     * Offers every touched document to the top documents.
+     * @param topDocuments the top documents, which should be reset beforehand
+     */
+    public void selectTop(TopDocuments topDocuments) {
+        for (int i = 0; i < numOfTouched; ++i) {
+            topDocuments.offer(touchedDocumentIds[i], accumulators[touchedDocumentIds[i]]);
+        }
+    }
+
+    /**
+     * Resets the accumulators of the touched documents, leaving the rest of the array as it already is.
+     */
+    public void clear() {
+        for (int i = 0; i < numOfTouched; ++i) {
+            accumulators[touchedDocumentIds[i]] = 0;
+        }
+        numOfTouched = 0;
+    }
+}
@@ -0,0 +1,147 @@
+
+package application.documents;
+
+/**
+ * TopDocuments keep the K highest scoring documents offered to them in a binary min-heap of primitive arrays, so the
+ * lowest of the top scores is always at hand and selecting the top K of N documents costs O(N log K). Documents with
+ * equal scores are ranked by ascending document ID, so the same query always ranks its documents the same way.
+ * <p>
+ * Once every document is offered, `sortDescending` sorts the heap in place into rank order; the documents can then be
+ * read by their rank until the heap is reset.
+ */
+public class TopDocuments {
+
+    private int[] documentIds;
+    private double[] scores;
+    private int capacity;
+    private int size;
+
+    public TopDocuments(int newCapacity) {
+        documentIds = new int[Math.max(1, newCapacity)];
+        scores = new double[Math.max(1, newCapacity)];
+        capacity = newCapacity;
+    }
+
+    /**
+     * Empties the heap so that it can keep a new number of documents, reusing its arrays where they are large enough.
+     * @param newCapacity the number of documents to keep
+     */
+    public void reset(int newCapacity) {
+        if (newCapacity > documentIds.length) {
+            documentIds = new int[newCapacity];
+            scores = new double[newCapacity];
+        }
+        capacity = Math.max(0, newCapacity);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the heap holds as many documents as it can keep.
+     */
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    /**
+     * Returns the lowest score of the documents kept so far, which a document must beat to be kept once the heap is
+     * full.
+     */
+    public double getMinScore() {
+        return scores[0];
+    }
+
+    /**
+     * Keeps the document if the heap is not yet full or the document ranks above the lowest document kept.
+     * @param documentId the ID of the document
+     * @param score the score of the document
+     */
+    public void offer(int documentId, double score) {
+        if (size < capacity) {
+            documentIds[size] = documentId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (capacity > 0 && ranksBelow(documentIds[0], scores[0], documentId, score)) {
+            documentIds[0] = documentId;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Sorts the documents kept into rank order, from the highest score to the lowest.
+     */
+    public void sortDescending() {
+        // moving the lowest document to the end of the shrinking heap leaves the array in descending order
+        for (int end = size - 1; end > 0; --end) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    /**
+     * Returns the ID of the document at the rank, once the documents are sorted.
+     */
+    public int getDocumentId(int rank) {
+        return documentIds[rank];
+    }
+
+    /**
+     * Returns the score of the document at the rank, once the documents are sorted.
+     */
+    public double getScore(int rank) {
+        return scores[rank];
+    }
+
+    private static boolean ranksBelow(int leftDocumentId, double leftScore, int rightDocumentId, double rightScore) {
+        return (leftScore < rightScore || (leftScore == rightScore && leftDocumentId > rightDocumentId));
+    }
+
+    private boolean ranksBelow(int left, int right) {
+        return ranksBelow(documentIds[left], scores[left], documentIds[right], scores[right]);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!ranksBelow(index, parent)) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int heapSize) {
+        while (true) {
+            int lowest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+
+            if (left < heapSize && ranksBelow(left, lowest)) {
+                lowest = left;
+            }
+            if (right < heapSize && ranksBelow(right, lowest)) {
+                lowest = right;
+            }
+            if (lowest == index) {
+                return;
+            }
+            swap(index, lowest);
+            index = lowest;
+        }
+    }
+
+    private void swap(int left, int right) {
+        int documentId = documentIds[left];
+        double score = scores[left];
+
+        documentIds[left] = documentIds[right];
+        scores[left] = scores[right];
+        documentIds[right] = documentId;
+        scores[right] = score;
+    }
+}
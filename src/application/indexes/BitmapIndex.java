@@ -0,0 +1,30 @@
+
+package application.indexes;
+
+/**
+ * A BitmapIndex keeps the documents of its dense terms as compressed bitmaps, so that boolean queries over dense
+ * terms can combine their bitmaps instead of merging their postings.
+ */
+public interface BitmapIndex {
+
+    /**
+     * Returns the documents containing the term as a bitmap.
+     * @param term the term to find the documents of
+     * @return the bitmap of the term, or null if the term is not dense enough to have one
+     */
+    DocumentBitmap getDocumentBitmap(String term);
+
+    /**
+     * Returns the bitmap of the term in any index, which is null if the index does not store bitmaps.
+     * @param index the index to read from
+     * @param term the term to find the documents of
+     * @return the bitmap of the term, or null if there is none
+     */
+    static DocumentBitmap getDocumentBitmap(Index<String, Posting> index, String term) {
+        if (index instanceof BitmapIndex bitmapIndex) {
+            return bitmapIndex.getDocumentBitmap(term);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,92 @@
+
+package application.indexes;
+
+/**
+ * A BitmapPostingsIterator moves through the documents of a bitmap that was combined from the bitmaps of several
+ * terms. Bitmaps only hold document IDs, so the term frequency and positions of each document are read from the
+ * postings of the terms, and only once they are asked for; the postings of documents that are skipped are never
+ * decoded.
+ */
+public class BitmapPostingsIterator implements PostingsIterator {
+
+    private final DocumentBitmap documentBitmap;
+    private final PostingsIterator[] sources;  // the postings supplying the posting of each document, in order
+    private final int documentFrequency;
+    private int documentId;
+    private int currentSource;  // the source on the current document, or -1 if none was looked for yet
+
+    /**
+     * Constructs an iterator over the documents of the bitmap.
+     * @param newDocumentBitmap the documents to move through
+     * @param newSources the postings to read the posting of each document from; the first source found on the
+     *                   document supplies its posting, so every document must be in at least one of them
+     */
+    public BitmapPostingsIterator(DocumentBitmap newDocumentBitmap, PostingsIterator[] newSources) {
+        documentBitmap = newDocumentBitmap;
+        sources = newSources;
+        documentFrequency = newDocumentBitmap.getCardinality();
+        documentId = -1;
+        currentSource = -1;
+    }
+
+    @Override
+    public int docId() {
+        return documentId;
+    }
+
+    @Override
+    public int nextDoc() {
+        return advance(documentId + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (documentId >= target) {
+            return documentId;
+        }
+        documentId = documentBitmap.nextDocumentId(target);
+        currentSource = -1;
+
+        return documentId;
+    }
+
+    @Override
+    public int freq() {
+        return findSource().freq();
+    }
+
+    @Override
+    public int[] positions() {
+        return findSource().positions();
+    }
+
+    /**
+     * Returns the exact number of documents in the bitmap.
+     */
+    @Override
+    public int getDocumentFrequency() {
+        return documentFrequency;
+    }
+
+    /**
+     * Returns the documents the iterator moves through, if it moves through a bitmap.
+     * @param postings any iterator
+     * @return the bitmap of the iterator, or null if it is not a BitmapPostingsIterator
+     */
+    public static DocumentBitmap getDocumentBitmap(PostingsIterator postings) {
+        return (postings instanceof BitmapPostingsIterator bitmapPostings ? bitmapPostings.documentBitmap : null);
+    }
+
+    private PostingsIterator findSource() {
+        if (currentSource < 0) {
+            // every source only ever moves forward, since the documents are read in ascending order
+            currentSource = 0;
+            while (currentSource < sources.length - 1 && sources[currentSource].advance(documentId) != documentId) {
+                ++currentSource;
+            }
+            sources[currentSource].advance(documentId);
+        }
+
+        return sources[currentSource];
+    }
+}
@@ -3,76 +3,225 @@ package application.indexes;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.*;
 
-public class BiwordIndex implements Index<String, Posting> {
+public class BiwordIndex implements Index<String, Posting>, IterableIndex {
 
-    private final Map<String, List<Posting>> index;
+    // rough heap cost of each biword's table slot, key and buffer, used to decide when a block should be flushed
+    private static final int BIWORD_BYTES = 48;
+    private static final int INITIAL_TABLE_CAPACITY = 1024;
+
+    private final TermDictionary dictionary;
+    private final List<PostingsBuffer> index;  // the postings of each biword, indexed by biword ID
+    private long[] biwordKeys;      // the pair of term IDs of each biword, indexed by biword ID
+    private long[] tableKeys;       // open addressing table of term ID pairs -> biword IDs
+    private int[] tableValues;      // biword ID + 1 of each table slot, or 0 if the slot is empty
     private int lastDocID = 0;
-    private String lastToken = "";
+    private int lastTermId = TermDictionary.NO_TERM;
+    private long estimatedSize;   // the approximate number of heap bytes used by the postings
 
     public BiwordIndex() {
-        index = new HashMap<>();
+        this(new TermDictionary());
+    }
+
+    /**
+     * Constructs an empty biword index whose terms are assigned IDs by the given dictionary.
+     * @param newDictionary the dictionary of term IDs, which may be shared with other indexes
+     */
+    public BiwordIndex(TermDictionary newDictionary) {
+        dictionary = newDictionary;
+        index = new ArrayList<>();
+        biwordKeys = new long[INITIAL_TABLE_CAPACITY / 2];
+        tableKeys = new long[INITIAL_TABLE_CAPACITY];
+        tableValues = new int[INITIAL_TABLE_CAPACITY];
     }
 
     @Override
     public List<Posting> getPostings(String term) {
-        // return an empty list if the term doesn't exist in the map
-        if (!index.containsKey(term))
+        int biwordId = findBiwordId(term);
+
+        // return an empty list if the term doesn't exist in the index
+        if (biwordId == TermDictionary.NO_TERM)
             return new ArrayList<>();
 
-        return index.get(term);
+        return index.get(biwordId).toPostings(false);
     }
 
     @Override
     public List<Posting> getPositionlessPostings(String term) {
-        // return an empty list if the term doesn't exist in the map
-        if (!index.containsKey(term))
-            return new ArrayList<>();
+        // biwords do not store positions
+        return getPostings(term);
+    }
+
+    @Override
+    public PostingsIterator getPostingsIterator(String term, boolean withPositions) {
+        int biwordId = findBiwordId(term);
+
+        // return an empty iterator if the term doesn't exist in the index
+        if (biwordId == TermDictionary.NO_TERM)
+            return new ListPostingsIterator(new ArrayList<>());
 
-        return index.get(term);
+        return index.get(biwordId).iterator(false);
     }
 
     @Override
     public List<String> getVocabulary() {
+        List<String> vocabulary = new ArrayList<>(index.size());
+        for (int biwordId = 0; biwordId < index.size(); ++biwordId) {
+            vocabulary.add(formatBiword(biwordKeys[biwordId]));
+        }
         // remember to return a sorted vocabulary
-        List<String> vocabulary = new ArrayList<>(index.keySet().stream().toList());
         Collections.sort(vocabulary);
 
         return vocabulary;
     }
 
     public void addTerm(String term, int docId) {
+        addTerm(dictionary.getOrAddId(term), docId);
+    }
+
+    public void addTerm(int termId, int docId) {
         // if the docID is not the previous doc's ID, then update
         if (docId != lastDocID) {
-            lastToken = term;
+            lastTermId = termId;
             lastDocID = docId;
         }
         else {
-            // format the term to be inputted into the index
-            String finalTerm = String.format("%s %s", lastToken, term);
-            List<Posting> existingPostings = index.get(finalTerm);
+            // a biword without a previous term pairs the term with the empty string
+            if (lastTermId == TermDictionary.NO_TERM) {
+                lastTermId = dictionary.getOrAddId("");
+            }
+            int biwordId = getOrAddBiwordId(toKey(lastTermId, termId));
+            PostingsBuffer existingPostings = index.get(biwordId);
 
-            // term doesn't exist in the vocabulary yet, so will now need to add it
-            if (existingPostings == null) {
-                ArrayList<Posting> newPostings = new ArrayList<>(){{
-                    add(new Posting(docId, new ArrayList<>()));
-                }};
-                index.put(finalTerm, newPostings);
+            // the buffer only adds the doc ID if it is not already the latest posting of the term
+            int previousCapacity = existingPostings.getCapacity();
+            existingPostings.add(docId, 0);
+            estimatedSize += (long) Integer.BYTES * (existingPostings.getCapacity() - previousCapacity);
+            lastTermId = termId;
+        }
+    }
+
+    /**
+     * Appends the postings of another biword index whose document IDs all follow the document IDs of this index.
+     * @param nextIndex the biword index to append to this index
+     */
+    public void merge(BiwordIndex nextIndex) {
+        for (int nextBiwordId = 0; nextBiwordId < nextIndex.index.size(); ++nextBiwordId) {
+            // the next index may assign different IDs, so map its terms into our dictionary
+            long nextKey = nextIndex.biwordKeys[nextBiwordId];
+            long key = toKey(remapTermId(nextIndex, (int) (nextKey >>> 32)), remapTermId(nextIndex, (int) nextKey));
+            int existingSize = index.size();
+            int biwordId = getOrAddBiwordId(key);
 
+            // since the next index's documents come after ours, appending keeps the postings sorted
+            if (biwordId == existingSize) {
+                index.set(biwordId, nextIndex.index.get(nextBiwordId));
             } else {
-                // get the last index of the existing postings
-                int latestIndex = existingPostings.size() - 1;
-                int latestDocumentId = existingPostings.get(latestIndex).getDocumentId();
-
-                // if the document ID is not in the index, then add the doc ID to the term
-                if (latestDocumentId != docId) {
-                    existingPostings.add(new Posting(docId, new ArrayList<>()));
-                }
+                index.get(biwordId).append(nextIndex.index.get(nextBiwordId));
             }
-            lastToken = term;
         }
+        lastDocID = nextIndex.lastDocID;
+        lastTermId = remapTermId(nextIndex, nextIndex.lastTermId);
+        estimatedSize += nextIndex.estimatedSize;
+    }
+
+    /**
+     * Returns the approximate number of heap bytes used by the index's postings.
+     */
+    public long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    private int remapTermId(BiwordIndex otherIndex, int otherTermId) {
+        if (otherTermId == TermDictionary.NO_TERM || otherIndex.dictionary == dictionary) {
+            return otherTermId;
+        }
+
+        return dictionary.getOrAddId(otherIndex.dictionary.getTerm(otherTermId));
+    }
+
+    private int findBiwordId(String biword) {
+        // biwords are formatted as the two terms separated by a space
+        int separator = biword.indexOf(' ');
+        if (separator < 0) {
+            return TermDictionary.NO_TERM;
+        }
+        int firstTermId = dictionary.getId(biword.substring(0, separator));
+        int secondTermId = dictionary.getId(biword.substring(separator + 1));
+        if (firstTermId == TermDictionary.NO_TERM || secondTermId == TermDictionary.NO_TERM) {
+            return TermDictionary.NO_TERM;
+        }
+        long key = toKey(firstTermId, secondTermId);
+
+        for (int slot = findSlot(key); tableValues[slot] != 0; slot = (slot + 1) & (tableKeys.length - 1)) {
+            if (tableKeys[slot] == key) {
+                return tableValues[slot] - 1;
+            }
+        }
+
+        return TermDictionary.NO_TERM;
+    }
+
+    private int getOrAddBiwordId(long key) {
+        int slot = findSlot(key);
+
+        // linearly probe until the key or an empty slot is found
+        while (tableValues[slot] != 0) {
+            if (tableKeys[slot] == key) {
+                return tableValues[slot] - 1;
+            }
+            slot = (slot + 1) & (tableKeys.length - 1);
+        }
+
+        int biwordId = index.size();
+        tableKeys[slot] = key;
+        tableValues[slot] = biwordId + 1;
+        if (biwordId == biwordKeys.length) {
+            biwordKeys = Arrays.copyOf(biwordKeys, biwordKeys.length * 2);
+        }
+        biwordKeys[biwordId] = key;
+
+        PostingsBuffer newPostings = new PostingsBuffer(false);
+        index.add(newPostings);
+        estimatedSize += BIWORD_BYTES + ((long) Integer.BYTES * newPostings.getCapacity());
+
+        // keep the table at most half full so that probe sequences stay short
+        if (index.size() * 2 > tableKeys.length) {
+            resizeTable();
+        }
+
+        return biwordId;
+    }
+
+    private void resizeTable() {
+        tableKeys = new long[tableKeys.length * 2];
+        tableValues = new int[tableValues.length * 2];
+
+        for (int biwordId = 0; biwordId < index.size(); ++biwordId) {
+            int slot = findSlot(biwordKeys[biwordId]);
+            while (tableValues[slot] != 0) {
+                slot = (slot + 1) & (tableKeys.length - 1);
+            }
+            tableKeys[slot] = biwordKeys[biwordId];
+            tableValues[slot] = biwordId + 1;
+        }
+        estimatedSize += (long) tableKeys.length * (Long.BYTES + Integer.BYTES) / 2;
+    }
+
+    private int findSlot(long key) {
+        // spread the bits of both term IDs across the table
+        long hash = key * 0x9E3779B97F4A7C15L;
+
+        return (int) (hash >>> 32) & (tableKeys.length - 1);
+    }
+
+    private String formatBiword(long key) {
+        return dictionary.getTerm((int) (key >>> 32)) + " " + dictionary.getTerm((int) key);
+    }
+
+    private static long toKey(int firstTermId, int secondTermId) {
+        return ((long) firstTermId << 32) | (secondTermId & 0xFFFFFFFFL);
     }
 }
@@ -0,0 +1,292 @@
+
+package application.indexes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A BlockPostingsIterator reads the postings of a term written in any of the block layouts of `PostingsFormat`.
+ * The skip table is searched in place, so advancing to a document ID jumps straight to the only block that can
+ * contain it; blocks that are skipped over are never decoded. Positions are only decoded for the postings whose
+ * positions are asked for, and when they are kept in their own file, they are only touched by iterators that read
+ * positions.
+ * <p>
+ * The postings are decoded straight from views of the mapped files into arrays that are reused for every block, so
+ * iterators over the same files never share any state and may be used by different threads at once.
+ */
+public class BlockPostingsIterator implements PostingsIterator {
+
+    private final MappedFile positionsFile;     // the positions file, if positions are kept apart
+    private final boolean hasPositions;     // whether the postings file stores term frequencies and positions
+    private final boolean withPositions;    // whether positions can be read, rather than only their number
+    private final int documentFrequency;
+    private final int numOfBlocks;
+    // the skip table holds the last document ID of each block, the offset of its end from the start of the first
+    // block and, if positions are kept apart, the offset of the end of its positions
+    private final ByteBuffer skipTable;
+    private final int skipEntrySize;
+    private final ByteBuffer blocks;
+    private final long firstPositionsPosition;
+    private ByteBuffer positions;   // the positions of every block, which are only mapped once they are needed
+    private final int[] documentIds;
+    private final int[] termFrequencies;
+    private final int[] positionsOffsets;   // the offset of each posting's positions within the positions
+    private int positionsBlock;     // the block whose positions offsets were last computed
+    private int currentBlock;
+    private int blockSize;
+    private int currentIndex;   // the index of the current posting within the current block
+    private PostingsFormat.Decoder positionDecoder;
+    private int nextPositionsIndex;     // the index of the posting whose positions the decoder reaches next
+    private int documentId;
+    private int[] positionsBuffer;
+    private boolean positionsDecoded;   // whether the positions buffer holds the positions of the current posting
+    private int numOfBlocksRead;
+
+    /**
+     * Constructs an iterator over the postings of the term starting at the byte position.
+     * @param postingsFile the postings file
+     * @param newPositionsFile the positions file of the layouts that keep positions apart, or null if the positions
+     *                         are written within the blocks or not at all
+     * @param version the `PostingsFormat` version of the files
+     * @param bytePosition the byte position of the term's postings
+     * @param newHasPositions whether the postings file stores positions, which biword files do not
+     * @param newWithPositions whether positions can be read, rather than only their number
+     */
+    public BlockPostingsIterator(MappedFile postingsFile, MappedFile newPositionsFile, int version, long bytePosition,
+                                 boolean newHasPositions, boolean newWithPositions) {
+        positionsFile = (newHasPositions ? newPositionsFile : null);
+        hasPositions = newHasPositions;
+        withPositions = newWithPositions;
+        documentIds = new int[PostingsFormat.BLOCK_SIZE];
+        termFrequencies = new int[PostingsFormat.BLOCK_SIZE];
+        positionsOffsets = (positionsFile != null && withPositions ? new int[PostingsFormat.BLOCK_SIZE] : null);
+        positionsBuffer = new int[0];
+        currentBlock = -1;
+        positionsBlock = -1;
+        documentId = -1;
+
+        documentFrequency = postingsFile.getInt(bytePosition);
+        long skipTablePosition = bytePosition + Integer.BYTES;
+        if (positionsFile != null && version >= PostingsFormat.LARGE_OFFSETS) {
+            firstPositionsPosition = postingsFile.getLong(skipTablePosition);
+            skipTablePosition += Long.BYTES;
+        } else if (positionsFile != null) {
+            firstPositionsPosition = postingsFile.getInt(skipTablePosition);
+            skipTablePosition += Integer.BYTES;
+        } else {
+            firstPositionsPosition = 0;
+        }
+        numOfBlocks = (documentFrequency + PostingsFormat.BLOCK_SIZE - 1) / PostingsFormat.BLOCK_SIZE;
+        skipEntrySize = (positionsFile != null ? 3 : 2) * Integer.BYTES;
+        skipTable = postingsFile.slice(skipTablePosition, numOfBlocks * skipEntrySize);
+
+        int blocksLength = (numOfBlocks > 0 ? getBlockEndOffset(numOfBlocks - 1) : 0);
+        blocks = postingsFile.slice(skipTablePosition + skipTable.capacity(), blocksLength);
+    }
+
+    @Override
+    public int docId() {
+        return documentId;
+    }
+
+    @Override
+    public int nextDoc() {
+        if (documentId == NO_MORE_DOCS) {
+            return documentId;
+        }
+        // the next posting is usually within the current block, so the skip table can be left alone
+        if (currentBlock >= 0 && currentIndex + 1 < blockSize) {
+            ++currentIndex;
+            positionsDecoded = false;
+            documentId = documentIds[currentIndex];
+            return documentId;
+        }
+
+        return advance(documentId + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (documentId >= target) {
+            return documentId;
+        }
+
+        int block = Math.max(currentBlock, 0);
+        if (block >= numOfBlocks || getLastDocumentId(block) < target) {
+            block = findBlock(block + 1, target);
+        }
+        if (block >= numOfBlocks) {
+            currentBlock = numOfBlocks;
+            documentId = NO_MORE_DOCS;
+            return documentId;
+        }
+        if (block != currentBlock) {
+            readBlock(block);
+        }
+
+        // the skip table guarantees that the block has a posting at or past the target
+        currentIndex = Galloping.search(documentIds, currentIndex, blockSize, target);
+        positionsDecoded = false;
+        documentId = documentIds[currentIndex];
+
+        return documentId;
+    }
+
+    @Override
+    public int freq() {
+        // biword postings do not store term frequencies
+        return (hasPositions ? termFrequencies[currentIndex] : 0);
+    }
+
+    @Override
+    public int[] positions() {
+        if (!hasPositions) {
+            return positionsBuffer;
+        }
+        if (!withPositions) {
+            throw new IllegalStateException("The iterator was opened without positions");
+        }
+        if (!positionsDecoded) {
+            decodePositions();
+        }
+
+        return positionsBuffer;
+    }
+
+    @Override
+    public int getDocumentFrequency() {
+        return documentFrequency;
+    }
+
+    /**
+     * Returns the number of blocks this iterator has decoded so far.
+     */
+    public int getNumOfBlocksRead() {
+        return numOfBlocksRead;
+    }
+
+    private int getLastDocumentId(int block) {
+        return skipTable.getInt(block * skipEntrySize);
+    }
+
+    private int getBlockEndOffset(int block) {
+        return skipTable.getInt(block * skipEntrySize + Integer.BYTES);
+    }
+
+    private int getPositionsEndOffset(int block) {
+        return skipTable.getInt(block * skipEntrySize + 2 * Integer.BYTES);
+    }
+
+    /**
+     * Gallops through the skip table for the first block at or after the starting block that ends at or past the
+     * target, returning the number of blocks if there is none. Targets are usually close ahead, so the search
+     * probes 1, 2, 4, ... blocks ahead before binary searching the last gap, rather than the entire table.
+     */
+    private int findBlock(int startBlock, int target) {
+        int low = startBlock;
+        int high = numOfBlocks;
+        int step = 1;
+
+        while (low < numOfBlocks && getLastDocumentId(low) < target) {
+            int probe = low + step;
+            if (probe >= numOfBlocks || getLastDocumentId(probe) >= target) {
+                high = Math.min(probe, numOfBlocks);
+                ++low;
+                break;
+            }
+            low = probe;
+            step <<= 1;
+        }
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getLastDocumentId(middle) < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private void readBlock(int block) {
+        int offset = (block == 0 ? 0 : getBlockEndOffset(block - 1));
+
+        // only the last block may be smaller than the block size
+        blockSize = (block < numOfBlocks - 1 ? PostingsFormat.BLOCK_SIZE :
+                documentFrequency - block * PostingsFormat.BLOCK_SIZE);
+        offset = PostingsFormat.readPacked(blocks, offset, documentIds, blockSize);
+        int latestDocumentId = (block == 0 ? 0 : getLastDocumentId(block - 1));
+        for (int i = 0; i < blockSize; ++i) {
+            latestDocumentId += documentIds[i];
+            documentIds[i] = latestDocumentId;
+        }
+
+        if (hasPositions) {
+            offset = PostingsFormat.readPacked(blocks, offset, termFrequencies, blockSize);
+
+            if (positionsFile == null) {
+                if (positionDecoder == null) {
+                    positionDecoder = new PostingsFormat.Decoder(blocks, offset);
+                } else {
+                    positionDecoder.moveTo(offset);
+                }
+                nextPositionsIndex = 0;
+            } else if (withPositions) {
+                // the byte lengths of each posting's positions, which only matter when positions are decoded
+                PostingsFormat.readPacked(blocks, offset, positionsOffsets, blockSize);
+                positionsBlock = -1;
+            }
+        }
+        currentBlock = block;
+        currentIndex = 0;
+        ++numOfBlocksRead;
+    }
+
+    /**
+     * Turns the byte lengths of each posting's positions in the current block into their offsets within the
+     * positions of the term.
+     */
+    private void findBlockPositions() {
+        if (positions == null) {
+            positions = positionsFile.slice(firstPositionsPosition, getPositionsEndOffset(numOfBlocks - 1));
+            positionDecoder = new PostingsFormat.Decoder(positions, 0);
+        }
+        int offset = (currentBlock == 0 ? 0 : getPositionsEndOffset(currentBlock - 1));
+
+        for (int i = 0; i < blockSize; ++i) {
+            int positionsLength = positionsOffsets[i];
+            positionsOffsets[i] = offset;
+            offset += positionsLength;
+        }
+        positionsBlock = currentBlock;
+    }
+
+    private void decodePositions() {
+        int termFrequency = termFrequencies[currentIndex];
+        PostingsFormat.Decoder decoder;
+
+        if (positionsFile != null) {
+            if (positionsBlock != currentBlock) {
+                findBlockPositions();
+            }
+            decoder = positionDecoder;
+            decoder.moveTo(positionsOffsets[currentIndex]);
+        } else {
+            // the positions of the postings that were skipped over are still in the way
+            for (; nextPositionsIndex < currentIndex; ++nextPositionsIndex) {
+                positionDecoder.skipPositions(termFrequencies[nextPositionsIndex]);
+            }
+            ++nextPositionsIndex;
+            decoder = positionDecoder;
+        }
+        if (positionsBuffer.length < termFrequency) {
+            positionsBuffer = new int[Math.max(termFrequency, positionsBuffer.length * 2)];
+        }
+        decoder.startPositions();
+        for (int i = 0; i < termFrequency; ++i) {
+            positionsBuffer[i] = decoder.nextPosition();
+        }
+        positionsDecoded = true;
+    }
+}
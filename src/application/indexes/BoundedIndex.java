@@ -0,0 +1,36 @@
+
+package application.indexes;
+
+/**
+ * A BoundedIndex knows an upper bound of the normalized weight of each term, so that document-at-a-time ranked
+ * retrieval can skip the documents that could not score high enough to be among the top results.
+ */
+public interface BoundedIndex {
+
+    /**
+     * The bound of a term in an index without bounds; since L(d) is the length of a vector holding w(d,t), no
+     * document's w(d,t) / L(d) can ever be greater than 1.
+     */
+    double NO_BOUND = 1;
+
+    /**
+     * Returns an upper bound of w(d,t) / L(d) over every document d containing the term.
+     * @param term the term to find the bound of
+     * @return the bound of the term, or 0 if the term is not in the vocabulary
+     */
+    double getMaxWeight(String term);
+
+    /**
+     * Returns the bound of the term in any index, which is `NO_BOUND` if the index does not store bounds.
+     * @param index the index to read from
+     * @param term the term to find the bound of
+     * @return the bound of the term
+     */
+    static double getMaxWeight(Index<String, Posting> index, String term) {
+        if (index instanceof BoundedIndex boundedIndex) {
+            return boundedIndex.getMaxWeight(term);
+        }
+
+        return NO_BOUND;
+    }
+}
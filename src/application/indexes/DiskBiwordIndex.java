@@ -1,28 +1,35 @@
 
 package application.indexes;
 
-import org.apache.jdbm.*;
-
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 
-public class DiskBiwordIndex implements Index<String, Posting>, Closeable {
+public class DiskBiwordIndex implements Index<String, Posting>, IterableIndex, Closeable {
 
-    private final String pathToBTreeBin;    // the String path to the B+ Tree mappings of terms -> byte positions
-    private final BTree<String, Integer> bTree;
-    private RandomAccessFile randomAccessPosting;   // keep the Posting file open for getPosting() calls
+    private final DiskTermDictionary termDictionary;    // the sorted mappings of terms -> byte positions
+    private MappedFile postingsFile;    // keep the Posting file mapped for getPosting() calls
+    private int postingsVersion;    // the `PostingsFormat` version of the postings file
+    private PostingsFormat.Header header;   // the layout and statistics of the postings, if the version has them
 
-    public DiskBiwordIndex(BTree<String, Integer> inputBTree, String newPathToBTreeBin, String newPathToPostingsBin) {
-        bTree = inputBTree;
-        pathToBTreeBin = newPathToBTreeBin;
+    public DiskBiwordIndex(DiskTermDictionary inputTermDictionary, String newPathToPostingsBin) {
+        termDictionary = inputTermDictionary;
 
         try {
             // be able to read from the postings file and extract the index data
-            randomAccessPosting = new RandomAccessFile(newPathToPostingsBin, "r");
+            postingsFile = new MappedFile(newPathToPostingsBin);
+            postingsVersion = PostingsFormat.readVersion(postingsFile);
+            if (postingsVersion >= PostingsFormat.LARGE_OFFSETS) {
+                // the postings may be rolled across several files, which are mapped as one
+                header = new PostingsFormat.Header(postingsFile);
+                postingsFile.close();
+                postingsFile = header.openPostingsFiles(newPathToPostingsBin);
+            }
         } catch (FileNotFoundException e) {
             System.err.println("Index files were not found; please restart the program and build an index.");
             System.exit(0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -35,30 +42,31 @@ public class DiskBiwordIndex implements Index<String, Posting>, Closeable {
     public List<Posting> getPostings(String term) {
         List<Posting> resultPostings = new ArrayList<>();
 
-        try {
-            // retrieve the byte position value for the term key within the B+ Tree
-            int bytePosition = bTree.get(term);
-            // jump to the offset containing the term's postings
-            randomAccessPosting.seek(bytePosition);
-            // the current int value at the offset is the size of the postings list
-            int postingsSize = randomAccessPosting.readInt();
-            int latestDocumentId = 0;
-
-            // iterate through all postings for the term
-            for (int i = 0; i < postingsSize; ++i) {
-                // first document ID is as-is; the rest are gaps
-                int currentDocumentId = randomAccessPosting.readInt() + latestDocumentId;
-                latestDocumentId = currentDocumentId - latestDocumentId;
-
-                Posting newPosting = new Posting(currentDocumentId, new ArrayList<>());
-                resultPostings.add(newPosting);
-            }
+        // retrieve the byte position of the term's postings from the term dictionary
+        long bytePosition = termDictionary.getPostingsPosition(term);
+        if (bytePosition < 0) {
+            // the term does not exist in the vocabulary
+            return resultPostings;
+        }
+        if (postingsVersion >= PostingsFormat.BLOCKED) {
+            return readBlockedPostings(bytePosition);
+        }
+        // the int value at the term's offset is the size of the postings list
+        int postingsSize = postingsFile.getInt(bytePosition);
+        if (postingsVersion != PostingsFormat.LEGACY) {
+            return decodePostings(bytePosition, postingsSize);
+        }
+        int latestDocumentId = 0;
 
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (NullPointerException e) {
-            // bTree.get(term) returning null means that the term does not exist in the vocabulary
-            return new ArrayList<>();
+        // iterate through all postings for the term
+        for (int i = 0; i < postingsSize; ++i) {
+            // first document ID is as-is; the rest are gaps
+            int currentDocumentId = postingsFile.getInt(bytePosition + (i + 1L) * Integer.BYTES) +
+                    latestDocumentId;
+            latestDocumentId = currentDocumentId - latestDocumentId;
+
+            Posting newPosting = new Posting(currentDocumentId, new ArrayList<>());
+            resultPostings.add(newPosting);
         }
 
         return resultPostings;
@@ -73,72 +81,96 @@ public class DiskBiwordIndex implements Index<String, Posting>, Closeable {
     public List<Posting> getPositionlessPostings(String term) {
         List<Posting> resultPostings = new ArrayList<>();
 
-        try {
-            // retrieve the byte position value for the term key within the B+ Tree
-            int bytePosition = bTree.get(term);
-            // jump to the offset containing the term's postings
-            randomAccessPosting.seek(bytePosition);
-            // the current int value at the offset is the size of the postings list
-            int postingsSize = randomAccessPosting.readInt();
-            int latestDocumentId = 0;
-
-            // iterate through all postings for the term
-            for (int i = 0; i < postingsSize; ++i) {
-                // first document ID is as-is; the rest are gaps
-                int currentDocumentId = randomAccessPosting.readInt() + latestDocumentId;
-                latestDocumentId = currentDocumentId - latestDocumentId;
-
-                Posting newPosting = new Posting(currentDocumentId, new ArrayList<>());
-                resultPostings.add(newPosting);
-            }
+        // retrieve the byte position of the term's postings from the term dictionary
+        long bytePosition = termDictionary.getPostingsPosition(term);
+        if (bytePosition < 0) {
+            // the term does not exist in the vocabulary
+            return resultPostings;
+        }
+        if (postingsVersion >= PostingsFormat.BLOCKED) {
+            return readBlockedPostings(bytePosition);
+        }
+        // the int value at the term's offset is the size of the postings list
+        int postingsSize = postingsFile.getInt(bytePosition);
+        if (postingsVersion != PostingsFormat.LEGACY) {
+            return decodePostings(bytePosition, postingsSize);
+        }
+        int latestDocumentId = 0;
 
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (NullPointerException e) {
-            // bTree.get(term) returning null means that the term does not exist in the vocabulary
-            return new ArrayList<>();
+        // iterate through all postings for the term
+        for (int i = 0; i < postingsSize; ++i) {
+            // first document ID is as-is; the rest are gaps
+            int currentDocumentId = postingsFile.getInt(bytePosition + (i + 1L) * Integer.BYTES) +
+                    latestDocumentId;
+            latestDocumentId = currentDocumentId - latestDocumentId;
+
+            Posting newPosting = new Posting(currentDocumentId, new ArrayList<>());
+            resultPostings.add(newPosting);
         }
 
         return resultPostings;
     }
 
-    @Override
-    public List<String> getVocabulary() {
-        List<String> vocabulary = new ArrayList<>();
-
-        try (FileInputStream fileStream = new FileInputStream(pathToBTreeBin);
-             BufferedInputStream bufferStream = new BufferedInputStream(fileStream);
-             DataInputStream dataStream = new DataInputStream(bufferStream)) {
-            // write the total size of the vocabulary
-            int vocabularySize = dataStream.readInt();
+    /**
+     * Decodes the variable-byte postings of the biword at the byte position of the postings file.
+     * @param bytePosition the byte position of the biword's postings
+     * @param postingsSize the document frequency of the biword
+     * @return the biword's list of postings
+     */
+    private List<Posting> decodePostings(long bytePosition, int postingsSize) {
+        PostingsFormat.Decoder decoder = new PostingsFormat.Decoder(
+                PostingsFormat.readEncodedPostings(postingsFile, bytePosition), 0);
+        List<Posting> resultPostings = new ArrayList<>(postingsSize);
 
-            // traverse through the vocabulary terms
-            for (int i = 0; i < vocabularySize; ++i) {
-                // read each String byte length normally
-                int currentBytesLength = dataStream.readInt();
-                StringBuilder term = new StringBuilder();
+        for (int i = 0; i < postingsSize; ++i) {
+            resultPostings.add(new Posting(decoder.nextDocumentId(), new ArrayList<>()));
+        }
 
-                // convert each byte to a character and build to our original term
-                for (int j = 0; j < currentBytesLength; ++j) {
-                    term.append((char) dataStream.readByte());
-                }
+        return resultPostings;
+    }
 
-                vocabulary.add(term.toString());
+    /**
+     * Decodes every block of the biword's postings.
+     * @param bytePosition the byte position of the biword's postings
+     * @return the biword's list of postings
+     */
+    private List<Posting> readBlockedPostings(long bytePosition) {
+        // biwords have no positions, so their postings are only document IDs
+        return PostingsIterator.toPostings(new BlockPostingsIterator(postingsFile, null, postingsVersion,
+                bytePosition, false, false), false);
+    }
 
-                // after reading the term bytes, skip the next byte position since we only need the vocabulary
-                dataStream.skipBytes(4);
-            }
+    @Override
+    public PostingsIterator getPostingsIterator(String term, boolean withPositions) {
+        long bytePosition = termDictionary.getPostingsPosition(term);
 
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (bytePosition < 0) {
+            return new ListPostingsIterator(new ArrayList<>());
+        }
+        // older formats have no skip table, so their postings are read in full
+        if (postingsVersion < PostingsFormat.BLOCKED) {
+            return new ListPostingsIterator(getPostings(term));
         }
+        return new BlockPostingsIterator(postingsFile, null, postingsVersion, bytePosition, false, false);
+    }
 
-        // vocabulary should already be sorted
-        return vocabulary;
+    /**
+     * Returns the layout of the postings files and the statistics of the corpus they were written from.
+     * @return the header, or null if the postings were written before the `PostingsFormat.LARGE_OFFSETS` layout
+     */
+    public PostingsFormat.Header getHeader() {
+        return header;
+    }
+
+    @Override
+    public List<String> getVocabulary() {
+        // vocabulary is already sorted within the term dictionary
+        return termDictionary.getVocabulary();
     }
 
     @Override
     public void close() throws IOException {
-        randomAccessPosting.close();
+        postingsFile.close();
+        termDictionary.close();
     }
 }
@@ -0,0 +1,131 @@
+
+package application.indexes;
+
+import java.io.*;
+
+/**
+ * A DiskDocumentBitmaps reads the document bitmaps of the dense terms of an on-disk index. Only terms found in at
+ * least one of every `DENSITY` documents have a bitmap, since only their postings are long enough that merging them
+ * costs more than combining their bitmaps.
+ * <p>
+ * The file begins with a header of a magic number, the version, the number of terms in the term dictionary and the
+ * number of bitmaps, followed by a table of the dictionary ordinal and the byte position of each bitmap in ascending
+ * order of ordinal, and then the bitmaps themselves.
+ */
+public class DiskDocumentBitmaps implements Closeable {
+
+    /**
+     * Terms found in at least one of every `DENSITY` documents of a corpus have a bitmap.
+     */
+    public static final int DENSITY = 16;
+
+    /**
+     * Terms found in fewer documents never have a bitmap, however small the corpus is.
+     */
+    public static final int MIN_DOCUMENT_FREQUENCY = 1024;
+
+    // spells "DBMP", so that other index files are not mistaken for bitmaps
+    private static final int MAGIC_NUMBER = 0x44424D50;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    private static final int ENTRY_SIZE = Integer.BYTES + Long.BYTES;
+
+    private final MappedFile bitmapsFile;
+    private final int numOfTerms;
+    private final int numOfBitmaps;
+
+    public DiskDocumentBitmaps(String pathToDocBitmapsBin) throws IOException {
+        bitmapsFile = new MappedFile(pathToDocBitmapsBin);
+
+        if (bitmapsFile.length() < HEADER_SIZE || bitmapsFile.getInt(0) != MAGIC_NUMBER) {
+            bitmapsFile.close();
+            throw new IOException("`" + pathToDocBitmapsBin + "` is not a document bitmaps file; please rebuild the " +
+                    "index.");
+        }
+        int version = bitmapsFile.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            bitmapsFile.close();
+            throw new IOException("Unsupported document bitmaps version " + version);
+        }
+        numOfTerms = bitmapsFile.getInt(2L * Integer.BYTES);
+        numOfBitmaps = bitmapsFile.getInt(3L * Integer.BYTES);
+    }
+
+    /**
+     * Returns whether a term found in the number of documents is dense enough to have a bitmap.
+     * @param documentFrequency the number of documents containing the term
+     * @param numOfDocuments the number of documents in the corpus
+     */
+    public static boolean isDense(int documentFrequency, int numOfDocuments) {
+        return (documentFrequency >= MIN_DOCUMENT_FREQUENCY &&
+                (long) documentFrequency * DENSITY >= numOfDocuments);
+    }
+
+    /**
+     * Writes the header of the bitmaps file and the table of the bitmaps that follow it.
+     * @param dataStream the stream of the bitmaps file
+     * @param numOfTerms the number of terms in the term dictionary
+     * @param ordinals the dictionary ordinal of each term with a bitmap, in ascending order
+     * @param sizes the number of bytes of each bitmap, in the same order as the ordinals
+     */
+    static void writeHeader(DataOutputStream dataStream, int numOfTerms, int[] ordinals, int[] sizes)
+            throws IOException {
+        dataStream.writeInt(MAGIC_NUMBER);
+        dataStream.writeInt(VERSION);
+        dataStream.writeInt(numOfTerms);
+        dataStream.writeInt(ordinals.length);
+
+        long bytePosition = HEADER_SIZE + (long) ordinals.length * ENTRY_SIZE;
+        for (int i = 0; i < ordinals.length; ++i) {
+            dataStream.writeInt(ordinals[i]);
+            dataStream.writeLong(bytePosition);
+            bytePosition += sizes[i];
+        }
+    }
+
+    /**
+     * Returns the number of terms in the term dictionary the bitmaps belong to.
+     */
+    public int size() {
+        return numOfTerms;
+    }
+
+    /**
+     * Reads the bitmap of a term.
+     * @param ordinal the ordinal of the term within its term dictionary
+     * @return the bitmap of the documents containing the term, or null if the term is not dense enough to have one
+     */
+    public DocumentBitmap getBitmap(int ordinal) {
+        // binary search the table for the ordinal
+        int low = 0;
+        int high = numOfBitmaps - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleOrdinal = bitmapsFile.getInt(getEntryPosition(middle));
+
+            if (middleOrdinal < ordinal) {
+                low = middle + 1;
+            } else if (middleOrdinal > ordinal) {
+                high = middle - 1;
+            } else {
+                long bytePosition = bitmapsFile.getLong(getEntryPosition(middle) + Integer.BYTES);
+                long endPosition = (middle + 1 < numOfBitmaps ?
+                        bitmapsFile.getLong(getEntryPosition(middle + 1) + Integer.BYTES) : bitmapsFile.length());
+
+                return DocumentBitmap.read(bitmapsFile.slice(bytePosition, (int) (endPosition - bytePosition)));
+            }
+        }
+
+        return null;
+    }
+
+    private static long getEntryPosition(int entry) {
+        return HEADER_SIZE + (long) entry * ENTRY_SIZE;
+    }
+
+    @Override
+    public void close() {
+        bitmapsFile.close();
+    }
+}
@@ -0,0 +1,136 @@
+
+package application.indexes;
+
+import java.io.*;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * A DiskDocumentStatistics reads the statistics of every document of an on-disk index in place. The file is memory
+ * mapped once and each statistic is read by document ID straight from a view of the mapping, so scoring and
+ * classification never seek or copy the file.
+ * <p>
+ * The file begins with a header of a magic number, the version, the number of documents and the number of columns,
+ * followed by the 8-byte totals of the tokens, distinct terms and bytes of every document. The columns follow the
+ * header, each holding one statistic of every document in document ID order: the 8-byte document weights L(d), the
+ * 4-byte numbers of tokens, the 4-byte numbers of distinct terms, then the 8-byte document sizes.
+ */
+public class DiskDocumentStatistics implements Closeable {
+
+    // spells "DSTS", so that the document weights of older indexes are not mistaken for statistics
+    private static final int MAGIC_NUMBER = 0x44535453;
+    private static final int VERSION = 1;
+    private static final int NUM_OF_COLUMNS = 4;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES + 3 * Long.BYTES;
+
+    private final MappedFile statisticsFile;
+    private final int numOfDocuments;
+    private final long totalTokens;
+    private final long totalUniqueTerms;
+    private final long totalBytes;
+    private final DoubleBuffer lds;
+    private final IntBuffer numsOfTokens;
+    private final IntBuffer numsOfUniqueTerms;
+    private final LongBuffer byteSizes;
+
+    public DiskDocumentStatistics(String pathToDocStatsBin) throws IOException {
+        statisticsFile = new MappedFile(pathToDocStatsBin);
+
+        if (statisticsFile.length() < HEADER_SIZE || statisticsFile.getInt(0) != MAGIC_NUMBER) {
+            statisticsFile.close();
+            throw new IOException("`" + pathToDocStatsBin + "` is not a document statistics file; please rebuild " +
+                    "the index.");
+        }
+        int version = statisticsFile.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            statisticsFile.close();
+            throw new IOException("`" + pathToDocStatsBin + "` holds version " + version + " of the document " +
+                    "statistics, but version " + VERSION + " is expected; please rebuild the index.");
+        }
+        numOfDocuments = statisticsFile.getInt(2L * Integer.BYTES);
+        totalTokens = statisticsFile.getLong(4L * Integer.BYTES);
+        totalUniqueTerms = statisticsFile.getLong(4L * Integer.BYTES + Long.BYTES);
+        totalBytes = statisticsFile.getLong(4L * Integer.BYTES + 2L * Long.BYTES);
+
+        long position = HEADER_SIZE;
+        lds = statisticsFile.slice(position, numOfDocuments * Double.BYTES).asDoubleBuffer();
+        position += (long) numOfDocuments * Double.BYTES;
+        numsOfTokens = statisticsFile.slice(position, numOfDocuments * Integer.BYTES).asIntBuffer();
+        position += (long) numOfDocuments * Integer.BYTES;
+        numsOfUniqueTerms = statisticsFile.slice(position, numOfDocuments * Integer.BYTES).asIntBuffer();
+        position += (long) numOfDocuments * Integer.BYTES;
+        byteSizes = statisticsFile.slice(position, numOfDocuments * Long.BYTES).asLongBuffer();
+    }
+
+    /**
+     * Writes the header of the statistics file; the columns follow it.
+     * @param dataStream the stream of the statistics file
+     * @param statistics the statistics of every document, starting at document ID 0
+     */
+    static void writeHeader(DataOutputStream dataStream, DocumentStatistics statistics) throws IOException {
+        long totalTokens = 0;
+        long totalUniqueTerms = 0;
+        long totalBytes = 0;
+        for (int documentId = 0; documentId < statistics.size(); ++documentId) {
+            totalTokens += statistics.getNumOfTokens(documentId);
+            totalUniqueTerms += statistics.getNumOfUniqueTerms(documentId);
+            totalBytes += statistics.getByteSize(documentId);
+        }
+
+        dataStream.writeInt(MAGIC_NUMBER);
+        dataStream.writeInt(VERSION);
+        dataStream.writeInt(statistics.size());
+        dataStream.writeInt(NUM_OF_COLUMNS);
+        dataStream.writeLong(totalTokens);
+        dataStream.writeLong(totalUniqueTerms);
+        dataStream.writeLong(totalBytes);
+    }
+
+    /**
+     * Returns the number of documents with statistics, which includes documents deleted from an updated index.
+     */
+    public int getNumOfDocuments() {
+        return numOfDocuments;
+    }
+
+    public long getTotalTokens() {
+        return totalTokens;
+    }
+
+    public long getTotalUniqueTerms() {
+        return totalUniqueTerms;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns the average number of tokens of a document, or 0 if there are no documents.
+     */
+    public double getAverageNumOfTokens() {
+        return (numOfDocuments > 0 ? (double) totalTokens / numOfDocuments : 0);
+    }
+
+    public double getLd(int documentId) {
+        return lds.get(documentId);
+    }
+
+    public int getNumOfTokens(int documentId) {
+        return numsOfTokens.get(documentId);
+    }
+
+    public int getNumOfUniqueTerms(int documentId) {
+        return numsOfUniqueTerms.get(documentId);
+    }
+
+    public long getByteSize(int documentId) {
+        return byteSizes.get(documentId);
+    }
+
+    @Override
+    public void close() {
+        statisticsFile.close();
+    }
+}
@@ -1,135 +1,55 @@
 
 package application.indexes;
 
-import org.apache.jdbm.BTree;
-import org.apache.jdbm.DB;
-import org.apache.jdbm.DBMaker;
-import org.apache.jdbm.DBStore;
-
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 
 public class DiskIndexReader {
 
-    public static BTree<String, Integer> readBTree(String pathToBTreeBin) {
-        BTree<String, Integer> bTree = new BTree<>();
+    public static DiskTermDictionary readTermDictionary(String pathToTermsBin) {
+        DiskTermDictionary termDictionary = null;
 
-        // initialize the database and B+ Tree
+        // map the sorted terms in place rather than rebuilding them into a tree
         try {
-            DB database = DBMaker.openFile(pathToBTreeBin).deleteFilesAfterClose().closeOnExit().make();
-            bTree = BTree.createInstance((DBStore) database);
-        } catch (IOException | IOError e) {
-            System.err.println("Index files were not found; please restart the program and build an index.");
-            System.exit(0);
-        }
-
-        // load the persisted term -> byte positions map into the B+ Tree
-        try (FileInputStream fileStream = new FileInputStream(pathToBTreeBin);
-             BufferedInputStream bufferStream = new BufferedInputStream(fileStream);
-             DataInputStream dataStream = new DataInputStream(bufferStream)) {
-            // write the total size of the vocabulary
-            int vocabularySize = dataStream.readInt();
-
-            // traverse through the vocabulary terms
-            for (int i = 0; i < vocabularySize; ++i) {
-                // read each String byte length normally
-                int currentBytesLength = dataStream.readInt();
-                StringBuilder term = new StringBuilder();
-
-                // convert each byte to a character and build to our original term
-                for (int j = 0; j < currentBytesLength; ++j) {
-                    term.append((char) dataStream.readByte());
-                }
-
-                // insert the byte position associated with the term
-                int currentBytePosition = dataStream.readInt();
-                bTree.insert(term.toString(), currentBytePosition, false);
-            }
+            termDictionary = new DiskTermDictionary(pathToTermsBin);
         } catch (IOException e) {
             System.err.println("Index files were not found; please restart the program and build an index.");
             System.exit(0);
         }
 
-        return bTree;
+        return termDictionary;
     }
 
-    public static KGramIndex readKGrams(String pathToKGramsBin) {
-        KGramIndex kgramIndex = new KGramIndex();
-        // overwrite any existing files
-        try (FileInputStream fileStream = new FileInputStream(pathToKGramsBin);
-             BufferedInputStream bufferStream = new BufferedInputStream(fileStream);
-             DataInputStream dataStream = new DataInputStream(bufferStream)) {
-            // read the main k-grams first, starting with the size of the keys
-            int keysSize = dataStream.readInt();
-
-            // iterate through the keys
-            for (int i = 0; i < keysSize; ++i) {
-                // read the length of the current key
-                int keyLength = dataStream.readInt();
-                StringBuilder key = new StringBuilder();
-
-                // add the following bytes to re-construct the key
-                for (int j = 0; j < keyLength; ++j) {
-                    key.append((char) dataStream.readByte());
-                }
-
-                // read the size of the key's list of values
-                int valuesSize = dataStream.readInt();
-                List<String> kGrams = new ArrayList<>();
+    public static DiskKGramIndex readKGrams(String pathToKGramsBin, String pathToKGramTermsBin,
+                                            String pathToKGramTokensBin) {
+        DiskKGramIndex kGramIndex = null;
 
-                // iterate through the k-gram values
-                for (int j = 0; j < valuesSize; ++j) {
-                    // read each String byte length normally
-                    int currentBytesLength = dataStream.readInt();
-                    StringBuilder kGram = new StringBuilder();
-
-                    // convert each byte to a character and build to our original k-gram
-                    for (int k = 0; k < currentBytesLength; ++k) {
-                        kGram.append((char) dataStream.readByte());
-                    }
-                    kGrams.add(kGram.toString());
-                }
-
-                kgramIndex.addEntry(key.toString(), kGrams);
-            }
-
-            // now read the distinct k-grams at the end of the file, starting with the size of the set
-            int distinctKGramsSize = dataStream.readInt();
-
-            // iterate through the set of k-grams
-            for (int i = 0; i < distinctKGramsSize; ++i) {
-                // read each String byte length normally
-                int currentBytesLength = dataStream.readInt();
-                StringBuilder kGram = new StringBuilder();
-
-                // convert each byte to a character and build to our original k-gram
-                for (int k = 0; k < currentBytesLength; ++k) {
-                    kGram.append((char) dataStream.readByte());
-                }
-
-                kgramIndex.addDistinctKGram(kGram.toString());
-            }
+        // only the header is read now; the k-grams are mapped and read in place once they are looked up
+        try {
+            kGramIndex = new DiskKGramIndex(pathToKGramsBin, pathToKGramTermsBin, pathToKGramTokensBin);
         } catch (IOException e) {
-            e.printStackTrace();
+            System.err.println("Index files were not found; please restart the program and build an index.");
+            System.exit(0);
         }
 
-        return kgramIndex;
+        return kGramIndex;
     }
 
+    public static DiskDocumentStatistics readDocumentStatistics(String pathToDocStatsBin) {
+        DiskDocumentStatistics documentStatistics = null;
 
-    public static double readLd(RandomAccessFile randomAccessor, int documentId) {
-        int bytePosition = documentId * Double.BYTES;
-        double ld = 0;
-
+        // map the statistics once, so that each document's statistics are read without seeking
         try {
-            randomAccessor.seek(bytePosition);
-            ld = randomAccessor.readDouble();
+            documentStatistics = new DiskDocumentStatistics(pathToDocStatsBin);
         } catch (IOException e) {
-            e.printStackTrace();
+            // a file written by another version says so, rather than being reported as missing
+            System.err.println(new File(pathToDocStatsBin).exists() ? e.getMessage() :
+                    "Index files were not found; please restart the program and build an index.");
+            System.exit(0);
         }
 
-        return ld;
+        return documentStatistics;
     }
 
     public static List<Double> readPtics(String directoryPath) {
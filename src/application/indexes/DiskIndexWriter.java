@@ -4,12 +4,13 @@ package application.indexes;
 import application.Application;
 import application.classifications.BayesianClassification;
 import application.documents.DirectoryCorpus;
+import application.documents.DocumentWeightScorer;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
 
 public class DiskIndexWriter {
 
@@ -22,27 +23,65 @@ public class DiskIndexWriter {
      * 2. Create a class DiskIndexWriter with a method writeIndex. You should pass your index
      * variable, as well as the absolute path to save the postings file.
      */
-    public static List<Integer> writeIndex(String pathToPostingBin, Index<String, Posting> index) {
-        /* 3. writeIndex should return a list of (8-byte) integer values, one value for each of the terms
-          in the index vocabulary. Each integer value should equal the byte position of where the postings
-          for the corresponding term from the vocabulary begin in postings.bin. */
-        List<Integer> bytePositions = new ArrayList<>();
+    public static void writeIndex(String pathToPostingBin, String pathToPositionsBin, String pathToTermsBin,
+                                  Index<String, Posting> index) {
+        writeIndex(pathToPostingBin, pathToPositionsBin, pathToTermsBin, index, PostingsFormat.CURRENT_VERSION);
+    }
+
+    public static void writeIndex(String pathToPostingBin, String pathToPositionsBin, String pathToTermsBin,
+                                  Index<String, Posting> index, int version) {
+        writeIndex(pathToPostingBin, pathToPositionsBin, pathToTermsBin, index, version,
+                PostingsFormat.FILE_SIZE_SHIFT);
+    }
+
+    /**
+     * Writes the positional index in the given version of the postings format.
+     * @param pathToPostingBin the path of the first postings file
+     * @param pathToPositionsBin the path of the first positions file, which is only written in the layouts that
+     *                           keep positions apart
+     * @param pathToTermsBin the path of the term dictionary, which maps each term to its postings
+     * @param index the index to write
+     * @param version the `PostingsFormat` version to write
+     * @param fileSizeShift the base 2 logarithm of the size at which the files of the `PostingsFormat.LARGE_OFFSETS`
+     *                      layout are rolled into a new file; earlier layouts are always written as a single file
+     */
+    public static void writeIndex(String pathToPostingBin, String pathToPositionsBin, String pathToTermsBin,
+                                  Index<String, Posting> index, int version, int fileSizeShift) {
+        int rollingShift = (version >= PostingsFormat.LARGE_OFFSETS ? fileSizeShift : RollingOutputStream.NO_ROLLING);
 
         // 2a. Open a new file called "postings.bin" in binary write mode.
-        try (FileOutputStream fileStream = new FileOutputStream(pathToPostingBin);
-             BufferedOutputStream bufferStream = new BufferedOutputStream(fileStream);
-             DataOutputStream dataStream = new DataOutputStream(bufferStream)) {
+        try (RollingOutputStream postingsOutput = new RollingOutputStream(pathToPostingBin, rollingShift);
+             DataOutputStream dataStream = new DataOutputStream(postingsOutput);
+             RollingOutputStream positionsOutput = openPositionsOutput(pathToPositionsBin, version, rollingShift);
+             DiskTermDictionary.Writer termsWriter = new DiskTermDictionary.Writer(pathToTermsBin)) {
             // 2b. Retrieve the sorted vocabulary list from the index.
             List<String> vocabulary = index.getVocabulary();
+            PostingsFormat.Encoder encoder = new PostingsFormat.Encoder(version);
+            if (version != PostingsFormat.LEGACY) {
+                PostingsFormat.writePostingsHeader(dataStream, version);
+            }
 
             // 2c. For each term in the vocabulary:
             for (String term : vocabulary) {
-                // add the byte position of the current term to our returning list
-                bytePositions.add(dataStream.size());
                 // 2 (c, ii). Retrieve the index postings for the term.
                 List<Posting> postings = index.getPostings(term);
+                // map the term to the byte position where its postings begin
+                termsWriter.add(term, postings.size(), postingsOutput.getPosition());
                 // 2 (c, i). Write dft to the file as a 4-byte integer.
                 dataStream.writeInt(postings.size());
+
+                if (version != PostingsFormat.LEGACY) {
+                    for (Posting currentPosting : postings) {
+                        encoder.addDocumentId(currentPosting.getDocumentId());
+                        encoder.addTermFrequency(currentPosting.getPositions().size());
+
+                        for (int currentPosition : currentPosting.getPositions()) {
+                            encoder.addPosition(currentPosition);
+                        }
+                    }
+                    encoder.writeTo(dataStream, positionsOutput);
+                    continue;
+                }
                 int latestDocumentId = 0;
 
                 // 2 (c, iii). For each posting:
@@ -72,126 +111,333 @@ public class DiskIndexWriter {
                 }
                 // (2, iv). Repeat for each term in the vocabulary.
             }
+            if (version >= PostingsFormat.LARGE_OFFSETS) {
+                PostingsFormat.finishHeader(postingsOutput, positionsOutput, fileSizeShift, encoder);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
-
-        return bytePositions;
     }
 
-    public static void writeBTree(String pathToBTreeBin, List<String> vocabulary, List<Integer> bytePositions) {
-        // overwrite any existing files
-        try (FileOutputStream fileStream = new FileOutputStream(pathToBTreeBin, false);
-             BufferedOutputStream bufferStream = new BufferedOutputStream(fileStream);
-             DataOutputStream dataStream = new DataOutputStream(bufferStream)) {
-            // write the size of the vocabulary as the first 4 bytes
-            dataStream.writeInt(vocabulary.size());
+    /**
+     * Opens the positions files of the layouts that keep positions apart and writes their header.
+     * @param pathToPositionsBin the path of the first positions file
+     * @param version the `PostingsFormat` version to write
+     * @param fileSizeShift the base 2 logarithm of the size at which the files are rolled into a new file
+     * @return the stream of the positions files, or null if the version keeps positions in the postings file
+     */
+    public static RollingOutputStream openPositionsOutput(String pathToPositionsBin, int version, int fileSizeShift)
+            throws IOException {
+        if (!PostingsFormat.hasSeparatePositions(version)) {
+            return null;
+        }
+        RollingOutputStream positionsOutput = new RollingOutputStream(pathToPositionsBin, fileSizeShift);
+        PostingsFormat.writeHeader(new DataOutputStream(positionsOutput), version);
 
-            for (int i = 0; i < vocabulary.size(); ++i) {
-                String currentTerm = vocabulary.get(i);
-                byte[] bytes = currentTerm.getBytes();
-                int currentBytesLength = bytes.length;
-                int currentBytePosition = bytePositions.get(i);
+        return positionsOutput;
+    }
 
-                // write the byte length, followed by the bytes themselves, then the byte position
-                dataStream.writeInt(currentBytesLength);
-                dataStream.write(bytes);
-                dataStream.writeInt(currentBytePosition);
-            }
+    /**
+     * Writes the score bound of every term of the index, in the order of its term dictionary. The bound of a term is
+     * the largest w(d,t) / L(d) of any document containing it, which takes the weights L(d) from the document
+     * statistics, so they must be written first.
+     * @param pathToTermBoundsBin the path of the term bounds file
+     * @param pathToDocStatsBin the path of the document statistics of every document in the index
+     * @param index the index whose term dictionary the bounds belong to
+     */
+    public static void writeTermBounds(String pathToTermBoundsBin, String pathToDocStatsBin,
+                                       Index<String, Posting> index) {
+        try (DiskDocumentStatistics documentStatistics = new DiskDocumentStatistics(pathToDocStatsBin)) {
+            writeTermBounds(pathToTermBoundsBin, documentStatistics, index);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    public static void writeKGrams(String pathToKGramsBin, KGramIndex kGramIndex) {
-        // overwrite any existing files
-        try (FileOutputStream fileStream = new FileOutputStream(pathToKGramsBin, false);
+    /**
+     * Writes the score bound of every term of the index from statistics that were already opened, which a caller
+     * writing several files from the same statistics keeps open for all of them.
+     * @param pathToTermBoundsBin the path of the term bounds file
+     * @param documentStatistics the statistics of every document in the index
+     * @param index the index whose term dictionary the bounds belong to
+     */
+    public static void writeTermBounds(String pathToTermBoundsBin, DiskDocumentStatistics documentStatistics,
+                                       Index<String, Posting> index) {
+        List<String> vocabulary = index.getVocabulary();
+
+        try (FileOutputStream fileStream = new FileOutputStream(pathToTermBoundsBin, false);
              BufferedOutputStream bufferStream = new BufferedOutputStream(fileStream);
              DataOutputStream dataStream = new DataOutputStream(bufferStream)) {
-            // order does not matter when writing map elements that will be read as map elements
-            List<String> keys = kGramIndex.getVocabulary();
-            // write the main k-grams first, starting with the size of the keys
-            dataStream.writeInt(keys.size());
+            DiskTermBounds.writeHeader(dataStream, vocabulary.size());
 
-            // iterate through the keys
-            for (String key : keys) {
-                byte[] keyBytes = key.getBytes();
-                int currentKeyBytesLength = keyBytes.length;
-
-                // write how many bytes are in the key itself, then the bytes of the key
-                dataStream.writeInt(currentKeyBytesLength);
-                dataStream.write(keyBytes);
+            for (String term : vocabulary) {
+                PostingsIterator postings = IterableIndex.openIterator(index, term, false);
+                double maxWeight = 0;
 
-                List<String> values = kGramIndex.getPostings(key);
+                for (int documentId = postings.nextDoc(); documentId != PostingsIterator.NO_MORE_DOCS;
+                     documentId = postings.nextDoc()) {
+                    double ld = documentStatistics.getLd(documentId);
 
-                // write the size of the k-grams posting list
-                dataStream.writeInt(values.size());
+                    if (ld > 0) {
+                        maxWeight = Math.max(maxWeight, DocumentWeightScorer.calculateWdt(postings.freq()) / ld);
+                    }
+                }
+                dataStream.writeFloat(DiskTermBounds.roundUp(maxWeight));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-                // iterate through the k-gram values
-                for (String value : values) {
-                    byte[] valueBytes = value.getBytes();
-                    int currentBytesLength = valueBytes.length;
+    /**
+     * Writes the document bitmap of every dense term of the index, which `DiskDocumentBitmaps.isDense` decides from
+     * the number of documents in the document statistics, so they must be written first.
+     * @param pathToDocBitmapsBin the path of the document bitmaps file
+     * @param pathToDocStatsBin the path of the document statistics of every document in the index
+     * @param index the index whose term dictionary the bitmaps belong to
+     */
+    public static void writeDocumentBitmaps(String pathToDocBitmapsBin, String pathToDocStatsBin,
+                                            Index<String, Posting> index) {
+        try (DiskDocumentStatistics documentStatistics = new DiskDocumentStatistics(pathToDocStatsBin)) {
+            writeDocumentBitmaps(pathToDocBitmapsBin, documentStatistics, index);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-                    // for each individual k-gram, write the length of the k-gram followed by its bytes
-                    dataStream.writeInt(currentBytesLength);
-                    dataStream.write(valueBytes);
+    /**
+     * Writes the document bitmap of every dense term of the index from statistics that were already opened.
+     * @param pathToDocBitmapsBin the path of the document bitmaps file
+     * @param documentStatistics the statistics of every document in the index
+     * @param index the index whose term dictionary the bitmaps belong to
+     */
+    public static void writeDocumentBitmaps(String pathToDocBitmapsBin, DiskDocumentStatistics documentStatistics,
+                                            Index<String, Posting> index) {
+        List<String> vocabulary = index.getVocabulary();
+        List<Integer> ordinals = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        ByteArrayOutputStream bitmapsStream = new ByteArrayOutputStream();
+
+        try {
+            int numOfDocuments = documentStatistics.getNumOfDocuments();
+            DataOutputStream bitmapsDataStream = new DataOutputStream(bitmapsStream);
+
+            // the bitmaps are gathered first, since the table before them holds the position of each one
+            for (int ordinal = 0; ordinal < vocabulary.size(); ++ordinal) {
+                PostingsIterator postings = IterableIndex.openIterator(index, vocabulary.get(ordinal), false);
+
+                if (DiskDocumentBitmaps.isDense(postings.getDocumentFrequency(), numOfDocuments)) {
+                    int startSize = bitmapsDataStream.size();
+                    DocumentBitmap.fromPostings(postings).write(bitmapsDataStream);
+                    ordinals.add(ordinal);
+                    sizes.add(bitmapsDataStream.size() - startSize);
                 }
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
 
-            // now write the distinct k-grams to the end of the file, starting with the size of the set
-            Set<String> distinctKGrams = kGramIndex.getDistinctKGrams();
-            dataStream.writeInt(distinctKGrams.size());
+        try (FileOutputStream fileStream = new FileOutputStream(pathToDocBitmapsBin, false);
+             BufferedOutputStream bufferStream = new BufferedOutputStream(fileStream);
+             DataOutputStream dataStream = new DataOutputStream(bufferStream)) {
+            DiskDocumentBitmaps.writeHeader(dataStream, vocabulary.size(),
+                    ordinals.stream().mapToInt(Integer::intValue).toArray(),
+                    sizes.stream().mapToInt(Integer::intValue).toArray());
+            bitmapsStream.writeTo(dataStream);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-            // iterate through the set of distinct k-grams
-            for (String kGram : distinctKGrams) {
-                byte[] bytes = kGram.getBytes();
-                int currentBytesLength = bytes.length;
+    /**
+     * Writes the k-grams inverted, so that each k-gram maps to the ordinals of the sorted tokens containing it. The
+     * files are written beside the existing ones and then moved over them, so that a `DiskKGramIndex` still reading
+     * the old files keeps its mappings until it is closed.
+     * @param pathToKGramsBin the path of the tokens of each k-gram
+     * @param pathToKGramTermsBin the path of the dictionary mapping each k-gram to its tokens
+     * @param pathToKGramTokensBin the path of the dictionary of the sorted tokens
+     * @param kGramIndex the k-grams to write
+     */
+    public static void writeKGrams(String pathToKGramsBin, String pathToKGramTermsBin, String pathToKGramTokensBin,
+                                   WildcardIndex kGramIndex) {
+        List<String> tokens = kGramIndex.getVocabulary();
+        Map<String, PostingsBuffer> kGramOrdinals = new HashMap<>();
+        int k = 0;
+
+        /* traversing the tokens in sorted order keeps each k-gram's ordinals sorted; the buffers ignore a token
+          that contains the same k-gram more than once, just as they ignore repeated terms within a document */
+        for (int ordinal = 0; ordinal < tokens.size(); ++ordinal) {
+            for (String kGram : kGramIndex.getPostings(tokens.get(ordinal))) {
+                kGramOrdinals.computeIfAbsent(kGram, key -> new PostingsBuffer(false)).add(ordinal, 0);
+                k = Math.max(k, kGram.length());
+            }
+        }
+        List<String> kGrams = new ArrayList<>(kGramOrdinals.keySet());
+        Collections.sort(kGrams);
 
-                // for each individual k-gram, write the length of the k-gram followed by its bytes
-                dataStream.writeInt(currentBytesLength);
-                dataStream.write(bytes);
+        try (FileOutputStream fileStream = new FileOutputStream(pathToKGramsBin + ".tmp", false);
+             BufferedOutputStream bufferStream = new BufferedOutputStream(fileStream);
+             DataOutputStream dataStream = new DataOutputStream(bufferStream);
+             DiskTermDictionary.Writer kGramsWriter = new DiskTermDictionary.Writer(pathToKGramTermsBin + ".tmp");
+             DiskTermDictionary.Writer tokensWriter = new DiskTermDictionary.Writer(pathToKGramTokensBin + ".tmp")) {
+            DiskKGramIndex.writeHeader(dataStream, k, kGramIndex.getNumOfDistinctKGrams());
+            PostingsFormat.Encoder encoder = new PostingsFormat.Encoder(PostingsFormat.VARIABLE_BYTE);
+
+            // the tokens of each k-gram are written as variable-byte postings whose document IDs are ordinals
+            for (String kGram : kGrams) {
+                PostingsBuffer ordinals = kGramOrdinals.get(kGram);
+                kGramsWriter.add(kGram, ordinals.getNumOfPostings(), dataStream.size());
+                dataStream.writeInt(ordinals.getNumOfPostings());
+
+                PostingsIterator ordinalsIterator = ordinals.iterator(false);
+                for (int ordinal = ordinalsIterator.nextDoc(); ordinal != PostingsIterator.NO_MORE_DOCS;
+                     ordinal = ordinalsIterator.nextDoc()) {
+                    encoder.addDocumentId(ordinal);
+                }
+                encoder.writeTo(dataStream);
+            }
+            // the tokens have no postings of their own; the dictionary only maps ordinals back to tokens
+            for (String token : tokens) {
+                tokensWriter.add(token, 0, 0);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        try {
+            for (String path : List.of(pathToKGramsBin, pathToKGramTermsBin, pathToKGramTokensBin)) {
+                Files.move(Path.of(path + ".tmp"), Path.of(path), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    public static void writeLds(String pathToDocWeightsBin, List<Double> lds) {
+    /**
+     * Writes the statistics of every document, replacing any existing file. The file is written beside the existing
+     * one and then moved over it, so that a `DiskDocumentStatistics` still reading the old file keeps its mapping.
+     * @param pathToDocStatsBin the path of the document statistics file
+     * @param statistics the statistics of every document, starting at document ID 0
+     */
+    public static void writeDocumentStatistics(String pathToDocStatsBin, DocumentStatistics statistics) {
         // overwrite any existing files
-        try (FileOutputStream fileStream = new FileOutputStream(pathToDocWeightsBin, false);
+        try (FileOutputStream fileStream = new FileOutputStream(pathToDocStatsBin + ".tmp", false);
              BufferedOutputStream bufferStream = new BufferedOutputStream(fileStream);
              DataOutputStream dataStream = new DataOutputStream(bufferStream)) {
-            for (Double ld : lds) {
-                dataStream.writeDouble(ld);
+            DiskDocumentStatistics.writeHeader(dataStream, statistics);
+
+            // each statistic is written as its own column, so that it can be mapped as an array of its type
+            for (int documentId = 0; documentId < statistics.size(); ++documentId) {
+                dataStream.writeDouble(statistics.getLd(documentId));
+            }
+            for (int documentId = 0; documentId < statistics.size(); ++documentId) {
+                dataStream.writeInt(statistics.getNumOfTokens(documentId));
+            }
+            for (int documentId = 0; documentId < statistics.size(); ++documentId) {
+                dataStream.writeInt(statistics.getNumOfUniqueTerms(documentId));
+            }
+            for (int documentId = 0; documentId < statistics.size(); ++documentId) {
+                dataStream.writeLong(statistics.getByteSize(documentId));
             }
         } catch (IOException e) {
             System.err.println("Invalid path; please restart the program and build an index" +
                     " with a valid directory path.");
             System.exit(0);
         }
+
+        try {
+            Files.move(Path.of(pathToDocStatsBin + ".tmp"), Path.of(pathToDocStatsBin),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the statistics of the documents starting at the first document ID, replacing the statistics of any
+     * documents from that document onward while keeping the statistics of earlier documents.
+     * @param pathToDocStatsBin the path of the document statistics file
+     * @param statistics the statistics of the consecutive documents starting at the first document ID
+     * @param firstDocumentId the document ID of the first document of the statistics
+     */
+    public static void writeDocumentStatistics(String pathToDocStatsBin, DocumentStatistics statistics,
+                                               int firstDocumentId) {
+        DocumentStatistics allStatistics = new DocumentStatistics();
+
+        try (DiskDocumentStatistics existingStatistics = new DiskDocumentStatistics(pathToDocStatsBin)) {
+            for (int documentId = 0; documentId < firstDocumentId; ++documentId) {
+                // documents missing from the existing file have no statistics, just like documents without tokens
+                if (documentId < existingStatistics.getNumOfDocuments()) {
+                    allStatistics.add(existingStatistics.getLd(documentId),
+                            existingStatistics.getNumOfTokens(documentId),
+                            existingStatistics.getNumOfUniqueTerms(documentId),
+                            existingStatistics.getByteSize(documentId));
+                } else {
+                    allStatistics.add(0, 0, 0, 0);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        allStatistics.append(statistics);
+
+        writeDocumentStatistics(pathToDocStatsBin, allStatistics);
+    }
+
+    public static void writeBiword(String pathToBiwordBin, String pathToBiwordTermsBin,
+                                   Index<String, Posting> biwordIndex) {
+        writeBiword(pathToBiwordBin, pathToBiwordTermsBin, biwordIndex, PostingsFormat.CURRENT_VERSION);
     }
 
-    public static List<Integer> writeBiword(String pathToBiwordBin, Index<String, Posting> biwordIndex) {
-        /* 3. writeIndex should return a list of (8-byte) integer values, one value for each of the terms
-          in the index vocabulary. Each integer value should equal the byte position of where the postings
-          for the corresponding term from the vocabulary begin in postings.bin. */
-        List<Integer> bytePositions = new ArrayList<>();
+    public static void writeBiword(String pathToBiwordBin, String pathToBiwordTermsBin,
+                                   Index<String, Posting> biwordIndex, int version) {
+        writeBiword(pathToBiwordBin, pathToBiwordTermsBin, biwordIndex, version, PostingsFormat.FILE_SIZE_SHIFT);
+    }
+
+    /**
+     * Writes the biword index in the given version of the postings format.
+     * @param pathToBiwordBin the path of the first biword postings file
+     * @param pathToBiwordTermsBin the path of the biword term dictionary, which maps each biword to its postings
+     * @param biwordIndex the biword index to write
+     * @param version the `PostingsFormat` version to write
+     * @param fileSizeShift the base 2 logarithm of the size at which the files of the `PostingsFormat.LARGE_OFFSETS`
+     *                      layout are rolled into a new file; earlier layouts are always written as a single file
+     */
+    public static void writeBiword(String pathToBiwordBin, String pathToBiwordTermsBin,
+                                   Index<String, Posting> biwordIndex, int version, int fileSizeShift) {
+        int rollingShift = (version >= PostingsFormat.LARGE_OFFSETS ? fileSizeShift : RollingOutputStream.NO_ROLLING);
 
         // 2a. Open a new file called "postings.bin" in binary write mode.
-        try (FileOutputStream fileStream = new FileOutputStream(pathToBiwordBin);
-             BufferedOutputStream bufferStream = new BufferedOutputStream(fileStream);
-             DataOutputStream dataStream = new DataOutputStream(bufferStream)) {
+        try (RollingOutputStream postingsOutput = new RollingOutputStream(pathToBiwordBin, rollingShift);
+             DataOutputStream dataStream = new DataOutputStream(postingsOutput);
+             DiskTermDictionary.Writer termsWriter = new DiskTermDictionary.Writer(pathToBiwordTermsBin)) {
             // 2b. Retrieve the sorted vocabulary list from the index.
             List<String> vocabulary = biwordIndex.getVocabulary();
+            PostingsFormat.Encoder encoder = new PostingsFormat.Encoder(version);
+            if (version != PostingsFormat.LEGACY) {
+                PostingsFormat.writePostingsHeader(dataStream, version);
+            }
 
             // 2c. For each term in the vocabulary:
             for (String term : vocabulary) {
-                // add the byte position of the current term to our returning list
-                bytePositions.add(dataStream.size());
                 // 2 (c, ii). Retrieve the index postings for the term.
                 List<Posting> postings = biwordIndex.getPostings(term);
+                // map the biword to the byte position where its postings begin
+                termsWriter.add(term, postings.size(), postingsOutput.getPosition());
                 // 2 (c, i). Write dft to the file as a 4-byte integer.
                 dataStream.writeInt(postings.size());
+
+                if (version != PostingsFormat.LEGACY) {
+                    // biwords only need their document IDs
+                    for (Posting currentPosting : postings) {
+                        encoder.addDocumentId(currentPosting.getDocumentId());
+                    }
+                    encoder.writeTo(dataStream);
+                    continue;
+                }
                 int latestDocumentId = 0;
 
                 // 2 (c, iii). For each posting:
@@ -204,11 +450,12 @@ public class DiskIndexWriter {
                 }
                 // (2, iv). Repeat for each term in the vocabulary.
             }
+            if (version >= PostingsFormat.LARGE_OFFSETS) {
+                PostingsFormat.finishHeader(postingsOutput, null, fileSizeShift, encoder);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
-
-        return bytePositions;
     }
 
     public static void writeBayesianClassifier(String rootDirectory, Map<String, DirectoryCorpus> corpora,
@@ -225,7 +472,7 @@ public class DiskIndexWriter {
                     List<Posting> postings = corpusIndexes.get(currentDirectoryPath).getPositionlessPostings(term);
                     int totalTftd = 0;
                     for (Posting posting : postings) {
-                        totalTftd += posting.getPositions().size();
+                        totalTftd += posting.getTermFrequency();
                     }
 
                     double currentPtic = BayesianClassification.calculatePtic(
@@ -0,0 +1,247 @@
+
+package application.indexes;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A DiskKGramIndex reads the inverted k-grams of an on-disk index in place, rather than rebuilding every token's
+ * k-grams on the heap. It is made of three files:
+ * <ul>
+ *     <li>`kGrams.bin` begins with a header of a magic number, the version, the length k of the longest k-grams and
+ *     the number of distinct k-grams, followed by the tokens of every k-gram in the variable-byte postings layout,
+ *     where the document IDs are the ordinals of the tokens within the sorted vocabulary;</li>
+ *     <li>`kGramTerms.bin` is a `DiskTermDictionary` mapping each k-gram to the byte position of its tokens;</li>
+ *     <li>`kGramTokens.bin` is a `DiskTermDictionary` of the sorted tokens, which turns ordinals back into tokens.</li>
+ * </ul>
+ * Only the header is read when the index is opened; the dictionaries are mapped the first time a lookup needs them,
+ * and a lookup only decodes the k-grams it is given and the tokens they lead to.
+ */
+public class DiskKGramIndex implements WildcardIndex, Closeable {
+
+    // spells "KGRM", so that k-gram files of older indexes are not mistaken for inverted k-grams
+    private static final int MAGIC_NUMBER = 0x4B47524D;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    private final MappedFile kGramsFile;
+    private final String pathToKGramTermsBin;
+    private final String pathToKGramTokensBin;
+    private final int k;
+    private final int numOfDistinctKGrams;
+    private volatile DiskTermDictionary kGramDictionary;    // only mapped once a lookup needs it
+    private volatile DiskTermDictionary tokenDictionary;
+
+    public DiskKGramIndex(String pathToKGramsBin, String newPathToKGramTermsBin, String newPathToKGramTokensBin)
+            throws IOException {
+        pathToKGramTermsBin = newPathToKGramTermsBin;
+        pathToKGramTokensBin = newPathToKGramTokensBin;
+        if (!new File(pathToKGramTermsBin).exists() || !new File(pathToKGramTokensBin).exists()) {
+            throw new FileNotFoundException("The k-gram dictionaries of `" + pathToKGramsBin + "` were not found");
+        }
+        kGramsFile = new MappedFile(pathToKGramsBin);
+
+        if (kGramsFile.length() < HEADER_SIZE || kGramsFile.getInt(0) != MAGIC_NUMBER) {
+            kGramsFile.close();
+            throw new IOException("`" + pathToKGramsBin + "` is not an inverted k-gram file; please rebuild the index.");
+        }
+        int version = kGramsFile.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            kGramsFile.close();
+            throw new IOException("Unsupported k-gram file version " + version);
+        }
+        k = kGramsFile.getInt(2L * Integer.BYTES);
+        numOfDistinctKGrams = kGramsFile.getInt(3L * Integer.BYTES);
+    }
+
+    /**
+     * Writes the header of `kGrams.bin`; the tokens of each k-gram follow it.
+     * @param dataStream the stream of the k-grams file
+     * @param k the length of the longest k-grams
+     * @param numOfDistinctKGrams the number of distinct k-grams found while building the index
+     */
+    static void writeHeader(DataOutputStream dataStream, int k, int numOfDistinctKGrams) throws IOException {
+        dataStream.writeInt(MAGIC_NUMBER);
+        dataStream.writeInt(VERSION);
+        dataStream.writeInt(k);
+        dataStream.writeInt(numOfDistinctKGrams);
+    }
+
+    @Override
+    public List<String> getTokens(String kGram) {
+        long bytePosition = getKGramDictionary().getPostingsPosition(kGram);
+        if (bytePosition < 0) {
+            return new ArrayList<>();
+        }
+        int[] ordinals = readOrdinals(bytePosition);
+
+        return getTokenDictionary().getTerms(ordinals, ordinals.length);
+    }
+
+    /**
+     * Intersects the tokens of each k-gram by their ordinals, starting with the k-gram found in the fewest tokens,
+     * so that only the tokens left at the end are ever decoded.
+     */
+    @Override
+    public List<String> getCandidateTokens(List<String> kGrams) {
+        if (kGrams.isEmpty()) {
+            return getVocabulary();
+        }
+        DiskTermDictionary dictionary = getKGramDictionary();
+        List<String> sortedKGrams = new ArrayList<>(kGrams);
+        sortedKGrams.sort(Comparator.comparingInt(dictionary::getDocumentFrequency));
+
+        int[] candidates = null;
+        int numOfCandidates = 0;
+        for (String kGram : sortedKGrams) {
+            long bytePosition = dictionary.getPostingsPosition(kGram);
+            if (bytePosition < 0) {
+                return new ArrayList<>();
+            }
+            if (candidates == null) {
+                candidates = readOrdinals(bytePosition);
+                numOfCandidates = candidates.length;
+            } else {
+                numOfCandidates = intersectOrdinals(candidates, numOfCandidates, bytePosition);
+            }
+            if (numOfCandidates == 0) {
+                return new ArrayList<>();
+            }
+        }
+
+        return getTokenDictionary().getTerms(candidates, numOfCandidates);
+    }
+
+    @Override
+    public int getNumOfDistinctKGrams() {
+        return numOfDistinctKGrams;
+    }
+
+    /**
+     * Returns the k-grams of the token, which are split from the token again rather than stored.
+     * @param term the token to find the k-grams of
+     * @return the k-grams of the token, or an empty list if it is not in the vocabulary
+     */
+    @Override
+    public List<String> getPostings(String term) {
+        if (getTokenDictionary().findOrdinal(term) < 0) {
+            return new ArrayList<>();
+        }
+        KGramIndex tokenKGramIndex = new KGramIndex();
+        tokenKGramIndex.addToken(term, k);
+
+        return tokenKGramIndex.getPostings(term);
+    }
+
+    @Override
+    public List<String> getPositionlessPostings(String term) {
+        // by default, k-grams do not store positions
+        return getPostings(term);
+    }
+
+    @Override
+    public List<String> getVocabulary() {
+        return getTokenDictionary().getVocabulary();
+    }
+
+    /**
+     * Returns every k-gram with tokens, sorted in ascending order; the bare `$` flags are counted by
+     * `getNumOfDistinctKGrams` but never stored.
+     */
+    public List<String> getKGrams() {
+        return getKGramDictionary().getVocabulary();
+    }
+
+    @Override
+    public synchronized void close() {
+        kGramsFile.close();
+        if (kGramDictionary != null) {
+            kGramDictionary.close();
+        }
+        if (tokenDictionary != null) {
+            tokenDictionary.close();
+        }
+    }
+
+    private DiskTermDictionary getKGramDictionary() {
+        DiskTermDictionary dictionary = kGramDictionary;
+
+        if (dictionary == null) {
+            synchronized (this) {
+                if (kGramDictionary == null) {
+                    kGramDictionary = openDictionary(pathToKGramTermsBin);
+                }
+                dictionary = kGramDictionary;
+            }
+        }
+
+        return dictionary;
+    }
+
+    private DiskTermDictionary getTokenDictionary() {
+        DiskTermDictionary dictionary = tokenDictionary;
+
+        if (dictionary == null) {
+            synchronized (this) {
+                if (tokenDictionary == null) {
+                    tokenDictionary = openDictionary(pathToKGramTokensBin);
+                }
+                dictionary = tokenDictionary;
+            }
+        }
+
+        return dictionary;
+    }
+
+    private static DiskTermDictionary openDictionary(String pathToTermsBin) {
+        try {
+            return new DiskTermDictionary(pathToTermsBin);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int[] readOrdinals(long bytePosition) {
+        int[] ordinals = new int[kGramsFile.getInt(bytePosition)];
+        PostingsFormat.Decoder decoder = new PostingsFormat.Decoder(
+                PostingsFormat.readEncodedPostings(kGramsFile, bytePosition), 0);
+
+        for (int i = 0; i < ordinals.length; ++i) {
+            ordinals[i] = decoder.nextDocumentId();
+        }
+
+        return ordinals;
+    }
+
+    /**
+     * Keeps only the ordinals that are also among the k-gram's tokens, overwriting them in place.
+     * @param ordinals the sorted ordinals to intersect
+     * @param numOfOrdinals the number of ordinals at the start of the array
+     * @param bytePosition the byte position of the k-gram's tokens
+     * @return the number of ordinals left at the start of the array
+     */
+    private int intersectOrdinals(int[] ordinals, int numOfOrdinals, long bytePosition) {
+        int documentFrequency = kGramsFile.getInt(bytePosition);
+        PostingsFormat.Decoder decoder = new PostingsFormat.Decoder(
+                PostingsFormat.readEncodedPostings(kGramsFile, bytePosition), 0);
+        int numOfMatches = 0;
+        int index = 0;
+
+        for (int i = 0; i < documentFrequency && index < numOfOrdinals; ++i) {
+            int ordinal = decoder.nextDocumentId();
+
+            while (index < numOfOrdinals && ordinals[index] < ordinal) {
+                ++index;
+            }
+            // matches never overtake the index, so they can be written over the ordinals already passed
+            if (index < numOfOrdinals && ordinals[index] == ordinal) {
+                ordinals[numOfMatches++] = ordinal;
+                ++index;
+            }
+        }
+
+        return numOfMatches;
+    }
+}
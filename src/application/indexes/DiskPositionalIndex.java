@@ -1,28 +1,72 @@
 
 package application.indexes;
 
-import org.apache.jdbm.*;
-
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 
-public class DiskPositionalIndex implements Index<String, Posting>, Closeable {
+public class DiskPositionalIndex implements Index<String, Posting>, IterableIndex, BoundedIndex, BitmapIndex,
+        Closeable {
+
+    private final DiskTermDictionary termDictionary;    // the sorted mappings of terms -> byte positions
+    private MappedFile postingsFile;    // keep the Posting file mapped for getPosting() calls
+    private MappedFile positionsFile;   // the positions file, if positions are kept apart from postings
+    private int postingsVersion;    // the `PostingsFormat` version of the postings file
+    private PostingsFormat.Header header;   // the layout and statistics of the postings, if the version has them
+    private DiskTermBounds termBounds;      // the score bound of each term, if the index was written with them
+    private DiskDocumentBitmaps documentBitmaps;    // the bitmaps of the dense terms, if the index has them
 
-    private final String pathToBTreeBin;    // the String path to the B+ Tree mappings of terms -> byte positions
-    private final BTree<String, Integer> bTree;
-    private RandomAccessFile randomAccessPosting;   // keep the Posting file open for getPosting() calls
+    public DiskPositionalIndex(DiskTermDictionary inputTermDictionary, String newPathToPostingsBin,
+                               String newPathToPositionsBin) {
+        this(inputTermDictionary, newPathToPostingsBin, newPathToPositionsBin, null);
+    }
 
-    public DiskPositionalIndex(BTree<String, Integer> inputBTree, String newPathToBTreeBin, String newPathToPostingsBin) {
-        bTree = inputBTree;
-        pathToBTreeBin = newPathToBTreeBin;
+    /**
+     * Opens the positional index along with the score bounds of its terms.
+     * @param inputTermDictionary the term dictionary of the index
+     * @param newPathToPostingsBin the path of the first postings file
+     * @param newPathToPositionsBin the path of the first positions file
+     * @param newPathToTermBoundsBin the path of the term bounds, which are ignored if they were never written
+     */
+    public DiskPositionalIndex(DiskTermDictionary inputTermDictionary, String newPathToPostingsBin,
+                               String newPathToPositionsBin, String newPathToTermBoundsBin) {
+        this(inputTermDictionary, newPathToPostingsBin, newPathToPositionsBin, newPathToTermBoundsBin, null);
+    }
+
+    /**
+     * Opens the positional index along with the score bounds and the document bitmaps of its terms.
+     * @param inputTermDictionary the term dictionary of the index
+     * @param newPathToPostingsBin the path of the first postings file
+     * @param newPathToPositionsBin the path of the first positions file
+     * @param newPathToTermBoundsBin the path of the term bounds, which are ignored if they were never written
+     * @param newPathToDocBitmapsBin the path of the document bitmaps, which are ignored if they were never written
+     */
+    public DiskPositionalIndex(DiskTermDictionary inputTermDictionary, String newPathToPostingsBin,
+                               String newPathToPositionsBin, String newPathToTermBoundsBin,
+                               String newPathToDocBitmapsBin) {
+        termDictionary = inputTermDictionary;
 
         try {
             // be able to read from the postings file and extract the index data
-            randomAccessPosting = new RandomAccessFile(newPathToPostingsBin, "r");
+            postingsFile = new MappedFile(newPathToPostingsBin);
+            postingsVersion = PostingsFormat.readVersion(postingsFile);
+            if (postingsVersion >= PostingsFormat.LARGE_OFFSETS) {
+                // the postings and positions may be rolled across several files, which are mapped as one
+                header = new PostingsFormat.Header(postingsFile);
+                postingsFile.close();
+                postingsFile = header.openPostingsFiles(newPathToPostingsBin);
+                positionsFile = header.openPositionsFiles(newPathToPositionsBin);
+            } else if (postingsVersion == PostingsFormat.SEPARATE_POSITIONS) {
+                // older formats keep the positions within the postings file
+                positionsFile = new MappedFile(newPathToPositionsBin);
+            }
+            termBounds = openTermBounds(newPathToTermBoundsBin);
+            documentBitmaps = openDocumentBitmaps(newPathToDocBitmapsBin);
         } catch (FileNotFoundException e) {
             System.err.println("Index files were not found; please restart the program and build an index.");
             System.exit(0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -35,39 +79,42 @@ public class DiskPositionalIndex implements Index<String, Posting>, Closeable {
     public List<Posting> getPostings(String term) {
         List<Posting> resultPostings = new ArrayList<>();
 
-        try {
-            // retrieve the byte position value for the term key within the B+ Tree
-            int bytePosition = bTree.get(term);
-            // jump to the offset containing the term's postings
-            randomAccessPosting.seek(bytePosition);
-            // the current int value at the offset is the size of the postings list
-            int postingsSize = randomAccessPosting.readInt();
-            int latestDocumentId = 0;
-
-            // iterate through all postings for the term
-            for (int i = 0; i < postingsSize; ++i) {
-                ArrayList<Integer> positions = new ArrayList<>();
-                // first document ID is as-is; the rest are gaps
-                int currentDocumentId = randomAccessPosting.readInt() + latestDocumentId;
-                latestDocumentId = currentDocumentId - latestDocumentId;
-                int positionsSize = randomAccessPosting.readInt();
-                int latestPosition = 0;
+        // retrieve the byte position of the term's postings from the term dictionary
+        long bytePosition = termDictionary.getPostingsPosition(term);
+        if (bytePosition < 0) {
+            // the term does not exist in the vocabulary
+            return resultPostings;
+        }
+        if (postingsVersion >= PostingsFormat.BLOCKED) {
+            return readBlockedPostings(bytePosition, true);
+        }
+        // the int value at the term's offset is the size of the postings list
+        int postingsSize = postingsFile.getInt(bytePosition);
+        if (postingsVersion != PostingsFormat.LEGACY) {
+            return decodePostings(bytePosition, postingsSize, true);
+        }
+        long currentBytePosition = bytePosition + Integer.BYTES;
+        int latestDocumentId = 0;
 
-                for (int j = 0; j < positionsSize; ++j) {
-                    // first position is as-is; the rest are gaps
-                    int currentPosition = randomAccessPosting.readInt() + latestPosition;
-                    positions.add(currentPosition);
-                    latestPosition = currentPosition - latestPosition;
-                }
-                Posting newPosting = new Posting(currentDocumentId, positions);
-                resultPostings.add(newPosting);
-            }
+        // iterate through all postings for the term
+        for (int i = 0; i < postingsSize; ++i) {
+            ArrayList<Integer> positions = new ArrayList<>();
+            // first document ID is as-is; the rest are gaps
+            int currentDocumentId = postingsFile.getInt(currentBytePosition) + latestDocumentId;
+            latestDocumentId = currentDocumentId - latestDocumentId;
+            int positionsSize = postingsFile.getInt(currentBytePosition + Integer.BYTES);
+            currentBytePosition += 2 * Integer.BYTES;
+            int latestPosition = 0;
 
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (NullPointerException e) {
-            // bTree.get(term) returning null means that the term does not exist in the vocabulary
-            return new ArrayList<>();
+            for (int j = 0; j < positionsSize; ++j) {
+                // first position is as-is; the rest are gaps
+                int currentPosition = postingsFile.getInt(currentBytePosition) + latestPosition;
+                currentBytePosition += Integer.BYTES;
+                positions.add(currentPosition);
+                latestPosition = currentPosition - latestPosition;
+            }
+            Posting newPosting = new Posting(currentDocumentId, positions);
+            resultPostings.add(newPosting);
         }
 
         return resultPostings;
@@ -82,81 +129,180 @@ public class DiskPositionalIndex implements Index<String, Posting>, Closeable {
     public List<Posting> getPositionlessPostings(String term) {
         List<Posting> resultPostings = new ArrayList<>();
 
-        try {
-            // retrieve the byte position value for the term key within the B+ Tree
-            int bytePosition = bTree.get(term);
-            // jump to the offset containing the term's postings
-            randomAccessPosting.seek(bytePosition);
-            // the current int value at the offset is the size of the postings list
-            int postingsSize = randomAccessPosting.readInt();
-            int latestDocumentId = 0;
-
-            // iterate through all postings for the term
-            for (int i = 0; i < postingsSize; ++i) {
-                ArrayList<Integer> positions = new ArrayList<>();
-                // first document ID is as-is; the rest are gaps
-                int currentDocumentId = randomAccessPosting.readInt() + latestDocumentId;
-                latestDocumentId = currentDocumentId - latestDocumentId;
-                int positionsSize = randomAccessPosting.readInt();
-                // skip the other position bytes
-                randomAccessPosting.skipBytes(positionsSize * Integer.BYTES);
-
-                // add empty positions
+        // retrieve the byte position of the term's postings from the term dictionary
+        long bytePosition = termDictionary.getPostingsPosition(term);
+        if (bytePosition < 0) {
+            // the term does not exist in the vocabulary
+            return resultPostings;
+        }
+        if (postingsVersion >= PostingsFormat.BLOCKED) {
+            return readBlockedPostings(bytePosition, false);
+        }
+        // the int value at the term's offset is the size of the postings list
+        int postingsSize = postingsFile.getInt(bytePosition);
+        if (postingsVersion != PostingsFormat.LEGACY) {
+            return decodePostings(bytePosition, postingsSize, false);
+        }
+        long currentBytePosition = bytePosition + Integer.BYTES;
+        int latestDocumentId = 0;
+
+        // iterate through all postings for the term
+        for (int i = 0; i < postingsSize; ++i) {
+            // first document ID is as-is; the rest are gaps
+            int currentDocumentId = postingsFile.getInt(currentBytePosition) + latestDocumentId;
+            latestDocumentId = currentDocumentId - latestDocumentId;
+            int positionsSize = postingsFile.getInt(currentBytePosition + Integer.BYTES);
+            // skip the other position bytes
+            currentBytePosition += (2 + positionsSize) * Integer.BYTES;
+
+            // only keep the number of positions
+            Posting newPosting = new Posting(currentDocumentId, positionsSize);
+            resultPostings.add(newPosting);
+        }
+
+        return resultPostings;
+    }
+
+    /**
+     * Decodes the variable-byte postings of the term at the byte position of the postings file.
+     * @param bytePosition the byte position of the term's postings
+     * @param postingsSize the document frequency of the term
+     * @param withPositions whether the positions are decoded, rather than only their number
+     * @return the term's list of postings
+     */
+    private List<Posting> decodePostings(long bytePosition, int postingsSize, boolean withPositions) {
+        PostingsFormat.Decoder decoder = new PostingsFormat.Decoder(
+                PostingsFormat.readEncodedPostings(postingsFile, bytePosition), 0);
+        List<Posting> resultPostings = new ArrayList<>(postingsSize);
+
+        for (int i = 0; i < postingsSize; ++i) {
+            int currentDocumentId = decoder.nextDocumentId();
+            int positionsSize = decoder.nextTermFrequency();
+
+            if (withPositions) {
+                ArrayList<Integer> positions = new ArrayList<>(positionsSize);
                 for (int j = 0; j < positionsSize; ++j) {
-                    positions.add(0);
+                    positions.add(decoder.nextPosition());
                 }
-
-                Posting newPosting = new Posting(currentDocumentId, positions);
-                resultPostings.add(newPosting);
+                resultPostings.add(new Posting(currentDocumentId, positions));
+            } else {
+                // positionless postings only keep the number of positions
+                decoder.skipPositions(positionsSize);
+                resultPostings.add(new Posting(currentDocumentId, positionsSize));
             }
-
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (NullPointerException e) {
-            // bTree.get(term) returning null means that the term does not exist in the vocabulary
-            return new ArrayList<>();
         }
 
         return resultPostings;
     }
 
+    /**
+     * Decodes every block of the term's postings.
+     * @param bytePosition the byte position of the term's postings
+     * @param withPositions whether the positions are decoded, rather than only their number
+     * @return the term's list of postings
+     */
+    private List<Posting> readBlockedPostings(long bytePosition, boolean withPositions) {
+        return PostingsIterator.toPostings(new BlockPostingsIterator(postingsFile, positionsFile, postingsVersion,
+                bytePosition, true, withPositions), withPositions);
+    }
+
     @Override
-    public List<String> getVocabulary() {
-        List<String> vocabulary = new ArrayList<>();
-
-        try (FileInputStream fileStream = new FileInputStream(pathToBTreeBin);
-             BufferedInputStream bufferStream = new BufferedInputStream(fileStream);
-             DataInputStream dataStream = new DataInputStream(bufferStream)) {
-            // write the total size of the vocabulary
-            int vocabularySize = dataStream.readInt();
-
-            // traverse through the vocabulary terms
-            for (int i = 0; i < vocabularySize; ++i) {
-                // read each String byte length normally
-                int currentBytesLength = dataStream.readInt();
-                StringBuilder term = new StringBuilder();
-
-                // convert each byte to a character and build to our original term
-                for (int j = 0; j < currentBytesLength; ++j) {
-                    term.append((char) dataStream.readByte());
-                }
+    public PostingsIterator getPostingsIterator(String term, boolean withPositions) {
+        long bytePosition = termDictionary.getPostingsPosition(term);
 
-                vocabulary.add(term.toString());
+        if (bytePosition < 0) {
+            return new ListPostingsIterator(new ArrayList<>());
+        }
+        // older formats have no skip table, so their postings are read in full
+        if (postingsVersion < PostingsFormat.BLOCKED) {
+            return new ListPostingsIterator(withPositions ? getPostings(term) : getPositionlessPostings(term));
+        }
+        return new BlockPostingsIterator(postingsFile, positionsFile, postingsVersion, bytePosition, true,
+                withPositions);
+    }
 
-                // after reading the term bytes, skip the next byte position since we only need the vocabulary
-                dataStream.skipBytes(4);
-            }
+    /**
+     * Returns the bound of the term, or `NO_BOUND` if the index was written without bounds.
+     */
+    @Override
+    public double getMaxWeight(String term) {
+        if (termBounds == null) {
+            return NO_BOUND;
+        }
+        int ordinal = termDictionary.findOrdinal(term);
 
-        } catch (IOException e) {
-            e.printStackTrace();
+        return (ordinal >= 0 ? termBounds.getMaxWeight(ordinal) : 0);
+    }
+
+    @Override
+    public DocumentBitmap getDocumentBitmap(String term) {
+        if (documentBitmaps == null) {
+            return null;
         }
+        int ordinal = termDictionary.findOrdinal(term);
+
+        return (ordinal >= 0 ? documentBitmaps.getBitmap(ordinal) : null);
+    }
+
+    /**
+     * Returns the layout of the postings files and the statistics of the corpus they were written from.
+     * @return the header, or null if the postings were written before the `PostingsFormat.LARGE_OFFSETS` layout
+     */
+    public PostingsFormat.Header getHeader() {
+        return header;
+    }
 
-        // vocabulary should already be sorted
-        return vocabulary;
+    @Override
+    public List<String> getVocabulary() {
+        // vocabulary is already sorted within the term dictionary
+        return termDictionary.getVocabulary();
     }
 
     @Override
     public void close() throws IOException {
-        randomAccessPosting.close();
+        postingsFile.close();
+        if (positionsFile != null) {
+            positionsFile.close();
+        }
+        if (termBounds != null) {
+            termBounds.close();
+        }
+        if (documentBitmaps != null) {
+            documentBitmaps.close();
+        }
+        termDictionary.close();
+    }
+
+    /**
+     * Opens the term bounds, unless the index is older than its bounds or the bounds belong to another dictionary.
+     */
+    private DiskTermBounds openTermBounds(String pathToTermBoundsBin) throws IOException {
+        if (pathToTermBoundsBin == null || !new File(pathToTermBoundsBin).exists()) {
+            return null;
+        }
+        DiskTermBounds bounds = new DiskTermBounds(pathToTermBoundsBin);
+
+        if (bounds.size() != termDictionary.size()) {
+            bounds.close();
+            return null;
+        }
+        return bounds;
+    }
+
+    /**
+     * Opens the document bitmaps, unless the index is older than its bitmaps or the bitmaps belong to another
+     * dictionary.
+     */
+    private DiskDocumentBitmaps openDocumentBitmaps(String pathToDocBitmapsBin) throws IOException {
+        if (pathToDocBitmapsBin == null || !new File(pathToDocBitmapsBin).exists()) {
+            return null;
+        }
+        DiskDocumentBitmaps bitmaps = new DiskDocumentBitmaps(pathToDocBitmapsBin);
+
+        if (bitmaps.size() != termDictionary.size()) {
+            bitmaps.close();
+            return null;
+        }
+        return bitmaps;
     }
 }
@@ -0,0 +1,82 @@
+
+package application.indexes;
+
+import java.io.*;
+import java.nio.FloatBuffer;
+
+/**
+ * A DiskTermBounds reads the score bound of every term of an on-disk index in place. The bound of a term is the
+ * largest normalized weight w(d,t) / L(d) of any document d containing it, so that a ranked query can skip every
+ * document that could not reach the top results.
+ * <p>
+ * The file begins with a header of a magic number, the version and the number of terms, followed by the 4-byte bound
+ * of every term in the same order as the terms of its `DiskTermDictionary`. Each bound is rounded up to the next
+ * float, so that it is never below the weight it stands for.
+ */
+public class DiskTermBounds implements Closeable {
+
+    // spells "TBND", so that other index files are not mistaken for bounds
+    private static final int MAGIC_NUMBER = 0x54424E44;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    private final MappedFile boundsFile;
+    private final int numOfTerms;
+    private final FloatBuffer maxWeights;
+
+    public DiskTermBounds(String pathToTermBoundsBin) throws IOException {
+        boundsFile = new MappedFile(pathToTermBoundsBin);
+
+        if (boundsFile.length() < HEADER_SIZE || boundsFile.getInt(0) != MAGIC_NUMBER) {
+            boundsFile.close();
+            throw new IOException("`" + pathToTermBoundsBin + "` is not a term bounds file; please rebuild the index.");
+        }
+        int version = boundsFile.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            boundsFile.close();
+            throw new IOException("Unsupported term bounds version " + version);
+        }
+        numOfTerms = boundsFile.getInt(2L * Integer.BYTES);
+        maxWeights = boundsFile.slice(HEADER_SIZE, numOfTerms * Float.BYTES).asFloatBuffer();
+    }
+
+    /**
+     * Writes the header of the bounds file; the bound of each term follows it.
+     * @param dataStream the stream of the bounds file
+     * @param numOfTerms the number of terms in the term dictionary
+     */
+    static void writeHeader(DataOutputStream dataStream, int numOfTerms) throws IOException {
+        dataStream.writeInt(MAGIC_NUMBER);
+        dataStream.writeInt(VERSION);
+        dataStream.writeInt(numOfTerms);
+    }
+
+    /**
+     * Returns the smallest float at or above the weight, which is how each bound is stored.
+     */
+    static float roundUp(double maxWeight) {
+        float roundedWeight = (float) maxWeight;
+
+        return (roundedWeight < maxWeight ? Math.nextUp(roundedWeight) : roundedWeight);
+    }
+
+    /**
+     * Returns the number of terms with a bound.
+     */
+    public int size() {
+        return numOfTerms;
+    }
+
+    /**
+     * Returns the largest w(d,t) / L(d) of any document containing the term.
+     * @param ordinal the ordinal of the term within its term dictionary
+     */
+    public float getMaxWeight(int ordinal) {
+        return maxWeights.get(ordinal);
+    }
+
+    @Override
+    public void close() {
+        boundsFile.close();
+    }
+}
@@ -0,0 +1,399 @@
+
+package application.indexes;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A DiskTermDictionary maps the sorted vocabulary of an on-disk index to the document frequency and postings byte
+ * position of each term. The file is memory mapped and read in place, so opening it only reads the first term of
+ * each block, and the terms are never rebuilt into a tree on the heap.
+ * <p>
+ * The file begins with a header of a magic number, the version, the number of terms and the number of terms per
+ * block, followed by the 8-byte position of every block. Each block front codes its terms: every entry holds the
+ * number of leading bytes it shares with the previous term of the block, then the length and UTF-8 bytes of the
+ * rest of the term, its document frequency, and its postings byte position. The first term of each block is
+ * written in full with its absolute byte position, while later terms store the gap from the previous position.
+ * Every number in an entry is written in the same 7-bit groups as the variable-byte postings.
+ * <p>
+ * Terms are looked up by binary searching the first term of each block, then decoding the one block that can hold
+ * the term. Every read is made at an absolute position, so any number of threads may read at once.
+ */
+public class DiskTermDictionary implements Closeable {
+
+    public static final int BLOCK_SIZE = 16;   // the number of terms in every block but the last
+
+    // spells "TRMS", so that B+ tree files of older indexes are not mistaken for a dictionary
+    private static final int MAGIC_NUMBER = 0x54524D53;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    private final MappedFile termsFile;
+    private final int numOfTerms;
+    private final int blockSize;
+    private final long[] blockPositions;    // the byte position of each block, with the end of the file appended
+    private final String[] firstTerms;      // the first term of each block, which is all that is kept on the heap
+    private volatile List<String> vocabulary;   // the decoded vocabulary, only built once it is asked for
+
+    public DiskTermDictionary(String pathToTermsBin) throws IOException {
+        termsFile = new MappedFile(pathToTermsBin);
+
+        if (termsFile.length() < HEADER_SIZE || termsFile.getInt(0) != MAGIC_NUMBER) {
+            throw new IOException("`" + pathToTermsBin + "` is not a term dictionary; please rebuild the index.");
+        }
+        int version = termsFile.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IOException("Unsupported term dictionary version " + version);
+        }
+        numOfTerms = termsFile.getInt(2L * Integer.BYTES);
+        blockSize = termsFile.getInt(3L * Integer.BYTES);
+
+        int numOfBlocks = (numOfTerms + blockSize - 1) / blockSize;
+        ByteBuffer blockTable = termsFile.slice(HEADER_SIZE, numOfBlocks * Long.BYTES);
+        blockPositions = new long[numOfBlocks + 1];
+        firstTerms = new String[numOfBlocks];
+
+        for (int block = 0; block < numOfBlocks; ++block) {
+            blockPositions[block] = blockTable.getLong(block * Long.BYTES);
+        }
+        blockPositions[numOfBlocks] = termsFile.length();
+        for (int block = 0; block < numOfBlocks; ++block) {
+            BlockReader reader = new BlockReader(block);
+            reader.next();
+            firstTerms[block] = reader.getTerm();
+        }
+    }
+
+    /**
+     * Returns the number of terms in the dictionary.
+     */
+    public int size() {
+        return numOfTerms;
+    }
+
+    /**
+     * Finds the ordinal of the term, which is its index within the sorted vocabulary.
+     * @param term the term to find
+     * @return the ordinal of the term, or `-(insertion point) - 1` if it is not in the dictionary, where the insertion
+     * point is the ordinal of the first greater term
+     */
+    public int findOrdinal(String term) {
+        int block = findBlock(term);
+        if (block < 0) {
+            return -1;
+        }
+        BlockReader reader = new BlockReader(block);
+
+        while (reader.next()) {
+            int comparison = reader.getTerm().compareTo(term);
+
+            if (comparison == 0) {
+                return reader.ordinal;
+            } else if (comparison > 0) {
+                return -reader.ordinal - 1;
+            }
+        }
+
+        return -reader.ordinal - 2;
+    }
+
+    /**
+     * Returns the byte position of the term's postings within the postings file.
+     * @param term the term to find
+     * @return the byte position, or -1 if the term is not in the dictionary
+     */
+    public long getPostingsPosition(String term) {
+        BlockReader reader = findEntry(term);
+
+        return (reader != null ? reader.postingsPosition : -1);
+    }
+
+    /**
+     * Returns the number of documents containing the term, or 0 if the term is not in the dictionary.
+     */
+    public int getDocumentFrequency(String term) {
+        BlockReader reader = findEntry(term);
+
+        return (reader != null ? reader.documentFrequency : 0);
+    }
+
+    public String getTerm(int ordinal) {
+        return seek(ordinal).getTerm();
+    }
+
+    public int getDocumentFrequency(int ordinal) {
+        return seek(ordinal).documentFrequency;
+    }
+
+    public long getPostingsPosition(int ordinal) {
+        return seek(ordinal).postingsPosition;
+    }
+
+    /**
+     * Decodes the terms within a range of ordinals, reading each block in the range once.
+     * @param fromOrdinal the ordinal of the first term, inclusive
+     * @param toOrdinal the ordinal after the last term, exclusive
+     * @return the terms of the range, in sorted order
+     */
+    public List<String> getTerms(int fromOrdinal, int toOrdinal) {
+        List<String> terms = new ArrayList<>(Math.max(0, toOrdinal - fromOrdinal));
+        if (fromOrdinal >= toOrdinal) {
+            return terms;
+        }
+        BlockReader reader = seek(fromOrdinal);
+        terms.add(reader.getTerm());
+
+        for (int ordinal = fromOrdinal + 1; ordinal < toOrdinal; ++ordinal) {
+            // each block's first term is written in full, so the next block can be read from its start
+            if (!reader.next()) {
+                reader = new BlockReader(ordinal / blockSize);
+                reader.next();
+            }
+            terms.add(reader.getTerm());
+        }
+
+        return terms;
+    }
+
+    /**
+     * Decodes the terms of the given ordinals, reading each block that holds one of them once.
+     * @param ordinals the ordinals of the terms, in ascending order
+     * @param numOfOrdinals the number of ordinals to read from the start of the array
+     * @return the terms of the ordinals, in sorted order
+     */
+    public List<String> getTerms(int[] ordinals, int numOfOrdinals) {
+        List<String> terms = new ArrayList<>(numOfOrdinals);
+        BlockReader reader = null;
+
+        for (int i = 0; i < numOfOrdinals; ++i) {
+            int ordinal = ordinals[i];
+            if (ordinal < 0 || ordinal >= numOfTerms) {
+                throw new IndexOutOfBoundsException("Ordinal " + ordinal + " is outside of " + numOfTerms + " terms");
+            }
+            // ascending ordinals within the same block are reached by decoding further into it
+            if (reader == null || ordinal >= reader.endOrdinal) {
+                reader = new BlockReader(ordinal / blockSize);
+            }
+            while (reader.ordinal < ordinal) {
+                reader.next();
+            }
+            terms.add(reader.getTerm());
+        }
+
+        return terms;
+    }
+
+    /**
+     * Returns the sorted vocabulary, which is decoded the first time it is asked for and then shared.
+     */
+    public List<String> getVocabulary() {
+        List<String> terms = vocabulary;
+
+        if (terms == null) {
+            terms = Collections.unmodifiableList(getTerms(0, numOfTerms));
+            vocabulary = terms;
+        }
+
+        return terms;
+    }
+
+    @Override
+    public void close() {
+        termsFile.close();
+    }
+
+    /**
+     * Returns the last block whose first term is at or before the term, or -1 if the term precedes every block.
+     */
+    private int findBlock(String term) {
+        int block = Arrays.binarySearch(firstTerms, term);
+
+        return (block >= 0 ? block : -block - 2);
+    }
+
+    private BlockReader findEntry(String term) {
+        int block = findBlock(term);
+        if (block < 0) {
+            return null;
+        }
+        // equal terms have equal bytes, so the block can be scanned without decoding each term into a String
+        byte[] termBytes = term.getBytes(StandardCharsets.UTF_8);
+        BlockReader reader = new BlockReader(block);
+
+        while (reader.next()) {
+            if (reader.termLength == termBytes.length &&
+                    Arrays.equals(reader.termBytes, 0, reader.termLength, termBytes, 0, termBytes.length)) {
+                return reader;
+            }
+        }
+
+        return null;
+    }
+
+    private BlockReader seek(int ordinal) {
+        if (ordinal < 0 || ordinal >= numOfTerms) {
+            throw new IndexOutOfBoundsException("Ordinal " + ordinal + " is outside of " + numOfTerms + " terms");
+        }
+        BlockReader reader = new BlockReader(ordinal / blockSize);
+
+        do {
+            reader.next();
+        } while (reader.ordinal < ordinal);
+
+        return reader;
+    }
+
+    /**
+     * Decodes the entries of a single block in order.
+     */
+    private class BlockReader {
+
+        private final ByteBuffer bytes;
+        private final int endOrdinal;   // the ordinal after the block's last term
+        private int offset;
+        private int ordinal;        // the ordinal of the current entry
+        private byte[] termBytes;
+        private int termLength;
+        private int documentFrequency;
+        private long postingsPosition;
+
+        private BlockReader(int block) {
+            bytes = termsFile.slice(blockPositions[block],
+                    (int) (blockPositions[block + 1] - blockPositions[block]));
+            ordinal = block * blockSize - 1;
+            endOrdinal = Math.min(numOfTerms, (block + 1) * blockSize);
+            termBytes = new byte[32];
+        }
+
+        /**
+         * Moves to the next entry of the block.
+         * @return whether there was another entry within the block
+         */
+        private boolean next() {
+            if (ordinal + 1 >= endOrdinal) {
+                return false;
+            }
+            boolean isFirst = (offset == 0);
+            int sharedLength = (int) readVariableByte();
+            int suffixLength = (int) readVariableByte();
+
+            termLength = sharedLength + suffixLength;
+            if (termBytes.length < termLength) {
+                termBytes = Arrays.copyOf(termBytes, Math.max(termLength, termBytes.length * 2));
+            }
+            bytes.get(offset, termBytes, sharedLength, suffixLength);
+            offset += suffixLength;
+            documentFrequency = (int) readVariableByte();
+            postingsPosition = (isFirst ? 0 : postingsPosition) + readVariableByte();
+            ++ordinal;
+
+            return true;
+        }
+
+        private String getTerm() {
+            return new String(termBytes, 0, termLength, StandardCharsets.UTF_8);
+        }
+
+        private long readVariableByte() {
+            long number = 0;
+            byte currentByte;
+
+            do {
+                currentByte = bytes.get(offset++);
+                number = (number << 7) | (currentByte & 0x7F);
+            } while (currentByte >= 0);
+
+            return number;
+        }
+    }
+
+    /**
+     * Writes a term dictionary; terms must be added in sorted order. The blocks are kept in memory until the
+     * dictionary is closed, since the header records the number of terms.
+     */
+    public static class Writer implements Closeable {
+
+        private final String pathToTermsBin;
+        private final ByteArrayOutputStream blocks;
+        private final List<Long> blockOffsets;      // the offset of each block within the blocks
+        private byte[] previousTermBytes;
+        private long previousPostingsPosition;
+        private int numOfTerms;
+
+        public Writer(String newPathToTermsBin) {
+            pathToTermsBin = newPathToTermsBin;
+            blocks = new ByteArrayOutputStream();
+            blockOffsets = new ArrayList<>();
+            previousTermBytes = new byte[0];
+        }
+
+        /**
+         * Adds the next term of the vocabulary.
+         * @param term the term, which must follow every term added before it
+         * @param documentFrequency the number of documents containing the term
+         * @param postingsPosition the byte position of the term's postings within the postings file
+         */
+        public void add(String term, int documentFrequency, long postingsPosition) {
+            byte[] termBytes = term.getBytes(StandardCharsets.UTF_8);
+            int sharedLength = 0;
+
+            if (numOfTerms % BLOCK_SIZE == 0) {
+                // the first term of a block is written in full, so that the block can be decoded on its own
+                blockOffsets.add((long) blocks.size());
+                previousPostingsPosition = 0;
+            } else {
+                int maxSharedLength = Math.min(termBytes.length, previousTermBytes.length);
+                while (sharedLength < maxSharedLength && termBytes[sharedLength] == previousTermBytes[sharedLength]) {
+                    ++sharedLength;
+                }
+            }
+            writeVariableByte(blocks, sharedLength);
+            writeVariableByte(blocks, termBytes.length - sharedLength);
+            blocks.write(termBytes, sharedLength, termBytes.length - sharedLength);
+            writeVariableByte(blocks, documentFrequency);
+            writeVariableByte(blocks, postingsPosition - previousPostingsPosition);
+
+            previousTermBytes = termBytes;
+            previousPostingsPosition = postingsPosition;
+            ++numOfTerms;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (FileOutputStream fileStream = new FileOutputStream(pathToTermsBin, false);
+                 BufferedOutputStream bufferStream = new BufferedOutputStream(fileStream);
+                 DataOutputStream dataStream = new DataOutputStream(bufferStream)) {
+                dataStream.writeInt(MAGIC_NUMBER);
+                dataStream.writeInt(VERSION);
+                dataStream.writeInt(numOfTerms);
+                dataStream.writeInt(BLOCK_SIZE);
+
+                long firstBlockPosition = HEADER_SIZE + (long) blockOffsets.size() * Long.BYTES;
+                for (long blockOffset : blockOffsets) {
+                    dataStream.writeLong(firstBlockPosition + blockOffset);
+                }
+                blocks.writeTo(dataStream);
+            }
+        }
+
+        /**
+         * Writes the non-negative number in 7-bit groups, from most to least significant.
+         */
+        private static void writeVariableByte(ByteArrayOutputStream byteStream, long number) {
+            // the high bit of every group but the last is clear, so find the most significant group first
+            int shift = 63;
+            while (shift > 0 && (number >>> shift) == 0) {
+                shift -= 7;
+            }
+            for (; shift > 0; shift -= 7) {
+                byteStream.write((int) (number >>> shift) & 0x7F);
+            }
+            byteStream.write((int) (number & 0x7F) | 0x80);
+        }
+    }
+}
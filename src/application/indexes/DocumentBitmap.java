@@ -0,0 +1,476 @@
+
+package application.indexes;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A DocumentBitmap is a compressed set of document IDs in the style of a roaring bitmap. The IDs are split by their
+ * upper 16 bits into containers of up to 65536 documents each; a container holding few documents stores their lower
+ * 16 bits as a sorted array, while a denser one stores a bitmap of 1024 longs. Intersecting, unioning and
+ * subtracting the documents of dense terms then costs a few thousand word operations per 65536 documents, rather
+ * than a comparison and an object per posting.
+ * <p>
+ * Bitmaps are never modified once they are built, so the results of the operations may share containers with
+ * their operands.
+ */
+public class DocumentBitmap {
+
+    private static final int ARRAY_LIMIT = 4096;    // containers holding more documents are stored as bitmaps
+    private static final int BITMAP_WORDS = (1 << Character.SIZE) / Long.SIZE;
+
+    private char[] keys;    // the upper 16 bits of the document IDs of each container, in ascending order
+    private Container[] containers;
+    private int numOfContainers;
+
+    public DocumentBitmap() {
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    /**
+     * Builds the bitmap of every document an iterator moves through.
+     * @param postings the iterator, which must not have moved yet
+     * @return the bitmap of the iterator's documents
+     */
+    public static DocumentBitmap fromPostings(PostingsIterator postings) {
+        DocumentBitmap bitmap = new DocumentBitmap();
+
+        for (int documentId = postings.nextDoc(); documentId != PostingsIterator.NO_MORE_DOCS;
+             documentId = postings.nextDoc()) {
+            bitmap.appendDocument(documentId);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Adds a document greater than every document already in the bitmap, while the bitmap is being built.
+     */
+    void appendDocument(int documentId) {
+        char key = (char) (documentId >>> Character.SIZE);
+
+        if (numOfContainers == 0 || keys[numOfContainers - 1] != key) {
+            appendContainer(key, new Container(new char[16], 0));
+        }
+        containers[numOfContainers - 1].append((char) documentId);
+    }
+
+    private void appendContainer(char key, Container container) {
+        if (numOfContainers == keys.length) {
+            keys = Arrays.copyOf(keys, numOfContainers * 2);
+            containers = Arrays.copyOf(containers, numOfContainers * 2);
+        }
+        keys[numOfContainers] = key;
+        containers[numOfContainers++] = container;
+    }
+
+    /**
+     * Returns the number of documents in the bitmap.
+     */
+    public int getCardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < numOfContainers; ++i) {
+            cardinality += containers[i].cardinality;
+        }
+
+        return cardinality;
+    }
+
+    public boolean contains(int documentId) {
+        int i = findContainer((char) (documentId >>> Character.SIZE));
+
+        return (i < numOfContainers && keys[i] == (documentId >>> Character.SIZE) &&
+                containers[i].contains((char) documentId));
+    }
+
+    /**
+     * Finds the first document of the bitmap at or past the target.
+     * @param target the document ID to find
+     * @return the ID of the document, or `PostingsIterator.NO_MORE_DOCS` if there is none
+     */
+    public int nextDocumentId(int target) {
+        target = Math.max(target, 0);
+        int key = target >>> Character.SIZE;
+
+        for (int i = findContainer((char) key); i < numOfContainers; ++i) {
+            int low = containers[i].next(keys[i] == key ? target & 0xFFFF : 0);
+
+            if (low >= 0) {
+                return (keys[i] << Character.SIZE) | low;
+            }
+        }
+
+        return PostingsIterator.NO_MORE_DOCS;
+    }
+
+    /**
+     * Returns the documents found in both bitmaps.
+     */
+    public DocumentBitmap and(DocumentBitmap other) {
+        DocumentBitmap result = new DocumentBitmap();
+        int i = 0;
+        int j = 0;
+
+        while (i < numOfContainers && j < other.numOfContainers) {
+            if (keys[i] < other.keys[j]) {
+                ++i;
+            } else if (keys[i] > other.keys[j]) {
+                ++j;
+            } else {
+                Container container = Container.and(containers[i], other.containers[j]);
+                if (container.cardinality > 0) {
+                    result.appendContainer(keys[i], container);
+                }
+                ++i;
+                ++j;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the documents found in either bitmap.
+     */
+    public DocumentBitmap or(DocumentBitmap other) {
+        DocumentBitmap result = new DocumentBitmap();
+        int i = 0;
+        int j = 0;
+
+        while (i < numOfContainers || j < other.numOfContainers) {
+            if (j == other.numOfContainers || (i < numOfContainers && keys[i] < other.keys[j])) {
+                result.appendContainer(keys[i], containers[i]);
+                ++i;
+            } else if (i == numOfContainers || keys[i] > other.keys[j]) {
+                result.appendContainer(other.keys[j], other.containers[j]);
+                ++j;
+            } else {
+                result.appendContainer(keys[i], Container.or(containers[i], other.containers[j]));
+                ++i;
+                ++j;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the documents of this bitmap that are not found in the other bitmap, which is how the deleted documents
+     * of a segment are taken out of its bitmaps; queries have no NOT operator to subtract bitmaps with.
+     */
+    DocumentBitmap andNot(DocumentBitmap other) {
+        DocumentBitmap result = new DocumentBitmap();
+        int j = 0;
+
+        for (int i = 0; i < numOfContainers; ++i) {
+            while (j < other.numOfContainers && other.keys[j] < keys[i]) {
+                ++j;
+            }
+            if (j < other.numOfContainers && other.keys[j] == keys[i]) {
+                Container container = Container.andNot(containers[i], other.containers[j]);
+                if (container.cardinality > 0) {
+                    result.appendContainer(keys[i], container);
+                }
+            } else {
+                result.appendContainer(keys[i], containers[i]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the bitmap as the number of containers, followed by the key, the number of documents and the contents
+     * of each container: a 2-byte value per document if it holds at most 4096 documents, and 1024 longs otherwise.
+     */
+    public void write(DataOutputStream dataStream) throws IOException {
+        dataStream.writeInt(numOfContainers);
+
+        for (int i = 0; i < numOfContainers; ++i) {
+            Container container = containers[i];
+            dataStream.writeChar(keys[i]);
+            dataStream.writeInt(container.cardinality);
+
+            if (container.values != null) {
+                for (int j = 0; j < container.cardinality; ++j) {
+                    dataStream.writeChar(container.values[j]);
+                }
+            } else {
+                for (long word : container.words) {
+                    dataStream.writeLong(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a bitmap written by `write`.
+     * @param buffer the buffer positioned at the start of the bitmap
+     */
+    public static DocumentBitmap read(ByteBuffer buffer) {
+        DocumentBitmap bitmap = new DocumentBitmap();
+        int numOfContainers = buffer.getInt();
+
+        for (int i = 0; i < numOfContainers; ++i) {
+            char key = buffer.getChar();
+            int cardinality = buffer.getInt();
+
+            if (cardinality <= ARRAY_LIMIT) {
+                char[] values = new char[cardinality];
+                buffer.asCharBuffer().get(values);
+                buffer.position(buffer.position() + cardinality * Character.BYTES);
+                bitmap.appendContainer(key, new Container(values, cardinality));
+            } else {
+                long[] words = new long[BITMAP_WORDS];
+                buffer.asLongBuffer().get(words);
+                buffer.position(buffer.position() + BITMAP_WORDS * Long.BYTES);
+                bitmap.appendContainer(key, new Container(words, cardinality));
+            }
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Binary searches for the first container whose key is at or past the key.
+     */
+    private int findContainer(char key) {
+        int low = 0;
+        int high = numOfContainers;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * The lower 16 bits of the documents sharing the same upper 16 bits, as either a sorted array or a bitmap.
+     */
+    private static class Container {
+
+        private char[] values;  // the sorted values of an array container, or null if it is a bitmap
+        private long[] words;   // the words of a bitmap container, or null if it is an array
+        private int cardinality;
+
+        private Container(char[] newValues, int newCardinality) {
+            values = newValues;
+            cardinality = newCardinality;
+        }
+
+        private Container(long[] newWords, int newCardinality) {
+            words = newWords;
+            cardinality = newCardinality;
+        }
+
+        /**
+         * Stores the values as an array, or as a bitmap if there are too many of them.
+         */
+        private static Container fromValues(char[] values, int cardinality) {
+            if (cardinality <= ARRAY_LIMIT) {
+                return new Container(values, cardinality);
+            }
+
+            return new Container(toWords(values, cardinality), cardinality);
+        }
+
+        /**
+         * Stores the words as a bitmap, or as an array if they hold few enough values.
+         */
+        private static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_LIMIT) {
+                return new Container(words, cardinality);
+            }
+
+            char[] values = new char[cardinality];
+            int numOfValues = 0;
+            for (int i = 0; i < BITMAP_WORDS; ++i) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    values[numOfValues++] = (char) (i * Long.SIZE + Long.numberOfTrailingZeros(word));
+                }
+            }
+
+            return new Container(values, cardinality);
+        }
+
+        /**
+         * Adds a value greater than every value already in the container.
+         */
+        private void append(char value) {
+            // an array that outgrows its limit becomes a bitmap, which takes the same 8 KB as 4096 values
+            if (values != null && cardinality == ARRAY_LIMIT) {
+                words = toWords(values, cardinality);
+                values = null;
+            }
+            if (values != null) {
+                if (cardinality == values.length) {
+                    values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_LIMIT));
+                }
+                values[cardinality] = value;
+            } else {
+                words[value >>> 6] |= 1L << value;
+            }
+            ++cardinality;
+        }
+
+        private boolean contains(char value) {
+            if (values != null) {
+                return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+            }
+
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        /**
+         * Returns the first value at or past the target, or -1 if there is none.
+         */
+        private int next(int target) {
+            if (values != null) {
+                int index = Arrays.binarySearch(values, 0, cardinality, (char) target);
+                if (index < 0) {
+                    index = -index - 1;
+                }
+
+                return (index < cardinality ? values[index] : -1);
+            }
+
+            int wordIndex = target >>> 6;
+            long word = words[wordIndex] & (-1L << target);
+            while (word == 0) {
+                if (++wordIndex == BITMAP_WORDS) {
+                    return -1;
+                }
+                word = words[wordIndex];
+            }
+
+            return wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+        }
+
+        private static long[] toWords(char[] values, int cardinality) {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; ++i) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+
+            return words;
+        }
+
+        private static Container and(Container left, Container right) {
+            if (left.words != null && right.words != null) {
+                long[] words = new long[BITMAP_WORDS];
+                for (int i = 0; i < BITMAP_WORDS; ++i) {
+                    words[i] = left.words[i] & right.words[i];
+                }
+
+                return fromWords(words);
+            }
+            // an array holds fewer values than a bitmap, so its values are looked up in the other container
+            Container array = (left.values != null ? left : right);
+            Container other = (array == left ? right : left);
+            char[] values = new char[Math.min(array.cardinality, other.cardinality)];
+            int cardinality = 0;
+
+            if (other.words != null) {
+                for (int i = 0; i < array.cardinality; ++i) {
+                    if (other.contains(array.values[i])) {
+                        values[cardinality++] = array.values[i];
+                    }
+                }
+            } else {
+                int i = 0;
+                int j = 0;
+                while (i < left.cardinality && j < right.cardinality) {
+                    if (left.values[i] < right.values[j]) {
+                        ++i;
+                    } else if (left.values[i] > right.values[j]) {
+                        ++j;
+                    } else {
+                        values[cardinality++] = left.values[i];
+                        ++i;
+                        ++j;
+                    }
+                }
+            }
+
+            return new Container(values, cardinality);
+        }
+
+        private static Container or(Container left, Container right) {
+            if (left.words != null || right.words != null) {
+                long[] words = (left.words != null ? left.words : right.words).clone();
+                Container other = (left.words != null ? right : left);
+
+                if (other.words != null) {
+                    for (int i = 0; i < BITMAP_WORDS; ++i) {
+                        words[i] |= other.words[i];
+                    }
+                } else {
+                    for (int i = 0; i < other.cardinality; ++i) {
+                        words[other.values[i] >>> 6] |= 1L << other.values[i];
+                    }
+                }
+
+                return fromWords(words);
+            }
+
+            char[] values = new char[left.cardinality + right.cardinality];
+            int cardinality = 0;
+            int i = 0;
+            int j = 0;
+            while (i < left.cardinality || j < right.cardinality) {
+                if (j == right.cardinality || (i < left.cardinality && left.values[i] < right.values[j])) {
+                    values[cardinality++] = left.values[i++];
+                } else if (i == left.cardinality || left.values[i] > right.values[j]) {
+                    values[cardinality++] = right.values[j++];
+                } else {
+                    values[cardinality++] = left.values[i];
+                    ++i;
+                    ++j;
+                }
+            }
+
+            return fromValues(values, cardinality);
+        }
+
+        private static Container andNot(Container left, Container right) {
+            if (left.words != null) {
+                long[] words = left.words.clone();
+
+                if (right.words != null) {
+                    for (int i = 0; i < BITMAP_WORDS; ++i) {
+                        words[i] &= ~right.words[i];
+                    }
+                } else {
+                    for (int i = 0; i < right.cardinality; ++i) {
+                        words[right.values[i] >>> 6] &= ~(1L << right.values[i]);
+                    }
+                }
+
+                return fromWords(words);
+            }
+
+            char[] values = new char[left.cardinality];
+            int cardinality = 0;
+            for (int i = 0; i < left.cardinality; ++i) {
+                if (!right.contains(left.values[i])) {
+                    values[cardinality++] = left.values[i];
+                }
+            }
+
+            return new Container(values, cardinality);
+        }
+    }
+}
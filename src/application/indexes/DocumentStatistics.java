@@ -0,0 +1,93 @@
+
+package application.indexes;
+
+import java.util.Arrays;
+
+/**
+ * A DocumentStatistics table holds the statistics of consecutive documents while they are being indexed: the
+ * document weight L(d), the number of tokens, the number of distinct terms and the size of the document in bytes.
+ * Each statistic is kept in its own growable array, in the same column order as the `DiskDocumentStatistics` file
+ * they are written to.
+ */
+public class DocumentStatistics {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] lds;
+    private int[] numsOfTokens;
+    private int[] numsOfUniqueTerms;
+    private long[] byteSizes;
+    private int size;
+
+    /**
+     * Constructs an empty table.
+     */
+    public DocumentStatistics() {
+        lds = new double[INITIAL_CAPACITY];
+        numsOfTokens = new int[INITIAL_CAPACITY];
+        numsOfUniqueTerms = new int[INITIAL_CAPACITY];
+        byteSizes = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds the statistics of the next document.
+     * @param ld the weight L(d) of the document
+     * @param numOfTokens the number of tokens in the document
+     * @param numOfUniqueTerms the number of distinct terms in the document
+     * @param byteSize the size of the document's file in bytes, or 0 if it is not read from a file
+     */
+    public void add(double ld, int numOfTokens, int numOfUniqueTerms, long byteSize) {
+        ensureCapacity(size + 1);
+        lds[size] = ld;
+        numsOfTokens[size] = numOfTokens;
+        numsOfUniqueTerms[size] = numOfUniqueTerms;
+        byteSizes[size] = byteSize;
+        ++size;
+    }
+
+    /**
+     * Appends the statistics of the documents immediately following the documents of this table.
+     * @param nextStatistics the table to append to this table
+     */
+    public void append(DocumentStatistics nextStatistics) {
+        ensureCapacity(size + nextStatistics.size);
+        System.arraycopy(nextStatistics.lds, 0, lds, size, nextStatistics.size);
+        System.arraycopy(nextStatistics.numsOfTokens, 0, numsOfTokens, size, nextStatistics.size);
+        System.arraycopy(nextStatistics.numsOfUniqueTerms, 0, numsOfUniqueTerms, size, nextStatistics.size);
+        System.arraycopy(nextStatistics.byteSizes, 0, byteSizes, size, nextStatistics.size);
+        size += nextStatistics.size;
+    }
+
+    /**
+     * Returns the number of documents in the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    public double getLd(int index) {
+        return lds[index];
+    }
+
+    public int getNumOfTokens(int index) {
+        return numsOfTokens[index];
+    }
+
+    public int getNumOfUniqueTerms(int index) {
+        return numsOfUniqueTerms[index];
+    }
+
+    public long getByteSize(int index) {
+        return byteSizes[index];
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > lds.length) {
+            int newCapacity = Math.max(minCapacity, lds.length * 2);
+            lds = Arrays.copyOf(lds, newCapacity);
+            numsOfTokens = Arrays.copyOf(numsOfTokens, newCapacity);
+            numsOfUniqueTerms = Arrays.copyOf(numsOfUniqueTerms, newCapacity);
+            byteSizes = Arrays.copyOf(byteSizes, newCapacity);
+        }
+    }
+}
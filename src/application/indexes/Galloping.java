@@ -0,0 +1,90 @@
+
+package application.indexes;
+
+import java.util.List;
+
+/**
+ * Galloping (exponential) search finds the first value at or past a target within a sorted range by probing 1, 2, 4,
+ * ... values ahead of where the search starts, then binary searching the last gap it jumped over. Advancing through
+ * a list of n values to a target d values ahead costs O(log d) rather than the O(d) of a linear scan, so
+ * intersecting a short list with a long one costs time logarithmic in the long list for each posting of the short
+ * one, while advancing to the very next value still only takes a couple of comparisons.
+ */
+class Galloping {
+
+    private Galloping() {}
+
+    /**
+     * Finds the first index within the range whose value is at or past the target.
+     * @param values the values, sorted in ascending order within the range
+     * @param from the first index of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param target the value to find
+     * @return the first index whose value is at least the target, or `to` if there is none
+     */
+    static int search(int[] values, int from, int to, int target) {
+        int low = from;
+        int step = 1;
+
+        // gallop ahead until a value at or past the target is passed, keeping the last index known to be below it
+        while (low < to && values[low] < target) {
+            int probe = low + step;
+            if (probe >= to || values[probe] >= target) {
+                return binarySearch(values, low + 1, Math.min(probe, to), target);
+            }
+            low = probe;
+            step <<= 1;
+        }
+
+        return low;
+    }
+
+    /**
+     * Finds the first index within the range whose posting's document ID is at or past the target.
+     * @param postings the postings, sorted by document ID within the range
+     * @param from the first index of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param target the document ID to find
+     * @return the first index whose document ID is at least the target, or `to` if there is none
+     */
+    static int search(List<Posting> postings, int from, int to, int target) {
+        int low = from;
+        int step = 1;
+
+        while (low < to && postings.get(low).getDocumentId() < target) {
+            int probe = low + step;
+            if (probe >= to || postings.get(probe).getDocumentId() >= target) {
+                int high = Math.min(probe, to);
+                ++low;
+
+                // binary search the gap, where every index before `low` is below the target
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (postings.get(middle).getDocumentId() < target) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                return low;
+            }
+            low = probe;
+            step <<= 1;
+        }
+
+        return low;
+    }
+
+    private static int binarySearch(int[] values, int low, int high, int target) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+}
@@ -0,0 +1,181 @@
+
+package application.indexes;
+
+import application.documents.Document;
+import application.documents.DocumentWeightScorer;
+import application.documents.FileDocument;
+import application.documents.TextFileDocument;
+import application.text.NormalizingTokenizer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * An IndexSegment holds the private index structures built from a contiguous range of documents, so that
+ * multiple segments can be built independently and merged back together in document ID order.
+ */
+public class IndexSegment {
+
+    private final TermDictionary dictionary;    // assigns the IDs of terms shared by the positional and biword indexes
+    private final PositionalInvertedIndex index;
+    private final BiwordIndex biwordIndex;
+    private final Set<String> wildcardVocabulary;   // distinct wildcard tokens, in the order they were first found
+    private final DocumentStatistics documentStatistics;   // of each indexed document, in the order they were indexed
+    private final NormalizingTokenizer tokenizer;
+    private int[] tftds;                // tf(t,d) of the current document, indexed by term ID
+    private int[] documentTermIds;      // the IDs of the distinct terms found in the current document
+    private int numOfDocumentTerms;
+    private int currentDocumentId;
+    private int currentPosition;
+
+    /**
+     * Constructs an empty index segment.
+     */
+    public IndexSegment() {
+        dictionary = new TermDictionary();
+        index = new PositionalInvertedIndex(dictionary);
+        biwordIndex = new BiwordIndex(dictionary);
+        wildcardVocabulary = new LinkedHashSet<>();
+        documentStatistics = new DocumentStatistics();
+        tokenizer = new NormalizingTokenizer();
+        tftds = new int[1024];
+        documentTermIds = new int[1024];
+    }
+
+    /**
+     * Indexes each of the documents in the order they are given; documents must be given in ascending ID order.
+     * @param documents the documents to index
+     */
+    public void indexDocuments(List<Document> documents) {
+        for (Document document : documents) {
+            indexDocument(document);
+        }
+    }
+
+    /**
+     * Processes each token of the document into the terms of the segment's vocabulary.
+     * @param document the document to index
+     */
+    public void indexDocument(Document document) {
+        // at the beginning of each document reading, the position always starts at 1
+        currentPosition = 1;
+        long byteSize = (document instanceof FileDocument fileDocument ? fileDocument.getFilePath().toFile().length() :
+                0);
+        currentDocumentId = document.getId();
+        numOfDocumentTerms = 0;
+
+        // text files can be tokenized straight from their bytes, skipping the reader entirely
+        if (document instanceof TextFileDocument textDocument) {
+            tokenizer.tokenize(textDocument.getFilePath(), this::addToken);
+        } else {
+            try (Reader documentContent = document.getContent()) {
+                tokenizer.tokenize(documentContent, this::addToken);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        finishDocument(currentPosition - 1, byteSize);
+    }
+
+    /**
+     * Indexes a document whose tokens were already normalized, such as by another stage of an `IndexingPipeline`.
+     * @param document the tokenized document to index
+     */
+    public void indexDocument(TokenizedDocument document) {
+        currentDocumentId = document.getDocumentId();
+        numOfDocumentTerms = 0;
+        wildcardVocabulary.addAll(document.getWildcardTokens());
+
+        String[] terms = document.getTerms();
+        int[] positions = document.getPositions();
+        for (int i = 0; i < document.getNumOfTerms(); ++i) {
+            addTerm(terms[i], positions[i]);
+        }
+
+        finishDocument(document.getNumOfTokens(), document.getByteSize());
+    }
+
+    private void finishDocument(int numOfTokens, long byteSize) {
+        // after processing all tokens into terms, calculate L(d) for the document and add it to our list
+        List<Integer> documentTftds = new ArrayList<>(numOfDocumentTerms);
+        for (int i = 0; i < numOfDocumentTerms; ++i) {
+            documentTftds.add(tftds[documentTermIds[i]]);
+            // reset the counts so that the array can be reused for the next document
+            tftds[documentTermIds[i]] = 0;
+        }
+        documentStatistics.add(DocumentWeightScorer.calculateLd(documentTftds), numOfTokens, numOfDocumentTerms,
+                byteSize);
+    }
+
+    private void addToken(List<String> wildcardTokens, List<String> terms) {
+        // before we normalize the token, add it to a minimally processed vocabulary for wildcards
+        wildcardVocabulary.addAll(wildcardTokens);
+
+        // since each token can produce multiple terms, add all terms using the same documentID and position
+        for (String term : terms) {
+            addTerm(term, currentPosition);
+        }
+        // after each token addition, update the position count
+        ++currentPosition;
+    }
+
+    private void addTerm(String term, int position) {
+        // only look up the term's string once; every other structure is keyed by its ID
+        int termId = dictionary.getOrAddId(term);
+        index.addTerm(termId, currentDocumentId, position);
+        biwordIndex.addTerm(termId, currentDocumentId);
+
+        // build up L(d) for the current document
+        if (termId >= tftds.length) {
+            tftds = Arrays.copyOf(tftds, Math.max(termId + 1, tftds.length * 2));
+        }
+        if (tftds[termId] == 0) {
+            if (numOfDocumentTerms == documentTermIds.length) {
+                documentTermIds = Arrays.copyOf(documentTermIds, documentTermIds.length * 2);
+            }
+            documentTermIds[numOfDocumentTerms++] = termId;
+        }
+        ++tftds[termId];
+    }
+
+    /**
+     * Appends the contents of the next segment to this segment. The next segment must only contain documents
+     * whose IDs are greater than those of this segment, so that all postings stay sorted by document ID.
+     * @param nextSegment the segment of documents immediately following this segment's documents
+     */
+    public void merge(IndexSegment nextSegment) {
+        index.merge(nextSegment.index);
+        biwordIndex.merge(nextSegment.biwordIndex);
+        wildcardVocabulary.addAll(nextSegment.wildcardVocabulary);
+        documentStatistics.append(nextSegment.documentStatistics);
+    }
+
+    /**
+     * Returns the approximate number of heap bytes used by the segment's positional and biword postings.
+     */
+    public long getEstimatedSize() {
+        return index.getEstimatedSize() + biwordIndex.getEstimatedSize();
+    }
+
+    public PositionalInvertedIndex getIndex() {
+        return index;
+    }
+
+    public BiwordIndex getBiwordIndex() {
+        return biwordIndex;
+    }
+
+    /**
+     * Returns the distinct wildcard tokens of the segment, in the order they were first found. The k-gram index
+     * is built from this vocabulary once all documents have been indexed.
+     */
+    public Set<String> getWildcardVocabulary() {
+        return wildcardVocabulary;
+    }
+
+    public DocumentStatistics getDocumentStatistics() {
+        return documentStatistics;
+    }
+}
@@ -0,0 +1,277 @@
+
+package application.indexes;
+
+import application.documents.Document;
+import application.documents.FileDocument;
+import application.documents.JsonFileDocument;
+import application.documents.TextFileDocument;
+import application.text.NormalizingTokenizer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Indexes documents in three stages connected by bounded queues: reader threads read the raw bytes of each
+ * document's file, parser threads extract and tokenize the content, and indexer threads add the tokenized
+ * documents to index segments. Each indexer owns every `numOfIndexers`-th contiguous chunk of documents, so that
+ * its segments can be merged back together in document ID order. A full queue blocks the stage before it, which
+ * bounds the number of documents held in memory at once.
+ */
+public class IndexingPipeline {
+
+    private static final int CHUNKS_PER_INDEXER = 4;    // the number of document ranges per indexer thread
+
+    private final int numOfReaders;
+    private final int numOfParsers;
+    private final int numOfIndexers;
+    private final int queueCapacity;    // the number of documents each queue can hold before blocking
+    private final LongAdder readNanos;  // the time spent working within each stage, excluding time spent waiting
+    private final LongAdder parseNanos;
+    private final LongAdder indexNanos;
+    private long elapsedNanos;
+
+    /**
+     * A document waiting to be parsed, or the error that occurred while reading it.
+     */
+    private record RawDocument(int index, Document document, byte[] bytes, Throwable error) {}
+
+    /**
+     * A document waiting to be indexed, or the error that occurred while reading or parsing it.
+     */
+    private record ParsedDocument(int index, TokenizedDocument document, Throwable error) {}
+
+    /**
+     * Constructs a pipeline with the given number of threads for each stage.
+     * @param newNumOfReaders the number of threads reading files
+     * @param newNumOfParsers the number of threads extracting and tokenizing content
+     * @param newNumOfIndexers the number of threads adding documents to index segments
+     * @param newQueueCapacity the number of documents each queue can hold before blocking
+     */
+    public IndexingPipeline(int newNumOfReaders, int newNumOfParsers, int newNumOfIndexers, int newQueueCapacity) {
+        numOfReaders = Math.max(1, newNumOfReaders);
+        numOfParsers = Math.max(1, newNumOfParsers);
+        numOfIndexers = Math.max(1, newNumOfIndexers);
+        queueCapacity = Math.max(1, newQueueCapacity);
+        readNanos = new LongAdder();
+        parseNanos = new LongAdder();
+        indexNanos = new LongAdder();
+    }
+
+    /**
+     * Indexes the documents through each stage of the pipeline.
+     * @param documents the documents to index, sorted by document ID
+     * @return the segment of all documents
+     */
+    public IndexSegment indexDocuments(List<Document> documents) {
+        long startTime = System.nanoTime();
+        int numOfChunks = Math.max(1, Math.min(documents.size(), (numOfIndexers == 1 ? 1 :
+                numOfIndexers * CHUNKS_PER_INDEXER)));
+        int chunkSize = Math.max(1, (int) Math.ceil((double) documents.size() / numOfChunks));
+        int[] readOrder = getReadOrder(documents.size(), chunkSize);
+
+        BlockingQueue<RawDocument> readQueue = new ArrayBlockingQueue<>(queueCapacity);
+        List<BlockingQueue<ParsedDocument>> indexQueues = new ArrayList<>();
+        for (int i = 0; i < numOfIndexers; ++i) {
+            indexQueues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+        // documents are only read once a permit is free, and the permit is returned once the document is indexed
+        Semaphore documentsInFlight = new Semaphore(queueCapacity * (numOfIndexers + 1) + numOfParsers);
+        AtomicInteger nextRead = new AtomicInteger();
+
+        IndexSegment[] chunkSegments = new IndexSegment[numOfChunks];
+        ExecutorService workers = Executors.newFixedThreadPool(numOfReaders + numOfParsers + numOfIndexers);
+        // indexers are waited on in the order they finish, so that a failed indexer is noticed right away
+        CompletionService<Void> indexers = new ExecutorCompletionService<>(workers);
+
+        try {
+            for (int i = 0; i < numOfReaders; ++i) {
+                workers.submit(() -> readDocuments(documents, readOrder, nextRead, documentsInFlight, readQueue));
+            }
+            for (int i = 0; i < numOfParsers; ++i) {
+                workers.submit(() -> parseDocuments(chunkSize, readQueue, indexQueues));
+            }
+            for (int i = 0; i < numOfIndexers; ++i) {
+                int indexer = i;
+                indexers.submit(() -> indexChunks(indexer, chunkSegments, chunkSize, documents.size(),
+                        indexQueues.get(indexer), documentsInFlight), null);
+            }
+            for (int i = 0; i < numOfIndexers; ++i) {
+                indexers.take().get();
+            }
+
+            // merge the chunks in document ID order
+            IndexSegment finalSegment = chunkSegments[0];
+            for (int chunk = 1; chunk < numOfChunks; ++chunk) {
+                finalSegment.merge(chunkSegments[chunk]);
+            }
+
+            return finalSegment;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            workers.shutdownNow();
+            elapsedNanos = System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Returns the order the documents are read in: the documents of each group of chunks being indexed at the same
+     * time are interleaved, so that every indexer receives work at once and in the order it indexes its chunks.
+     */
+    private int[] getReadOrder(int numOfDocuments, int chunkSize) {
+        int[] readOrder = new int[numOfDocuments];
+        int groupSize = chunkSize * numOfIndexers;
+        int i = 0;
+
+        for (int groupStart = 0; groupStart < numOfDocuments; groupStart += groupSize) {
+            for (int offset = 0; offset < chunkSize; ++offset) {
+                for (int chunkStart = groupStart; chunkStart < groupStart + groupSize; chunkStart += chunkSize) {
+                    if (chunkStart + offset < numOfDocuments) {
+                        readOrder[i++] = chunkStart + offset;
+                    }
+                }
+            }
+        }
+
+        return readOrder;
+    }
+
+    private void readDocuments(List<Document> documents, int[] readOrder, AtomicInteger nextRead,
+                               Semaphore documentsInFlight, BlockingQueue<RawDocument> readQueue) {
+        try {
+            while (true) {
+                documentsInFlight.acquire();
+                int i = nextRead.getAndIncrement();
+                if (i >= readOrder.length) {
+                    return;
+                }
+                long startTime = System.nanoTime();
+                Document document = documents.get(readOrder[i]);
+                RawDocument rawDocument;
+
+                try {
+                    // documents that are not files are read while parsing instead
+                    byte[] bytes = (document instanceof FileDocument fileDocument ?
+                            Files.readAllBytes(fileDocument.getFilePath()) : null);
+                    rawDocument = new RawDocument(readOrder[i], document, bytes, null);
+                } catch (IOException | RuntimeException e) {
+                    rawDocument = new RawDocument(readOrder[i], document, null, e);
+                }
+                readNanos.add(System.nanoTime() - startTime);
+                readQueue.put(rawDocument);
+            }
+        } catch (InterruptedException ignored) {
+            // the pipeline has finished or failed
+        }
+    }
+
+    private void parseDocuments(int chunkSize, BlockingQueue<RawDocument> readQueue,
+                                List<BlockingQueue<ParsedDocument>> indexQueues) {
+        NormalizingTokenizer tokenizer = new NormalizingTokenizer();
+
+        try {
+            while (true) {
+                RawDocument rawDocument = readQueue.take();
+                long startTime = System.nanoTime();
+                int index = rawDocument.index();
+                ParsedDocument parsedDocument;
+
+                if (rawDocument.error() != null) {
+                    parsedDocument = new ParsedDocument(index, null, rawDocument.error());
+                } else {
+                    try {
+                        parsedDocument = new ParsedDocument(index, parseDocument(tokenizer, rawDocument), null);
+                    } catch (RuntimeException e) {
+                        parsedDocument = new ParsedDocument(index, null, e);
+                    }
+                }
+                parseNanos.add(System.nanoTime() - startTime);
+                indexQueues.get((index / chunkSize) % numOfIndexers).put(parsedDocument);
+            }
+        } catch (InterruptedException ignored) {
+            // the pipeline has finished or failed
+        }
+    }
+
+    private static TokenizedDocument parseDocument(NormalizingTokenizer tokenizer, RawDocument rawDocument) {
+        Document document = rawDocument.document();
+        byte[] bytes = rawDocument.bytes();
+        TokenizedDocument tokenizedDocument = new TokenizedDocument(document.getId(),
+                (bytes != null ? bytes.length : 0));
+
+        // text files can be tokenized straight from their bytes, skipping the reader entirely
+        if (document instanceof TextFileDocument) {
+            tokenizer.tokenize(rawDocument.bytes(), tokenizedDocument);
+            return tokenizedDocument;
+        }
+
+        try (Reader documentContent = (document instanceof JsonFileDocument jsonDocument ?
+                jsonDocument.getContent(rawDocument.bytes()) : document.getContent())) {
+            tokenizer.tokenize(documentContent, tokenizedDocument);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return tokenizedDocument;
+    }
+
+    private void indexChunks(int indexer, IndexSegment[] chunkSegments, int chunkSize, int numOfDocuments,
+                             BlockingQueue<ParsedDocument> indexQueue, Semaphore documentsInFlight) {
+        // parsers may finish documents out of order, so early documents wait here until it is their turn
+        Map<Integer, ParsedDocument> waitingDocuments = new HashMap<>();
+
+        for (int chunk = indexer; chunk < chunkSegments.length; chunk += numOfIndexers) {
+            IndexSegment segment = new IndexSegment();
+
+            for (int i = chunk * chunkSize; i < Math.min((chunk + 1) * chunkSize, numOfDocuments); ++i) {
+                ParsedDocument parsedDocument = waitingDocuments.remove(i);
+                while (parsedDocument == null) {
+                    ParsedDocument nextDocument;
+                    try {
+                        nextDocument = indexQueue.take();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+
+                    if (nextDocument.index() == i) {
+                        parsedDocument = nextDocument;
+                    } else {
+                        waitingDocuments.put(nextDocument.index(), nextDocument);
+                    }
+                }
+                if (parsedDocument.error() != null) {
+                    throw new RuntimeException(parsedDocument.error());
+                }
+
+                long startTime = System.nanoTime();
+                segment.indexDocument(parsedDocument.document());
+                indexNanos.add(System.nanoTime() - startTime);
+                documentsInFlight.release();
+            }
+            chunkSegments[chunk] = segment;
+        }
+    }
+
+    /**
+     * Returns the fraction of the elapsed time each stage's threads spent working rather than waiting on a queue;
+     * a stage close to 100% busy is the bottleneck of the pipeline.
+     */
+    public String getUtilizationReport() {
+        return String.format("""
+                Read: %s threads, %.1f%% busy
+                Parse: %s threads, %.1f%% busy
+                Index: %s threads, %.1f%% busy
+                """, numOfReaders, getUtilization(readNanos, numOfReaders),
+                numOfParsers, getUtilization(parseNanos, numOfParsers),
+                numOfIndexers, getUtilization(indexNanos, numOfIndexers));
+    }
+
+    private double getUtilization(LongAdder busyNanos, int numOfThreads) {
+        return (elapsedNanos == 0 ? 0 : busyNanos.sum() * 100.0 / ((double) elapsedNanos * numOfThreads));
+    }
+}
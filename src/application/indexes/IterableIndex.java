@@ -0,0 +1,32 @@
+package application.indexes;
+
+/**
+ * An IterableIndex can stream the postings of a term through an iterator, so that queries only read the postings
+ * they need rather than the entire list.
+ */
+public interface IterableIndex {
+
+    /**
+     * Opens an iterator over the postings of the term, which is empty if the term is not in the vocabulary.
+     * @param term the term to find postings for
+     * @param withPositions whether the positions of the postings can be read
+     * @return the iterator positioned before the first posting
+     */
+    PostingsIterator getPostingsIterator(String term, boolean withPositions);
+
+    /**
+     * Opens an iterator over the postings of the term in any index, reading the postings in full if the index
+     * cannot stream them.
+     * @param index the index to read from
+     * @param term the term to find postings for
+     * @param withPositions whether the positions of the postings can be read
+     * @return the iterator positioned before the first posting
+     */
+    static PostingsIterator openIterator(Index<String, Posting> index, String term, boolean withPositions) {
+        if (index instanceof IterableIndex iterableIndex) {
+            return iterableIndex.getPostingsIterator(term, withPositions);
+        }
+
+        return new ListPostingsIterator(withPositions ? index.getPostings(term) : index.getPositionlessPostings(term));
+    }
+}
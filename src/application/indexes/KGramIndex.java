@@ -3,14 +3,19 @@ package application.indexes;
 
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Maps the k-grams of the given term to the list of vocabulary words that contain the k-gram.
  */
-public class KGramIndex implements Index<String, String> {
+public class KGramIndex implements WildcardIndex {
 
     private final HashMap<String, List<String>> kGramIndex;
     private final TreeSet<String> distinctKGrams;  // distinct tokens in the entire corpus vocabulary
+    private Map<String, List<String>> kGramTokens;  // inverted k-gram -> sorted tokens, built on first use
 
     /**
      * Constructs an empty k-gram index.
@@ -20,6 +25,51 @@ public class KGramIndex implements Index<String, String> {
         distinctKGrams = new TreeSet<>();
     }
 
+    /**
+     * Builds a k-gram index from a vocabulary of distinct tokens by splitting it into contiguous chunks, indexing
+     * each chunk on a separate thread, then merging the chunks in order. Tokens must be given in the order they
+     * were first found, since the first token to produce a key keeps it.
+     * @param vocabulary the distinct tokens to index, in the order they were first found
+     * @param k the maximum length of the k-grams
+     * @param numOfThreads the number of worker threads to index with
+     * @return the k-gram index of the vocabulary
+     */
+    public static KGramIndex fromVocabulary(List<String> vocabulary, int k, int numOfThreads) {
+        KGramIndex finalIndex = new KGramIndex();
+
+        if (numOfThreads <= 1 || vocabulary.size() < numOfThreads) {
+            finalIndex.buildKGramIndex(vocabulary, k);
+            return finalIndex;
+        }
+
+        int chunkSize = (int) Math.ceil((double) vocabulary.size() / numOfThreads);
+        ExecutorService workers = Executors.newFixedThreadPool(numOfThreads);
+        List<Future<KGramIndex>> futureChunks = new ArrayList<>();
+
+        for (int start = 0; start < vocabulary.size(); start += chunkSize) {
+            List<String> chunk = vocabulary.subList(start, Math.min(start + chunkSize, vocabulary.size()));
+
+            futureChunks.add(workers.submit(() -> {
+                KGramIndex chunkIndex = new KGramIndex();
+                chunkIndex.buildKGramIndex(chunk, k);
+                return chunkIndex;
+            }));
+        }
+
+        // merge the chunks in the order they were submitted, so that earlier tokens keep their keys
+        try {
+            for (Future<KGramIndex> futureChunk : futureChunks) {
+                finalIndex.merge(futureChunk.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        return finalIndex;
+    }
+
     public void buildKGramIndex(List<String> vocabulary, int k) {
         // for each token, generate the k-grams and map its postings to the token
         for (String token : vocabulary) {
@@ -32,6 +82,7 @@ public class KGramIndex implements Index<String, String> {
         List<String> kGrams;
 
         if (existingPostings == null) {
+            kGramTokens = null;
             String parsedToken = token;
             // if a token doesn't have asterisks at the start/end, add flags
             if (!token.startsWith("*")) {
@@ -81,6 +132,7 @@ public class KGramIndex implements Index<String, String> {
     }
 
     public void addEntry(String key, List<String> value) {
+        kGramTokens = null;
         kGramIndex.put(key, value);
     }
 
@@ -88,10 +140,52 @@ public class KGramIndex implements Index<String, String> {
         distinctKGrams.add(kGram);
     }
 
+    /**
+     * Adds all tokens and distinct k-grams of another k-gram index into this index.
+     * @param otherIndex the k-gram index to merge into this index
+     */
+    public void merge(KGramIndex otherIndex) {
+        kGramTokens = null;
+        otherIndex.kGramIndex.forEach(kGramIndex::putIfAbsent);
+        distinctKGrams.addAll(otherIndex.distinctKGrams);
+    }
+
+    @Override
+    public List<String> getTokens(String kGram) {
+        if (kGramTokens == null) {
+            buildKGramTokens();
+        }
+
+        return kGramTokens.getOrDefault(kGram, Collections.emptyList());
+    }
+
+    private void buildKGramTokens() {
+        Map<String, List<String>> newKGramTokens = new HashMap<>();
+
+        // traversing the tokens in sorted order keeps each k-gram's list of tokens sorted
+        for (String token : getVocabulary()) {
+            for (String kGram : kGramIndex.get(token)) {
+                List<String> tokens = newKGramTokens.computeIfAbsent(kGram, key -> new ArrayList<>());
+
+                // a token may contain the same k-gram more than once
+                if (tokens.isEmpty() || !tokens.get(tokens.size() - 1).equals(token)) {
+                    tokens.add(token);
+                }
+            }
+        }
+
+        kGramTokens = newKGramTokens;
+    }
+
     public TreeSet<String> getDistinctKGrams() {
         return distinctKGrams;
     }
 
+    @Override
+    public int getNumOfDistinctKGrams() {
+        return distinctKGrams.size();
+    }
+
     @Override
     public List<String> getPostings(String term) {
         // return an empty list if the term doesn't exist in the map
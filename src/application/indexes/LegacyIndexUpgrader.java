@@ -0,0 +1,192 @@
+
+package application.indexes;
+
+import application.documents.Document;
+import application.documents.DocumentCorpus;
+import application.documents.FileDocument;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A LegacyIndexUpgrader converts an index written before the term dictionary replaced the B+ tree, so that it opens
+ * without being rebuilt. Such an index maps its terms through `bTree.bin` and `biwordBTree.bin`, keeps its k-grams
+ * keyed by token in `kGrams.bin` and only the weight L(d) of each document in `docWeights.bin`, while its postings
+ * are in the `PostingsFormat.LEGACY` layout, which is still read as it is.
+ * <p>
+ * Each file of the current layout is only written if it is missing and the file it replaces exists, so an index is
+ * converted once, the first time it is opened. The legacy files are left in place, except for `kGrams.bin`, whose
+ * name the current k-grams keep.
+ */
+public class LegacyIndexUpgrader {
+
+    /**
+     * Converts the legacy files of an index into the current layout, where they have not been converted yet.
+     * @param indexPaths the paths of the index files, as created by `IndexUtility.createIndexPathsMap`
+     * @param corpus the corpus the index was built from, which is only read for the size of each document's file
+     * @return whether any file was converted
+     */
+    public static boolean upgrade(Map<String, String> indexPaths, DocumentCorpus corpus) {
+        boolean isUpgraded = false;
+
+        if (isLegacy(indexPaths.get("termsBin"), indexPaths.get("bTreeBin"), indexPaths.get("postingsBin"))) {
+            writeTermDictionary(indexPaths.get("bTreeBin"), indexPaths.get("postingsBin"), indexPaths.get("termsBin"));
+            isUpgraded = true;
+        }
+        if (isLegacy(indexPaths.get("biwordTermsBin"), indexPaths.get("biwordBTreeBin"),
+                indexPaths.get("biwordBin"))) {
+            writeTermDictionary(indexPaths.get("biwordBTreeBin"), indexPaths.get("biwordBin"),
+                    indexPaths.get("biwordTermsBin"));
+            isUpgraded = true;
+        }
+        // the current k-grams keep the name of the legacy file, so only the files beside it tell them apart
+        if (isLegacy(indexPaths.get("kGramTermsBin"), indexPaths.get("kGramsBin"), indexPaths.get("kGramsBin"))) {
+            DiskIndexWriter.writeKGrams(indexPaths.get("kGramsBin"), indexPaths.get("kGramTermsBin"),
+                    indexPaths.get("kGramTokensBin"), readKGrams(indexPaths.get("kGramsBin")));
+            isUpgraded = true;
+        }
+        if (isLegacy(indexPaths.get("docStatsBin"), indexPaths.get("docWeightsBin"), indexPaths.get("termsBin"))) {
+            try (DiskPositionalIndex index = new DiskPositionalIndex(DiskIndexReader.readTermDictionary(
+                    indexPaths.get("termsBin")), indexPaths.get("postingsBin"), indexPaths.get("positionsBin"))) {
+                DiskIndexWriter.writeDocumentStatistics(indexPaths.get("docStatsBin"),
+                        readDocumentStatistics(indexPaths.get("docWeightsBin"), index, corpus));
+                // the bounds and bitmaps are optional, but they are cheap to write once the statistics exist
+                DiskIndexWriter.writeTermBounds(indexPaths.get("termBoundsBin"), indexPaths.get("docStatsBin"),
+                        index);
+                DiskIndexWriter.writeDocumentBitmaps(indexPaths.get("docBitmapsBin"), indexPaths.get("docStatsBin"),
+                        index);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            isUpgraded = true;
+        }
+
+        return isUpgraded;
+    }
+
+    /**
+     * Returns whether the current file is missing while the legacy files it is converted from exist.
+     */
+    private static boolean isLegacy(String pathToCurrentFile, String pathToLegacyFile, String pathToSourceFile) {
+        return (!new File(pathToCurrentFile).exists() && new File(pathToLegacyFile).exists() &&
+                new File(pathToSourceFile).exists());
+    }
+
+    /**
+     * Writes a term dictionary from a legacy B+ tree file, which holds the number of terms followed by the byte
+     * length, bytes and 4-byte postings position of each term. The document frequency of each term is the first
+     * integer of its postings.
+     */
+    private static void writeTermDictionary(String pathToBTreeBin, String pathToPostingsBin, String pathToTermsBin) {
+        // the dictionary must be written in the order of the vocabulary, which the B+ tree file does not promise
+        TreeMap<String, Long> bytePositions = new TreeMap<>();
+
+        try (FileInputStream fileStream = new FileInputStream(pathToBTreeBin);
+             BufferedInputStream bufferStream = new BufferedInputStream(fileStream);
+             DataInputStream dataStream = new DataInputStream(bufferStream)) {
+            int vocabularySize = dataStream.readInt();
+
+            for (int i = 0; i < vocabularySize; ++i) {
+                byte[] termBytes = new byte[dataStream.readInt()];
+                dataStream.readFully(termBytes);
+                bytePositions.put(new String(termBytes, StandardCharsets.UTF_8), (long) dataStream.readInt());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        MappedFile postingsFile = null;
+        try (DiskTermDictionary.Writer termsWriter = new DiskTermDictionary.Writer(pathToTermsBin)) {
+            postingsFile = new MappedFile(pathToPostingsBin);
+
+            for (Map.Entry<String, Long> entry : bytePositions.entrySet()) {
+                termsWriter.add(entry.getKey(), postingsFile.getInt(entry.getValue()), entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (postingsFile != null) {
+                postingsFile.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the legacy k-gram file, which maps each token to its k-grams and ends with the set of distinct k-grams.
+     */
+    private static KGramIndex readKGrams(String pathToKGramsBin) {
+        KGramIndex kGramIndex = new KGramIndex();
+
+        try (FileInputStream fileStream = new FileInputStream(pathToKGramsBin);
+             BufferedInputStream bufferStream = new BufferedInputStream(fileStream);
+             DataInputStream dataStream = new DataInputStream(bufferStream)) {
+            int numOfTokens = dataStream.readInt();
+
+            for (int i = 0; i < numOfTokens; ++i) {
+                String token = readString(dataStream);
+                int numOfKGrams = dataStream.readInt();
+                List<String> kGrams = new ArrayList<>(numOfKGrams);
+
+                for (int j = 0; j < numOfKGrams; ++j) {
+                    kGrams.add(readString(dataStream));
+                }
+                kGramIndex.addEntry(token, kGrams);
+            }
+
+            int numOfDistinctKGrams = dataStream.readInt();
+            for (int i = 0; i < numOfDistinctKGrams; ++i) {
+                kGramIndex.addDistinctKGram(readString(dataStream));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return kGramIndex;
+    }
+
+    private static String readString(DataInputStream dataStream) throws IOException {
+        byte[] bytes = new byte[dataStream.readInt()];
+        dataStream.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rebuilds the statistics of every document from the legacy document weights, which only hold L(d). The number
+     * of tokens and distinct terms of each document are counted from the postings, so a position shared by several
+     * terms, as in a hyphenated word, counts once for each of them.
+     */
+    private static DocumentStatistics readDocumentStatistics(String pathToDocWeightsBin, DiskPositionalIndex index,
+                                                             DocumentCorpus corpus) throws IOException {
+        int numOfDocuments = (int) (new File(pathToDocWeightsBin).length() / Double.BYTES);
+        int[] numsOfTokens = new int[numOfDocuments];
+        int[] numsOfUniqueTerms = new int[numOfDocuments];
+
+        for (String term : index.getVocabulary()) {
+            PostingsIterator postings = index.getPostingsIterator(term, false);
+
+            for (int documentId = postings.nextDoc(); documentId < numOfDocuments;
+                 documentId = postings.nextDoc()) {
+                numsOfTokens[documentId] += postings.freq();
+                ++numsOfUniqueTerms[documentId];
+            }
+        }
+
+        DocumentStatistics statistics = new DocumentStatistics();
+        try (FileInputStream fileStream = new FileInputStream(pathToDocWeightsBin);
+             BufferedInputStream bufferStream = new BufferedInputStream(fileStream);
+             DataInputStream dataStream = new DataInputStream(bufferStream)) {
+            for (int documentId = 0; documentId < numOfDocuments; ++documentId) {
+                Document document = corpus.getDocument(documentId);
+                long byteSize = (document instanceof FileDocument fileDocument ?
+                        fileDocument.getFilePath().toFile().length() : 0);
+
+                statistics.add(dataStream.readDouble(), numsOfTokens[documentId], numsOfUniqueTerms[documentId],
+                        byteSize);
+            }
+        }
+
+        return statistics;
+    }
+}
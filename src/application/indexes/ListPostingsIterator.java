@@ -0,0 +1,68 @@
+package application.indexes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A ListPostingsIterator moves through postings that were already read into a list. Lists that hold several
+ * postings of the same document, such as the expanded terms of a wildcard, only stop at the first of them.
+ */
+public class ListPostingsIterator implements PostingsIterator {
+
+    private final List<Posting> postings;
+    private int currentIndex;
+    private int documentId;
+    private int[] positions;
+
+    public ListPostingsIterator(List<Posting> newPostings) {
+        postings = newPostings;
+        currentIndex = -1;
+        documentId = -1;
+        positions = new int[0];
+    }
+
+    @Override
+    public int docId() {
+        return documentId;
+    }
+
+    @Override
+    public int nextDoc() {
+        return advance(documentId + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (documentId >= target) {
+            return documentId;
+        }
+        // gallop rather than step, so that a short list advancing a long one skips most of it
+        currentIndex = Galloping.search(postings, Math.max(currentIndex, 0), postings.size(), target);
+        documentId = (currentIndex < postings.size() ? postings.get(currentIndex).getDocumentId() : NO_MORE_DOCS);
+
+        return documentId;
+    }
+
+    @Override
+    public int freq() {
+        return postings.get(currentIndex).getTermFrequency();
+    }
+
+    @Override
+    public int[] positions() {
+        ArrayList<Integer> positionList = postings.get(currentIndex).getPositions();
+        if (positions.length < positionList.size()) {
+            positions = new int[positionList.size()];
+        }
+        for (int i = 0; i < positionList.size(); ++i) {
+            positions[i] = positionList.get(i);
+        }
+
+        return positions;
+    }
+
+    @Override
+    public int getDocumentFrequency() {
+        return postings.size();
+    }
+}
@@ -0,0 +1,143 @@
+
+package application.indexes;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * A LiveDocs bitmap marks which documents of a segment are still part of the corpus. Documents are never
+ * removed from a segment's postings; instead, deleted and modified documents are cleared from the bitmap and
+ * skipped while reading, until a merge drops their postings entirely.
+ */
+public class LiveDocs {
+
+    private final int minDocumentId;    // the ID of the segment's first document
+    private final int numOfDocuments;   // the number of document IDs covered by the segment
+    private final long[] words;
+    private int numOfLiveDocuments;
+
+    /**
+     * Constructs a bitmap where every document of the range is live.
+     * @param newMinDocumentId the ID of the segment's first document
+     * @param newNumOfDocuments the number of document IDs covered by the segment
+     */
+    public LiveDocs(int newMinDocumentId, int newNumOfDocuments) {
+        minDocumentId = newMinDocumentId;
+        numOfDocuments = newNumOfDocuments;
+        words = new long[(newNumOfDocuments + Long.SIZE - 1) / Long.SIZE];
+        Arrays.fill(words, -1L);
+        numOfLiveDocuments = newNumOfDocuments;
+    }
+
+    private LiveDocs(int newMinDocumentId, int newNumOfDocuments, long[] newWords) {
+        minDocumentId = newMinDocumentId;
+        numOfDocuments = newNumOfDocuments;
+        words = newWords;
+
+        for (int i = 0; i < newNumOfDocuments; ++i) {
+            if (isLive(newMinDocumentId + i)) {
+                ++numOfLiveDocuments;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the document is still live; IDs outside the segment's range are never live.
+     */
+    public boolean isLive(int documentId) {
+        int bit = documentId - minDocumentId;
+        if (bit < 0 || bit >= numOfDocuments) {
+            return false;
+        }
+
+        return (words[bit / Long.SIZE] & (1L << (bit % Long.SIZE))) != 0;
+    }
+
+    /**
+     * Marks the document as deleted.
+     * @param documentId the ID of the document, which must be within the segment's range
+     */
+    public void delete(int documentId) {
+        if (isLive(documentId)) {
+            int bit = documentId - minDocumentId;
+            words[bit / Long.SIZE] &= ~(1L << (bit % Long.SIZE));
+            --numOfLiveDocuments;
+        }
+    }
+
+    public int getNumOfLiveDocuments() {
+        return numOfLiveDocuments;
+    }
+
+    public int getNumOfDocuments() {
+        return numOfDocuments;
+    }
+
+    /**
+     * Returns the deleted documents of the segment as a document bitmap, so that they can be subtracted from the
+     * bitmaps of its terms.
+     */
+    public DocumentBitmap getDeletedDocuments() {
+        DocumentBitmap deletedDocuments = new DocumentBitmap();
+
+        for (int i = 0; i < numOfDocuments; ++i) {
+            if (!isLive(minDocumentId + i)) {
+                deletedDocuments.appendDocument(minDocumentId + i);
+            }
+        }
+
+        return deletedDocuments;
+    }
+
+    /**
+     * Returns a copy of the bitmap that is unaffected by later deletions.
+     */
+    public LiveDocs copy() {
+        return new LiveDocs(minDocumentId, numOfDocuments, words.clone());
+    }
+
+    public void write(String pathToLiveDocsBin) {
+        // overwrite any existing files
+        try (FileOutputStream fileStream = new FileOutputStream(pathToLiveDocsBin, false);
+             BufferedOutputStream bufferStream = new BufferedOutputStream(fileStream);
+             DataOutputStream dataStream = new DataOutputStream(bufferStream)) {
+            dataStream.writeInt(minDocumentId);
+            dataStream.writeInt(numOfDocuments);
+
+            for (long word : words) {
+                dataStream.writeLong(word);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads a bitmap written by `write()`; a missing file means that none of the segment's documents were deleted.
+     * @param pathToLiveDocsBin the path of the bitmap file
+     * @param minDocumentId the ID of the segment's first document
+     * @param numOfDocuments the number of document IDs covered by the segment
+     * @return the bitmap of the segment
+     */
+    public static LiveDocs read(String pathToLiveDocsBin, int minDocumentId, int numOfDocuments) {
+        if (!new File(pathToLiveDocsBin).exists()) {
+            return new LiveDocs(minDocumentId, numOfDocuments);
+        }
+
+        try (FileInputStream fileStream = new FileInputStream(pathToLiveDocsBin);
+             BufferedInputStream bufferStream = new BufferedInputStream(fileStream);
+             DataInputStream dataStream = new DataInputStream(bufferStream)) {
+            int storedMinDocumentId = dataStream.readInt();
+            int storedNumOfDocuments = dataStream.readInt();
+            long[] words = new long[(storedNumOfDocuments + Long.SIZE - 1) / Long.SIZE];
+
+            for (int i = 0; i < words.length; ++i) {
+                words[i] = dataStream.readLong();
+            }
+
+            return new LiveDocs(storedMinDocumentId, storedNumOfDocuments, words);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
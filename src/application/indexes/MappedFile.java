@@ -0,0 +1,171 @@
+
+package application.indexes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A MappedFile maps a read-only index file into memory, so that its bytes are read straight from the page cache
+ * instead of with a system call per read. A single mapping cannot exceed 2 GB, so larger files are mapped as
+ * consecutive segments of `SEGMENT_SIZE` bytes. The numbered files of a `RollingOutputStream` can be mapped together
+ * in the same way, as if they were one file.
+ * <p>
+ * Every read is made at an absolute position and never moves a shared position, so any number of threads may read
+ * from the same file at once.
+ */
+public class MappedFile implements Closeable {
+
+    private static final int SEGMENT_SHIFT = 30;    // segments of 1 GB, so that any position maps to one by shifting
+
+    private final long length;
+    private final int segmentShift;
+    private final long segmentMask;
+    private ByteBuffer[] segments;
+
+    public MappedFile(String pathToFile) throws IOException {
+        this(pathToFile, SEGMENT_SHIFT);
+    }
+
+    /**
+     * Maps the files written by a `RollingOutputStream` as a single file, so that a byte position counts from the
+     * start of the first file.
+     * @param pathToFirstFile the path of the first file
+     * @param numOfFiles the number of files
+     * @param fileSizeShift the base 2 logarithm of the size of every file but the last
+     */
+    public MappedFile(String pathToFirstFile, int numOfFiles, int fileSizeShift) throws IOException {
+        // every file but the last must hold whole segments, so that segments never span two files
+        this(pathToFirstFile, numOfFiles, fileSizeShift, Math.min(SEGMENT_SHIFT, fileSizeShift));
+    }
+
+    /**
+     * Maps the file as segments of the given power of two; smaller segments only exist to test reads that span them,
+     * which `MappedFileTest` does.
+     * @param pathToFile the path of the file to map
+     * @param newSegmentShift the base 2 logarithm of the segment size
+     */
+    public MappedFile(String pathToFile, int newSegmentShift) throws IOException {
+        this(pathToFile, 1, RollingOutputStream.NO_ROLLING, newSegmentShift);
+    }
+
+    private MappedFile(String pathToFirstFile, int numOfFiles, int fileSizeShift, int newSegmentShift)
+            throws IOException {
+        segmentShift = newSegmentShift;
+        segmentMask = (1L << segmentShift) - 1;
+        List<ByteBuffer> mappedSegments = new ArrayList<>();
+        long totalLength = 0;
+
+        for (int fileIndex = 0; fileIndex < numOfFiles; ++fileIndex) {
+            String pathToFile = RollingOutputStream.getPath(pathToFirstFile, fileIndex);
+
+            try (RandomAccessFile randomAccessor = new RandomAccessFile(pathToFile, "r");
+                 FileChannel channel = randomAccessor.getChannel()) {
+                long fileLength = channel.size();
+                if (fileIndex < numOfFiles - 1 && fileLength != 1L << fileSizeShift) {
+                    throw new IOException("`" + pathToFile + "` is not " + (1L << fileSizeShift) + " bytes long");
+                }
+
+                // the mappings stay valid after the channel is closed
+                for (long segmentPosition = 0; segmentPosition < fileLength; segmentPosition += segmentMask + 1) {
+                    mappedSegments.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentPosition,
+                            Math.min(segmentMask + 1, fileLength - segmentPosition)));
+                }
+                totalLength += fileLength;
+            }
+        }
+        length = totalLength;
+        segments = mappedSegments.toArray(new ByteBuffer[0]);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Reads the big-endian 4-byte integer at the position, as written by `DataOutputStream.writeInt()`.
+     */
+    public int getInt(long position) {
+        ByteBuffer segment = segments[(int) (position >>> segmentShift)];
+        int offset = (int) (position & segmentMask);
+
+        if (offset + Integer.BYTES <= segment.limit()) {
+            return segment.getInt(offset);
+        }
+        // the integer spans two segments
+        byte[] bytes = new byte[Integer.BYTES];
+        get(position, bytes, 0, Integer.BYTES);
+
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    /**
+     * Reads the big-endian 8-byte integer at the position, as written by `DataOutputStream.writeLong()`.
+     */
+    public long getLong(long position) {
+        ByteBuffer segment = segments[(int) (position >>> segmentShift)];
+        int offset = (int) (position & segmentMask);
+
+        if (offset + Long.BYTES <= segment.limit()) {
+            return segment.getLong(offset);
+        }
+        // the integer spans two segments
+        byte[] bytes = new byte[Long.BYTES];
+        get(position, bytes, 0, Long.BYTES);
+
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    /**
+     * Copies the bytes starting at the position into the array.
+     * @param position the position of the first byte to copy
+     * @param bytes the array to copy into
+     * @param offset the offset within the array of the first byte
+     * @param numOfBytes the number of bytes to copy
+     */
+    public void get(long position, byte[] bytes, int offset, int numOfBytes) {
+        while (numOfBytes > 0) {
+            ByteBuffer segment = segments[(int) (position >>> segmentShift)];
+            int segmentOffset = (int) (position & segmentMask);
+            int numOfSegmentBytes = Math.min(numOfBytes, segment.limit() - segmentOffset);
+
+            segment.get(segmentOffset, bytes, offset, numOfSegmentBytes);
+            position += numOfSegmentBytes;
+            offset += numOfSegmentBytes;
+            numOfBytes -= numOfSegmentBytes;
+        }
+    }
+
+    /**
+     * Returns a view of the bytes starting at the position, which is only copied if it spans two segments. The view
+     * has its own position and limit, so it may be read from by a single thread without affecting any other reader.
+     * @param position the position of the first byte
+     * @param numOfBytes the number of bytes in the view
+     * @return a buffer of the bytes, starting at index 0
+     */
+    public ByteBuffer slice(long position, int numOfBytes) {
+        if (numOfBytes == 0) {
+            return ByteBuffer.allocate(0);
+        }
+        ByteBuffer segment = segments[(int) (position >>> segmentShift)];
+        int offset = (int) (position & segmentMask);
+
+        if (offset + numOfBytes <= segment.limit()) {
+            return segment.slice(offset, numOfBytes);
+        }
+        byte[] bytes = new byte[numOfBytes];
+        get(position, bytes, 0, numOfBytes);
+
+        return ByteBuffer.wrap(bytes);
+    }
+
+    @Override
+    public void close() {
+        // mappings cannot be released explicitly; they are unmapped once their buffers are garbage collected
+        segments = new ByteBuffer[0];
+    }
+}
@@ -4,76 +4,145 @@ package application.indexes;
 import java.util.*;
 
 // Program the PositionalInvertedIndex class and incorporate it into the indexing process.
-public class PositionalInvertedIndex implements Index<String, Posting> {
+public class PositionalInvertedIndex implements Index<String, Posting>, IterableIndex {
 
-    private final Map<String, List<Posting>> index;
+    // rough heap cost of each term's dictionary entry, buffer and key, used to decide when a block should be flushed
+    static final int TERM_BYTES = 96;
+
+    private final TermDictionary dictionary;
+    private final List<PostingsBuffer> index;  // the postings of each term, indexed by term ID
+    private long estimatedSize;   // the approximate number of heap bytes used by the postings
 
     /**
      * Constructs an empty positional inverted index.
      */
     public PositionalInvertedIndex() {
-        index = new HashMap<>();
+        this(new TermDictionary());
+    }
+
+    /**
+     * Constructs an empty positional inverted index whose terms are assigned IDs by the given dictionary.
+     * @param newDictionary the dictionary of term IDs, which may be shared with other indexes
+     */
+    public PositionalInvertedIndex(TermDictionary newDictionary) {
+        dictionary = newDictionary;
+        index = new ArrayList<>();
     }
 
     @Override
     public List<Posting> getPostings(String term) {
-        // return an empty list if the term doesn't exist in the map
-        if (!index.containsKey(term))
+        PostingsBuffer postings = getPostingsBuffer(dictionary.getId(term));
+
+        // return an empty list if the term doesn't exist in the index
+        if (postings == null)
             return new ArrayList<>();
 
-        return index.get(term);
+        return postings.toPostings(true);
     }
 
     @Override
     public List<Posting> getPositionlessPostings(String term) {
-        // return an empty list if the term doesn't exist in the map
-        if (!index.containsKey(term))
+        PostingsBuffer postings = getPostingsBuffer(dictionary.getId(term));
+
+        // return an empty list if the term doesn't exist in the index
+        if (postings == null)
             return new ArrayList<>();
 
-        // perform an extra iteration copy to avoid returning Postings without positions
-        List<Posting> positionlessPostings = new ArrayList<>();
-        index.get(term).forEach(posting -> positionlessPostings.add(
-                new Posting(posting.getDocumentId(), new ArrayList<>())));
+        // skip decoding the positions to avoid returning Postings with positions
+        return postings.toPostings(false);
+    }
 
-        return positionlessPostings;
+    @Override
+    public PostingsIterator getPostingsIterator(String term, boolean withPositions) {
+        PostingsBuffer postings = getPostingsBuffer(dictionary.getId(term));
+
+        // return an empty iterator if the term doesn't exist in the index
+        if (postings == null)
+            return new ListPostingsIterator(new ArrayList<>());
+
+        return postings.iterator(withPositions);
     }
 
     @Override
     public List<String> getVocabulary() {
+        // only materialize the terms that have postings, since the dictionary may be shared
+        List<String> vocabulary = new ArrayList<>();
+        for (int termId = 0; termId < index.size(); ++termId) {
+            if (index.get(termId) != null) {
+                vocabulary.add(dictionary.getTerm(termId));
+            }
+        }
         // remember to return a sorted vocabulary
-        List<String> vocabulary = new ArrayList<>(index.keySet().stream().toList());
         Collections.sort(vocabulary);
 
         return vocabulary;
     }
 
     public void addTerm(String term, int documentId, int position) {
-        // each term (key) is mapped to a List of Postings (value)
-        List<Posting> existingPostings = index.get(term);
+        addTerm(dictionary.getOrAddId(term), documentId, position);
+    }
+
+    public void addTerm(int termId, int documentId, int position) {
+        // each term ID is mapped to a buffer of its postings
+        PostingsBuffer existingPostings = getPostingsBuffer(termId);
 
-        // if `map.get(term)` returns null, the term doesn't exist in our vocabulary yet
+        // if the buffer is null, the term doesn't exist in our index yet
         if (existingPostings == null) {
-            // initialize a new ArrayList with a single Posting and add it, along with the term, to our map
-            ArrayList<Posting> newPostings = new ArrayList<>(){{add(new Posting(documentId,
-                    new ArrayList<>(){{add(position);}}));}};
-
-            index.put(term, newPostings);
-        } else {
-            // get the last index of the existing postings
-            int latestIndex = existingPostings.size() - 1;
-            int latestDocumentId = existingPostings.get(latestIndex).getDocumentId();
-
-            // check if the term has our current document id
-            if (latestDocumentId != documentId) {
-                /* since the term exists but the document ID has not been established yet,
-                  we must add a new Posting with the new document ID */
-                existingPostings.add(new Posting(documentId, new ArrayList<>(){{add(position);}}));
+            existingPostings = new PostingsBuffer(true);
+            setPostingsBuffer(termId, existingPostings);
+            estimatedSize += TERM_BYTES + (2L * dictionary.getTerm(termId).length()) +
+                    ((long) Integer.BYTES * existingPostings.getCapacity());
+        }
+
+        // the buffer either starts a new posting for the document ID or appends the position to the latest posting
+        int previousCapacity = existingPostings.getCapacity();
+        existingPostings.add(documentId, position);
+        estimatedSize += (long) Integer.BYTES * (existingPostings.getCapacity() - previousCapacity);
+    }
+
+    /**
+     * Appends the postings of another index whose document IDs all follow the document IDs of this index.
+     * @param nextIndex the index to append to this index
+     */
+    public void merge(PositionalInvertedIndex nextIndex) {
+        for (int nextTermId = 0; nextTermId < nextIndex.index.size(); ++nextTermId) {
+            PostingsBuffer nextPostings = nextIndex.index.get(nextTermId);
+            if (nextPostings == null) {
+                continue;
+            }
+            // the next index may assign different IDs, so map its terms into our dictionary
+            int termId = dictionary.getOrAddId(nextIndex.dictionary.getTerm(nextTermId));
+            PostingsBuffer existingPostings = getPostingsBuffer(termId);
+
+            // since the next index's documents come after ours, appending keeps the postings sorted
+            if (existingPostings == null) {
+                setPostingsBuffer(termId, nextPostings);
             } else {
-                /* since we've confirmed the term exists within our map, we simply add the term's new position
-                  into the Posting with the specific document ID*/
-                existingPostings.get(latestIndex).addPosition(position);
+                existingPostings.append(nextPostings);
             }
+        }
+        estimatedSize += nextIndex.estimatedSize;
+    }
+
+    /**
+     * Returns the approximate number of heap bytes used by the index's postings.
+     */
+    public long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    private PostingsBuffer getPostingsBuffer(int termId) {
+        if (termId < 0 || termId >= index.size()) {
+            return null;
+        }
+
+        return index.get(termId);
+    }
 
+    private void setPostingsBuffer(int termId, PostingsBuffer postings) {
+        while (index.size() <= termId) {
+            index.add(null);
         }
+        index.set(termId, postings);
     }
 }
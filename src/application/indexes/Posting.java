@@ -12,10 +12,23 @@ public class Posting implements Comparable<Posting> {
 
 	private final int mDocumentId;
 	private final ArrayList<Integer> mPositions;
+	private final int mTermFrequency;	// only used by positionless postings, which have no positions to count
 	
 	public Posting(int documentId, ArrayList<Integer> positions) {
 		mDocumentId = documentId;
 		mPositions = positions;
+		mTermFrequency = 0;
+	}
+
+	/**
+	 * Constructs a positionless posting, which only keeps the number of times the term occurs in the document.
+	 * @param documentId the document ID of the posting
+	 * @param termFrequency the number of positions of the term within the document
+	 */
+	public Posting(int documentId, int termFrequency) {
+		mDocumentId = documentId;
+		mPositions = null;
+		mTermFrequency = termFrequency;
 	}
 	
 	public int getDocumentId() {
@@ -27,7 +40,16 @@ public class Posting implements Comparable<Posting> {
 	 * @return the list of positions of the term within the document
 	 */
 	public ArrayList<Integer> getPositions() {
-		return mPositions;
+		// positionless postings never read their positions, so they have none to return
+		return (mPositions != null ? mPositions : new ArrayList<>());
+	}
+
+	/**
+	 * Returns the number of times the term occurs within the document, tf(t,d).
+	 * @return the term frequency of the posting
+	 */
+	public int getTermFrequency() {
+		return (mPositions != null ? mPositions.size() : mTermFrequency);
 	}
 
 	/**
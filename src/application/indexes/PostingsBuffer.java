@@ -0,0 +1,231 @@
+
+package application.indexes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A PostingsBuffer stores the postings of a single term as a growable array of ints, appended in place during
+ * indexing. Each posting is stored as its document ID gap, its term frequency, and then its position gaps; the
+ * term frequency is incremented in place as new positions are found within the same document.
+ */
+public class PostingsBuffer {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final boolean withPositions;    // biword postings do not store term frequencies or positions
+    private int[] buffer;
+    private int size;           // the number of ints used within the buffer
+    private int numOfPostings;
+    private int lastDocumentId;
+    private int lastPosition;
+    private int tfIndex;        // the index of the latest posting's term frequency within the buffer
+
+    /**
+     * Constructs an empty postings buffer.
+     * @param newWithPositions whether term frequencies and positions should be stored for each posting
+     */
+    public PostingsBuffer(boolean newWithPositions) {
+        withPositions = newWithPositions;
+        buffer = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds an occurrence of the term; documents must be added in ascending ID order.
+     * @param documentId the ID of the document the term occurs in
+     * @param position the position of the term within the document, ignored if positions are not stored
+     */
+    public void add(int documentId, int position) {
+        if (numOfPostings == 0 || documentId != lastDocumentId) {
+            append(documentId - lastDocumentId);
+            lastDocumentId = documentId;
+            ++numOfPostings;
+
+            if (withPositions) {
+                tfIndex = size;
+                append(1);
+                append(position);
+                lastPosition = position;
+            }
+        } else if (withPositions) {
+            ++buffer[tfIndex];
+            append(position - lastPosition);
+            lastPosition = position;
+        }
+    }
+
+    /**
+     * Appends the postings of another buffer whose document IDs all follow the document IDs of this buffer.
+     * @param nextBuffer the buffer to append to this buffer
+     */
+    public void append(PostingsBuffer nextBuffer) {
+        if (nextBuffer.numOfPostings == 0) {
+            return;
+        }
+        int offset = size;
+        ensureCapacity(size + nextBuffer.size);
+        System.arraycopy(nextBuffer.buffer, 0, buffer, offset, nextBuffer.size);
+        size += nextBuffer.size;
+
+        // the first document ID of the next buffer was a gap from 0, so it must become a gap from our last ID
+        buffer[offset] = nextBuffer.buffer[0] - lastDocumentId;
+        numOfPostings += nextBuffer.numOfPostings;
+        lastDocumentId = nextBuffer.lastDocumentId;
+        lastPosition = nextBuffer.lastPosition;
+        tfIndex = offset + nextBuffer.tfIndex;
+    }
+
+    /**
+     * Decodes the buffer into a new list of postings.
+     * @param includePositions whether the positions of each posting should be decoded
+     * @return the list of postings, sorted by document ID
+     */
+    public List<Posting> toPostings(boolean includePositions) {
+        List<Posting> postings = new ArrayList<>(numOfPostings);
+        int documentId = 0;
+        int i = 0;
+
+        while (i < size) {
+            documentId += buffer[i++];
+
+            if (!withPositions) {
+                postings.add(new Posting(documentId, new ArrayList<>()));
+                continue;
+            }
+            int tf = buffer[i++];
+
+            if (includePositions) {
+                ArrayList<Integer> positions = new ArrayList<>(tf);
+                int position = 0;
+
+                for (int j = 0; j < tf; ++j) {
+                    position += buffer[i++];
+                    positions.add(position);
+                }
+                postings.add(new Posting(documentId, positions));
+            } else {
+                // positionless postings only keep the term frequency
+                i += tf;
+                postings.add(new Posting(documentId, tf));
+            }
+        }
+
+        return postings;
+    }
+
+    /**
+     * Opens an iterator that reads the postings straight from the buffer, without decoding them into a list.
+     * @param includePositions whether the positions of each posting can be read
+     * @return the iterator positioned before the first posting
+     */
+    public PostingsIterator iterator(boolean includePositions) {
+        return new BufferPostingsIterator(includePositions);
+    }
+
+    public int getNumOfPostings() {
+        return numOfPostings;
+    }
+
+    /**
+     * Returns the number of ints the buffer can hold before it must grow.
+     */
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    private void append(int value) {
+        ensureCapacity(size + 1);
+        buffer[size++] = value;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(minCapacity, buffer.length * 2));
+        }
+    }
+
+    /**
+     * Moves through the postings of the buffer as it is when the iterator is opened; postings that are added later
+     * are not seen.
+     */
+    private class BufferPostingsIterator implements PostingsIterator {
+
+        private final boolean includePositions;
+        private final int endIndex;     // the size of the buffer when the iterator was opened
+        private int nextIndex;      // the index within the buffer of the next posting's document ID gap
+        private int tfIndex;        // the index within the buffer of the current posting's term frequency
+        private int documentId;
+        private int[] positions;
+
+        private BufferPostingsIterator(boolean newIncludePositions) {
+            includePositions = newIncludePositions;
+            endIndex = size;
+            documentId = -1;
+            positions = new int[0];
+        }
+
+        @Override
+        public int docId() {
+            return documentId;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (nextIndex >= endIndex) {
+                documentId = NO_MORE_DOCS;
+                return documentId;
+            }
+            documentId = Math.max(documentId, 0) + buffer[nextIndex++];
+
+            if (withPositions) {
+                // skip over the positions; they are only decoded if they are asked for
+                tfIndex = nextIndex;
+                nextIndex += 1 + buffer[tfIndex];
+            }
+
+            return documentId;
+        }
+
+        @Override
+        public int advance(int target) {
+            // the buffer has no skip table, so the postings before the target are stepped over one by one
+            while (documentId < target) {
+                nextDoc();
+            }
+
+            return documentId;
+        }
+
+        @Override
+        public int freq() {
+            return (withPositions ? buffer[tfIndex] : 0);
+        }
+
+        @Override
+        public int[] positions() {
+            if (!withPositions) {
+                return positions;
+            }
+            if (!includePositions) {
+                throw new IllegalStateException("The iterator was opened without positions");
+            }
+            int tf = buffer[tfIndex];
+            if (positions.length < tf) {
+                positions = new int[Math.max(tf, positions.length * 2)];
+            }
+            int position = 0;
+            for (int j = 0; j < tf; ++j) {
+                position += buffer[tfIndex + 1 + j];
+                positions[j] = position;
+            }
+
+            return positions;
+        }
+
+        @Override
+        public int getDocumentFrequency() {
+            return numOfPostings;
+        }
+    }
+}
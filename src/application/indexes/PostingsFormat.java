@@ -0,0 +1,558 @@
+
+package application.indexes;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The layout of the postings files written by `DiskIndexWriter`. Files written in the current format begin with a
+ * header of a magic number and a version number; files without the header are read in the legacy layout, where
+ * every document ID gap, term frequency and position gap is a fixed 4-byte integer.
+ * <p>
+ * In the variable-byte layout, the postings of each term are written as the 4-byte document frequency, followed
+ * by the 4-byte length of the encoded postings, then the encoded postings themselves: for each posting, the
+ * document ID gap, followed by the term frequency and the position gaps if the file has positions. Each of these
+ * numbers is written in 7-bit groups from most to least significant, where the last byte of a number has its high
+ * bit set.
+ * <p>
+ * In the block layout, the postings of each term are split into blocks of `BLOCK_SIZE` postings. The 4-byte
+ * document frequency is followed by a skip table holding the last document ID of each block and the byte offset
+ * where the block ends, then the blocks themselves. Each block holds its document ID gaps packed at the bit width
+ * of its largest gap (frame of reference), then its term frequencies packed the same way and the variable-byte
+ * position gaps of each posting, if the file has positions. A reader can find the block of any document ID from
+ * the skip table alone, then decode only that block.
+ * <p>
+ * The separate positions layout keeps the blocks of the block layout, but moves the position gaps into a positions
+ * file of their own, so that reading document IDs and term frequencies never touches them. After the document
+ * frequency, a positional postings file holds the 4-byte offset of the term's positions within the positions file,
+ * and each entry of the skip table also holds the offset where the block's positions end, relative to that start.
+ * Each block then packs the byte length of every posting's positions after its term frequencies, so the positions
+ * of any posting can be found by summing the lengths before it. Biword files are written as in the block layout.
+ * <p>
+ * The large offsets layout keeps the separate positions layout, but writes the offset of each term's positions as
+ * an 8-byte integer, so that neither file is limited to 2 GB. Both files may be rolled across numbered files of a
+ * fixed size by a `RollingOutputStream`, where a byte position counts from the start of the first file. The version
+ * of the first postings file is followed by a `Header` recording the layout of the files and the statistics of the
+ * corpus, which is written once every term is.
+ */
+public class PostingsFormat {
+
+    public static final int LEGACY = 0;
+    public static final int VARIABLE_BYTE = 1;
+    public static final int BLOCKED = 2;
+    public static final int SEPARATE_POSITIONS = 3;
+    public static final int LARGE_OFFSETS = 4;
+    public static final int CURRENT_VERSION = LARGE_OFFSETS;
+    public static final int BLOCK_SIZE = 128;   // the number of postings in every block but the last
+    public static final int FILE_SIZE_SHIFT = 30;   // postings are rolled into a new file every 1 GB by default
+
+    // spells "PSTG"; legacy files begin with the document frequency of their first term, which is never this large
+    private static final int MAGIC_NUMBER = 0x50535447;
+    public static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    public static void writeHeader(DataOutputStream dataStream, int version) throws IOException {
+        dataStream.writeInt(MAGIC_NUMBER);
+        dataStream.writeInt(version);
+    }
+
+    /**
+     * Writes the header of a postings file. Files in the `LARGE_OFFSETS` layout leave room for their `Header`,
+     * which is only written by `finishHeader` once every term is.
+     */
+    public static void writePostingsHeader(DataOutputStream dataStream, int version) throws IOException {
+        writeHeader(dataStream, version);
+        if (version >= LARGE_OFFSETS) {
+            dataStream.write(new byte[Header.SIZE]);
+        }
+    }
+
+    /**
+     * Reads the version of the postings file from its header.
+     * @param postingsFile the postings file
+     * @return the version of the file, which is `LEGACY` for files without a header
+     */
+    public static int readVersion(MappedFile postingsFile) throws IOException {
+        if (postingsFile.length() < HEADER_SIZE) {
+            return LEGACY;
+        }
+        if (postingsFile.getInt(0) != MAGIC_NUMBER) {
+            return LEGACY;
+        }
+        int version = postingsFile.getInt(Integer.BYTES);
+
+        if (version < VARIABLE_BYTE || version > LARGE_OFFSETS) {
+            throw new IOException("Unsupported postings format version " + version);
+        }
+        return version;
+    }
+
+    /**
+     * Returns whether the postings of the version keep their positions in a positions file of their own.
+     */
+    public static boolean hasSeparatePositions(int version) {
+        return version >= SEPARATE_POSITIONS;
+    }
+
+    /**
+     * Writes the header of the `LARGE_OFFSETS` layout into the first postings file, once every term is written.
+     * The header takes the place of the room left by `writePostingsHeader`.
+     * @param postingsOutput the stream of the postings files
+     * @param positionsOutput the stream of the positions files, or null if the postings have no positions
+     * @param fileSizeShift the base 2 logarithm of the size of every file but the last
+     * @param encoder the encoder of every term, which counted the statistics of the corpus
+     */
+    public static void finishHeader(RollingOutputStream postingsOutput, RollingOutputStream positionsOutput,
+                                   int fileSizeShift, Encoder encoder) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream(Header.SIZE);
+        DataOutputStream dataStream = new DataOutputStream(byteStream);
+
+        dataStream.writeInt(fileSizeShift);
+        dataStream.writeInt(postingsOutput.getNumOfFiles());
+        dataStream.writeLong(postingsOutput.getPosition());
+        dataStream.writeInt(positionsOutput != null ? positionsOutput.getNumOfFiles() : 0);
+        dataStream.writeLong(positionsOutput != null ? positionsOutput.getPosition() : 0);
+        dataStream.writeInt(encoder.documentIds.cardinality());
+        dataStream.writeInt(encoder.numOfTerms);
+        dataStream.writeLong(encoder.numOfPostings);
+        dataStream.writeLong(encoder.numOfPositions);
+        postingsOutput.writeAt(HEADER_SIZE, byteStream.toByteArray());
+    }
+
+    /**
+     * Returns the encoded postings of the term in the variable-byte layout, without copying them.
+     * @param postingsFile the postings file
+     * @param bytePosition the byte position of the term's postings, where its document frequency is
+     * @return the encoded postings of the term
+     */
+    public static ByteBuffer readEncodedPostings(MappedFile postingsFile, long bytePosition) {
+        int encodedLength = postingsFile.getInt(bytePosition + Integer.BYTES);
+
+        return postingsFile.slice(bytePosition + 2 * Integer.BYTES, encodedLength);
+    }
+
+    /**
+     * Encodes the postings of a single term; postings must be added in ascending document ID order, each followed
+     * by its term frequency and positions if the file has positions.
+     */
+    public static class Encoder {
+
+        private final int version;
+        private final ByteArrayOutputStream byteStream;
+        private int latestDocumentId;
+        private int latestPosition;
+        // the postings of the current block, which is only written once it is full or the term ends
+        private final int[] blockDocumentIds;
+        private final int[] blockTermFrequencies;
+        private final ByteArrayOutputStream blockPositions;
+        private final int[] blockPositionsStarts;   // the offset of each posting's positions within the block
+        private int blockSize;
+        private boolean hasPositions;
+        private boolean termHasPositions;
+        private int latestBlockDocumentId;  // the last document ID of the previous block
+        private final List<Integer> skipTable;  // the last document ID and end offsets of each written block
+        private final ByteArrayOutputStream termPositions;  // the positions of the term, if they are kept apart
+        private long positionsPosition;     // the byte position of the next term's positions in the positions file
+        // the statistics of every term encoded so far, which are recorded in the `Header`
+        private final BitSet documentIds;
+        private int numOfTerms;
+        private long numOfPostings;
+        private long numOfPositions;
+
+        /**
+         * Constructs an encoder for the given version of the postings format.
+         * @param newVersion either `VARIABLE_BYTE`, `BLOCKED`, `SEPARATE_POSITIONS` or `LARGE_OFFSETS`
+         */
+        public Encoder(int newVersion) {
+            version = newVersion;
+            byteStream = new ByteArrayOutputStream();
+            blockDocumentIds = new int[BLOCK_SIZE];
+            blockTermFrequencies = new int[BLOCK_SIZE];
+            blockPositions = new ByteArrayOutputStream();
+            blockPositionsStarts = new int[BLOCK_SIZE];
+            skipTable = new ArrayList<>();
+            termPositions = new ByteArrayOutputStream();
+            // the positions file begins with its own header
+            positionsPosition = HEADER_SIZE;
+            documentIds = new BitSet();
+        }
+
+        public void addDocumentId(int documentId) {
+            documentIds.set(documentId);
+            ++numOfPostings;
+            if (version == VARIABLE_BYTE) {
+                writeVariableByte(byteStream, documentId - latestDocumentId);
+                latestDocumentId = documentId;
+                return;
+            }
+            if (blockSize == BLOCK_SIZE) {
+                writeBlock();
+            }
+            blockDocumentIds[blockSize++] = documentId;
+        }
+
+        public void addTermFrequency(int termFrequency) {
+            latestPosition = 0;
+            if (version == VARIABLE_BYTE) {
+                writeVariableByte(byteStream, termFrequency);
+                return;
+            }
+            blockTermFrequencies[blockSize - 1] = termFrequency;
+            blockPositionsStarts[blockSize - 1] = blockPositions.size();
+            hasPositions = true;
+            termHasPositions = true;
+        }
+
+        public void addPosition(int position) {
+            ++numOfPositions;
+            writeVariableByte((version == VARIABLE_BYTE ? byteStream : blockPositions), position - latestPosition);
+            latestPosition = position;
+        }
+
+        /**
+         * Writes the encoded postings of the term, then clears the encoder for the next term.
+         * @param dataStream the stream of the postings file, positioned after the term's document frequency
+         */
+        public void writeTo(DataOutputStream dataStream) throws IOException {
+            writeTo(dataStream, null);
+        }
+
+        /**
+         * Writes the encoded postings of the term, then clears the encoder for the next term.
+         * @param dataStream the stream of the postings file, positioned after the term's document frequency
+         * @param positionsStream the stream of the positions file in the `SEPARATE_POSITIONS` and `LARGE_OFFSETS`
+         *                        layouts, or null if the postings have no positions
+         */
+        public void writeTo(DataOutputStream dataStream, OutputStream positionsStream) throws IOException {
+            if (version == VARIABLE_BYTE) {
+                dataStream.writeInt(byteStream.size());
+            } else {
+                if (blockSize > 0) {
+                    writeBlock();
+                }
+                if (hasSeparatePositions(version) && termHasPositions) {
+                    if (version == SEPARATE_POSITIONS) {
+                        dataStream.writeInt((int) positionsPosition);
+                    } else {
+                        dataStream.writeLong(positionsPosition);
+                    }
+                    positionsPosition += termPositions.size();
+                    termPositions.writeTo(positionsStream);
+                    termPositions.reset();
+                }
+                for (int value : skipTable) {
+                    dataStream.writeInt(value);
+                }
+                skipTable.clear();
+                latestBlockDocumentId = 0;
+                termHasPositions = false;
+            }
+            byteStream.writeTo(dataStream);
+            byteStream.reset();
+            latestDocumentId = 0;
+            ++numOfTerms;
+        }
+
+        private void writeBlock() {
+            int[] gaps = new int[blockSize];
+            int previousDocumentId = latestBlockDocumentId;
+            for (int i = 0; i < blockSize; ++i) {
+                gaps[i] = blockDocumentIds[i] - previousDocumentId;
+                previousDocumentId = blockDocumentIds[i];
+            }
+            writePacked(byteStream, gaps, blockSize);
+
+            if (hasPositions) {
+                writePacked(byteStream, blockTermFrequencies, blockSize);
+
+                if (hasSeparatePositions(version)) {
+                    int[] positionsLengths = new int[blockSize];
+                    for (int i = 0; i < blockSize; ++i) {
+                        int positionsEnd = (i < blockSize - 1 ? blockPositionsStarts[i + 1] : blockPositions.size());
+                        positionsLengths[i] = positionsEnd - blockPositionsStarts[i];
+                    }
+                    writePacked(byteStream, positionsLengths, blockSize);
+                    termPositions.writeBytes(blockPositions.toByteArray());
+                } else {
+                    byteStream.writeBytes(blockPositions.toByteArray());
+                }
+            }
+
+            latestBlockDocumentId = blockDocumentIds[blockSize - 1];
+            skipTable.add(latestBlockDocumentId);
+            skipTable.add(byteStream.size());
+            if (hasSeparatePositions(version) && hasPositions) {
+                skipTable.add(termPositions.size());
+            }
+            blockPositions.reset();
+            blockSize = 0;
+            hasPositions = false;
+        }
+    }
+
+    /**
+     * Writes the non-negative number in 7-bit groups, from most to least significant.
+     */
+    private static void writeVariableByte(ByteArrayOutputStream byteStream, int number) {
+        // the high bit of every group but the last is clear, so find the most significant group first
+        int shift = 28;
+        while (shift > 0 && (number >>> shift) == 0) {
+            shift -= 7;
+        }
+        for (; shift > 0; shift -= 7) {
+            byteStream.write((number >>> shift) & 0x7F);
+        }
+        byteStream.write((number & 0x7F) | 0x80);
+    }
+
+    /**
+     * Writes the bit width of the largest value, followed by every value packed at that width.
+     */
+    private static void writePacked(ByteArrayOutputStream byteStream, int[] values, int numOfValues) {
+        int maxValue = 0;
+        for (int i = 0; i < numOfValues; ++i) {
+            maxValue |= values[i];
+        }
+        int bitWidth = Integer.SIZE - Integer.numberOfLeadingZeros(maxValue);
+        byteStream.write(bitWidth);
+
+        long bitBuffer = 0;
+        int numOfBufferedBits = 0;
+        for (int i = 0; i < numOfValues; ++i) {
+            bitBuffer |= (values[i] & 0xFFFFFFFFL) << numOfBufferedBits;
+            numOfBufferedBits += bitWidth;
+
+            while (numOfBufferedBits >= Byte.SIZE) {
+                byteStream.write((int) bitBuffer);
+                bitBuffer >>>= Byte.SIZE;
+                numOfBufferedBits -= Byte.SIZE;
+            }
+        }
+        if (numOfBufferedBits > 0) {
+            byteStream.write((int) bitBuffer);
+        }
+    }
+
+    /**
+     * Unpacks the values written by `writePacked`.
+     * @param bytes the bytes to read from
+     * @param offset the offset of the bit width
+     * @param values the array to unpack the values into
+     * @param numOfValues the number of values to unpack
+     * @return the offset after the packed values
+     */
+    static int readPacked(ByteBuffer bytes, int offset, int[] values, int numOfValues) {
+        int bitWidth = bytes.get(offset++);
+        long mask = (1L << bitWidth) - 1;
+        long bitBuffer = 0;
+        int numOfBufferedBits = 0;
+
+        for (int i = 0; i < numOfValues; ++i) {
+            while (numOfBufferedBits < bitWidth) {
+                bitBuffer |= (bytes.get(offset++) & 0xFFL) << numOfBufferedBits;
+                numOfBufferedBits += Byte.SIZE;
+            }
+            values[i] = (int) (bitBuffer & mask);
+            bitBuffer >>>= bitWidth;
+            numOfBufferedBits -= bitWidth;
+        }
+
+        return offset;
+    }
+
+    /**
+     * The header of the `LARGE_OFFSETS` layout, which follows the version of the first postings file. It records how
+     * the postings and positions are rolled across files, then the statistics of the corpus the postings were
+     * written from.
+     */
+    public static class Header {
+
+        public static final int SIZE = 5 * Integer.BYTES + 4 * Long.BYTES;
+
+        private final int fileSizeShift;
+        private final int numOfPostingsFiles;
+        private final long postingsLength;
+        private final int numOfPositionsFiles;
+        private final long positionsLength;
+        private final int numOfDocuments;
+        private final int numOfTerms;
+        private final long numOfPostings;
+        private final long numOfPositions;
+
+        /**
+         * Reads the header from the first postings file.
+         * @param postingsFile the first postings file, mapped on its own
+         */
+        public Header(MappedFile postingsFile) throws IOException {
+            if (postingsFile.length() < HEADER_SIZE + SIZE) {
+                throw new IOException("The postings header is incomplete; please rebuild the index.");
+            }
+            long position = HEADER_SIZE;
+
+            fileSizeShift = postingsFile.getInt(position);
+            numOfPostingsFiles = postingsFile.getInt(position += Integer.BYTES);
+            postingsLength = postingsFile.getLong(position += Integer.BYTES);
+            numOfPositionsFiles = postingsFile.getInt(position += Long.BYTES);
+            positionsLength = postingsFile.getLong(position += Integer.BYTES);
+            numOfDocuments = postingsFile.getInt(position += Long.BYTES);
+            numOfTerms = postingsFile.getInt(position += Integer.BYTES);
+            numOfPostings = postingsFile.getLong(position += Integer.BYTES);
+            numOfPositions = postingsFile.getLong(position + Long.BYTES);
+        }
+
+        /**
+         * Maps every postings file as a single file.
+         * @param pathToPostingsBin the path of the first postings file
+         */
+        public MappedFile openPostingsFiles(String pathToPostingsBin) throws IOException {
+            return openFiles(pathToPostingsBin, numOfPostingsFiles, postingsLength);
+        }
+
+        /**
+         * Maps every positions file as a single file.
+         * @param pathToPositionsBin the path of the first positions file
+         * @return the positions, or null if the postings have no positions
+         */
+        public MappedFile openPositionsFiles(String pathToPositionsBin) throws IOException {
+            if (numOfPositionsFiles == 0) {
+                return null;
+            }
+
+            return openFiles(pathToPositionsBin, numOfPositionsFiles, positionsLength);
+        }
+
+        private MappedFile openFiles(String pathToFirstFile, int numOfFiles, long length) throws IOException {
+            MappedFile files = new MappedFile(pathToFirstFile, numOfFiles, fileSizeShift);
+
+            // a file of a different length was written by a different build of the index
+            if (files.length() != length) {
+                files.close();
+                throw new IOException("`" + pathToFirstFile + "` does not match its header; please rebuild the index.");
+            }
+            return files;
+        }
+
+        public int getFileSizeShift() {
+            return fileSizeShift;
+        }
+
+        public int getNumOfPostingsFiles() {
+            return numOfPostingsFiles;
+        }
+
+        public long getPostingsLength() {
+            return postingsLength;
+        }
+
+        public int getNumOfPositionsFiles() {
+            return numOfPositionsFiles;
+        }
+
+        public long getPositionsLength() {
+            return positionsLength;
+        }
+
+        /**
+         * Returns the number of distinct documents with at least one posting.
+         */
+        public int getNumOfDocuments() {
+            return numOfDocuments;
+        }
+
+        public int getNumOfTerms() {
+            return numOfTerms;
+        }
+
+        public long getNumOfPostings() {
+            return numOfPostings;
+        }
+
+        /**
+         * Returns the number of positions of every term, which is the number of tokens in the corpus if the postings
+         * have positions.
+         */
+        public long getNumOfPositions() {
+            return numOfPositions;
+        }
+    }
+
+    /**
+     * Decodes the encoded postings of a single term in the order they were encoded.
+     */
+    public static class Decoder {
+
+        private final ByteBuffer bytes;
+        private int offset;
+        private int latestDocumentId;
+        private int latestPosition;
+
+        /**
+         * Constructs a decoder starting at the given offset of the bytes; the buffer's own position is never used.
+         * @param newBytes the encoded bytes
+         * @param newOffset the offset of the first encoded number
+         */
+        public Decoder(ByteBuffer newBytes, int newOffset) {
+            bytes = newBytes;
+            offset = newOffset;
+        }
+
+        public int nextDocumentId() {
+            latestDocumentId += readVariableByte();
+            return latestDocumentId;
+        }
+
+        public int nextTermFrequency() {
+            latestPosition = 0;
+            return readVariableByte();
+        }
+
+        /**
+         * Moves the decoder to another offset of the bytes, so that one decoder can read positions that are not
+         * stored one after another.
+         * @param newOffset the offset of the next encoded number
+         */
+        public void moveTo(int newOffset) {
+            offset = newOffset;
+        }
+
+        /**
+         * Starts decoding the positions of the next posting in a block, whose term frequencies are packed apart
+         * from the positions.
+         */
+        public void startPositions() {
+            latestPosition = 0;
+        }
+
+        public int nextPosition() {
+            latestPosition += readVariableByte();
+            return latestPosition;
+        }
+
+        /**
+         * Skips the positions of the current posting without decoding them.
+         * @param termFrequency the number of positions to skip
+         */
+        public void skipPositions(int termFrequency) {
+            while (termFrequency > 0) {
+                // each number ends at the first byte with its high bit set
+                if (bytes.get(offset++) < 0) {
+                    --termFrequency;
+                }
+            }
+        }
+
+        private int readVariableByte() {
+            int number = 0;
+            byte currentByte;
+
+            do {
+                currentByte = bytes.get(offset++);
+                number = (number << 7) | (currentByte & 0x7F);
+            } while (currentByte >= 0);
+
+            return number;
+        }
+    }
+}
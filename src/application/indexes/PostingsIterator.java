@@ -0,0 +1,83 @@
+package application.indexes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A PostingsIterator moves forward through the postings of a term in document ID order, skipping over postings
+ * without reading them where the index allows it. The iterator exposes the current posting through its document ID,
+ * term frequency and positions rather than as a Posting, so moving through a list allocates nothing per posting;
+ * positions are only decoded when they are asked for.
+ */
+public interface PostingsIterator {
+
+    /**
+     * The document ID of an iterator that has moved past its last posting.
+     */
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * Returns the document ID of the current posting, -1 if the iterator has not moved yet, or `NO_MORE_DOCS` if no
+     * postings remain.
+     */
+    int docId();
+
+    /**
+     * Moves to the next posting.
+     * @return the document ID of the posting, or `NO_MORE_DOCS` if no postings remain
+     */
+    int nextDoc();
+
+    /**
+     * Moves to the first posting whose document ID is at least the target; the iterator never moves backwards, so a
+     * target at or before the current posting keeps the current posting.
+     * @param target the document ID to move to
+     * @return the document ID of the posting, or `NO_MORE_DOCS` if no postings remain
+     */
+    int advance(int target);
+
+    /**
+     * Returns the number of times the term occurs within the current document, or 0 if the index does not store
+     * term frequencies.
+     */
+    int freq();
+
+    /**
+     * Decodes the positions of the current posting. The first `freq()` entries of the array are the positions,
+     * which are only valid until the iterator moves; the array is reused rather than copied.
+     * @throws IllegalStateException if the iterator was opened without positions
+     */
+    int[] positions();
+
+    /**
+     * Returns the number of postings of the term, whether or not they were read.
+     */
+    int getDocumentFrequency();
+
+    /**
+     * Reads every posting of an iterator into a list, for callers that need the postings all at once.
+     * @param iterator the iterator to read, which must not have moved yet
+     * @param withPositions whether the postings include their positions, rather than only their number
+     * @return the postings, sorted by document ID
+     */
+    static List<Posting> toPostings(PostingsIterator iterator, boolean withPositions) {
+        List<Posting> postings = new ArrayList<>(iterator.getDocumentFrequency());
+
+        for (int documentId = iterator.nextDoc(); documentId != NO_MORE_DOCS; documentId = iterator.nextDoc()) {
+            int termFrequency = iterator.freq();
+
+            if (withPositions) {
+                int[] positions = iterator.positions();
+                ArrayList<Integer> positionList = new ArrayList<>(termFrequency);
+                for (int i = 0; i < termFrequency; ++i) {
+                    positionList.add(positions[i]);
+                }
+                postings.add(new Posting(documentId, positionList));
+            } else {
+                postings.add(new Posting(documentId, termFrequency));
+            }
+        }
+
+        return postings;
+    }
+}
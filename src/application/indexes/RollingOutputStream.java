@@ -0,0 +1,165 @@
+
+package application.indexes;
+
+import java.io.*;
+
+/**
+ * A RollingOutputStream writes one stream of bytes across numbered files of a fixed size, so that no single file
+ * grows without bound. Every file but the last holds exactly `2^fileSizeShift` bytes; the first file keeps the given
+ * path and later files insert their number before the extension, such as `postings.1.bin`. Reading the files back
+ * one after another gives the original stream, so a byte position counts from the start of the first file.
+ * <p>
+ * Positions are tracked as 8-byte longs, unlike `DataOutputStream.size()`, so streams may grow past 2 GB.
+ */
+public class RollingOutputStream extends OutputStream {
+
+    public static final int NO_ROLLING = Long.SIZE - 2;     // a file size that no stream ever reaches
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String pathToFirstFile;
+    private final long fileSize;
+    private final byte[] buffer;
+    private int bufferSize;
+    private FileOutputStream currentFile;
+    private int numOfFiles;     // the number of files opened so far
+    private long flushedPosition;   // the number of bytes written to the files, excluding the buffer
+
+    /**
+     * Opens the first file of the stream, overwriting any existing files.
+     * @param newPathToFirstFile the path of the first file
+     * @param fileSizeShift the base 2 logarithm of the size of every file but the last
+     */
+    public RollingOutputStream(String newPathToFirstFile, int fileSizeShift) throws IOException {
+        pathToFirstFile = newPathToFirstFile;
+        fileSize = 1L << fileSizeShift;
+        buffer = new byte[BUFFER_SIZE];
+        currentFile = new FileOutputStream(pathToFirstFile, false);
+        numOfFiles = 1;
+    }
+
+    /**
+     * Returns the path of a file of the stream.
+     * @param pathToFirstFile the path of the first file
+     * @param fileIndex the index of the file, starting at 0 for the first file
+     */
+    public static String getPath(String pathToFirstFile, int fileIndex) {
+        if (fileIndex == 0) {
+            return pathToFirstFile;
+        }
+        int extensionIndex = pathToFirstFile.lastIndexOf('.');
+        if (extensionIndex <= pathToFirstFile.lastIndexOf('/')) {
+            return pathToFirstFile + "." + fileIndex;
+        }
+
+        return pathToFirstFile.substring(0, extensionIndex) + "." + fileIndex +
+                pathToFirstFile.substring(extensionIndex);
+    }
+
+    /**
+     * Deletes the files of a stream starting at the given file, stopping at the first file that does not exist.
+     * @param pathToFirstFile the path of the first file
+     * @param firstFileIndex the index of the first file to delete
+     */
+    public static void deleteFiles(String pathToFirstFile, int firstFileIndex) {
+        for (int i = firstFileIndex; new File(getPath(pathToFirstFile, i)).delete(); ++i) {
+            // every file up to the first missing one has been deleted
+        }
+    }
+
+    /**
+     * Returns the byte position of the next byte written, counting from the start of the first file.
+     */
+    public long getPosition() {
+        return flushedPosition + bufferSize;
+    }
+
+    /**
+     * Returns the number of files the stream will have once it is closed, including bytes that are still buffered.
+     */
+    public int getNumOfFiles() {
+        return (int) Math.max(1, (getPosition() + fileSize - 1) / fileSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (bufferSize == buffer.length) {
+            flushBuffer();
+        }
+        buffer[bufferSize++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (bufferSize == buffer.length) {
+                flushBuffer();
+            }
+            int numOfCopiedBytes = Math.min(length, buffer.length - bufferSize);
+            System.arraycopy(bytes, offset, buffer, bufferSize, numOfCopiedBytes);
+            bufferSize += numOfCopiedBytes;
+            offset += numOfCopiedBytes;
+            length -= numOfCopiedBytes;
+        }
+    }
+
+    /**
+     * Overwrites bytes that were already written, such as a header whose values are only known at the end.
+     * @param position the byte position of the first byte to overwrite, counting from the start of the first file
+     * @param bytes the bytes to write, which must not extend past the current position
+     */
+    public void writeAt(long position, byte[] bytes) throws IOException {
+        flushBuffer();
+        int offset = 0;
+
+        while (offset < bytes.length) {
+            int fileIndex = (int) ((position + offset) / fileSize);
+            long filePosition = (position + offset) % fileSize;
+            int numOfFileBytes = (int) Math.min(bytes.length - offset, fileSize - filePosition);
+
+            try (RandomAccessFile randomAccessor = new RandomAccessFile(getPath(pathToFirstFile, fileIndex), "rw")) {
+                randomAccessor.seek(filePosition);
+                randomAccessor.write(bytes, offset, numOfFileBytes);
+            }
+            offset += numOfFileBytes;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        currentFile.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (currentFile == null) {
+            return;
+        }
+        flushBuffer();
+        currentFile.close();
+        currentFile = null;
+
+        // files left over from a larger stream written to the same path are no longer part of it
+        deleteFiles(pathToFirstFile, numOfFiles);
+    }
+
+    private void flushBuffer() throws IOException {
+        int offset = 0;
+
+        while (offset < bufferSize) {
+            long currentFileEnd = numOfFiles * fileSize;
+            // the next file is only opened once there are bytes to write to it, so the last file is never empty
+            if (flushedPosition == currentFileEnd) {
+                currentFile.close();
+                currentFile = new FileOutputStream(getPath(pathToFirstFile, numOfFiles), false);
+                ++numOfFiles;
+                currentFileEnd += fileSize;
+            }
+            int numOfFileBytes = (int) Math.min(bufferSize - offset, currentFileEnd - flushedPosition);
+            currentFile.write(buffer, offset, numOfFileBytes);
+            offset += numOfFileBytes;
+            flushedPosition += numOfFileBytes;
+        }
+        bufferSize = 0;
+    }
+}
@@ -0,0 +1,636 @@
+
+package application.indexes;
+
+import application.documents.DirectoryCorpus;
+import application.documents.Document;
+import application.documents.FileDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps an on-disk index up to date with its corpus directory without rebuilding it. Files that were added or
+ * modified since the last update are indexed into a new immutable segment, while deleted and modified files are
+ * cleared from the live documents of the segments that hold them. Segments of similar size are merged in the
+ * background so that queries only ever read from a bounded number of segments.
+ * The segment from the original build (generation 0) is stored directly in the index directory; every later
+ * segment is stored in its own `segment-<generation>` subdirectory.
+ */
+public class SegmentManager {
+
+    private static final int MERGE_FACTOR = 4;      // the number of adjacent segments of the same tier to merge
+    private static final int MAX_SEGMENTS = 16;     // merge the smallest segments regardless of tier beyond this
+    private static final String[] SEGMENT_FILES = {"postings.bin", "positions.bin", "terms.bin", "termBounds.bin",
+            "docBitmaps.bin", "biword.bin", "biwordTerms.bin", "kGrams.bin", "kGramTerms.bin", "kGramTokens.bin",
+            "liveDocs.bin"};
+    private static final int K = 3;     // the length of the longest k-grams of every segment
+
+    // a single daemon thread merges segments, so that merges never run concurrently or keep the program running
+    private static final ExecutorService merger = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-merger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, String> indexPaths;
+    private final SegmentManifest manifest;
+    private final Map<Integer, LiveDocs> liveDocs;  // segment generation -> live documents
+    private final List<Integer> obsoleteGenerations;    // merged segments whose files can be deleted
+    private final Set<Integer> openGenerations;     // the segments read by the most recently opened indexes
+    private volatile boolean refreshNeeded;     // whether a merge finished since the indexes were last opened
+
+    /**
+     * The number of files that were added, modified and deleted by an update.
+     */
+    public static class UpdateSummary {
+
+        private final int numOfAdded;
+        private final int numOfModified;
+        private final int numOfDeleted;
+
+        private UpdateSummary(int newNumOfAdded, int newNumOfModified, int newNumOfDeleted) {
+            numOfAdded = newNumOfAdded;
+            numOfModified = newNumOfModified;
+            numOfDeleted = newNumOfDeleted;
+        }
+
+        public int getNumOfAdded() {
+            return numOfAdded;
+        }
+
+        public int getNumOfModified() {
+            return numOfModified;
+        }
+
+        public int getNumOfDeleted() {
+            return numOfDeleted;
+        }
+
+        public boolean hasChanges() {
+            return (numOfAdded + numOfModified + numOfDeleted > 0);
+        }
+    }
+
+    private SegmentManager(Map<String, String> newIndexPaths, SegmentManifest newManifest) {
+        indexPaths = newIndexPaths;
+        manifest = newManifest;
+        liveDocs = new HashMap<>();
+        obsoleteGenerations = new ArrayList<>();
+        openGenerations = new HashSet<>();
+
+        for (SegmentManifest.SegmentInfo segment : manifest.getSegments()) {
+            liveDocs.put(segment.getGeneration(), LiveDocs.read(getSegmentPaths(segment.getGeneration())
+                    .get("liveDocsBin"), segment.getMinDocumentId(), segment.getMaxDocumentId() -
+                    segment.getMinDocumentId()));
+        }
+    }
+
+    /**
+     * Writes a new manifest for an index that was just built from scratch, where the whole corpus is a single
+     * segment. The segments of any earlier updates are deleted.
+     * @param indexPaths the map of index file paths of the corpus
+     * @param corpus the corpus that was indexed
+     */
+    public static void create(Map<String, String> indexPaths, DirectoryCorpus corpus) {
+        SegmentManifest manifest = new SegmentManifest();
+        int numOfDocuments = 0;
+
+        for (Document document : corpus.getDocuments()) {
+            Path filePath = ((FileDocument) document).getFilePath();
+            manifest.putDocument(corpus.getRelativePath(filePath),
+                    new SegmentManifest.DocumentInfo(document.getId(), getLastModified(filePath)));
+            numOfDocuments = Math.max(numOfDocuments, document.getId() + 1);
+        }
+        manifest.setNextDocumentId(numOfDocuments);
+        manifest.addSegment(new SegmentManifest.SegmentInfo(manifest.reserveGeneration(), 0, numOfDocuments));
+
+        // the original segment starts without deletions
+        new File(indexPaths.get("indexDirectory") + "/liveDocs.bin").delete();
+        new SegmentManager(indexPaths, manifest).deleteUnusedSegments();
+        manifest.write(getPathToSegmentsBin(indexPaths));
+    }
+
+    /**
+     * Opens the segments of an on-disk index, deleting the files of any segments left behind by earlier merges.
+     * @param indexPaths the map of index file paths of the corpus
+     * @return the manager of the index, or null if the index was built without a manifest
+     */
+    public static SegmentManager open(Map<String, String> indexPaths) {
+        SegmentManifest manifest = SegmentManifest.read(getPathToSegmentsBin(indexPaths));
+        if (manifest == null) {
+            return null;
+        }
+        SegmentManager manager = new SegmentManager(indexPaths, manifest);
+        manager.deleteUnusedSegments();
+
+        return manager;
+    }
+
+    /**
+     * Returns the map of each file's path relative to the corpus directory -> its document ID, which must be
+     * given to the corpus before its documents are loaded.
+     */
+    public synchronized Map<String, Integer> getDocumentIds() {
+        return manifest.getDocumentIds();
+    }
+
+    /**
+     * Compares the files of the corpus with the manifest, indexes any added or modified files into a new segment,
+     * and marks deleted or modified files as no longer live. The corpus is given the updated document IDs.
+     * @param corpus the corpus of the index, whose documents have not been loaded yet
+     * @param numOfThreads the number of threads used to build the k-gram index
+     * @return the number of files that were added, modified and deleted
+     */
+    public synchronized UpdateSummary update(DirectoryCorpus corpus, int numOfThreads) {
+        Map<String, Integer> documentIds = new HashMap<>();
+        Set<String> foundPaths = new HashSet<>();
+        Set<Integer> changedGenerations = new HashSet<>();
+        List<Path> newFiles = new ArrayList<>();
+        int numOfAdded = 0;
+        int numOfModified = 0;
+        int numOfDeleted = 0;
+
+        for (Path filePath : corpus.getFilePaths()) {
+            String relativePath = corpus.getRelativePath(filePath);
+            SegmentManifest.DocumentInfo document = manifest.getDocument(relativePath);
+            foundPaths.add(relativePath);
+
+            if (document == null) {
+                ++numOfAdded;
+                newFiles.add(filePath);
+            } else if (document.getLastModified() != getLastModified(filePath)) {
+                // a modified file is deleted from its old segment and indexed again with a new document ID
+                ++numOfModified;
+                deleteDocument(document.getDocumentId(), changedGenerations);
+                newFiles.add(filePath);
+            } else {
+                documentIds.put(relativePath, document.getDocumentId());
+            }
+        }
+
+        Iterator<Map.Entry<String, SegmentManifest.DocumentInfo>> documents =
+                manifest.getDocuments().entrySet().iterator();
+        while (documents.hasNext()) {
+            Map.Entry<String, SegmentManifest.DocumentInfo> entry = documents.next();
+
+            if (!foundPaths.contains(entry.getKey())) {
+                ++numOfDeleted;
+                deleteDocument(entry.getValue().getDocumentId(), changedGenerations);
+                documents.remove();
+            }
+        }
+
+        // the new files are given the next document IDs in sorted order, after every existing segment
+        int firstDocumentId = manifest.getNextDocumentId();
+        int nextDocumentId = firstDocumentId;
+        for (Path filePath : newFiles) {
+            String relativePath = corpus.getRelativePath(filePath);
+            manifest.putDocument(relativePath, new SegmentManifest.DocumentInfo(nextDocumentId,
+                    getLastModified(filePath)));
+            documentIds.put(relativePath, nextDocumentId);
+            ++nextDocumentId;
+        }
+        manifest.setNextDocumentId(nextDocumentId);
+        corpus.setDocumentIds(documentIds);
+
+        if (!newFiles.isEmpty()) {
+            writeSegment(corpus, firstDocumentId, nextDocumentId, numOfThreads);
+        }
+        for (int generation : changedGenerations) {
+            liveDocs.get(generation).write(getSegmentPaths(generation).get("liveDocsBin"));
+        }
+        // the manifest is written last, so the index is never left referring to a segment that was not written
+        manifest.write(getPathToSegmentsBin(indexPaths));
+
+        return new UpdateSummary(numOfAdded, numOfModified, numOfDeleted);
+    }
+
+    private void deleteDocument(int documentId, Set<Integer> changedGenerations) {
+        SegmentManifest.SegmentInfo segment = manifest.findSegment(documentId);
+
+        if (segment != null) {
+            liveDocs.get(segment.getGeneration()).delete(documentId);
+            changedGenerations.add(segment.getGeneration());
+        }
+    }
+
+    private void writeSegment(DirectoryCorpus corpus, int firstDocumentId, int lastDocumentId, int numOfThreads) {
+        // postings must be built in document ID order, so sort the new documents before indexing them
+        List<Document> documents = new ArrayList<>();
+        for (Document document : corpus.getDocuments()) {
+            if (document.getId() >= firstDocumentId) {
+                documents.add(document);
+            }
+        }
+        documents.sort(Comparator.comparingInt(Document::getId));
+
+        IndexSegment segment = new IndexSegment();
+        segment.indexDocuments(documents);
+
+        int generation = manifest.reserveGeneration();
+        Map<String, String> segmentPaths = getSegmentPaths(generation);
+        DiskIndexWriter.createIndexDirectory(segmentPaths.get("indexDirectory"));
+        writeSegmentFiles(segmentPaths, segment.getIndex(), segment.getBiwordIndex());
+
+        // document weights are stored by document ID, so the new weights follow the existing ones
+        DiskIndexWriter.writeDocumentStatistics(indexPaths.get("docStatsBin"), segment.getDocumentStatistics(),
+                firstDocumentId);
+        try (DiskDocumentStatistics documentStatistics = new DiskDocumentStatistics(indexPaths.get("docStatsBin"))) {
+            DiskIndexWriter.writeTermBounds(segmentPaths.get("termBoundsBin"), documentStatistics, segment.getIndex());
+            DiskIndexWriter.writeDocumentBitmaps(segmentPaths.get("docBitmapsBin"), documentStatistics,
+                    segment.getIndex());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        // the segment only holds the k-grams of its own tokens, so the k-grams of earlier segments are left alone
+        KGramIndex kGramIndex = KGramIndex.fromVocabulary(new ArrayList<>(segment.getWildcardVocabulary()), K,
+                numOfThreads);
+        DiskIndexWriter.writeKGrams(segmentPaths.get("kGramsBin"), segmentPaths.get("kGramTermsBin"),
+                segmentPaths.get("kGramTokensBin"), kGramIndex);
+
+        manifest.addSegment(new SegmentManifest.SegmentInfo(generation, firstDocumentId, lastDocumentId));
+        liveDocs.put(generation, new LiveDocs(firstDocumentId, lastDocumentId - firstDocumentId));
+    }
+
+    private static void writeSegmentFiles(Map<String, String> segmentPaths, Index<String, Posting> index,
+                                          Index<String, Posting> biwordIndex) {
+        DiskIndexWriter.writeIndex(segmentPaths.get("postingsBin"), segmentPaths.get("positionsBin"),
+                segmentPaths.get("termsBin"), index);
+        DiskIndexWriter.writeBiword(segmentPaths.get("biwordBin"), segmentPaths.get("biwordTermsBin"), biwordIndex);
+    }
+
+    /**
+     * Opens the k-grams of every segment as a single index.
+     */
+    public synchronized SegmentedKGramIndex openKGramIndex() {
+        // the generations are added to those of the other indexes, which may have been opened before a merge ended
+        List<DiskKGramIndex> kGramIndexes = openKGramIndexes(manifest.getSegments());
+        for (SegmentManifest.SegmentInfo segment : manifest.getSegments()) {
+            openGenerations.add(segment.getGeneration());
+        }
+
+        return new SegmentedKGramIndex(kGramIndexes);
+    }
+
+    private List<DiskKGramIndex> openKGramIndexes(List<SegmentManifest.SegmentInfo> segments) {
+        List<DiskKGramIndex> kGramIndexes = new ArrayList<>();
+
+        for (SegmentManifest.SegmentInfo segment : segments) {
+            Map<String, String> segmentPaths = getSegmentPaths(segment.getGeneration());
+
+            // segments added before each segment kept its own k-grams have none, since every update used to add
+            // its tokens to the k-grams of the original segment instead
+            if (segment.getGeneration() != 0 && !new File(segmentPaths.get("kGramsBin")).exists()) {
+                continue;
+            }
+            kGramIndexes.add(DiskIndexReader.readKGrams(segmentPaths.get("kGramsBin"),
+                    segmentPaths.get("kGramTermsBin"), segmentPaths.get("kGramTokensBin")));
+        }
+
+        return kGramIndexes;
+    }
+
+    /**
+     * Opens the positional postings of every segment as a single index.
+     */
+    public synchronized SegmentedIndex openPositionalIndex() {
+        recordOpenGenerations();
+        return openIndex(manifest.getSegments(), copyLiveDocs(manifest.getSegments()), false);
+    }
+
+    /**
+     * Opens the biword postings of every segment as a single index.
+     */
+    public synchronized SegmentedIndex openBiwordIndex() {
+        recordOpenGenerations();
+        return openIndex(manifest.getSegments(), copyLiveDocs(manifest.getSegments()), true);
+    }
+
+    private void recordOpenGenerations() {
+        openGenerations.clear();
+        for (SegmentManifest.SegmentInfo segment : manifest.getSegments()) {
+            openGenerations.add(segment.getGeneration());
+        }
+        refreshNeeded = false;
+    }
+
+    private SegmentedIndex openIndex(List<SegmentManifest.SegmentInfo> segments, List<LiveDocs> segmentLiveDocs,
+                                     boolean isBiword) {
+        List<Index<String, Posting>> indexes = new ArrayList<>();
+
+        for (SegmentManifest.SegmentInfo segment : segments) {
+            Map<String, String> segmentPaths = getSegmentPaths(segment.getGeneration());
+
+            if (isBiword) {
+                indexes.add(new DiskBiwordIndex(DiskIndexReader.readTermDictionary(
+                        segmentPaths.get("biwordTermsBin")), segmentPaths.get("biwordBin")));
+            } else {
+                indexes.add(new DiskPositionalIndex(DiskIndexReader.readTermDictionary(segmentPaths.get("termsBin")),
+                        segmentPaths.get("postingsBin"), segmentPaths.get("positionsBin"),
+                        segmentPaths.get("termBoundsBin"), segmentPaths.get("docBitmapsBin")));
+            }
+        }
+
+        return new SegmentedIndex(indexes, segmentLiveDocs);
+    }
+
+    private List<LiveDocs> copyLiveDocs(List<SegmentManifest.SegmentInfo> segments) {
+        // readers get their own copies, so that later deletions only become visible once the indexes are reopened
+        List<LiveDocs> segmentLiveDocs = new ArrayList<>();
+        for (SegmentManifest.SegmentInfo segment : segments) {
+            segmentLiveDocs.add(liveDocs.get(segment.getGeneration()).copy());
+        }
+
+        return segmentLiveDocs;
+    }
+
+    public synchronized int getNumOfSegments() {
+        return manifest.getSegments().size();
+    }
+
+    /**
+     * Returns whether a background merge has finished since the indexes were last opened; the indexes should then
+     * be reopened, and `deleteObsoleteSegments()` called once the previous indexes are closed.
+     */
+    public boolean isRefreshNeeded() {
+        return refreshNeeded;
+    }
+
+    /**
+     * Merges segments in the background until no tier holds `MERGE_FACTOR` adjacent segments and there are at
+     * most `MAX_SEGMENTS` segments.
+     */
+    public void scheduleMerges() {
+        merger.submit(() -> {
+            try {
+                while (mergeNextSegments()) {}
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Merges the next run of segments chosen by the merge policy.
+     * @return whether any segments were merged
+     */
+    private boolean mergeNextSegments() {
+        List<SegmentManifest.SegmentInfo> mergedSegments;
+        List<LiveDocs> mergedLiveDocs;
+        int generation;
+
+        synchronized (this) {
+            mergedSegments = findSegmentsToMerge();
+            if (mergedSegments == null) {
+                return false;
+            }
+            mergedLiveDocs = copyLiveDocs(mergedSegments);
+            generation = manifest.reserveGeneration();
+        }
+
+        // the merged segment is written without holding the lock, so that updates can continue in the meantime
+        Map<String, String> segmentPaths = getSegmentPaths(generation);
+        DiskIndexWriter.createIndexDirectory(segmentPaths.get("indexDirectory"));
+        // the merge maps the statistics itself, and an update replaces the file by moving a new one over it rather
+        // than rewriting it, so this mapping keeps reading the statistics as they were when the merge began; those
+        // of the merged documents never change anyway
+        try (SegmentedIndex index = openIndex(mergedSegments, mergedLiveDocs, false);
+             SegmentedIndex biwordIndex = openIndex(mergedSegments, mergedLiveDocs, true);
+             DiskDocumentStatistics documentStatistics = new DiskDocumentStatistics(indexPaths.get("docStatsBin"))) {
+            Index<String, Posting> liveIndex = withoutDeletedTerms(index);
+            writeSegmentFiles(segmentPaths, liveIndex, withoutDeletedTerms(biwordIndex));
+
+            DiskIndexWriter.writeTermBounds(segmentPaths.get("termBoundsBin"), documentStatistics, liveIndex);
+            DiskIndexWriter.writeDocumentBitmaps(segmentPaths.get("docBitmapsBin"), documentStatistics, liveIndex);
+            writeMergedKGrams(segmentPaths, mergedSegments);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        synchronized (this) {
+            int minDocumentId = mergedSegments.get(0).getMinDocumentId();
+            int maxDocumentId = mergedSegments.get(mergedSegments.size() - 1).getMaxDocumentId();
+            LiveDocs newLiveDocs = new LiveDocs(minDocumentId, maxDocumentId - minDocumentId);
+
+            // documents deleted while merging still have postings in the merged segment, so they are deleted again
+            for (SegmentManifest.SegmentInfo segment : mergedSegments) {
+                LiveDocs segmentLiveDocs = liveDocs.remove(segment.getGeneration());
+
+                for (int documentId = segment.getMinDocumentId(); documentId < segment.getMaxDocumentId();
+                     ++documentId) {
+                    if (!segmentLiveDocs.isLive(documentId)) {
+                        newLiveDocs.delete(documentId);
+                    }
+                }
+                obsoleteGenerations.add(segment.getGeneration());
+            }
+            newLiveDocs.write(segmentPaths.get("liveDocsBin"));
+            liveDocs.put(generation, newLiveDocs);
+
+            manifest.replaceSegments(mergedSegments, new SegmentManifest.SegmentInfo(generation, minDocumentId,
+                    maxDocumentId));
+            manifest.write(getPathToSegmentsBin(indexPaths));
+            refreshNeeded = true;
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the k-grams of the tokens of every merged segment. Tokens of deleted documents are kept, since tokens
+     * are not stemmed like the terms of the postings, so there is no telling whether any live document still holds
+     * them; they only ever lead to terms without postings.
+     */
+    private void writeMergedKGrams(Map<String, String> segmentPaths, List<SegmentManifest.SegmentInfo> segments) {
+        Set<String> wildcardVocabulary = new TreeSet<>();
+        List<DiskKGramIndex> kGramIndexes = openKGramIndexes(segments);
+
+        try {
+            for (DiskKGramIndex kGramIndex : kGramIndexes) {
+                wildcardVocabulary.addAll(kGramIndex.getVocabulary());
+            }
+        } finally {
+            kGramIndexes.forEach(DiskKGramIndex::close);
+        }
+        DiskIndexWriter.writeKGrams(segmentPaths.get("kGramsBin"), segmentPaths.get("kGramTermsBin"),
+                segmentPaths.get("kGramTokensBin"), KGramIndex.fromVocabulary(new ArrayList<>(wildcardVocabulary), K,
+                        1));
+    }
+
+    /**
+     * Chooses the adjacent segments to merge; only adjacent segments can be merged, since their document IDs must
+     * form a single contiguous range. Segments are grouped into tiers by their number of live documents, where
+     * each tier holds segments `MERGE_FACTOR` times larger than the tier below it.
+     * @return the segments to merge, or null if no merge is needed
+     */
+    private List<SegmentManifest.SegmentInfo> findSegmentsToMerge() {
+        List<SegmentManifest.SegmentInfo> segments = manifest.getSegments();
+        if (segments.size() < MERGE_FACTOR) {
+            return null;
+        }
+
+        for (int start = 0; start + MERGE_FACTOR <= segments.size(); ++start) {
+            int tier = getTier(segments.get(start));
+            int end = start + 1;
+
+            while (end < start + MERGE_FACTOR && getTier(segments.get(end)) == tier) {
+                ++end;
+            }
+            if (end == start + MERGE_FACTOR) {
+                return new ArrayList<>(segments.subList(start, end));
+            }
+        }
+
+        // too many segments of mixed tiers remain, so merge the adjacent segments with the fewest live documents
+        if (segments.size() > MAX_SEGMENTS) {
+            int bestStart = 0;
+            long bestSize = Long.MAX_VALUE;
+
+            for (int start = 0; start + MERGE_FACTOR <= segments.size(); ++start) {
+                long size = 0;
+                for (int i = start; i < start + MERGE_FACTOR; ++i) {
+                    size += liveDocs.get(segments.get(i).getGeneration()).getNumOfLiveDocuments();
+                }
+                if (size < bestSize) {
+                    bestStart = start;
+                    bestSize = size;
+                }
+            }
+
+            return new ArrayList<>(segments.subList(bestStart, bestStart + MERGE_FACTOR));
+        }
+
+        return null;
+    }
+
+    private int getTier(SegmentManifest.SegmentInfo segment) {
+        int numOfLiveDocuments = Math.max(1, liveDocs.get(segment.getGeneration()).getNumOfLiveDocuments());
+
+        return (int) (Math.log(numOfLiveDocuments) / Math.log(MERGE_FACTOR));
+    }
+
+    private static Index<String, Posting> withoutDeletedTerms(SegmentedIndex index) {
+        // terms whose documents were all deleted are dropped from the merged segment's vocabulary, which only needs
+        // the first live posting of each term to be found rather than all of them
+        List<String> vocabulary = new ArrayList<>();
+        for (String term : index.getVocabulary()) {
+            if (index.getPostingsIterator(term, false).nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                vocabulary.add(term);
+            }
+        }
+
+        return new Index<>() {
+            @Override
+            public List<Posting> getPostings(String term) {
+                return index.getPostings(term);
+            }
+
+            @Override
+            public List<Posting> getPositionlessPostings(String term) {
+                return index.getPositionlessPostings(term);
+            }
+
+            @Override
+            public List<String> getVocabulary() {
+                return vocabulary;
+            }
+        };
+    }
+
+    /**
+     * Deletes the files of segments that were merged away, except for those still read by the most recently opened
+     * indexes; this must only be called after any indexes opened before them are closed.
+     */
+    public synchronized void deleteObsoleteSegments() {
+        Iterator<Integer> generations = obsoleteGenerations.iterator();
+
+        while (generations.hasNext()) {
+            int generation = generations.next();
+
+            if (!openGenerations.contains(generation)) {
+                deleteSegmentFiles(generation);
+                generations.remove();
+            }
+        }
+    }
+
+    private void deleteUnusedSegments() {
+        Set<Integer> generations = new HashSet<>(liveDocs.keySet());
+        if (!generations.contains(0)) {
+            deleteSegmentFiles(0);
+        }
+
+        File[] segmentDirectories = new File(indexPaths.get("indexDirectory")).listFiles(file ->
+                file.isDirectory() && file.getName().startsWith("segment-"));
+        if (segmentDirectories == null) {
+            return;
+        }
+        for (File segmentDirectory : segmentDirectories) {
+            try {
+                int generation = Integer.parseInt(segmentDirectory.getName().substring("segment-".length()));
+                if (!generations.contains(generation)) {
+                    deleteSegmentFiles(generation);
+                }
+            } catch (NumberFormatException ignored) {}
+        }
+    }
+
+    private void deleteSegmentFiles(int generation) {
+        Map<String, String> segmentPaths = getSegmentPaths(generation);
+
+        // the original segment shares the index directory with the other index files, so only its files are deleted
+        if (generation == 0) {
+            for (String fileName : SEGMENT_FILES) {
+                // postings and positions may have been rolled across numbered files
+                RollingOutputStream.deleteFiles(segmentPaths.get("indexDirectory") + "/" + fileName, 0);
+            }
+            return;
+        }
+
+        File[] files = new File(segmentPaths.get("indexDirectory")).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        new File(segmentPaths.get("indexDirectory")).delete();
+    }
+
+    private Map<String, String> getSegmentPaths(int generation) {
+        String pathToSegmentDirectory = (generation == 0 ? indexPaths.get("indexDirectory") :
+                indexPaths.get("indexDirectory") + "/segment-" + generation);
+
+        return new HashMap<>() {{
+            put("indexDirectory", pathToSegmentDirectory);
+            put("postingsBin", pathToSegmentDirectory + "/postings.bin");
+            put("positionsBin", pathToSegmentDirectory + "/positions.bin");
+            put("termsBin", pathToSegmentDirectory + "/terms.bin");
+            put("termBoundsBin", pathToSegmentDirectory + "/termBounds.bin");
+            put("docBitmapsBin", pathToSegmentDirectory + "/docBitmaps.bin");
+            put("biwordBin", pathToSegmentDirectory + "/biword.bin");
+            put("biwordTermsBin", pathToSegmentDirectory + "/biwordTerms.bin");
+            put("kGramsBin", pathToSegmentDirectory + "/kGrams.bin");
+            put("kGramTermsBin", pathToSegmentDirectory + "/kGramTerms.bin");
+            put("kGramTokensBin", pathToSegmentDirectory + "/kGramTokens.bin");
+            put("liveDocsBin", pathToSegmentDirectory + "/liveDocs.bin");
+        }};
+    }
+
+    private static String getPathToSegmentsBin(Map<String, String> indexPaths) {
+        return indexPaths.get("indexDirectory") + "/segments.bin";
+    }
+
+    private static long getLastModified(Path filePath) {
+        try {
+            return Files.getLastModifiedTime(filePath).toMillis();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+
+package application.indexes;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * The SegmentManifest records the segments of an on-disk index and the document of every indexed file, so that
+ * an index can be updated with only the files that were added, modified or deleted since it was last written.
+ * Document IDs are never reused: each updated file is given the next available ID, which keeps the IDs of every
+ * segment greater than those of the segments before it.
+ */
+public class SegmentManifest {
+
+    /**
+     * A segment covers the contiguous range of document IDs from its minimum (inclusive) to its maximum (exclusive).
+     */
+    public static class SegmentInfo {
+
+        private final int generation;   // the unique number of the segment, which names its directory
+        private final int minDocumentId;
+        private final int maxDocumentId;
+
+        public SegmentInfo(int newGeneration, int newMinDocumentId, int newMaxDocumentId) {
+            generation = newGeneration;
+            minDocumentId = newMinDocumentId;
+            maxDocumentId = newMaxDocumentId;
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        public int getMinDocumentId() {
+            return minDocumentId;
+        }
+
+        public int getMaxDocumentId() {
+            return maxDocumentId;
+        }
+
+        public boolean contains(int documentId) {
+            return (documentId >= minDocumentId && documentId < maxDocumentId);
+        }
+    }
+
+    /**
+     * The document ID and modification time of an indexed file.
+     */
+    public static class DocumentInfo {
+
+        private final int documentId;
+        private final long lastModified;    // the modification time of the file when it was indexed, in milliseconds
+
+        public DocumentInfo(int newDocumentId, long newLastModified) {
+            documentId = newDocumentId;
+            lastModified = newLastModified;
+        }
+
+        public int getDocumentId() {
+            return documentId;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private final List<SegmentInfo> segments;               // sorted by document ID range
+    private final Map<String, DocumentInfo> documents;      // keyed by path relative to the corpus directory
+    private int nextDocumentId;
+    private int nextGeneration;
+
+    /**
+     * Constructs an empty manifest.
+     */
+    public SegmentManifest() {
+        segments = new ArrayList<>();
+        documents = new TreeMap<>();
+    }
+
+    public List<SegmentInfo> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Returns the segment containing the document ID, or null if no segment contains it.
+     */
+    public SegmentInfo findSegment(int documentId) {
+        for (SegmentInfo segment : segments) {
+            if (segment.contains(documentId)) {
+                return segment;
+            }
+        }
+
+        return null;
+    }
+
+    public void addSegment(SegmentInfo segment) {
+        segments.add(segment);
+    }
+
+    /**
+     * Replaces a run of adjacent segments with the single segment they were merged into.
+     * @param mergedSegments the adjacent segments that were merged, in document ID order
+     * @param newSegment the segment covering the document IDs of all merged segments
+     */
+    public void replaceSegments(List<SegmentInfo> mergedSegments, SegmentInfo newSegment) {
+        int index = segments.indexOf(mergedSegments.get(0));
+        segments.removeAll(mergedSegments);
+        segments.add(index, newSegment);
+    }
+
+    public Map<String, DocumentInfo> getDocuments() {
+        return documents;
+    }
+
+    public DocumentInfo getDocument(String relativePath) {
+        return documents.get(relativePath);
+    }
+
+    public void putDocument(String relativePath, DocumentInfo document) {
+        documents.put(relativePath, document);
+    }
+
+    /**
+     * Returns the map of each file's path relative to the corpus directory -> its document ID.
+     */
+    public Map<String, Integer> getDocumentIds() {
+        Map<String, Integer> documentIds = new HashMap<>();
+        documents.forEach((path, document) -> documentIds.put(path, document.documentId));
+
+        return documentIds;
+    }
+
+    public int getNextDocumentId() {
+        return nextDocumentId;
+    }
+
+    public void setNextDocumentId(int newNextDocumentId) {
+        nextDocumentId = newNextDocumentId;
+    }
+
+    /**
+     * Returns the next unused segment generation, reserving it.
+     */
+    public int reserveGeneration() {
+        return nextGeneration++;
+    }
+
+    /**
+     * Writes the manifest to a temporary file first, then moves it into place, so that a failed write never
+     * leaves behind a partial manifest.
+     * @param pathToSegmentsBin the path of the manifest file
+     */
+    public void write(String pathToSegmentsBin) {
+        File temporaryFile = new File(pathToSegmentsBin + ".tmp");
+
+        try (FileOutputStream fileStream = new FileOutputStream(temporaryFile, false);
+             BufferedOutputStream bufferStream = new BufferedOutputStream(fileStream);
+             DataOutputStream dataStream = new DataOutputStream(bufferStream)) {
+            dataStream.writeInt(nextDocumentId);
+            dataStream.writeInt(nextGeneration);
+            dataStream.writeInt(segments.size());
+
+            for (SegmentInfo segment : segments) {
+                dataStream.writeInt(segment.generation);
+                dataStream.writeInt(segment.minDocumentId);
+                dataStream.writeInt(segment.maxDocumentId);
+            }
+
+            dataStream.writeInt(documents.size());
+            for (Map.Entry<String, DocumentInfo> entry : documents.entrySet()) {
+                dataStream.writeUTF(entry.getKey());
+                dataStream.writeInt(entry.getValue().documentId);
+                dataStream.writeLong(entry.getValue().lastModified);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        try {
+            Files.move(temporaryFile.toPath(), new File(pathToSegmentsBin).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads a manifest written by `write()`.
+     * @param pathToSegmentsBin the path of the manifest file
+     * @return the manifest, or null if the index has no manifest
+     */
+    public static SegmentManifest read(String pathToSegmentsBin) {
+        if (!new File(pathToSegmentsBin).exists()) {
+            return null;
+        }
+        SegmentManifest manifest = new SegmentManifest();
+
+        try (FileInputStream fileStream = new FileInputStream(pathToSegmentsBin);
+             BufferedInputStream bufferStream = new BufferedInputStream(fileStream);
+             DataInputStream dataStream = new DataInputStream(bufferStream)) {
+            manifest.nextDocumentId = dataStream.readInt();
+            manifest.nextGeneration = dataStream.readInt();
+            int numOfSegments = dataStream.readInt();
+
+            for (int i = 0; i < numOfSegments; ++i) {
+                manifest.segments.add(new SegmentInfo(dataStream.readInt(), dataStream.readInt(),
+                        dataStream.readInt()));
+            }
+
+            int numOfDocuments = dataStream.readInt();
+            for (int i = 0; i < numOfDocuments; ++i) {
+                String relativePath = dataStream.readUTF();
+                manifest.documents.put(relativePath, new DocumentInfo(dataStream.readInt(), dataStream.readLong()));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return manifest;
+    }
+}
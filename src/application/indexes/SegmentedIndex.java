@@ -0,0 +1,283 @@
+
+package application.indexes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * A SegmentedIndex reads the postings of a term across every segment of an index, in segment order, skipping
+ * the postings of documents that are no longer live. Since each segment's document IDs are greater than those of
+ * the segments before it, the concatenated postings stay sorted by document ID.
+ */
+public class SegmentedIndex implements Index<String, Posting>, IterableIndex, BoundedIndex, BitmapIndex, Closeable {
+
+    private final List<Index<String, Posting>> segments;
+    private final List<LiveDocs> liveDocs;  // the bitmap of each segment, in the same order as the segments
+    private final DocumentBitmap[] deletedDocuments;    // the deleted documents of each segment, once they are needed
+    private volatile List<String> vocabulary;   // the union of the segments' vocabularies, once it is needed
+
+    /**
+     * Constructs an index over the segments.
+     * @param newSegments the indexes of the segments, in ascending document ID order
+     * @param newLiveDocs the live documents of each segment, in the same order as the segments
+     */
+    public SegmentedIndex(List<Index<String, Posting>> newSegments, List<LiveDocs> newLiveDocs) {
+        segments = newSegments;
+        liveDocs = newLiveDocs;
+        deletedDocuments = new DocumentBitmap[newSegments.size()];
+    }
+
+    @Override
+    public List<Posting> getPostings(String term) {
+        List<Posting> resultPostings = new ArrayList<>();
+
+        for (int i = 0; i < segments.size(); ++i) {
+            addLivePostings(resultPostings, segments.get(i).getPostings(term), liveDocs.get(i));
+        }
+
+        return resultPostings;
+    }
+
+    @Override
+    public List<Posting> getPositionlessPostings(String term) {
+        List<Posting> resultPostings = new ArrayList<>();
+
+        for (int i = 0; i < segments.size(); ++i) {
+            addLivePostings(resultPostings, segments.get(i).getPositionlessPostings(term), liveDocs.get(i));
+        }
+
+        return resultPostings;
+    }
+
+    private static void addLivePostings(List<Posting> resultPostings, List<Posting> postings, LiveDocs segmentLiveDocs) {
+        // segments without deletions can skip the bitmap entirely
+        if (segmentLiveDocs.getNumOfLiveDocuments() == segmentLiveDocs.getNumOfDocuments()) {
+            resultPostings.addAll(postings);
+            return;
+        }
+
+        for (Posting posting : postings) {
+            if (segmentLiveDocs.isLive(posting.getDocumentId())) {
+                resultPostings.add(posting);
+            }
+        }
+    }
+
+    @Override
+    public PostingsIterator getPostingsIterator(String term, boolean withPositions) {
+        List<PostingsIterator> segmentIterators = new ArrayList<>();
+
+        for (Index<String, Posting> segment : segments) {
+            segmentIterators.add(IterableIndex.openIterator(segment, term, withPositions));
+        }
+
+        return new SegmentedPostingsIterator(term, segmentIterators);
+    }
+
+    /**
+     * Returns the greatest bound of the term within any segment, since the documents of every segment are scored
+     * with the same weights.
+     */
+    @Override
+    public double getMaxWeight(String term) {
+        double maxWeight = 0;
+
+        for (Index<String, Posting> segment : segments) {
+            maxWeight = Math.max(maxWeight, BoundedIndex.getMaxWeight(segment, term));
+        }
+
+        return maxWeight;
+    }
+
+    /**
+     * Returns the union of the term's bitmap in every segment, without the documents that are no longer live. A term
+     * may only be dense within some of the segments, so the bitmaps of the other segments are built from their
+     * postings; if the term is dense within none of them, it has no bitmap.
+     */
+    @Override
+    public synchronized DocumentBitmap getDocumentBitmap(String term) {
+        DocumentBitmap[] segmentBitmaps = new DocumentBitmap[segments.size()];
+        boolean isDense = false;
+
+        for (int i = 0; i < segments.size(); ++i) {
+            segmentBitmaps[i] = BitmapIndex.getDocumentBitmap(segments.get(i), term);
+            isDense |= (segmentBitmaps[i] != null);
+        }
+        if (!isDense) {
+            return null;
+        }
+
+        DocumentBitmap documentBitmap = new DocumentBitmap();
+        for (int i = 0; i < segments.size(); ++i) {
+            DocumentBitmap segmentBitmap = (segmentBitmaps[i] != null ? segmentBitmaps[i] :
+                    DocumentBitmap.fromPostings(IterableIndex.openIterator(segments.get(i), term, false)));
+            LiveDocs segmentLiveDocs = liveDocs.get(i);
+
+            if (segmentLiveDocs.getNumOfLiveDocuments() != segmentLiveDocs.getNumOfDocuments()) {
+                segmentBitmap = segmentBitmap.andNot(getDeletedDocuments(i));
+            }
+            documentBitmap = documentBitmap.or(segmentBitmap);
+        }
+
+        return documentBitmap;
+    }
+
+    private synchronized DocumentBitmap getDeletedDocuments(int segment) {
+        if (deletedDocuments[segment] == null) {
+            deletedDocuments[segment] = liveDocs.get(segment).getDeletedDocuments();
+        }
+
+        return deletedDocuments[segment];
+    }
+
+    /**
+     * Moves through the iterator of each segment in turn, skipping the postings of documents that are not live.
+     */
+    private class SegmentedPostingsIterator implements PostingsIterator {
+
+        private final String term;
+        private final List<PostingsIterator> segmentIterators;
+        private int currentSegment;
+        private int documentId;
+        private int documentFrequency;  // counted the first time it is needed, or -1 until then
+
+        private SegmentedPostingsIterator(String newTerm, List<PostingsIterator> newSegmentIterators) {
+            term = newTerm;
+            segmentIterators = newSegmentIterators;
+            documentId = -1;
+            documentFrequency = -1;
+        }
+
+        @Override
+        public int docId() {
+            return documentId;
+        }
+
+        @Override
+        public int nextDoc() {
+            return advance(documentId + 1);
+        }
+
+        @Override
+        public int advance(int target) {
+            if (documentId >= target) {
+                return documentId;
+            }
+
+            while (currentSegment < segmentIterators.size()) {
+                PostingsIterator segmentIterator = segmentIterators.get(currentSegment);
+                LiveDocs segmentLiveDocs = liveDocs.get(currentSegment);
+                int segmentDocumentId = segmentIterator.advance(target);
+
+                while (segmentDocumentId != NO_MORE_DOCS && !segmentLiveDocs.isLive(segmentDocumentId)) {
+                    segmentDocumentId = segmentIterator.nextDoc();
+                }
+                if (segmentDocumentId != NO_MORE_DOCS) {
+                    documentId = segmentDocumentId;
+                    return documentId;
+                }
+                // the segment has no postings left, and the later segments only hold greater document IDs
+                ++currentSegment;
+            }
+            documentId = NO_MORE_DOCS;
+
+            return documentId;
+        }
+
+        /**
+         * Returns the term frequency of the current posting, or 0 once every segment has run out of postings.
+         */
+        @Override
+        public int freq() {
+            return (currentSegment < segmentIterators.size() ? segmentIterators.get(currentSegment).freq() : 0);
+        }
+
+        /**
+         * Decodes the positions of the current posting, which are empty once every segment has run out of postings.
+         */
+        @Override
+        public int[] positions() {
+            return (currentSegment < segmentIterators.size() ? segmentIterators.get(currentSegment).positions() :
+                    new int[0]);
+        }
+
+        /**
+         * Returns the number of live documents containing the term across every segment, which scoring takes as
+         * df(t). A segment with deletions has its deleted documents looked up in a separate iterator over its
+         * postings, which skips straight to each of them, so the count costs time in the number of deleted documents
+         * rather than in the number of postings.
+         */
+        @Override
+        public int getDocumentFrequency() {
+            if (documentFrequency >= 0) {
+                return documentFrequency;
+            }
+            documentFrequency = 0;
+
+            for (int i = 0; i < segmentIterators.size(); ++i) {
+                documentFrequency += segmentIterators.get(i).getDocumentFrequency();
+
+                LiveDocs segmentLiveDocs = liveDocs.get(i);
+                if (segmentLiveDocs.getNumOfLiveDocuments() == segmentLiveDocs.getNumOfDocuments()) {
+                    continue;
+                }
+                DocumentBitmap segmentDeletedDocuments = getDeletedDocuments(i);
+                PostingsIterator segmentPostings = IterableIndex.openIterator(segments.get(i), term, false);
+
+                for (int deletedDocumentId = segmentDeletedDocuments.nextDocumentId(0);
+                     deletedDocumentId != NO_MORE_DOCS;
+                     deletedDocumentId = segmentDeletedDocuments.nextDocumentId(deletedDocumentId + 1)) {
+                    int segmentDocumentId = segmentPostings.advance(deletedDocumentId);
+
+                    if (segmentDocumentId == NO_MORE_DOCS) {
+                        break;
+                    }
+                    if (segmentDocumentId == deletedDocumentId) {
+                        --documentFrequency;
+                    }
+                }
+            }
+
+            return documentFrequency;
+        }
+    }
+
+    /**
+     * Returns the sorted union of every segment's vocabulary, which is built the first time it is asked for; the
+     * segments of an index never change once it is opened. A term may remain in the vocabulary after all of its
+     * documents are deleted, until the segments containing it are merged.
+     */
+    @Override
+    public List<String> getVocabulary() {
+        if (segments.size() == 1) {
+            return segments.get(0).getVocabulary();
+        }
+        if (vocabulary == null) {
+            TreeSet<String> segmentVocabularies = new TreeSet<>();
+
+            for (Index<String, Posting> segment : segments) {
+                segmentVocabularies.addAll(segment.getVocabulary());
+            }
+            vocabulary = Collections.unmodifiableList(new ArrayList<>(segmentVocabularies));
+        }
+
+        return vocabulary;
+    }
+
+    public int getNumOfSegments() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Index<String, Posting> segment : segments) {
+            if (segment instanceof Closeable closeableSegment) {
+                closeableSegment.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+
+package application.indexes;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A SegmentedKGramIndex reads the k-grams of every segment of an index as one, since each segment only holds the
+ * k-grams of the tokens indexed into it. The k-grams of a token never depend on the segment it was found in, so the
+ * tokens of a k-gram, or of several k-grams at once, are the union of those found in every segment.
+ */
+public class SegmentedKGramIndex implements WildcardIndex, Closeable {
+
+    private final List<DiskKGramIndex> segments;
+    private volatile int numOfDistinctKGrams = -1;  // counted the first time it is needed
+
+    /**
+     * Constructs an index over the k-grams of the segments.
+     * @param newSegments the k-grams of each segment
+     */
+    public SegmentedKGramIndex(List<DiskKGramIndex> newSegments) {
+        segments = newSegments;
+    }
+
+    @Override
+    public List<String> getTokens(String kGram) {
+        return unionTokens(segment -> segment.getTokens(kGram));
+    }
+
+    /**
+     * Returns the union of the candidate tokens of every segment; a token contains every k-gram in one segment
+     * exactly when it does in all of them.
+     */
+    @Override
+    public List<String> getCandidateTokens(List<String> kGrams) {
+        return unionTokens(segment -> segment.getCandidateTokens(kGrams));
+    }
+
+    /**
+     * Counts the distinct k-grams of every segment together, which reads the k-gram dictionary of each segment.
+     */
+    @Override
+    public int getNumOfDistinctKGrams() {
+        if (numOfDistinctKGrams < 0) {
+            Set<String> kGrams = new HashSet<>();
+            int numOfFlags = 0;
+
+            for (DiskKGramIndex segment : segments) {
+                List<String> segmentKGrams = segment.getKGrams();
+                kGrams.addAll(segmentKGrams);
+                // the bare `$` flags are counted as k-grams but never stored, so they are the same in every segment
+                numOfFlags = Math.max(numOfFlags, segment.getNumOfDistinctKGrams() - segmentKGrams.size());
+            }
+            numOfDistinctKGrams = kGrams.size() + numOfFlags;
+        }
+
+        return numOfDistinctKGrams;
+    }
+
+    @Override
+    public List<String> getPostings(String term) {
+        for (DiskKGramIndex segment : segments) {
+            List<String> kGrams = segment.getPostings(term);
+
+            if (!kGrams.isEmpty()) {
+                return kGrams;
+            }
+        }
+
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<String> getPositionlessPostings(String term) {
+        // by default, k-grams do not store positions
+        return getPostings(term);
+    }
+
+    @Override
+    public List<String> getVocabulary() {
+        return unionTokens(DiskKGramIndex::getVocabulary);
+    }
+
+    /**
+     * Returns the sorted union of the tokens found in each segment, which are already sorted when there is only one.
+     */
+    private List<String> unionTokens(Function<DiskKGramIndex, List<String>> findTokens) {
+        if (segments.size() == 1) {
+            return findTokens.apply(segments.get(0));
+        }
+        Set<String> tokens = new TreeSet<>();
+
+        for (DiskKGramIndex segment : segments) {
+            tokens.addAll(findTokens.apply(segment));
+        }
+
+        return new ArrayList<>(tokens);
+    }
+
+    @Override
+    public void close() {
+        for (DiskKGramIndex segment : segments) {
+            segment.close();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+
+package application.indexes;
+
+import application.documents.Document;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Builds the on-disk positional and biword indexes of a corpus using single-pass in-memory indexing (SPIMI).
+ * Documents are indexed into an in-memory block until its estimated size reaches the memory budget; the block
+ * is then flushed to disk as a run of sorted terms, and all runs are k-way merged into the final postings files.
+ */
+public class SpimiIndexer {
+
+    private final long memoryBudget;        // the approximate number of heap bytes a block may use before flushing
+    private final String pathToRunDirectory;
+    private final List<String> positionalRuns;
+    private final List<String> biwordRuns;
+    private final Set<String> wildcardVocabulary;   // bounded by the vocabulary, so it is kept in memory
+    private final int numOfThreads;         // the number of threads used to build the k-gram index
+    private KGramIndex kGramIndex;
+    private final DocumentStatistics documentStatistics;
+    private IndexSegment currentBlock;
+
+    /**
+     * Constructs an indexer that writes its temporary runs into the given index directory.
+     * @param pathToIndexDirectory the index directory of the corpus
+     * @param newMemoryBudget the approximate number of heap bytes a block may use before it is flushed to disk
+     * @param newNumOfThreads the number of threads used to build the k-gram index
+     */
+    public SpimiIndexer(String pathToIndexDirectory, long newMemoryBudget, int newNumOfThreads) {
+        memoryBudget = newMemoryBudget;
+        numOfThreads = newNumOfThreads;
+        pathToRunDirectory = pathToIndexDirectory + "/runs";
+        positionalRuns = new ArrayList<>();
+        biwordRuns = new ArrayList<>();
+        wildcardVocabulary = new LinkedHashSet<>();
+        documentStatistics = new DocumentStatistics();
+        currentBlock = new IndexSegment();
+    }
+
+    /**
+     * Indexes each of the documents in the order they are given; documents must be given in ascending ID order.
+     * @param documents the documents to index
+     */
+    public void indexDocuments(List<Document> documents) {
+        for (Document document : documents) {
+            currentBlock.indexDocument(document);
+
+            // blocks are only flushed between documents, so each run holds a contiguous range of document IDs
+            if (currentBlock.getEstimatedSize() >= memoryBudget) {
+                flushBlock();
+            }
+        }
+    }
+
+    /**
+     * Flushes any remaining block, builds the k-gram index, then merges all runs into the final postings and
+     * term dictionaries. The temporary run files are deleted afterwards.
+     * @param indexPaths the map of index file paths of the corpus
+     */
+    public void finish(Map<String, String> indexPaths) {
+        flushBlock();
+        kGramIndex = KGramIndex.fromVocabulary(new ArrayList<>(wildcardVocabulary), 3, numOfThreads);
+
+        mergeRuns(positionalRuns, indexPaths.get("postingsBin"), indexPaths.get("positionsBin"),
+                indexPaths.get("termsBin"));
+        mergeRuns(biwordRuns, indexPaths.get("biwordBin"), null, indexPaths.get("biwordTermsBin"));
+
+        // the runs are no longer needed once they have been merged
+        for (String run : positionalRuns) {
+            new File(run).delete();
+        }
+        for (String run : biwordRuns) {
+            new File(run).delete();
+        }
+        new File(pathToRunDirectory).delete();
+    }
+
+    public int getNumOfRuns() {
+        return positionalRuns.size();
+    }
+
+    /**
+     * Returns the k-gram index of the corpus, which is only available after `finish()` is called.
+     */
+    public KGramIndex getKGramIndex() {
+        return kGramIndex;
+    }
+
+    public DocumentStatistics getDocumentStatistics() {
+        return documentStatistics;
+    }
+
+    private void flushBlock() {
+        // there is nothing to flush if no documents were indexed since the last flush
+        if (currentBlock.getDocumentStatistics().size() == 0) {
+            return;
+        }
+        DiskIndexWriter.createIndexDirectory(pathToRunDirectory);
+
+        String positionalRun = pathToRunDirectory + "/postings-" + positionalRuns.size() + ".run";
+        String biwordRun = pathToRunDirectory + "/biword-" + biwordRuns.size() + ".run";
+        writeRun(positionalRun, currentBlock.getIndex());
+        writeRun(biwordRun, currentBlock.getBiwordIndex());
+        positionalRuns.add(positionalRun);
+        biwordRuns.add(biwordRun);
+
+        wildcardVocabulary.addAll(currentBlock.getWildcardVocabulary());
+        documentStatistics.append(currentBlock.getDocumentStatistics());
+
+        // start a new block so that the flushed block can be garbage collected
+        currentBlock = new IndexSegment();
+    }
+
+    private static void writeRun(String pathToRun, Index<String, Posting> block) {
+        try (FileOutputStream fileStream = new FileOutputStream(pathToRun, false);
+             BufferedOutputStream bufferStream = new BufferedOutputStream(fileStream);
+             DataOutputStream dataStream = new DataOutputStream(bufferStream)) {
+            // runs store absolute document IDs and positions, since the gaps are computed while merging
+            for (String term : block.getVocabulary()) {
+                List<Posting> postings = block.getPostings(term);
+                dataStream.writeUTF(term);
+                dataStream.writeInt(postings.size());
+
+                for (Posting posting : postings) {
+                    List<Integer> positions = posting.getPositions();
+                    dataStream.writeInt(posting.getDocumentId());
+                    dataStream.writeInt(positions.size());
+
+                    for (int position : positions) {
+                        dataStream.writeInt(position);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Merges the sorted runs into a single postings file using the same layout as `DiskIndexWriter`.
+     * @param runs the paths of the runs, in ascending document ID order
+     * @param pathToPostingsBin the path of the postings file to write
+     * @param pathToPositionsBin the path of the positions file to write, or null if positions are not written
+     * @param pathToTermsBin the path of the term dictionary to write
+     */
+    private static void mergeRuns(List<String> runs, String pathToPostingsBin, String pathToPositionsBin,
+                                  String pathToTermsBin) {
+        boolean withPositions = (pathToPositionsBin != null);
+        List<RunReader> readers = new ArrayList<>();
+        // order the runs by their current term; ties are broken by run order to keep document IDs ascending
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Comparator.comparing((RunReader reader) ->
+                reader.currentTerm).thenComparingInt(reader -> reader.runIndex));
+
+        try (RollingOutputStream postingsOutput = new RollingOutputStream(pathToPostingsBin,
+                PostingsFormat.FILE_SIZE_SHIFT);
+             DataOutputStream dataStream = new DataOutputStream(postingsOutput);
+             RollingOutputStream positionsOutput = (withPositions ? DiskIndexWriter.openPositionsOutput(
+                     pathToPositionsBin, PostingsFormat.CURRENT_VERSION, PostingsFormat.FILE_SIZE_SHIFT) : null);
+             DiskTermDictionary.Writer termsWriter = new DiskTermDictionary.Writer(pathToTermsBin)) {
+            PostingsFormat.Encoder encoder = new PostingsFormat.Encoder(PostingsFormat.CURRENT_VERSION);
+            PostingsFormat.writePostingsHeader(dataStream, PostingsFormat.CURRENT_VERSION);
+
+            for (int i = 0; i < runs.size(); ++i) {
+                RunReader reader = new RunReader(runs.get(i), i);
+                readers.add(reader);
+
+                if (reader.nextTerm()) {
+                    queue.add(reader);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                String term = queue.peek().currentTerm;
+                List<RunReader> termReaders = new ArrayList<>();
+                int dft = 0;
+
+                // collect every run containing the term, since dft must be written before the postings
+                while (!queue.isEmpty() && queue.peek().currentTerm.equals(term)) {
+                    RunReader reader = queue.poll();
+                    termReaders.add(reader);
+                    dft += reader.currentDft;
+                }
+
+                termsWriter.add(term, dft, postingsOutput.getPosition());
+                dataStream.writeInt(dft);
+
+                for (RunReader reader : termReaders) {
+                    for (int i = 0; i < reader.currentDft; ++i) {
+                        encoder.addDocumentId(reader.stream.readInt());
+                        int positionsSize = reader.stream.readInt();
+                        if (withPositions) {
+                            encoder.addTermFrequency(positionsSize);
+                        }
+
+                        for (int j = 0; j < positionsSize; ++j) {
+                            int currentPosition = reader.stream.readInt();
+                            if (withPositions) {
+                                encoder.addPosition(currentPosition);
+                            }
+                        }
+                    }
+
+                    if (reader.nextTerm()) {
+                        queue.add(reader);
+                    }
+                }
+                encoder.writeTo(dataStream, positionsOutput);
+            }
+            PostingsFormat.finishHeader(postingsOutput, positionsOutput, PostingsFormat.FILE_SIZE_SHIFT, encoder);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the terms of a run one at a time; the postings of the current term are read by the merge.
+     */
+    private static class RunReader implements Closeable {
+
+        private final DataInputStream stream;
+        private final int runIndex;
+        private String currentTerm;
+        private int currentDft;
+
+        private RunReader(String pathToRun, int newRunIndex) throws FileNotFoundException {
+            stream = new DataInputStream(new BufferedInputStream(new FileInputStream(pathToRun)));
+            runIndex = newRunIndex;
+        }
+
+        private boolean nextTerm() throws IOException {
+            try {
+                currentTerm = stream.readUTF();
+            } catch (EOFException e) {
+                return false;
+            }
+            currentDft = stream.readInt();
+
+            return true;
+        }
+
+        @Override
+        public void close() {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+
+package application.indexes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns dense integer IDs to terms in the order they are first seen, so that the structures built while
+ * indexing can be keyed by int rather than by String.
+ */
+public class TermDictionary {
+
+    public static final int NO_TERM = -1;   // returned when a term has not been assigned an ID
+
+    private final Map<String, Integer> termIds;
+    private final List<String> terms;      // the term of each ID, indexed by ID
+
+    /**
+     * Constructs an empty term dictionary.
+     */
+    public TermDictionary() {
+        termIds = new HashMap<>();
+        terms = new ArrayList<>();
+    }
+
+    /**
+     * Returns the ID of the term, assigning the next available ID if the term has not been seen yet.
+     * @param term the term to find the ID of
+     * @return the ID of the term
+     */
+    public int getOrAddId(String term) {
+        Integer termId = termIds.get(term);
+
+        if (termId == null) {
+            termId = terms.size();
+            termIds.put(term, termId);
+            terms.add(term);
+        }
+
+        return termId;
+    }
+
+    /**
+     * Returns the ID of the term, or `NO_TERM` if the term has not been seen yet.
+     * @param term the term to find the ID of
+     * @return the ID of the term
+     */
+    public int getId(String term) {
+        Integer termId = termIds.get(term);
+
+        return (termId == null ? NO_TERM : termId);
+    }
+
+    public String getTerm(int termId) {
+        return terms.get(termId);
+    }
+
+    public int size() {
+        return terms.size();
+    }
+}
@@ -0,0 +1,92 @@
+
+package application.indexes;
+
+import application.text.NormalizingTokenizer;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A TokenizedDocument holds the normalized terms of a document along with their positions, so that a document can
+ * be tokenized on one thread and indexed on another. It collects the tokens of a `NormalizingTokenizer` directly.
+ */
+public class TokenizedDocument implements NormalizingTokenizer.TokenHandler {
+
+    private final int documentId;
+    private final long byteSize;
+    private final Set<String> wildcardTokens;   // distinct wildcard tokens, in the order they were first found
+    private String[] terms;
+    private int[] positions;    // the position of each term, where terms split from the same token share a position
+    private int numOfTerms;
+    private int currentPosition;
+
+    /**
+     * Constructs an empty tokenized document.
+     * @param newDocumentId the ID of the document
+     * @param newByteSize the size of the document's file in bytes, or 0 if it is not read from a file
+     */
+    public TokenizedDocument(int newDocumentId, long newByteSize) {
+        documentId = newDocumentId;
+        byteSize = newByteSize;
+        wildcardTokens = new LinkedHashSet<>();
+        terms = new String[64];
+        positions = new int[64];
+        // the position always starts at 1, like `IndexSegment`
+        currentPosition = 1;
+    }
+
+    @Override
+    public void handleToken(List<String> newWildcardTokens, List<String> newTerms) {
+        wildcardTokens.addAll(newWildcardTokens);
+
+        for (String term : newTerms) {
+            if (numOfTerms == terms.length) {
+                terms = Arrays.copyOf(terms, terms.length * 2);
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            terms[numOfTerms] = term;
+            positions[numOfTerms] = currentPosition;
+            ++numOfTerms;
+        }
+        ++currentPosition;
+    }
+
+    public int getDocumentId() {
+        return documentId;
+    }
+
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * Returns the number of tokens of the document, including tokens that did not produce any terms.
+     */
+    public int getNumOfTokens() {
+        return currentPosition - 1;
+    }
+
+    public Set<String> getWildcardTokens() {
+        return wildcardTokens;
+    }
+
+    /**
+     * Returns the terms of the document in order; only the first `getNumOfTerms()` elements are used.
+     */
+    public String[] getTerms() {
+        return terms;
+    }
+
+    /**
+     * Returns the position of each term; only the first `getNumOfTerms()` elements are used.
+     */
+    public int[] getPositions() {
+        return positions;
+    }
+
+    public int getNumOfTerms() {
+        return numOfTerms;
+    }
+}
@@ -0,0 +1,201 @@
+
+package application.indexes;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A UnionPostingsIterator moves through the union of several iterators at once, stopping once at each document found
+ * in any of them. The iterators are kept in a binary min-heap ordered by their current document ID, so moving to the
+ * next document only advances the iterators on the current one, and merging n postings from k iterators costs
+ * O(n log k) rather than the O(n k) of advancing every iterator at each document.
+ * <p>
+ * When several iterators share a document, the union either takes the posting of the last of them, or merges them
+ * into one posting whose term frequency is their sum and whose positions are all of theirs in ascending order; the
+ * latter suits iterators over different terms standing in for one, such as the expanded terms of a wildcard.
+ */
+public class UnionPostingsIterator implements PostingsIterator {
+
+    private final PostingsIterator[] iterators;
+    private final boolean mergesPostings;
+    private final int[] heap;           // the indexes of the iterators with postings left, ordered by document ID
+    private int heapSize;
+    private final int[] matches;        // the indexes of the iterators on the current document, in ascending order
+    private int numOfMatches;
+    private int documentId;
+    private int[] positions;
+
+    /**
+     * Constructs the union of the iterators, none of which may have moved yet.
+     * @param newIterators the iterators to union
+     * @param newMergesPostings whether the postings of a document found in several iterators are merged, rather than
+     *                          taking the posting of the last of them
+     */
+    public UnionPostingsIterator(List<PostingsIterator> newIterators, boolean newMergesPostings) {
+        iterators = newIterators.toArray(new PostingsIterator[0]);
+        mergesPostings = newMergesPostings;
+        heap = new int[iterators.length];
+        matches = new int[iterators.length];
+        documentId = -1;
+        positions = new int[0];
+
+        // every iterator starts before its first posting, so the heap is already ordered by iterator index
+        for (int i = 0; i < iterators.length; ++i) {
+            heap[heapSize++] = i;
+        }
+    }
+
+    @Override
+    public int docId() {
+        return documentId;
+    }
+
+    @Override
+    public int nextDoc() {
+        return advance(documentId + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (documentId >= target) {
+            return documentId;
+        }
+
+        // only the iterators before the target are advanced, and each one sinks back to its place in the heap
+        while (heapSize > 0 && iterators[heap[0]].docId() < target) {
+            PostingsIterator iterator = iterators[heap[0]];
+
+            // moving to the very next document is the common case, which most iterators can do without skipping
+            int nextDocumentId = (iterator.docId() + 1 == target ? iterator.nextDoc() : iterator.advance(target));
+            if (nextDocumentId == NO_MORE_DOCS) {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(0);
+        }
+        documentId = (heapSize > 0 ? iterators[heap[0]].docId() : NO_MORE_DOCS);
+        findMatches();
+
+        return documentId;
+    }
+
+    /**
+     * Returns the number of iterators on the current document.
+     */
+    public int getNumOfMatches() {
+        return numOfMatches;
+    }
+
+    /**
+     * Returns the index of an iterator on the current document, in the order the iterators were given.
+     * @param match the rank of the iterator among the iterators on the current document, in ascending order
+     */
+    public int getMatch(int match) {
+        return matches[match];
+    }
+
+    @Override
+    public int freq() {
+        if (!mergesPostings) {
+            return iterators[matches[numOfMatches - 1]].freq();
+        }
+
+        int termFrequency = 0;
+        for (int i = 0; i < numOfMatches; ++i) {
+            termFrequency += iterators[matches[i]].freq();
+        }
+
+        return termFrequency;
+    }
+
+    @Override
+    public int[] positions() {
+        if (!mergesPostings || numOfMatches == 1) {
+            return iterators[matches[numOfMatches - 1]].positions();
+        }
+
+        int numOfPositions = 0;
+        for (int i = 0; i < numOfMatches; ++i) {
+            PostingsIterator iterator = iterators[matches[i]];
+            int termFrequency = iterator.freq();
+
+            if (positions.length < numOfPositions + termFrequency) {
+                positions = Arrays.copyOf(positions, Math.max(numOfPositions + termFrequency, positions.length * 2));
+            }
+            System.arraycopy(iterator.positions(), 0, positions, numOfPositions, termFrequency);
+            numOfPositions += termFrequency;
+        }
+        Arrays.sort(positions, 0, numOfPositions);
+
+        return positions;
+    }
+
+    /**
+     * Returns the sum of the iterators' document frequencies, which bounds the size of the union.
+     */
+    @Override
+    public int getDocumentFrequency() {
+        int documentFrequency = 0;
+        for (PostingsIterator iterator : iterators) {
+            documentFrequency += iterator.getDocumentFrequency();
+        }
+
+        return documentFrequency;
+    }
+
+    /**
+     * Collects the iterators on the current document, which form a subtree at the top of the heap.
+     */
+    private void findMatches() {
+        numOfMatches = 0;
+        if (documentId == NO_MORE_DOCS) {
+            return;
+        }
+
+        // the matches array first holds the heap nodes on the document, visiting the children of each in turn
+        matches[numOfMatches++] = 0;
+        for (int visited = 0; visited < numOfMatches; ++visited) {
+            int node = matches[visited];
+            int left = 2 * node + 1;
+
+            for (int child = left; child <= left + 1 && child < heapSize; ++child) {
+                if (iterators[heap[child]].docId() == documentId) {
+                    matches[numOfMatches++] = child;
+                }
+            }
+        }
+        for (int i = 0; i < numOfMatches; ++i) {
+            matches[i] = heap[matches[i]];
+        }
+        // the heap holds few matches at a time, so sorting them into iterator order is cheap
+        Arrays.sort(matches, 0, numOfMatches);
+    }
+
+    private boolean isBefore(int left, int right) {
+        int leftDocumentId = iterators[left].docId();
+        int rightDocumentId = iterators[right].docId();
+
+        return (leftDocumentId < rightDocumentId || (leftDocumentId == rightDocumentId && left < right));
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int first = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+
+            if (left < heapSize && isBefore(heap[left], heap[first])) {
+                first = left;
+            }
+            if (right < heapSize && isBefore(heap[right], heap[first])) {
+                first = right;
+            }
+            if (first == index) {
+                return;
+            }
+            int iterator = heap[index];
+            heap[index] = heap[first];
+            heap[first] = iterator;
+            index = first;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+
+package application.indexes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A WildcardIndex maps each token of a vocabulary to its k-grams, and each k-gram back to the tokens containing it,
+ * so that wildcard queries and spelling corrections only consider the tokens sharing k-grams with the query.
+ */
+public interface WildcardIndex extends Index<String, String> {
+
+    /**
+     * Returns the tokens containing the k-gram, sorted in ascending order.
+     * @param kGram the k-gram to find the tokens of
+     * @return the sorted list of tokens containing the k-gram
+     */
+    List<String> getTokens(String kGram);
+
+    /**
+     * Returns the number of distinct k-grams found while building the index, including the bare `$` flags.
+     */
+    int getNumOfDistinctKGrams();
+
+    /**
+     * Returns the tokens containing every one of the k-grams, sorted in ascending order.
+     * @param kGrams the k-grams that every token must contain
+     * @return the sorted list of tokens containing every k-gram, or the entire vocabulary if there are no k-grams
+     */
+    default List<String> getCandidateTokens(List<String> kGrams) {
+        if (kGrams.isEmpty()) {
+            return getVocabulary();
+        }
+        List<String> candidateTokens = null;
+
+        // only tokens that contain every k-gram remain after intersecting each k-gram's sorted tokens
+        for (String kGram : kGrams) {
+            List<String> kGramTokens = getTokens(kGram);
+
+            candidateTokens = (candidateTokens == null ? kGramTokens : intersectTokens(candidateTokens, kGramTokens));
+            if (candidateTokens.isEmpty()) {
+                break;
+            }
+        }
+
+        return new ArrayList<>(candidateTokens);
+    }
+
+    private static List<String> intersectTokens(List<String> leftList, List<String> rightList) {
+        List<String> intersections = new ArrayList<>();
+
+        int leftIndex = 0;
+        int rightIndex = 0;
+
+        // use logic similar to the intersection algorithm of AndQuery
+        while (leftIndex < leftList.size() && rightIndex < rightList.size()) {
+            int comparison = leftList.get(leftIndex).compareTo(rightList.get(rightIndex));
+
+            if (comparison == 0) {
+                intersections.add(leftList.get(leftIndex));
+                ++leftIndex;
+                ++rightIndex;
+            } else if (comparison < 0) {
+                ++leftIndex;
+            } else {
+                ++rightIndex;
+            }
+        }
+
+        return intersections;
+    }
+}
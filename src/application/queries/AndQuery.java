@@ -4,8 +4,11 @@ package application.queries;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import application.indexes.BitmapPostingsIterator;
+import application.indexes.DocumentBitmap;
 import application.indexes.Index;
 import application.indexes.Posting;
+import application.indexes.PostingsIterator;
 import application.text.TokenProcessor;
 
 /**
@@ -23,71 +26,165 @@ public class AndQuery implements QueryComponent {
 	public List<Posting> getPostings(Index<String, Posting> index, TokenProcessor processor) {
 		/* Program the merge for an AndQuery, by gathering the postings of the composed QueryComponents and
 		  unionizing the results. */
-		// initialize the intersections to be the postings of the first term
-		List<Posting> intersections = mComponents.get(0).getPostings(index, processor);
-
-		// start intersecting with the postings of the second term
-		for (int i = 1; i < mComponents.size(); ++i) {
-			QueryComponent currentComponent = mComponents.get(i);
-			// store current posting for readability
-			List<Posting> currentPostings = currentComponent.getPostings(index, processor);
-
-			// intersect the current intersections with the new postings
-			intersections = intersectPostings(intersections, currentPostings);
-		}
-
-		return intersections;
+		return intersectPostings(index, processor, true);
 	}
 
 	@Override
 	public List<Posting> getPositionlessPostings(Index<String, Posting> index, TokenProcessor processor) {
 		/* Program the merge for an AndQuery, by gathering the postings of the composed QueryComponents and
 		  unionizing the results. */
-		// initialize the intersections to be the postings of the first term
-		List<Posting> intersections = mComponents.get(0).getPositionlessPostings(index, processor);
+		return intersectPostings(index, processor, false);
+	}
+
+	/**
+	 * Opens an iterator over the intersection of every component's postings, which only reads each component's
+	 * postings as far as the intersection is read. The components dense enough to have a bitmap are intersected as
+	 * bitmaps, which then take part in the merge as a single component alongside the postings of the sparse
+	 * components; the sparsest component drives the merge, and when every component is dense, only the postings of
+	 * the first component are read for the documents found.
+	 * <p>
+	 * The bitmap of each component is found once: a nested query hands its bitmap up through its own iterator.
+	 */
+	@Override
+	public PostingsIterator getPostingsIterator(Index<String, Posting> index, TokenProcessor processor,
+												boolean withPositions) {
+		List<PostingsIterator> iterators = new ArrayList<>();
+		DocumentBitmap documentBitmap = null;
+		int firstDenseComponent = -1;	// where the bitmap of the dense components takes part in the merge
+
+		for (QueryComponent component : mComponents) {
+			PostingsIterator iterator = component.getPostingsIterator(index, processor, withPositions);
+			DocumentBitmap componentBitmap = BitmapPostingsIterator.getDocumentBitmap(iterator);
+			if (componentBitmap == null) {
+				componentBitmap = component.getDocumentBitmap(index, processor);
+			}
 
-		// start intersecting with the postings of the second term
-		for (int i = 1; i < mComponents.size(); ++i) {
-			QueryComponent currentComponent = mComponents.get(i);
-			// store current posting for readability
-			List<Posting> currentPostings = currentComponent.getPositionlessPostings(index, processor);
+			if (componentBitmap == null) {
+				iterators.add(iterator);
+			} else if (documentBitmap == null) {
+				documentBitmap = componentBitmap;
+				firstDenseComponent = iterators.size();
+				iterators.add(iterator);
+			} else {
+				documentBitmap = documentBitmap.and(componentBitmap);
+			}
+		}
 
-			// intersect the current intersections with the new postings
-			intersections = intersectPostings(intersections, currentPostings);
+		if (documentBitmap == null) {
+			return new IntersectionIterator(iterators);
+		}
+		// the term frequency and positions of each document are still read from the first dense component's postings
+		PostingsIterator bitmapIterator = new BitmapPostingsIterator(documentBitmap,
+				new PostingsIterator[]{iterators.get(firstDenseComponent)});
+		if (iterators.size() == 1) {
+			return bitmapIterator;
 		}
+		iterators.set(firstDenseComponent, bitmapIterator);
 
-		return intersections;
+		return new IntersectionIterator(iterators);
 	}
 
-	private List<Posting> intersectPostings(List<Posting> leftList, List<Posting> rightList) {
-		List<Posting> intersections = new ArrayList<>();
-
-		int leftIndex = 0;
-		int rightIndex = 0;
-
-		// implement the intersection algorithm found in the textbook
-		while (leftIndex < leftList.size() && rightIndex < rightList.size()) {
-			// store values for readability
-			Posting leftPosting = leftList.get(leftIndex);
-			Posting rightPosting = rightList.get(rightIndex);
-			int leftDocumentId = leftPosting.getDocumentId();
-			int rightDocumentId = rightPosting.getDocumentId();
-
-			// add the intersection if the posting has the same document ID and progress the index iterators
-			if (leftDocumentId == rightDocumentId) {
-				intersections.add(leftPosting);
-				++leftIndex;
-				++rightIndex;
-			} else if (leftDocumentId < rightDocumentId){
-				++leftIndex;
-			} else {
-				++rightIndex;
+	/**
+	 * Intersects the postings of every component and collects the postings of the first component whose documents
+	 * are found in every component.
+	 */
+	private List<Posting> intersectPostings(Index<String, Posting> index, TokenProcessor processor,
+											boolean withPositions) {
+		return PostingsIterator.toPostings(getPostingsIterator(index, processor, withPositions), withPositions);
+	}
+
+	/**
+	 * Intersects the postings of several iterators at once. The iterator with the fewest postings proposes each
+	 * candidate document, and the other iterators skip straight to it, so that long postings lists only read the
+	 * blocks containing candidates. The term frequency and positions of each match are those of the first iterator,
+	 * though every iterator is left at the matching document.
+	 * <p>
+	 * Each skip gallops through the longer list, so intersecting a short list with a long one costs time logarithmic in
+	 * the long list per candidate. The intersection ends as soon as any component runs out of documents, without
+	 * reading the rest of the others, and an empty component ends it before any postings are read at all.
+	 */
+	static class IntersectionIterator implements PostingsIterator {
+
+		private final PostingsIterator mFirstIterator;
+		private final PostingsIterator[] mIterators;	// the iterators in ascending order of document frequency
+		private int mDocumentId = -1;
+
+		IntersectionIterator(List<PostingsIterator> iterators) {
+			mFirstIterator = iterators.get(0);
+			mIterators = iterators.toArray(new PostingsIterator[0]);
+			Arrays.sort(mIterators, Comparator.comparingInt(PostingsIterator::getDocumentFrequency));
+		}
+
+		@Override
+		public int docId() {
+			return mDocumentId;
+		}
+
+		@Override
+		public int nextDoc() {
+			return advance(mDocumentId + 1);
+		}
+
+		@Override
+		public int advance(int target) {
+			if (mDocumentId >= target) {
+				return mDocumentId;
+			}
+			// the rarest component bounds the intersection, so an empty one leaves nothing to intersect
+			if (mIterators[0].getDocumentFrequency() == 0) {
+				mDocumentId = NO_MORE_DOCS;
+				return mDocumentId;
 			}
+			int targetDocumentId = mIterators[0].advance(target);
+
+			while (targetDocumentId != NO_MORE_DOCS) {
+				boolean foundInAll = true;
+
+				for (int i = 1; i < mIterators.length; ++i) {
+					int currentDocumentId = mIterators[i].advance(targetDocumentId);
+
+					// once any component is exhausted, no later document can be in every component
+					if (currentDocumentId == NO_MORE_DOCS) {
+						targetDocumentId = NO_MORE_DOCS;
+						foundInAll = false;
+						break;
+					}
+					// the candidate is missing from this component, so restart from the component's next document
+					if (currentDocumentId > targetDocumentId) {
+						targetDocumentId = mIterators[0].advance(currentDocumentId);
+						foundInAll = false;
+						break;
+					}
+				}
+
+				if (foundInAll) {
+					break;
+				}
+			}
+			mDocumentId = targetDocumentId;
+
+			return mDocumentId;
 		}
 
-		return intersections;
+		@Override
+		public int freq() {
+			return mFirstIterator.freq();
+		}
+
+		@Override
+		public int[] positions() {
+			return mFirstIterator.positions();
+		}
+
+		/**
+		 * Returns the document frequency of the rarest component, which bounds the size of the intersection.
+		 */
+		@Override
+		public int getDocumentFrequency() {
+			return mIterators[0].getDocumentFrequency();
+		}
 	}
-	
+
 	@Override
 	public String toString() {
 		return
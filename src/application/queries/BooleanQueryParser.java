@@ -6,7 +6,7 @@ import java.util.List;
 
 /**
  * Parses boolean queries according to the base requirements of the CECS 429 project.
- * Does not handle phrase queries, NOT queries, NEAR queries, or wildcard queries... yet.
+ * Handles phrase queries, NEAR queries, and wildcard queries, but not NOT queries.
  */
 public class BooleanQueryParser {
 
@@ -179,6 +179,50 @@ public class BooleanQueryParser {
 					new PhraseLiteral(components));
 		}
 
+		// return a NearLiteral instead if the next literal started and ended in square brackets
+		if (subquery.charAt(startIndex) == '[' && subquery.indexOf(']', startIndex + 1) > 0) {
+			int closingBracket = subquery.indexOf(']', startIndex + 1);
+			lengthOut = closingBracket - startIndex + 1;
+			String literal = subquery.substring(startIndex + 1, closingBracket);
+			List<QueryComponent> components = new ArrayList<>();
+			List<Integer> maxDistances = new ArrayList<>();
+			// terms without a NEAR operator between them must be consecutive, as in a phrase
+			int maxDistance = 1;
+
+			for (String currentLiteral : literal.split(" ")) {
+				if (currentLiteral.isEmpty()) {
+					continue;
+				}
+				// a NEAR/k operator sets how far after the previous term the next term may be found; the next term
+				// must come after it, so NEAR/0 could never match and is read as NEAR/1, which matches a phrase
+				if (currentLiteral.matches("NEAR/\\d{1,9}")) {
+					maxDistance = Math.max(1, Integer.parseInt(currentLiteral.substring("NEAR/".length())));
+					continue;
+				}
+				if (!components.isEmpty()) {
+					maxDistances.add(maxDistance);
+					maxDistance = 1;
+				}
+
+				if (currentLiteral.contains("*")) {
+					components.add(new WildcardLiteral(currentLiteral));
+				} else {
+					components.add(new TermLiteral(currentLiteral));
+				}
+			}
+
+			// a single term has nothing to be near, so it is matched on its own
+			if (components.size() <= 1) {
+				return new Literal (
+						new StringBounds(startIndex, lengthOut),
+						(components.isEmpty() ? new TermLiteral(literal) : components.get(0)));
+			}
+
+			return new Literal (
+					new StringBounds(startIndex, lengthOut),
+					new NearLiteral(components, maxDistances));
+		}
+
 		// Locate the next space to find the end of this literal.
 		int nextSpace = subquery.indexOf(' ', startIndex);
 		if (nextSpace < 0) {
@@ -0,0 +1,76 @@
+
+package application.queries;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import application.Application;
+import application.indexes.Index;
+import application.indexes.Posting;
+import application.indexes.PostingsIterator;
+import application.text.TokenProcessor;
+
+/**
+ * Represents a NEAR literal, such as `[baseball NEAR/2 angels]`, whose terms must occur in order with each term
+ * found at most `k` positions after the term before it.
+ */
+public class NearLiteral implements QueryComponent {
+
+	private final List<QueryComponent> mComponents;	// the terms of the literal, in the order they must occur
+	private final int[] mMaxDistances;	// the `k` of each NEAR operator between two consecutive terms
+
+	/**
+	 * Constructs a NearLiteral from its terms and the distances between them.
+	 * @param components the terms of the literal, in the order they must occur
+	 * @param maxDistances the greatest number of positions each term may be found after the term before it, with
+	 *                     one fewer distance than there are terms
+	 */
+	public NearLiteral(List<QueryComponent> components, List<Integer> maxDistances) {
+		mComponents = new ArrayList<>(components);
+		mMaxDistances = maxDistances.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	@Override
+	public List<Posting> getPostings(Index<String, Posting> index, TokenProcessor processor) {
+		return matchNear(index, processor, true);
+	}
+
+	@Override
+	public List<Posting> getPositionlessPostings(Index<String, Posting> index, TokenProcessor processor) {
+		return matchNear(index, processor, false);
+	}
+
+	/**
+	 * Opens an iterator over the documents where the terms occur close enough together, which are matched with the
+	 * same positional merge as phrases; the positions of each posting are those of the first term of each match.
+	 */
+	@Override
+	public PostingsIterator getPostingsIterator(Index<String, Posting> index, TokenProcessor processor,
+												boolean withPositions) {
+		return new PhraseLiteral.PositionalIterator(PhraseLiteral.openIterators(mComponents, index, processor),
+				mMaxDistances);
+	}
+
+	private List<Posting> matchNear(Index<String, Posting> index, TokenProcessor processor, boolean withPositions) {
+		List<Posting> resultPostings = PostingsIterator.toPostings(
+				getPostingsIterator(index, processor, withPositions), withPositions);
+
+		if (Application.enabledLogs) {
+			System.out.println("--------------------------------------------------------------------------------" +
+					"\nNear literals: " + this + " -- " + resultPostings.size() + " posting(s)" +
+					"\n--------------------------------------------------------------------------------");
+		}
+		return resultPostings;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder literal = new StringBuilder("[").append(mComponents.get(0));
+
+		for (int i = 1; i < mComponents.size(); ++i) {
+			literal.append(" NEAR/").append(mMaxDistances[i - 1]).append(" ").append(mComponents.get(i));
+		}
+
+		return literal.append("]").toString();
+	}
+}
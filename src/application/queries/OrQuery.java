@@ -2,11 +2,16 @@
 package application.queries;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import application.indexes.BitmapPostingsIterator;
+import application.indexes.DocumentBitmap;
 import application.indexes.Index;
 import application.indexes.Posting;
+import application.indexes.PostingsIterator;
+import application.indexes.UnionPostingsIterator;
 import application.text.TokenProcessor;
 
 /**
@@ -22,77 +27,59 @@ public class OrQuery implements QueryComponent {
 	
 	@Override
 	public List<Posting> getPostings(Index<String, Posting> index, TokenProcessor processor) {
-		List<Posting> unions = new ArrayList<>();
-		
 		/* Program the merge for an OrQuery, by gathering the postings of the composed QueryComponents and
 		  unionizing the resulting postings. */
-		for (QueryComponent mComponent : mComponents) {
-			// store current posting for readability
-			List<Posting> currentPostings = mComponent.getPostings(index, processor);
-
-			// unionize the current unions with the new postings
-			unions = unionizePostings(unions, currentPostings);
-		}
-		
-		return unions;
+		return PostingsIterator.toPostings(getPostingsIterator(index, processor, true), true);
 	}
 
 	@Override
 	public List<Posting> getPositionlessPostings(Index<String, Posting> index, TokenProcessor processor) {
-		List<Posting> unions = new ArrayList<>();
-
 		/* Program the merge for an OrQuery, by gathering the postings of the composed QueryComponents and
 		  unionizing the resulting postings. */
-		for (QueryComponent mComponent : mComponents) {
-			// store current posting for readability
-			List<Posting> currentPostings = mComponent.getPositionlessPostings(index, processor);
-
-			// unionize the current unions with the new postings
-			unions = unionizePostings(unions, currentPostings);
-		}
-
-		return unions;
+		return PostingsIterator.toPostings(getPostingsIterator(index, processor, false), false);
 	}
 
-	private List<Posting> unionizePostings(List<Posting> leftList, List<Posting> rightList) {
-		List<Posting> unions = new ArrayList<>();
-
-		int leftIndex = 0;
-		int rightIndex = 0;
-
-		// iterate through the lists until one (or both) have been fully traversed
-		while (leftIndex < leftList.size() && rightIndex < rightList.size()) {
-			// store values for readability
-			Posting leftPosting = leftList.get(leftIndex);
-			Posting rightPosting = rightList.get(rightIndex);
-			int leftDocumentId = leftPosting.getDocumentId();
-			int rightDocumentId = rightPosting.getDocumentId();
-
-			// add the union if the posting has the same document ID and progress the index iterators
-			if (leftDocumentId < rightDocumentId) {
-				unions.add(leftPosting);
-				++leftIndex;
-			} else if (leftDocumentId > rightDocumentId) {
-				unions.add(rightPosting);
-				++rightIndex;
-			} else {
-				// add one of the duplicate elements and then increment both iterators
-				unions.add(rightPosting);
-				++leftIndex;
-				++rightIndex;
+	/**
+	 * Opens an iterator over the union of every component's postings, which merges every component at once through a
+	 * heap of their iterators instead of merging them two at a time. When several components share a document, the
+	 * posting is that of the last of them. When every component is dense enough to have a bitmap, the bitmaps are
+	 * unioned instead, and the postings are only read for the posting of each document found.
+	 * <p>
+	 * An intersection nested in the union is only dense if its own iterator moves through a bitmap, so it is never
+	 * asked for its bitmap a second time.
+	 */
+	@Override
+	public PostingsIterator getPostingsIterator(Index<String, Posting> index, TokenProcessor processor,
+												boolean withPositions) {
+		List<PostingsIterator> iterators = new ArrayList<>();
+		DocumentBitmap documentBitmap = new DocumentBitmap();
+		boolean isDense = true;
+
+		for (QueryComponent component : mComponents) {
+			PostingsIterator iterator = component.getPostingsIterator(index, processor, withPositions);
+			iterators.add(iterator);
+
+			// a union must visit every document of every component anyway, so a sparse one leaves nothing to gain
+			if (isDense) {
+				DocumentBitmap componentBitmap = BitmapPostingsIterator.getDocumentBitmap(iterator);
+				if (componentBitmap == null) {
+					componentBitmap = component.getDocumentBitmap(index, processor);
+				}
+
+				isDense = (componentBitmap != null);
+				documentBitmap = (isDense ? documentBitmap.or(componentBitmap) : null);
 			}
 		}
 
-		// similar to mergeSort, add any leftovers of any non-fully-traversed list
-		if (leftIndex < leftList.size()) {
-			unions.addAll(leftList.subList(leftIndex, leftList.size()));
-		} else if (rightIndex < rightList.size()) {
-			unions.addAll(rightList.subList(rightIndex, rightList.size()));
+		if (isDense) {
+			// the last component containing a document supplies its posting, so the components are searched in reverse
+			Collections.reverse(iterators);
+			return new BitmapPostingsIterator(documentBitmap, iterators.toArray(new PostingsIterator[0]));
 		}
 
-		return unions;
+		return new UnionPostingsIterator(iterators, false);
 	}
-	
+
 	@Override
 	public String toString() {
 		// Returns a string of the form "[SUBQUERY] + [SUBQUERY] + [SUBQUERY]"
@@ -2,11 +2,14 @@
 package application.queries;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import application.Application;
 import application.indexes.Index;
+import application.indexes.IterableIndex;
 import application.indexes.Posting;
+import application.indexes.PostingsIterator;
 import application.text.TokenProcessor;
 
 /**
@@ -14,7 +17,6 @@ import application.text.TokenProcessor;
  */
 public class PhraseLiteral implements QueryComponent {
 
-	private static final int k = 1;	// the position difference between acceptable consecutive terms
 	private final List<QueryComponent> mComponents = new ArrayList<>();	// the list of query components in the phrase
 
 	/**
@@ -33,242 +35,229 @@ public class PhraseLiteral implements QueryComponent {
 
 	@Override
 	public List<Posting> getPostings(Index<String, Posting> index, TokenProcessor processor) {
-		List<Posting> resultPostings;
-		/* Program this method. Retrieve the postings for the individual terms in the phrase,
-		  and positional merge them together. */
 		// if the phrase only contains one component, simply return its postings
 		if (mComponents.size() == 1) {
-			resultPostings = mComponents.get(0).getPostings(index, processor);
+			return mComponents.get(0).getPostings(index, processor);
 		}
-		// biword indexes do not support wildcards
-		else if (mComponents.size() == 2 && !(mComponents.get(0) instanceof WildcardLiteral) &&
-				!(mComponents.get(1) instanceof WildcardLiteral)) {
-			Index<String, Posting> biwordIndex = Application.getBiwordIndexes()
-					.get(Application.getCurrentDirectory() + "/index/biwordBTree.bin");
-
-			resultPostings = biwordIndex.getPostings(processor.processToken(mComponents.get(0).toString()).get(0) +
-					" " + processor.processToken(mComponents.get(1).toString()).get(0));
-		} else {
-			/* store docID-position1-position2 tuples where all the terms are sequentially in +1 positional order,
-		  	  beginning with the postings of the first term */
-			// int[0], int[1], int[2] --> doc id, position1 (int), position2 (int)
-			List<int[]> positionalIntersects = new ArrayList<>();
-			int firstTermIntersects = 0;
-			int numOfIntersections = 0;
-			List<Posting> leftPostings = mComponents.get(0).getPostings(index, processor);
-
-			// start positional intersecting with postings two at a time
-			for (int i = 1; i < mComponents.size(); ++i) {
-				// store the current postings for readability
-				List<Posting> rightPostings = mComponents.get(i).getPostings(index, processor);
-
-				// positional intersect our current intersections list with the next postings list
-				positionalIntersects.addAll(positionalIntersect(leftPostings, rightPostings));
-
-				// mark the position of where the first terms' positional intersections end
-				if (i == 1) {
-					firstTermIntersects = positionalIntersects.size();
-				}
-
-				++numOfIntersections;
-				leftPostings = rightPostings;
-			}
-
-			resultPostings = findFinalIntersects(positionalIntersects, firstTermIntersects, numOfIntersections);
-
-			if (Application.enabledLogs) {
-				System.out.println("--------------------------------------------------------------------------------" +
-						"\nPhrase literals: " + mComponents + " -- " + resultPostings.size() + " posting(s)" +
-						"\n--------------------------------------------------------------------------------");
-			}
+		Index<String, Posting> biwordIndex = getBiwordIndex();
+		if (biwordIndex != null) {
+			return biwordIndex.getPostings(getBiword(processor));
 		}
-		return resultPostings;
+
+		return matchPhrase(index, processor, true);
 	}
 
 	@Override
 	public List<Posting> getPositionlessPostings(Index<String, Posting> index, TokenProcessor processor) {
-		List<Posting> resultPostings;
-		/* Program this method. Retrieve the postings for the individual terms in the phrase,
-		  and positional merge them together. */
 		// if the phrase only contains one component, simply return its postings
 		if (mComponents.size() == 1) {
 			return mComponents.get(0).getPositionlessPostings(index, processor);
 		}
-		// biword indexes do not support wildcards
-		else if (mComponents.size() == 2 && !(mComponents.get(0) instanceof WildcardLiteral) &&
-				!(mComponents.get(1) instanceof WildcardLiteral)) {
-			Index<String, Posting> biwordIndex = Application.getBiwordIndexes()
-					.get(Application.getCurrentDirectory() + "/index/biword.bin");
-
-			resultPostings = biwordIndex.getPositionlessPostings(
-					processor.processToken(mComponents.get(0).toString()).get(0) + " " +
-					processor.processToken(mComponents.get(1).toString()).get(0));
-		} else {
-			/* store posting-position1-position2 tuples where all the terms are sequentially in +1 positional order,
-		  	  beginning with the postings of the first term */
-			// int[0], int[1], int[2] --> doc id, position1 (int), position2 (int)
-			List<int[]> positionalIntersects = new ArrayList<>();
-			int firstTermIntersects = 0;
-			int numOfIntersections = 0;
-			List<Posting> leftPostings = mComponents.get(0).getPositionlessPostings(index, processor);
-
-			// start positional intersecting with postings two at a time
-			for (int i = 1; i < mComponents.size(); ++i) {
-				// store the current postings for readability
-				List<Posting> rightPostings = mComponents.get(i).getPositionlessPostings(index, processor);
-
-				// positional intersect our current intersections list with the next postings list
-				positionalIntersects.addAll(positionalIntersect(leftPostings, rightPostings));
-
-				// mark the position of where the first terms' positional intersections end
-				if (i == 1) {
-					firstTermIntersects = positionalIntersects.size();
-				}
+		Index<String, Posting> biwordIndex = getBiwordIndex();
+		if (biwordIndex != null) {
+			return biwordIndex.getPositionlessPostings(getBiword(processor));
+		}
 
-				++numOfIntersections;
-				leftPostings = rightPostings;
-			}
+		// the phrase can only be matched with the positions of its terms, though the result has no positions
+		return matchPhrase(index, processor, false);
+	}
+
+	/**
+	 * Opens an iterator over the postings of the phrase. Single terms and biwords are streamed straight from their
+	 * indexes, while longer phrases are matched one document at a time as the iterator moves.
+	 */
+	@Override
+	public PostingsIterator getPostingsIterator(Index<String, Posting> index, TokenProcessor processor,
+												boolean withPositions) {
+		if (mComponents.size() == 1) {
+			return mComponents.get(0).getPostingsIterator(index, processor, withPositions);
+		}
+		Index<String, Posting> biwordIndex = getBiwordIndex();
+		if (biwordIndex != null) {
+			return IterableIndex.openIterator(biwordIndex, getBiword(processor), false);
+		}
+		// every term of a phrase directly follows the term before it
+		int[] maxDistances = new int[mComponents.size() - 1];
+		Arrays.fill(maxDistances, 1);
 
-			resultPostings = findFinalIntersects(positionalIntersects, firstTermIntersects, numOfIntersections);
+		return new PositionalIterator(openIterators(mComponents, index, processor), maxDistances);
+	}
 
-			if (Application.enabledLogs) {
-				System.out.println("--------------------------------------------------------------------------------" +
-						"\nPhrase literals: " + mComponents + " -- " + resultPostings.size() + " posting(s)" +
-						"\n--------------------------------------------------------------------------------");
-			}
+	/**
+	 * Returns the biword index of the current directory if the phrase can be looked up in it, which is only the case
+	 * for two terms without wildcards. The biword index is registered under the path of its term dictionary whether
+	 * it was read from disk or just built; without one, the phrase is matched from the positions of its terms.
+	 */
+	private Index<String, Posting> getBiwordIndex() {
+		if (mComponents.size() != 2 || mComponents.get(0) instanceof WildcardLiteral ||
+				mComponents.get(1) instanceof WildcardLiteral) {
+			return null;
 		}
-		return resultPostings;
+
+		return Application.getBiwordIndexes().get(Application.getCurrentDirectory() + "/index/biwordTerms.bin");
 	}
 
-	private ArrayList<int[]> positionalIntersect(List<Posting> leftList, List<Posting> rightList) {
-		ArrayList<int[]> positionalIntersects = new ArrayList<>();
-
-		int leftListIndex = 0;
-		int rightListIndex = 0;
-
-		// implement the positional intersection algorithm found in the textbook
-		while (leftListIndex < leftList.size() && rightListIndex < rightList.size()) {
-			// store values for readability
-			Posting leftPosting = leftList.get(leftListIndex);
-			Posting rightPosting = rightList.get(rightListIndex);
-			int leftDocumentId = leftPosting.getDocumentId();
-			int rightDocumentId = rightPosting.getDocumentId();
-			ArrayList<Integer> leftPositions = leftPosting.getPositions();
-			ArrayList<Integer> rightPositions = rightPosting.getPositions();
-
-			// only compare postings with the same document
-			if (leftDocumentId == rightDocumentId) {
-				List<Integer> consecutivePositions = new ArrayList<>();
-				int leftPositionsIndex = 0;
-				int rightPositionsIndex = 0;
-
-				// compare all left term positions against all right term positions
-				while (leftPositionsIndex < leftPositions.size()) {
-					int leftPosition = leftPositions.get(leftPositionsIndex);
-
-					// add all positions in the right posting that match the consecutive requirements
-					while (rightPositionsIndex < rightPositions.size()) {
-						int rightPosition = rightPositions.get(rightPositionsIndex);
-
-						// positions within range of `k` are considered to be consecutive
-						if (Math.abs(leftPosition - rightPosition) <= k) {
-							consecutivePositions.add(rightPosition);
-						} else if (rightPosition > leftPosition) {
-							break;
-						}
-
-						++rightPositionsIndex;
-					}
+	private String getBiword(TokenProcessor processor) {
+		return processor.processToken(mComponents.get(0).toString()).get(0) + " " +
+				processor.processToken(mComponents.get(1).toString()).get(0);
+	}
 
-					// remove all elements where the left term is positioned after the right term
-					while (consecutivePositions.size() > 0 &&
-							Math.abs(consecutivePositions.get(0) - leftPosition) > k) {
-						consecutivePositions.remove(0);
-					}
+	private List<Posting> matchPhrase(Index<String, Posting> index, TokenProcessor processor,
+									  boolean withPositions) {
+		List<Posting> resultPostings = PostingsIterator.toPostings(
+				getPostingsIterator(index, processor, withPositions), withPositions);
 
-					// add all consecutive posting-position1-position2 tuples
-					for (int rightPosition : consecutivePositions) {
-						if (leftPosition < rightPosition) {
-							int[] documentPositions = new int[]{leftDocumentId, leftPosition, rightPosition};
-							positionalIntersects.add(documentPositions);
-						}
-					}
+		if (Application.enabledLogs) {
+			System.out.println("--------------------------------------------------------------------------------" +
+					"\nPhrase literals: " + mComponents + " -- " + resultPostings.size() + " posting(s)" +
+					"\n--------------------------------------------------------------------------------");
+		}
+		return resultPostings;
+	}
 
-					++leftPositionsIndex;
-				}
-				++leftListIndex;
-				++rightListIndex;
-				// skip postings that don't have the same documentId
-			} else if (leftDocumentId < rightDocumentId) {
-				++leftListIndex;
-			} else {
-				++rightListIndex;
-			}
+	/**
+	 * Opens the postings of every component with their positions, which are needed to match them to each other.
+	 */
+	static List<PostingsIterator> openIterators(List<QueryComponent> components, Index<String, Posting> index,
+												TokenProcessor processor) {
+		List<PostingsIterator> iterators = new ArrayList<>();
+
+		for (QueryComponent component : components) {
+			iterators.add(component.getPostingsIterator(index, processor, true));
 		}
 
-		return positionalIntersects;
+		return iterators;
 	}
 
-	private List<Posting> findFinalIntersects(List<int[]> positionalIntersects, int firstTermIntersects,
-											  int numOfIntersections) {
-		List<Posting> finalIntersects = new ArrayList<>();
-		/* the first intersection results are the foundation of determining whether position tuples are consecutive;
-		  we start with comparing the first term intersections with all other term intersections;
-		  then, we will check if later position tuples are consecutive by adjusting our left/right position boundaries
-		  and keep track of the count of consecutive position tuples */
-		for (int i = 0; i < firstTermIntersects; ++i) {
-			// store values for readability
-			int leftDocumentId = positionalIntersects.get(i)[0];
-			int leftPosition = positionalIntersects.get(i)[2];
-			int consecutiveCount = 0;
-
-			// if there are only two terms, the first intersection is the only positional intersection recorded
-			if (numOfIntersections == 1) {
-				addPosting(finalIntersects, leftDocumentId);
-			} else {
-				// check each term intersection against all the other intersections
-				for (int j = firstTermIntersects; j < positionalIntersects.size(); ++j) {
-					// store values for readability
-					int rightDocumentId = positionalIntersects.get(j)[0];
-					int rightPosition = positionalIntersects.get(j)[2];
-
-					// we only care about consecutive chains of terms in the same document
-					if (leftDocumentId == rightDocumentId) {
-						// if the term positions falls within the range of `k`, they are considered consecutive
-						if (rightPosition - leftPosition == k) {
-							++consecutiveCount;
-
-							// if the number of intersections matches the expected amount, add it to our final list
-							if (consecutiveCount == mComponents.size() - 2) {
-								addPosting(finalIntersects, leftDocumentId);
-							}
-
-							// set the left boundary to the latest right boundary to check the consecutive chain
-							leftPosition = rightPosition;
-						}
-					}
-				}
+	/**
+	 * Matches a sequence of terms that must occur in order within the given distances of each other, which both
+	 * phrases and NEAR queries are made of. Every iterator is first moved to a common document through an
+	 * IntersectionIterator, and the positions of all the terms within that document are then checked together.
+	 * <p>
+	 * The positions are checked from the last term backwards: the positions of each term that are followed closely
+	 * enough by a position of the next term that is itself part of a match are kept, in a single merge of the two
+	 * sorted lists. What remains of the first term's positions are the starts of the matches, so each document
+	 * costs time linear in the number of positions of its terms, and a document is given up on as soon as any term
+	 * has no positions left.
+	 */
+	static class PositionalIterator implements PostingsIterator {
+
+		private final PostingsIterator[] mIterators;	// the iterators in the order of their terms
+		private final int[] mMaxDistances;	// how far past each term the next term may be found
+		private final PostingsIterator mDocuments;
+		private int mDocumentId = -1;
+		private int[] mMatches = new int[16];	// the start positions of the matches within the current document
+		private int[] mBuffer = new int[16];
+		private int[] mPositions = mMatches;
+		private int mNumOfMatches;
+
+		/**
+		 * Constructs an iterator over the documents where the terms occur in sequence.
+		 * @param iterators the postings of each term with positions, in the order the terms must occur
+		 * @param maxDistances the greatest number of positions each term may be found after the term before it, so
+		 *                     that the terms of a phrase are all 1 apart
+		 */
+		PositionalIterator(List<PostingsIterator> iterators, int[] maxDistances) {
+			mIterators = iterators.toArray(new PostingsIterator[0]);
+			mMaxDistances = maxDistances;
+			mDocuments = new AndQuery.IntersectionIterator(iterators);
+		}
+
+		@Override
+		public int docId() {
+			return mDocumentId;
+		}
+
+		@Override
+		public int nextDoc() {
+			return advance(mDocumentId + 1);
+		}
+
+		@Override
+		public int advance(int target) {
+			if (mDocumentId >= target) {
+				return mDocumentId;
+			}
+			int documentId = mDocuments.advance(target);
+
+			// every iterator rests on each document the intersection finds, so their positions can be read together
+			while (documentId != NO_MORE_DOCS && !matchPositions()) {
+				documentId = mDocuments.nextDoc();
 			}
+			mDocumentId = documentId;
+
+			return mDocumentId;
 		}
 
-		return finalIntersects;
-	}
+		/**
+		 * Returns the number of times the terms occur in sequence within the current document.
+		 */
+		@Override
+		public int freq() {
+			return mNumOfMatches;
+		}
+
+		/**
+		 * Returns the positions of the first term of each match within the current document.
+		 */
+		@Override
+		public int[] positions() {
+			return mPositions;
+		}
+
+		/**
+		 * Returns the document frequency of the rarest term, which bounds the number of documents with a match.
+		 */
+		@Override
+		public int getDocumentFrequency() {
+			return mDocuments.getDocumentFrequency();
+		}
 
-	private void addPosting(List<Posting> finalIntersects, int documentId) {
-		Posting newPosting = new Posting(documentId, new ArrayList<>());
+		private boolean matchPositions() {
+			int lastTerm = mIterators.length - 1;
+			int[] nextPositions = mIterators[lastTerm].positions();
+			int numOfNextPositions = mIterators[lastTerm].freq();
+
+			for (int i = lastTerm - 1; i >= 0 && numOfNextPositions > 0; --i) {
+				int[] positions = mIterators[i].positions();
+				int numOfPositions = mIterators[i].freq();
+				// write into whichever buffer is not being read from
+				int[] matches = (nextPositions == mMatches ? mBuffer : mMatches);
+				if (matches.length < numOfPositions) {
+					matches = new int[numOfPositions];
+				}
+				int numOfMatches = 0;
+				int nextIndex = 0;
+
+				for (int j = 0; j < numOfPositions; ++j) {
+					int position = positions[j];
 
-		// if it's empty, we can safely add it as a unique element
-		if (finalIntersects.size() <= 0) {
-			finalIntersects.add(newPosting);
-		} else {
-			// store for values for readability
-			int latestIndex = finalIntersects.size() - 1;
-			int latestDocumentId = finalIntersects.get(latestIndex).getDocumentId();
+					// skip the positions of the next term at or before this one, which no later position can use
+					while (nextIndex < numOfNextPositions && nextPositions[nextIndex] <= position) {
+						++nextIndex;
+					}
+					if (nextIndex == numOfNextPositions) {
+						break;
+					}
+					// merged wildcard positions may repeat, but each match is only counted once
+					if (nextPositions[nextIndex] - position <= mMaxDistances[i] &&
+							(numOfMatches == 0 || matches[numOfMatches - 1] != position)) {
+						matches[numOfMatches++] = position;
+					}
+				}
 
-			// skip duplicate postings with the same documentId
-			if (latestDocumentId != documentId) {
-				finalIntersects.add(newPosting);
+				if (nextPositions == mMatches) {
+					mBuffer = matches;
+				} else {
+					mMatches = matches;
+				}
+				nextPositions = matches;
+				numOfNextPositions = numOfMatches;
 			}
+			mPositions = nextPositions;
+			mNumOfMatches = numOfNextPositions;
+
+			return (mNumOfMatches > 0);
 		}
 	}
 
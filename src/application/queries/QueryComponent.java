@@ -20,4 +20,24 @@ public interface QueryComponent {
      * Retrieves a list of positionless postings for the query component, using an Index as the source.
      */
     List<Posting> getPositionlessPostings(Index<String, Posting> index, TokenProcessor processor);
+
+    /**
+     * Opens an iterator over the postings for the query component. The postings are read in full by default;
+     * components that can stream their postings from an index override this to skip over unneeded postings.
+     */
+    default PostingsIterator getPostingsIterator(Index<String, Posting> index, TokenProcessor processor,
+                                                 boolean withPositions) {
+        return new ListPostingsIterator(withPositions ? getPostings(index, processor) :
+                getPositionlessPostings(index, processor));
+    }
+
+    /**
+     * Returns the documents of the query component as a bitmap, if they can be found from the bitmaps of the index's
+     * dense terms. Components without a bitmap are merged from their postings instead, while queries combining other
+     * components hand their bitmap up through the BitmapPostingsIterator they open, so that it is only found once.
+     * @return the bitmap of the documents, or null if there is none
+     */
+    default DocumentBitmap getDocumentBitmap(Index<String, Posting> index, TokenProcessor processor) {
+        return null;
+    }
 }
@@ -5,8 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import application.Application;
-import application.indexes.Index;
-import application.indexes.Posting;
+import application.indexes.*;
 import application.text.TokenProcessor;
 
 /**
@@ -62,6 +61,25 @@ public class TermLiteral implements QueryComponent {
 		return resultPostings;
 	}
 
+	@Override
+	public PostingsIterator getPostingsIterator(Index<String, Posting> index, TokenProcessor processor,
+												boolean withPositions) {
+		List<String> processedTerms = processor.processToken(mTerm);
+
+		if (processedTerms.size() > 0) {
+			return IterableIndex.openIterator(index, processedTerms.get(0), withPositions);
+		}
+
+		return QueryComponent.super.getPostingsIterator(index, processor, withPositions);
+	}
+
+	@Override
+	public DocumentBitmap getDocumentBitmap(Index<String, Posting> index, TokenProcessor processor) {
+		List<String> processedTerms = processor.processToken(mTerm);
+
+		return (processedTerms.size() > 0 ? BitmapIndex.getDocumentBitmap(index, processedTerms.get(0)) : null);
+	}
+
 	@Override
 	public String toString() {
 		return mTerm;
@@ -2,14 +2,17 @@
 package application.queries;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import application.Application;
 import application.UI.CorpusSelection;
 import application.indexes.Index;
+import application.indexes.IterableIndex;
 import application.indexes.KGramIndex;
 import application.indexes.Posting;
+import application.indexes.PostingsIterator;
+import application.indexes.UnionPostingsIterator;
+import application.indexes.WildcardIndex;
 import application.text.TokenProcessor;
 import application.text.WildcardTokenProcessor;
 
@@ -31,57 +34,47 @@ public class WildcardLiteral implements QueryComponent {
 
     @Override
     public List<Posting> getPostings(Index<String, Posting> corpusIndex, TokenProcessor processor) {
-        Index<String, String> corpusKGramIndex = Application.getKGramIndexes()
-                .get(Application.getCurrentDirectory() + "/index/kGrams.bin");
-        KGramIndex kGramIndex = new KGramIndex();
-
-        // minimally process the original token
-        WildcardTokenProcessor wildCardProcessor = new WildcardTokenProcessor();
-        String processedTerm = wildCardProcessor.processToken(mTerm).get(0);
-        kGramIndex.addToken(processedTerm, 3);
-
-        List<String> candidateTokens = findCandidates(corpusKGramIndex, kGramIndex);
+        return getPostings(corpusIndex, processor, true);
+    }
 
-        List<String> finalTokens = postFilter(candidateTokens, processedTerm);
+    @Override
+    public List<Posting> getPositionlessPostings(Index<String, Posting> corpusIndex, TokenProcessor processor) {
+        return getPostings(corpusIndex, processor, false);
+    }
 
-        List<String> finalTerms = new ArrayList<>();
-        for (String finalToken : finalTokens) {
-            List<String> terms = processor.processToken(finalToken);
+    /**
+     * Opens an iterator over the union of the postings of every term matching the wildcard. A document containing
+     * several of the terms is found once, with the positions of every one of them, so that a phrase can match any
+     * of the terms at each position.
+     */
+    @Override
+    public PostingsIterator getPostingsIterator(Index<String, Posting> corpusIndex, TokenProcessor processor,
+                                                boolean withPositions) {
+        List<PostingsIterator> iterators = new ArrayList<>();
 
-            for (String term : terms) {
-                if (!finalTerms.contains(term)) {
-                    finalTerms.add(term);
-                }
-            }
+        // once we collect all of our final terms, we "OR" the postings to combine them and ignore duplicates
+        for (String finalTerm : findFinalTerms(processor)) {
+            iterators.add(IterableIndex.openIterator(corpusIndex, finalTerm, withPositions));
         }
 
-        // once we collect all of our final terms, we "OR" the postings to combine them and ignore duplicates
-        List<Posting> resultPostings = new ArrayList<>();
+        return new UnionPostingsIterator(iterators, true);
+    }
 
-        for (String finalTerm : finalTerms) {
-            /* note that we add any documents, duplicates included; this is because there can be multiple
-              wildcard literals within the same document (and they could be for the same or different term),
-              so we must include the postings for every term that we find that match the wildcard pattern */
-            resultPostings.addAll(corpusIndex.getPostings(finalTerm));
-        }
-        Collections.sort(resultPostings);
+    private List<Posting> getPostings(Index<String, Posting> corpusIndex, TokenProcessor processor,
+                                      boolean withPositions) {
+        List<Posting> resultPostings = PostingsIterator.toPostings(
+                getPostingsIterator(corpusIndex, processor, withPositions), withPositions);
 
         if (Application.enabledLogs) {
-            System.out.println("--------------------------------------------------------------------------------" +
-                    "\nWildcard literal: `" + mTerm + "`" +
-                    "\n\nCandidate tokens for `" + mTerm + "`: " + candidateTokens +
-                    "\n\nFinal tokens for `" + mTerm + "`: " + finalTokens +
-                    "\n\nFinal terms for `" + mTerm + "`: " + finalTerms +
-                    "\n\n---> `" + mTerm + "` -- " + resultPostings.size() + " posting(s)" +
+            System.out.println("\n---> `" + mTerm + "` -- " + resultPostings.size() + " posting(s)" +
                     "\n--------------------------------------------------------------------------------");
         }
 
         return resultPostings;
     }
 
-    @Override
-    public List<Posting> getPositionlessPostings(Index<String, Posting> corpusIndex, TokenProcessor processor) {
-        Index<String, String> corpusKGramIndex = Application.getKGramIndexes()
+    private List<String> findFinalTerms(TokenProcessor processor) {
+        WildcardIndex corpusKGramIndex = Application.getKGramIndexes()
                 .get(Application.getCurrentDirectory() + "/index/kGrams.bin");
         KGramIndex kGramIndex = new KGramIndex();
 
@@ -90,7 +83,7 @@ public class WildcardLiteral implements QueryComponent {
         String processedTerm = wildCardProcessor.processToken(mTerm).get(0);
         kGramIndex.addToken(processedTerm, 3);
 
-        List<String> candidateTokens = findPositionlessCandidates(corpusKGramIndex, kGramIndex);
+        List<String> candidateTokens = findCandidates(corpusKGramIndex, kGramIndex);
 
         List<String> finalTokens = postFilter(candidateTokens, processedTerm);
 
@@ -105,84 +98,27 @@ public class WildcardLiteral implements QueryComponent {
             }
         }
 
-        // once we collect all of our final terms, we "OR" the postings to combine them and ignore duplicates
-        List<Posting> resultPostings = new ArrayList<>();
-
-        for (String finalTerm : finalTerms) {
-            /* note that we add any documents, duplicates included; this is because there can be multiple
-              wildcard literals within the same document (and they could be for the same or different term),
-              so we must include the postings for every term that we find that match the wildcard pattern */
-            resultPostings.addAll(corpusIndex.getPositionlessPostings(finalTerm));
-        }
-        Collections.sort(resultPostings);
-
         if (Application.enabledLogs) {
             System.out.println("--------------------------------------------------------------------------------" +
                     "\nWildcard literal: `" + mTerm + "`" +
                     "\n\nCandidate tokens for `" + mTerm + "`: " + candidateTokens +
                     "\n\nFinal tokens for `" + mTerm + "`: " + finalTokens +
-                    "\n\nFinal terms for `" + mTerm + "`: " + finalTerms +
-                    "\n\n---> `" + mTerm + "` -- " + resultPostings.size() + " posting(s)" +
-                    "\n--------------------------------------------------------------------------------");
-        }
-
-        return resultPostings;
-    }
-
-    private List<String> findCandidates(Index<String, String> corpusKGramIndex, Index<String, String> kGramIndex) {
-        List<String> candidateTokens = new ArrayList<>();
-
-        /* find candidate tokens by traversing through the corpus and comparing each of them to our
-          generated k-grams; intersect the postings by finding tokens that share the same k-gram patterns */
-        for (String corpusToken : corpusKGramIndex.getVocabulary()) {
-            ArrayList<String> corpusKGrams = new ArrayList<>(corpusKGramIndex.getPostings(corpusToken));
-            boolean candidateMatchesAll = true;
-
-            // intersect terms within their respective vocabularies
-            for (String wildcardToken : kGramIndex.getVocabulary()) {
-                List<String> wildcardKGrams = kGramIndex.getPostings(wildcardToken);
-
-                // if the token does not contain all wildcard k-grams, it cannot be a candidate
-                if (!corpusKGrams.containsAll(wildcardKGrams)) {
-                    candidateMatchesAll = false;
-                }
-            }
-
-            // only add candidates with all the k-grams from the wildcard query
-            if (candidateMatchesAll) {
-                candidateTokens.add(corpusToken);
-            }
+                    "\n\nFinal terms for `" + mTerm + "`: " + finalTerms);
         }
 
-        return candidateTokens;
+        return finalTerms;
     }
 
-    private List<String> findPositionlessCandidates(Index<String, String> corpusKGramIndex, Index<String, String> kGramIndex) {
-        List<String> candidateTokens = new ArrayList<>();
-
-        /* find candidate tokens by traversing through the corpus and comparing each of them to our
-          generated k-grams; intersect the postings by finding tokens that share the same k-gram patterns */
-        for (String corpusToken : corpusKGramIndex.getVocabulary()) {
-            ArrayList<String> corpusKGrams = new ArrayList<>(corpusKGramIndex.getPositionlessPostings(corpusToken));
-            boolean candidateMatchesAll = true;
+    private List<String> findCandidates(WildcardIndex corpusKGramIndex, Index<String, String> kGramIndex) {
+        List<String> wildcardKGrams = new ArrayList<>();
 
-            // intersect terms within their respective vocabularies
-            for (String wildcardToken : kGramIndex.getVocabulary()) {
-                List<String> wildcardKGrams = kGramIndex.getPositionlessPostings(wildcardToken);
-
-                // if the token does not contain all wildcard k-grams, it cannot be a candidate
-                if (!corpusKGrams.containsAll(wildcardKGrams)) {
-                    candidateMatchesAll = false;
-                }
-            }
-
-            // only add candidates with all the k-grams from the wildcard query
-            if (candidateMatchesAll) {
-                candidateTokens.add(corpusToken);
-            }
+        /* only tokens that contain every k-gram of the wildcard query can match it; a query without any k-grams
+          matches every token in the corpus */
+        for (String wildcardToken : kGramIndex.getVocabulary()) {
+            wildcardKGrams.addAll(kGramIndex.getPostings(wildcardToken));
         }
 
-        return candidateTokens;
+        return corpusKGramIndex.getCandidateTokens(wildcardKGrams);
     }
 
     private List<String> postFilter(List<String> candidateTokens, String processedTerm) {
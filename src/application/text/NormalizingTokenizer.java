@@ -0,0 +1,354 @@
+
+package application.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A NormalizingTokenizer splits content on whitespace and normalizes each token in a single pass over a reusable
+ * character buffer, producing the same terms as `VocabularyTokenProcessor` and `WildcardTokenProcessor`.
+ * Tokens made entirely of ASCII characters are trimmed, stripped of quotes, split on hyphens and lowercased
+ * directly within the buffer; any other token falls back to the token processors.
+ */
+public class NormalizingTokenizer {
+
+    /**
+     * Receives the wildcard tokens and vocabulary terms of each token in the order they are found. The lists are
+     * reused for the next token, so they must not be kept after the call returns.
+     */
+    public interface TokenHandler {
+        void handleToken(List<String> wildcardTokens, List<String> terms);
+    }
+
+    private static final int READ_BUFFER_SIZE = 1_024;  // smaller than BufferedReader's buffer, like Scanner's
+    private static final boolean[] ASCII_WHITESPACE = new boolean[128];
+    private static final boolean[] ASCII_ALPHANUMERIC = new boolean[128];
+    // the fast path lowercases by hand, which is only correct if the default locale lowercases ASCII normally
+    private static final boolean STANDARD_LOWERCASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase()
+            .equals("abcdefghijklmnopqrstuvwxyz");
+
+    static {
+        for (char character = 0; character < 128; ++character) {
+            ASCII_WHITESPACE[character] = Character.isWhitespace(character);
+            ASCII_ALPHANUMERIC[character] = Character.isLetterOrDigit(character);
+        }
+    }
+
+    private final VocabularyTokenProcessor vocabProcessor;
+    private final WildcardTokenProcessor wildcardProcessor;
+    private final List<String> wildcardTokens;
+    private final List<String> terms;
+    private final char[] readBuffer;
+    private char[] token;           // the characters of the current token
+    private int tokenLength;
+    private boolean tokenIsAscii;
+    private char[] normalized;      // the current token after trimming, removing quotes and lowercasing
+    private int normalizedLength;
+    private int[] hyphens;          // the indexes of the hyphens within the normalized token
+
+    /**
+     * Constructs a tokenizer with empty buffers.
+     */
+    public NormalizingTokenizer() {
+        vocabProcessor = new VocabularyTokenProcessor();
+        wildcardProcessor = new WildcardTokenProcessor();
+        wildcardTokens = new ArrayList<>();
+        terms = new ArrayList<>();
+        readBuffer = new char[READ_BUFFER_SIZE];
+        token = new char[64];
+        normalized = new char[64];
+        hyphens = new int[8];
+    }
+
+    /**
+     * Tokenizes a file by reading its bytes from memory directly when it is entirely ASCII; otherwise, the file
+     * is decoded as UTF-8 like `Files.newBufferedReader`.
+     * @param filePath the path of the file to tokenize
+     * @param handler the handler to pass the normalized tokens to
+     */
+    public void tokenize(Path filePath, TokenHandler handler) {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+
+            // files too large to map in one buffer, as well as non-ASCII files, must be decoded first
+            if (fileSize <= Integer.MAX_VALUE) {
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+
+                if (isAscii(bytes)) {
+                    tokenizeAscii(bytes, handler);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        try (Reader reader = Files.newBufferedReader(filePath)) {
+            tokenize(reader, handler);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Tokenizes the bytes of a file that was already read into memory, decoding them as UTF-8 unless they are
+     * entirely ASCII.
+     * @param fileBytes the bytes of the file to tokenize
+     * @param handler the handler to pass the normalized tokens to
+     */
+    public void tokenize(byte[] fileBytes, TokenHandler handler) {
+        ByteBuffer bytes = ByteBuffer.wrap(fileBytes);
+
+        if (isAscii(bytes)) {
+            tokenizeAscii(bytes, handler);
+        } else {
+            tokenize(new InputStreamReader(new ByteArrayInputStream(fileBytes), StandardCharsets.UTF_8), handler);
+        }
+    }
+
+    /**
+     * Tokenizes the content of a reader, splitting on whitespace like `EnglishTokenStream`.
+     * @param reader the reader of the content to tokenize; it is not closed
+     * @param handler the handler to pass the normalized tokens to
+     */
+    public void tokenize(Reader reader, TokenHandler handler) {
+        tokenLength = 0;
+        tokenIsAscii = true;
+
+        while (true) {
+            int numOfChars;
+            try {
+                numOfChars = reader.read(readBuffer, 0, readBuffer.length);
+            } catch (IOException e) {
+                // like a Scanner, treat a stream that can no longer be read as the end of its input
+                numOfChars = -1;
+            }
+            if (numOfChars < 0) {
+                break;
+            }
+
+            for (int i = 0; i < numOfChars; ++i) {
+                char character = readBuffer[i];
+
+                if (character < 128 ? ASCII_WHITESPACE[character] : Character.isWhitespace(character)) {
+                    endToken(handler);
+                } else {
+                    appendToToken(character);
+                }
+            }
+        }
+        endToken(handler);
+    }
+
+    private void tokenizeAscii(ByteBuffer bytes, TokenHandler handler) {
+        tokenLength = 0;
+        tokenIsAscii = true;
+        int size = bytes.limit();
+
+        for (int i = 0; i < size; ++i) {
+            char character = (char) bytes.get(i);
+
+            if (ASCII_WHITESPACE[character]) {
+                endToken(handler);
+            } else {
+                appendToToken(character);
+            }
+        }
+        endToken(handler);
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        int size = bytes.limit();
+        int i = 0;
+
+        // check eight bytes at a time for any byte with its high bit set
+        for (; i + Long.BYTES <= size; i += Long.BYTES) {
+            if ((bytes.getLong(i) & 0x8080808080808080L) != 0) {
+                return false;
+            }
+        }
+        for (; i < size; ++i) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void appendToToken(char character) {
+        if (tokenLength == token.length) {
+            token = Arrays.copyOf(token, token.length * 2);
+        }
+        token[tokenLength++] = character;
+        tokenIsAscii &= (character < 128);
+    }
+
+    private void endToken(TokenHandler handler) {
+        if (tokenLength == 0) {
+            return;
+        }
+        wildcardTokens.clear();
+        terms.clear();
+
+        if (tokenIsAscii && STANDARD_LOWERCASE) {
+            normalizeWildcardToken();
+            normalizeVocabularyToken();
+        } else {
+            String currentToken = new String(token, 0, tokenLength);
+            wildcardTokens.addAll(wildcardProcessor.processToken(currentToken));
+            terms.addAll(vocabProcessor.processToken(currentToken));
+        }
+        handler.handleToken(wildcardTokens, terms);
+
+        tokenLength = 0;
+        tokenIsAscii = true;
+    }
+
+    private void normalizeWildcardToken() {
+        // 1. Perform minimal processing on wildcard tokens, keeping asterisks.
+        int startIndex = 0;
+        int endIndex = tokenLength - 1;
+
+        while (!isWildcardCharacter(token[startIndex]) && startIndex < tokenLength - 1) {
+            ++startIndex;
+        }
+        while (!isWildcardCharacter(token[endIndex]) && endIndex > 0) {
+            --endIndex;
+        }
+
+        if (startIndex >= endIndex) {
+            wildcardTokens.add("");
+            return;
+        }
+
+        // 2-4. Remove quotes, then split on hyphens and convert to lowercase; skip 5 (stemming)
+        int numOfHyphens = normalize(startIndex, endIndex);
+        if (numOfHyphens == 0) {
+            wildcardTokens.add(new String(normalized, 0, normalizedLength));
+            return;
+        }
+        wildcardTokens.add(joinHyphenatedParts(numOfHyphens));
+
+        int partStart = 0;
+        for (int i = 0; i <= numOfHyphens; ++i) {
+            int partEnd = (i < numOfHyphens ? hyphens[i] : normalizedLength);
+            wildcardTokens.add(new String(normalized, partStart, partEnd - partStart));
+            partStart = partEnd + 1;
+        }
+    }
+
+    private void normalizeVocabularyToken() {
+        /* 1. Remove all non-alphanumeric characters from the beginning and end of the token, but not the middle.
+          A trimmed token is either empty or starts and ends with an alphanumeric character. */
+        if (tokenLength == 1 && !ASCII_ALPHANUMERIC[token[0]]) {
+            return;
+        }
+        int startIndex = 0;
+        int endIndex = tokenLength - 1;
+
+        while (!ASCII_ALPHANUMERIC[token[startIndex]] && startIndex < tokenLength - 1) {
+            ++startIndex;
+        }
+        while (!ASCII_ALPHANUMERIC[token[endIndex]] && endIndex > 0) {
+            --endIndex;
+        }
+
+        // empty terms are never added to the vocabulary
+        if (startIndex > endIndex) {
+            return;
+        }
+
+        // 2-4. Remove quotes, then split on hyphens and convert to lowercase.
+        int numOfHyphens = normalize(startIndex, endIndex);
+        if (numOfHyphens == 0) {
+            addStemmedTerm(new String(normalized, 0, normalizedLength));
+            return;
+        }
+        addStemmedTerm(joinHyphenatedParts(numOfHyphens));
+
+        int partStart = 0;
+        for (int i = 0; i <= numOfHyphens; ++i) {
+            int partEnd = (i < numOfHyphens ? hyphens[i] : normalizedLength);
+            if (partEnd > partStart) {
+                addStemmedTerm(new String(normalized, partStart, partEnd - partStart));
+            }
+            partStart = partEnd + 1;
+        }
+    }
+
+    private void addStemmedTerm(String currentToken) {
+        // 5. Stem the token using an implementation of the Porter2 stemmer.
+        currentToken = vocabProcessor.stem(currentToken);
+
+        // stemming can expose special characters, which must be removed the same way as `VocabularyTokenProcessor`
+        if (currentToken.length() > 0 && (vocabProcessor.isNotAlphanumeric(currentToken.charAt(0)) ||
+                vocabProcessor.isNotAlphanumeric(currentToken.charAt(currentToken.length() - 1)))) {
+            terms.addAll(vocabProcessor.processToken(currentToken));
+        } else if (currentToken.length() > 0) {
+            terms.add(currentToken);
+        }
+    }
+
+    /**
+     * Copies the token's characters between the indexes into the normalized buffer, removing quotes, converting
+     * to lowercase and recording the position of each hyphen.
+     * @return the number of hyphens in the normalized token
+     */
+    private int normalize(int startIndex, int endIndex) {
+        if (normalized.length < tokenLength) {
+            normalized = new char[token.length];
+        }
+        normalizedLength = 0;
+        int numOfHyphens = 0;
+
+        for (int i = startIndex; i <= endIndex; ++i) {
+            char character = token[i];
+
+            if (character == '\'' || character == '"') {
+                continue;
+            }
+            if (character == '-') {
+                if (numOfHyphens == hyphens.length) {
+                    hyphens = Arrays.copyOf(hyphens, hyphens.length * 2);
+                }
+                hyphens[numOfHyphens++] = normalizedLength;
+            } else if (character >= 'A' && character <= 'Z') {
+                character += ('a' - 'A');
+            }
+            normalized[normalizedLength++] = character;
+        }
+
+        return numOfHyphens;
+    }
+
+    private String joinHyphenatedParts(int numOfHyphens) {
+        // 3a. Remove the hyphens from the token and then proceed with the modified token.
+        StringBuilder joinedToken = new StringBuilder(normalizedLength - numOfHyphens);
+        int partStart = 0;
+
+        for (int i = 0; i <= numOfHyphens; ++i) {
+            int partEnd = (i < numOfHyphens ? hyphens[i] : normalizedLength);
+            joinedToken.append(normalized, partStart, partEnd - partStart);
+            partStart = partEnd + 1;
+        }
+
+        return joinedToken.toString();
+    }
+
+    private static boolean isWildcardCharacter(char character) {
+        return ASCII_ALPHANUMERIC[character] || character == '*';
+    }
+}
@@ -5,6 +5,7 @@ import application.Application;
 import application.indexes.Index;
 import application.indexes.KGramIndex;
 import application.indexes.Posting;
+import application.indexes.WildcardIndex;
 
 import java.util.*;
 
@@ -17,9 +18,9 @@ public class SpellingSuggestion {
     private static final double K_GRAM_OVERLAP_THRESHOLD = 0.3;
     private static final double JACCARD_COEFF_THRESHOLD = 0.4;
     private final Index<String, Posting> corpusIndex;
-    private final Index<String, String> kGramIndex;
+    private final WildcardIndex kGramIndex;
 
-    public SpellingSuggestion(Index<String, Posting> inputCorpusIndex, Index<String, String> inputKGramIndex) {
+    public SpellingSuggestion(Index<String, Posting> inputCorpusIndex, WildcardIndex inputKGramIndex) {
         corpusIndex = inputCorpusIndex;
         kGramIndex = inputKGramIndex;
     }
@@ -70,7 +71,6 @@ public class SpellingSuggestion {
     }
 
     public List<String> getCandidates(String token, double kGramOverlapThreshold, double jaccardCoeffThreshold) {
-        List<String> indexVocabulary = kGramIndex.getVocabulary();
         List<String> candidates = new ArrayList<>();
 
         KGramIndex tokenKGramIndex = new KGramIndex();
@@ -79,6 +79,13 @@ public class SpellingSuggestion {
         // remember to sort the k-grams before we compare them
         Collections.sort(tokenKGrams);
 
+        /* since the overlap threshold is positive, only types sharing at least one k-gram with the token can be
+          selected; collect them from the inverted k-grams instead of traversing the entire vocabulary */
+        Set<String> indexVocabulary = new TreeSet<>();
+        for (String tokenKGram : tokenKGrams) {
+            indexVocabulary.addAll(kGramIndex.getTokens(tokenKGram));
+        }
+
         for (String vocabularyType : indexVocabulary) {
             List<String> vocabularyTokenKGrams = kGramIndex.getPostings(vocabularyType);
             Collections.sort(vocabularyTokenKGrams);
@@ -135,12 +142,11 @@ public class SpellingSuggestion {
         }
 
         // 4b. If multiple types tie, select the type with the highest df(t) (when stemmed).
-        TokenStemmer stemmer = new TokenStemmer();
         String finalReplacement = token;
         int max = -1;
 
         for (String currentCandidate : finalCandidates) {
-            String candidateStemmed = stemmer.stem(currentCandidate);
+            String candidateStemmed = StemmingService.stem(currentCandidate);
             int dft = corpusIndex.getPositionlessPostings(candidateStemmed).size();
 
             if (Application.enabledLogs) {
@@ -0,0 +1,81 @@
+
+package application.text;
+
+import org.tartarus.snowball.ext.PorterStemmer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stems tokens using a shared cache of surface forms -> stems, so that each distinct form is only stemmed once.
+ * Each thread reuses its own PorterStemmer, since the stemmer itself is not thread-safe.
+ */
+public class StemmingService {
+
+    private static final int MAX_CACHE_SIZE = 200_000;  // the maximum number of surface forms to remember
+
+    private static final Map<String, String> stemCache = new ConcurrentHashMap<>();
+    private static final ThreadLocal<PorterStemmer> stemmers = ThreadLocal.withInitial(PorterStemmer::new);
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    /**
+     * Returns the Porter2 stem of the token.
+     * @param token the token to stem
+     * @return the stemmed token
+     */
+    public static String stem(String token) {
+        String stemmedToken = stemCache.get(token);
+
+        if (stemmedToken != null) {
+            hits.increment();
+            return stemmedToken;
+        }
+        misses.increment();
+
+        PorterStemmer stemmer = stemmers.get();
+        stemmer.setCurrent(token);
+        stemmer.stem();
+        stemmedToken = stemmer.getCurrent();
+
+        // once the cache is full, keep the forms already seen rather than evicting them; the most frequent
+        // forms tend to appear early in a corpus
+        if (stemCache.size() < MAX_CACHE_SIZE) {
+            stemCache.put(token, stemmedToken);
+        }
+
+        return stemmedToken;
+    }
+
+    public static long getHitCount() {
+        return hits.sum();
+    }
+
+    public static long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of `stem()` calls that were answered by the cache, or 0 if nothing has been stemmed.
+     */
+    public static double getHitRate() {
+        long totalHits = hits.sum();
+        long total = totalHits + misses.sum();
+
+        return (total == 0 ? 0 : (double) totalHits / total);
+    }
+
+    public static int getCacheSize() {
+        return stemCache.size();
+    }
+
+    /**
+     * Empties the cache and resets the hit and miss counters.
+     */
+    public static void clear() {
+        stemCache.clear();
+        hits.reset();
+        misses.reset();
+    }
+}
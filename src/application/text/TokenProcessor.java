@@ -103,7 +103,6 @@ public abstract class TokenProcessor {
 	 */
 	public String stem(String token) {
 		// 5. Stem the token using an implementation of the Porter2 stemmer.
-		TokenStemmer stemmer = new TokenStemmer();
-		return stemmer.processToken(token).get(0);
+		return StemmingService.stem(token);
 	}
 }
@@ -1,8 +1,6 @@
 
 package application.text;
 
-import org.tartarus.snowball.ext.PorterStemmer;
-
 import java.util.ArrayList;
 
 public class TokenStemmer extends TokenProcessor {
@@ -10,10 +8,9 @@ public class TokenStemmer extends TokenProcessor {
     @Override
     public ArrayList<String> processToken(String token) {
         // Stem the token using an implementation of the Porter2 stemmer.
-        PorterStemmer stemmer = new PorterStemmer();
-        stemmer.setCurrent(token);
-        stemmer.stem();
+        ArrayList<String> terms = new ArrayList<>();
+        terms.add(StemmingService.stem(token));
 
-        return new ArrayList<>(){{add(stemmer.getCurrent());}};
+        return terms;
     }
 }
@@ -19,11 +19,20 @@ public class IndexUtility {
             put("root", directoryString);
             put("indexDirectory", pathToIndexDirectory);
             put("postingsBin", pathToIndexDirectory + "/postings.bin");
-            put("docWeightsBin", pathToIndexDirectory + "/docWeights.bin");
-            put("bTreeBin", pathToIndexDirectory + "/bTree.bin");
+            put("positionsBin", pathToIndexDirectory + "/positions.bin");
+            put("docStatsBin", pathToIndexDirectory + "/docStats.bin");
+            put("termsBin", pathToIndexDirectory + "/terms.bin");
+            put("termBoundsBin", pathToIndexDirectory + "/termBounds.bin");
+            put("docBitmapsBin", pathToIndexDirectory + "/docBitmaps.bin");
             put("kGramsBin", pathToIndexDirectory + "/kGrams.bin");
+            put("kGramTermsBin", pathToIndexDirectory + "/kGramTerms.bin");
+            put("kGramTokensBin", pathToIndexDirectory + "/kGramTokens.bin");
             put("biwordBin", pathToIndexDirectory + "/biword.bin");
+            put("biwordTermsBin", pathToIndexDirectory + "/biwordTerms.bin");
+            // files of indexes built before the term dictionary, which `LegacyIndexUpgrader` converts on open
+            put("bTreeBin", pathToIndexDirectory + "/bTree.bin");
             put("biwordBTreeBin", pathToIndexDirectory + "/biwordBTree.bin");
+            put("docWeightsBin", pathToIndexDirectory + "/docWeights.bin");
         }};
     }
 
@@ -18,9 +18,30 @@ public class Menu {
                 %nSelect an option:
                 1. Build a new index
                 2. Query an on-disk index
+                3. Update an on-disk index, then query it
                  >>\040""");
 
-        return CheckInput.checkIntRange(0, 2);
+        return CheckInput.checkIntRange(0, 3);
+    }
+
+    public static int showMemoryBudgetMenu() {
+        int maxMemoryInMegabytes = (int) (Runtime.getRuntime().maxMemory() / 1_048_576);
+
+        System.out.printf("""
+                %nEnter the indexing memory budget in megabytes (max %s), or 0 to index entirely in memory:
+                 >>\040""", maxMemoryInMegabytes);
+
+        return CheckInput.checkIntRange(0, maxMemoryInMegabytes);
+    }
+
+    public static int showIndexingThreadsMenu(String stage, int defaultNumOfThreads) {
+        int maxNumOfThreads = 4 * Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("""
+                %nEnter the number of threads %s (max %s), or 0 to keep the default of %s:
+                 >>\040""", stage, maxNumOfThreads, defaultNumOfThreads);
+
+        return CheckInput.checkIntRange(0, maxNumOfThreads);
     }
 
     public static int showQueryMenu() {
@@ -100,13 +121,18 @@ public class Menu {
         System.out.printf("""
                 %n:set `subdirectory-path`  --  Sets the components to read the contents of the subdirectory path.
                  :index `directory-name`  --  Index the folder at the specified path.
+                                 :update  --  Index only the files added, modified or deleted since the index
+                                              was last written, then reload the index.
                            :stem `token`  --  Stem, then print the token string.
+                           :rank `order`  --  Score ranked queries `term` at a time, or `document` at a time
+                                              while skipping documents that cannot reach the top results.
                                   :vocab  --  Print the first %s terms in the vocabulary of the corpus,
                                               then print the total number of vocabulary terms.
                                  :kgrams  --  Print the first %s k-gram mappings of vocabulary types to
                                               k-gram tokens, then print the total number of vocabulary types.
                            `query` --log  --  Enable printing a debugging log to the console before printing
                                               the query results.
+                      `query` --page `n`  --  Print the nth page of ranked results, such as results 11 to 20.
                                       :q  --  Exit the program.
                 """, vocabPrintSize, vocabPrintSize);
     }
@@ -4,11 +4,15 @@ package application.utilities;
 public enum PathSuffix {
     INDEX("/index"),
     POSTINGS_FILE("/postings.bin"),
-    DOC_WEIGHTS_FILE("/docWeights.bin"),
-    BTREE_FILE("/bTree.bin"),
+    DOC_STATS_FILE("/docStats.bin"),
+    TERMS_FILE("/terms.bin"),
+    TERM_BOUNDS_FILE("/termBounds.bin"),
+    DOC_BITMAPS_FILE("/docBitmaps.bin"),
     KGRAMS_FILE("/kGrams.bin"),
+    KGRAM_TERMS_FILE("/kGramTerms.bin"),
+    KGRAM_TOKENS_FILE("/kGramTokens.bin"),
     BIWORD_FILE("/biwordBin.bin"),
-    BIWORD_BTREE("/biwordBTree.bin");
+    BIWORD_TERMS("/biwordTerms.bin");
 
     private String label;
 
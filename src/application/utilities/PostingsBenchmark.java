@@ -0,0 +1,191 @@
+
+package application.utilities;
+
+import application.documents.DirectoryCorpus;
+import application.documents.Document;
+import application.indexes.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compares the size and decoding cost of each postings format on the same corpus. The corpus is indexed once in
+ * memory, written to a temporary directory in every format, then the postings of every term are read back from
+ * disk several times; the decoded postings are checked against the in-memory index before anything is timed. The
+ * correctness of each format is covered by `PostingsFormatTest`, so this only measures them.
+ * <p>
+ * Usage: `PostingsBenchmark <corpus directory> [rounds]`
+ */
+public class PostingsBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int NUM_OF_RARE_TERMS = 100;   // the number of rare terms intersected with a common term
+    private static final String[] VERSION_NAMES = {"legacy", "variable-byte", "blocked", "separate", "large-offsets"};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: PostingsBenchmark <corpus directory> [rounds]");
+            return;
+        }
+        int rounds = (args.length > 1 ? Integer.parseInt(args[1]) : 5);
+
+        List<Document> documents = new ArrayList<>();
+        DirectoryCorpus.loadDirectory(Path.of(args[0]), false).getDocuments().forEach(documents::add);
+        documents.sort(Comparator.comparingInt(Document::getId));
+        IndexSegment segment = new IndexSegment();
+        segment.indexDocuments(documents);
+        Index<String, Posting> index = segment.getIndex();
+        List<String> vocabulary = index.getVocabulary();
+
+        Path benchmarkDirectory = Files.createTempDirectory("postings-benchmark");
+        System.out.printf("%-14s %12s %12s %14s %14s %14s%n", "Format", "Size (bytes)", "Positions",
+                "Postings (ms)", "Positionless", "ns/posting");
+
+        for (int version : new int[] {PostingsFormat.LEGACY, PostingsFormat.VARIABLE_BYTE, PostingsFormat.BLOCKED,
+                PostingsFormat.SEPARATE_POSITIONS, PostingsFormat.LARGE_OFFSETS}) {
+            String pathToPostingsBin = benchmarkDirectory + "/postings-" + version + ".bin";
+            String pathToPositionsBin = benchmarkDirectory + "/positions-" + version + ".bin";
+            String pathToTermsBin = benchmarkDirectory + "/terms-" + version + ".bin";
+            DiskIndexWriter.writeIndex(pathToPostingsBin, pathToPositionsBin, pathToTermsBin, index, version);
+
+            long openStartTime = System.nanoTime();
+            try (DiskPositionalIndex diskIndex = new DiskPositionalIndex(DiskIndexReader.readTermDictionary(
+                    pathToTermsBin), pathToPostingsBin, pathToPositionsBin)) {
+                long openNanos = System.nanoTime() - openStartTime;
+                verify(index, diskIndex, vocabulary);
+
+                long numOfPostings = 0;
+                long postingsNanos = 0;
+                long positionlessNanos = 0;
+                for (int round = 0; round < WARMUP_ROUNDS + rounds; ++round) {
+                    long startTime = System.nanoTime();
+                    long roundPostings = 0;
+                    for (String term : vocabulary) {
+                        roundPostings += diskIndex.getPostings(term).size();
+                    }
+                    long middleTime = System.nanoTime();
+                    for (String term : vocabulary) {
+                        diskIndex.getPositionlessPostings(term);
+                    }
+                    long endTime = System.nanoTime();
+
+                    // the first rounds only warm up the JIT and the page cache
+                    if (round >= WARMUP_ROUNDS) {
+                        numOfPostings += roundPostings;
+                        postingsNanos += middleTime - startTime;
+                        positionlessNanos += endTime - middleTime;
+                    }
+                }
+
+                // older formats keep their positions within the postings file
+                System.out.printf("%-14s %12d %12d %14.1f %14.1f %14.1f%n", VERSION_NAMES[version],
+                        new File(pathToPostingsBin).length(), new File(pathToPositionsBin).length(),
+                        postingsNanos / 1_000_000.0 / rounds, positionlessNanos / 1_000_000.0 / rounds,
+                        (double) postingsNanos / numOfPostings);
+
+                if (version == PostingsFormat.CURRENT_VERSION) {
+                    System.out.printf("%nOpened %d terms in %.2f ms (%d bytes)%n", vocabulary.size(),
+                            openNanos / 1_000_000.0, new File(pathToTermsBin).length());
+                    benchmarkSkipping(index, diskIndex, vocabulary, rounds);
+                }
+            }
+        }
+
+        File[] benchmarkFiles = benchmarkDirectory.toFile().listFiles();
+        if (benchmarkFiles != null) {
+            for (File file : benchmarkFiles) {
+                file.delete();
+            }
+        }
+        benchmarkDirectory.toFile().delete();
+    }
+
+    /**
+     * Intersects rare terms with the most common term, once by reading both postings lists in full and once by
+     * advancing an iterator over the common term's blocks to each of the rare term's documents.
+     */
+    private static void benchmarkSkipping(Index<String, Posting> index, DiskPositionalIndex diskIndex,
+                                          List<String> vocabulary, int rounds) {
+        String commonTerm = vocabulary.stream()
+                .max(Comparator.comparingInt(term -> index.getPostings(term).size())).orElseThrow();
+        List<String> rareTerms = vocabulary.stream().filter(term -> index.getPostings(term).size() <= 2)
+                .limit(NUM_OF_RARE_TERMS).toList();
+        int numOfCommonPostings = index.getPostings(commonTerm).size();
+
+        long fullNanos = 0;
+        long skippingNanos = 0;
+        long numOfBlocksRead = 0;
+        long numOfMatches = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + rounds; ++round) {
+            long startTime = System.nanoTime();
+            for (String rareTerm : rareTerms) {
+                List<Posting> rarePostings = diskIndex.getPositionlessPostings(rareTerm);
+                List<Posting> commonPostings = diskIndex.getPositionlessPostings(commonTerm);
+                int commonIndex = 0;
+                for (Posting rarePosting : rarePostings) {
+                    while (commonIndex < commonPostings.size() &&
+                            commonPostings.get(commonIndex).getDocumentId() < rarePosting.getDocumentId()) {
+                        ++commonIndex;
+                    }
+                }
+            }
+            long middleTime = System.nanoTime();
+            long roundBlocksRead = 0;
+            long roundMatches = 0;
+            for (String rareTerm : rareTerms) {
+                List<Posting> rarePostings = diskIndex.getPositionlessPostings(rareTerm);
+                BlockPostingsIterator commonIterator = (BlockPostingsIterator) diskIndex.getPostingsIterator(
+                        commonTerm, false);
+                for (Posting rarePosting : rarePostings) {
+                    if (commonIterator.advance(rarePosting.getDocumentId()) == rarePosting.getDocumentId()) {
+                        ++roundMatches;
+                    }
+                }
+                roundBlocksRead += commonIterator.getNumOfBlocksRead();
+            }
+            long endTime = System.nanoTime();
+
+            if (round >= WARMUP_ROUNDS) {
+                fullNanos += middleTime - startTime;
+                skippingNanos += endTime - middleTime;
+                numOfBlocksRead = roundBlocksRead;
+                numOfMatches = roundMatches;
+            }
+        }
+
+        int numOfBlocks = (numOfCommonPostings + PostingsFormat.BLOCK_SIZE - 1) / PostingsFormat.BLOCK_SIZE;
+        System.out.printf("""
+                %nIntersecting %d rare terms with `%s` (%d postings in %d blocks):
+                Full lists: %.2f ms
+                Skipping:   %.2f ms, %.2f blocks read per query, %d matches
+                """, rareTerms.size(), commonTerm, numOfCommonPostings, numOfBlocks,
+                fullNanos / 1_000_000.0 / rounds, skippingNanos / 1_000_000.0 / rounds,
+                (double) numOfBlocksRead / Math.max(1, rareTerms.size()), numOfMatches);
+    }
+
+    private static void verify(Index<String, Posting> index, Index<String, Posting> diskIndex,
+                               List<String> vocabulary) {
+        if (!diskIndex.getVocabulary().equals(vocabulary)) {
+            throw new IllegalStateException("The vocabulary was not read back correctly");
+        }
+        for (String term : vocabulary) {
+            List<Posting> expected = index.getPostings(term);
+            List<Posting> actual = diskIndex.getPostings(term);
+            List<Posting> positionless = diskIndex.getPositionlessPostings(term);
+
+            for (int i = 0; i < expected.size(); ++i) {
+                if (actual.size() != expected.size() || positionless.size() != expected.size() ||
+                        actual.get(i).getDocumentId() != expected.get(i).getDocumentId() ||
+                        !actual.get(i).getPositions().equals(expected.get(i).getPositions()) ||
+                        positionless.get(i).getTermFrequency() != expected.get(i).getTermFrequency()) {
+                    throw new IllegalStateException("Postings of `" + term + "` were not read back correctly");
+                }
+            }
+        }
+    }
+}